@@ -0,0 +1,112 @@
+package base_Utils_Objects.kdTree;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import base_Utils_Objects.kdTree.base.Base_FloatArrayKDTree;
+import base_Utils_Objects.kdTree.base.Base_KDObject;
+
+/**
+ * Single precision pointerless kd-tree of Base_KDObjects. Identical in use to ArrayKDTree, but the point coordinates
+ * are rounded to floats when they are copied out of the objects, halving the memory the tree's queries touch.
+ * Found objects are reported by their index in the order they were added to the tree.
+ *
+ * @author John Turner
+ *
+ * @param <T> type of object held in this tree
+ */
+public class FloatArrayKDTree <T extends Base_KDObject<T>> extends Base_FloatArrayKDTree {
+    /**
+     * list of objects this tree is built from, in the order they were added. Neighbors are reported by their index in this list.
+     */
+    protected ArrayList<T> nodeObjectList;
+
+    public FloatArrayKDTree(int _maxNumNeighbors, double _maxNeighborSqDist) {
+        this(_maxNumNeighbors, _maxNeighborSqDist, DEFAULT_LEAF_SIZE);
+    }//ctor
+
+    /**
+     * @param _maxNumNeighbors Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     * @param _maxNeighborSqDist Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     * @param _leafSize Maximum # of objects in a leaf bucket
+     */
+    public FloatArrayKDTree(int _maxNumNeighbors, double _maxNeighborSqDist, int _leafSize) {
+        super(_maxNumNeighbors, _maxNeighborSqDist);
+        setLeafSize(_leafSize);
+        nodeObjectList = new ArrayList<T>();
+    }//ctor
+
+    /**
+     * add a KD Object to the KD-tree. Its index in this tree is the # of objects added before it.
+     * @param p Object to add
+     */
+    public void addKDObject(T p){
+        nodeObjectList.add(p);
+    }
+
+    /**
+     * Build the kd-tree. Should only be called after all of the objects have been added.
+     */
+    public void buildKDTree() {
+        if(nodeObjectList.size() == 0) {
+            System.out.println("No Objects added to build Float Array KD Tree from. Aborting.");
+            return;
+        }
+        buildTree(nodeObjectList.size(), nodeObjectList.get(0).getNumPosVals());
+    }//buildKDTree
+
+    /**
+     * Build the kd-tree, building independent subtrees in parallel on the common ForkJoinPool.
+     * Should only be called after all of the objects have been added.
+     */
+    public void buildKDTreeParallel() {buildKDTreeParallel(ForkJoinPool.commonPool());}
+
+    /**
+     * Build the kd-tree, building independent subtrees in parallel on the passed ForkJoinPool.
+     * Should only be called after all of the objects have been added.
+     * @param pool
+     */
+    public void buildKDTreeParallel(ForkJoinPool pool) {
+        if(nodeObjectList.size() == 0) {
+            System.out.println("No Objects added to build Float Array KD Tree from. Aborting.");
+            return;
+        }
+        buildTree(nodeObjectList.size(), nodeObjectList.get(0).getNumPosVals(), pool);
+    }//buildKDTreeParallel
+
+    /**
+     * Refit this tree in place after the objects it holds have moved, without allocating. Subtrees are re-partitioned
+     * starting from their previous order, and only those whose split axis has become a poor choice are rebuilt.
+     * If the tree has not been built yet, or objects have been added since it was built, it is built from scratch instead.
+     * @return # of subtrees that were rebuilt from scratch
+     */
+    public int refitKDTree() {
+        if(numPts == 0) {
+            System.out.println("Float Array KD Tree has not been built yet, so cannot be refit; building.");
+            buildKDTree();
+            return 1;
+        }
+        if(nodeObjectList.size() != numPts) {
+            System.out.println("Float Array KD Tree cannot refit after objects have been added; rebuilding.");
+            buildKDTree();
+            return 1;
+        }
+        return refitTree();
+    }//refitKDTree
+
+    @Override
+    protected float getSrcPosVal(int srcIdx, int axis) {return (float) nodeObjectList.get(srcIdx).getPosVal(axis);}
+
+    //////////////////////////////
+    // Getters and setters
+
+    /**
+     * Get the object with the given index
+     * @param idx index of object, as reported in query results
+     * @return
+     */
+    public T getKDObject(int idx) {return nodeObjectList.get(idx);}
+
+    public int getNumNodeObjs() {return nodeObjectList.size();}
+
+}//class FloatArrayKDTree
@@ -0,0 +1,180 @@
+package base_Utils_Objects.kdTree;
+
+import java.util.concurrent.ForkJoinPool;
+
+import base_Utils_Objects.kdTree.base.Base_ArrayKDTree;
+
+/**
+ * Pointerless kd-tree of raw points, bulk-loaded straight from primitive arrays : either one double[] per point or
+ * a single flat double[] holding each point's values at a fixed stride, as read from a file or held in simulation
+ * state. No per-point objects are needed, and queries report points by their index in the source arrays.
+ *
+ * The source arrays are referenced, not copied; their values are copied into the tree when it is built or refit.
+ * So a tree over simulation state can be refit in place with {@link #refitKDTree()} after the points move, as long
+ * as the # of points and their layout have not changed.
+ *
+ * @author John Turner
+ *
+ */
+public class IndexKDTree extends Base_ArrayKDTree {
+    /**
+     * source points as one array per point, or null if loaded from a flat array
+     */
+    protected double[][] srcPts;
+    /**
+     * source points as a flat array, or null if loaded from one array per point : point i's axis a value is at
+     * [srcOffset + i*srcStride + a]
+     */
+    protected double[] srcFlatPts;
+    protected int srcOffset, srcStride;
+    /**
+     * # of source points and # of axes of each, as loaded
+     */
+    protected int numSrcPts, numSrcDims;
+
+    public IndexKDTree(int _maxNumNeighbors, double _maxNeighborSqDist) {
+        this(_maxNumNeighbors, _maxNeighborSqDist, DEFAULT_LEAF_SIZE);
+    }//ctor
+
+    /**
+     * @param _maxNumNeighbors Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     * @param _maxNeighborSqDist Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     * @param _leafSize Maximum # of points in a leaf bucket
+     */
+    public IndexKDTree(int _maxNumNeighbors, double _maxNeighborSqDist, int _leafSize) {
+        super(_maxNumNeighbors, _maxNeighborSqDist);
+        setLeafSize(_leafSize);
+        numSrcPts = 0;
+        numSrcDims = 0;
+    }//ctor
+
+    /**
+     * Set the points this tree is built from, as one array per point. Point i is reported by index i.
+     * @param pts source points. Every point must have at least numDims values. Referenced, not copied.
+     * @param numDims # of position values/axes of each point to use
+     * @return whether the points were set
+     */
+    public boolean setSrcPts(double[][] pts, int numDims) {
+        if ((pts == null) || (pts.length == 0) || (numDims < 1)) {
+            System.out.println("Index KD Tree needs at least 1 point with at least 1 axis to be built from. Aborting.");
+            return false;
+        }
+        for(int i=0;i<pts.length;++i) {
+            if (pts[i].length < numDims) {
+                System.out.println("Index KD Tree source point "+i+" has "+pts[i].length+" values, but "+numDims+" axes are used. Aborting.");
+                return false;
+            }
+        }
+        srcPts = pts;
+        srcFlatPts = null;
+        numSrcPts = pts.length;
+        numSrcDims = numDims;
+        return true;
+    }//setSrcPts
+
+    /**
+     * Set the points this tree is built from, as one array per point, using every value of the first point. See {@link #setSrcPts(double[][], int)}
+     * @param pts source points. Referenced, not copied.
+     * @return whether the points were set
+     */
+    public boolean setSrcPts(double[][] pts) {return setSrcPts(pts, ((pts == null) || (pts.length == 0) ? 0 : pts[0].length));}
+
+    /**
+     * Set the points this tree is built from, as a flat array. Point i is reported by index i.
+     * @param pts source points : point i's axis a value is at [offset + i*stride + a]. Referenced, not copied.
+     * @param offset index in pts of the first point's first value
+     * @param stride # of values from the start of one point to the start of the next. Must be >= numDims.
+     * @param numPts # of points
+     * @param numDims # of position values/axes of each point to use
+     * @return whether the points were set
+     */
+    public boolean setSrcPts(double[] pts, int offset, int stride, int numPts, int numDims) {
+        if ((pts == null) || (numPts < 1) || (numDims < 1)) {
+            System.out.println("Index KD Tree needs at least 1 point with at least 1 axis to be built from. Aborting.");
+            return false;
+        }
+        if ((offset < 0) || (stride < numDims) || (offset + (long) (numPts - 1) * stride + numDims > pts.length)) {
+            System.out.println("Index KD Tree cannot read "+numPts+" points of "+numDims+" axes at offset "+offset+" and stride "+stride
+                    +" from an array of "+pts.length+" values. Aborting.");
+            return false;
+        }
+        srcFlatPts = pts;
+        srcPts = null;
+        srcOffset = offset;
+        srcStride = stride;
+        numSrcPts = numPts;
+        numSrcDims = numDims;
+        return true;
+    }//setSrcPts
+
+    /**
+     * Set the points this tree is built from, as a flat array of tightly packed points. See {@link #setSrcPts(double[], int, int, int, int)}
+     * @param pts source points : point i's axis a value is at [i*numDims + a]. Referenced, not copied.
+     * @param numDims # of position values/axes of each point
+     * @return whether the points were set
+     */
+    public boolean setSrcPts(double[] pts, int numDims) {
+        return setSrcPts(pts, 0, numDims, ((pts == null) || (numDims < 1) ? 0 : pts.length / numDims), numDims);
+    }
+
+    /**
+     * Build the kd-tree. Should only be called after the source points have been set.
+     */
+    public void buildKDTree() {
+        if(numSrcPts == 0) {
+            System.out.println("No source points set to build Index KD Tree from. Aborting.");
+            return;
+        }
+        buildTree(numSrcPts, numSrcDims);
+    }//buildKDTree
+
+    /**
+     * Build the kd-tree, building independent subtrees in parallel on the common ForkJoinPool.
+     * Should only be called after the source points have been set.
+     */
+    public void buildKDTreeParallel() {buildKDTreeParallel(ForkJoinPool.commonPool());}
+
+    /**
+     * Build the kd-tree, building independent subtrees in parallel on the passed ForkJoinPool.
+     * Should only be called after the source points have been set.
+     * @param pool
+     */
+    public void buildKDTreeParallel(ForkJoinPool pool) {
+        if(numSrcPts == 0) {
+            System.out.println("No source points set to build Index KD Tree from. Aborting.");
+            return;
+        }
+        buildTree(numSrcPts, numSrcDims, pool);
+    }//buildKDTreeParallel
+
+    /**
+     * Refit this tree in place after the values of its source points have changed, without allocating. See
+     * {@link Base_ArrayKDTree#refitTree()}. If the tree has not been built yet, or the source points have been reset 
+     * with a different # of points or axes since it was built, it is built from scratch instead.
+     * @return # of subtrees that were rebuilt from scratch
+     */
+    public int refitKDTree() {
+        if(numPts == 0) {
+            System.out.println("Index KD Tree has not been built yet, so cannot be refit; building.");
+            buildKDTree();
+            return 1;
+        }
+        if((numSrcPts != numPts) || (numSrcDims != numDims)) {
+            System.out.println("Index KD Tree cannot refit after its source points have changed size; rebuilding.");
+            buildKDTree();
+            return 1;
+        }
+        return refitTree();
+    }//refitKDTree
+
+    @Override
+    protected double getSrcPosVal(int srcIdx, int axis) {
+        return (srcPts != null) ? srcPts[srcIdx][axis] : srcFlatPts[srcOffset + srcIdx * srcStride + axis];
+    }
+
+    //////////////////////////////
+    // Getters and setters
+
+    public int getNumSrcPts() {return numSrcPts;}
+
+}//class IndexKDTree
@@ -0,0 +1,191 @@
+package base_Utils_Objects.kdTree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import base_Utils_Objects.kdTree.base.Base_KDObject;
+
+/**
+ * Iterator over the objects of a KDTree in increasing order of squared Euclidean distance from a query location,
+ * found lazily by a best-first search (Hjaltason and Samet's incremental nearest neighbor algorithm). A single
+ * priority queue holds both unexpanded nodes, keyed by a lower bound of the distance to their subtree, and found
+ * objects, keyed by their distance; an object is returned once it reaches the front of the queue, when nothing
+ * left can be closer. The work done is proportional to the # of neighbors consumed, so searches that stop at the
+ * first neighbor satisfying some condition need not choose a neighborhood size up front.
+ *
+ * Does not modify the tree or its objects, so any number of iterators may run over a built tree concurrently.
+ * The tree must not be modified while an iterator over it is in use. Reuse an iterator for a new query with
+ * {@link #reset(double[], double)}; its queue is only reallocated when it needs to grow.
+ * @author John Turner
+ *
+ * @param <T> type of object held in the KDTree being searched
+ */
+public class KDNeighborIterator <T extends Base_KDObject<T>> implements Iterator<T> {
+    /**
+     * Tree being searched
+     */
+    protected final KDTree<T> tree;
+    /**
+     * Query location
+     */
+    protected double[] pos;
+    /**
+     * Objects further than this sq distance are not returned
+     */
+    protected double maxSqDist;
+    /**
+     * Queue entries, in heap order : either nodes to expand or objects to return
+     */
+    protected Object[] entries;
+    /**
+     * Whether each queue entry is an object, rather than a node
+     */
+    protected boolean[] isObjs;
+    /**
+     * Key of each queue entry : the object's sq distance, or the lower bound of the sq distance to the node's subtree
+     */
+    protected double[] keys;
+    /**
+     * # of entries in the queue
+     */
+    protected int numEntries;
+    /**
+     * Sq distance of the most recently returned object
+     */
+    protected double lastSqDist;
+
+    /**
+     * Build an iterator over the passed tree. Call {@link #reset(double[], double)} to start a query.
+     * @param _tree
+     */
+    public KDNeighborIterator(KDTree<T> _tree) {
+        tree = _tree;
+        entries = new Object[64];
+        isObjs = new boolean[64];
+        keys = new double[64];
+        numEntries = 0;
+        lastSqDist = Double.NaN;
+    }//ctor
+
+    /**
+     * Start a new query, discarding any neighbors not yet returned
+     * @param _pos query location. Must have at least as many values as the objects' numPosVals. Not copied.
+     * @param _maxSqDist objects further than this sq distance are not returned; MaxDouble for all objects
+     * @return this iterator
+     */
+    public KDNeighborIterator<T> reset(double[] _pos, double _maxSqDist) {
+        for(int i=0;i<numEntries;++i) {entries[i] = null;}
+        numEntries = 0;
+        pos = _pos;
+        maxSqDist = _maxSqDist;
+        lastSqDist = Double.NaN;
+        if (tree.root != null) {push(tree.root, false, 0.0);}
+        return this;
+    }//reset
+
+    /**
+     * Whether there is another object within the max distance. Expands nodes until the closest queue entry is an object.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean hasNext() {
+        while ((numEntries > 0) && (keys[0] <= maxSqDist)) {
+            if (isObjs[0]) {return true;}
+            KDNode<T> node = (KDNode<T>) entries[0];
+            double bound = keys[0];
+            pop();
+            T nodeObj = node.getNodeObject();
+            if (!node.getIsDeleted()) {push(nodeObj, true, nodeObj.calcSqDist(pos));}
+            int axis = node.getSplitAxis();
+            if (axis == -1) {continue;}
+            //near child is bounded by this node's bound, far child also by the distance to the split plane
+            double delta = pos[axis] - nodeObj.getPosVal(axis), farBound = delta * delta;
+            if (farBound < bound) {farBound = bound;}
+            KDNode<T> near = (delta < 0 ? node.left : node.right), far = (delta < 0 ? node.right : node.left);
+            if (near != null) {push(near, false, bound);}
+            if (far != null) {push(far, false, farBound);}
+        }
+        return false;
+    }//hasNext
+
+    /**
+     * Return the next nearest object
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {throw new NoSuchElementException();}
+        T res = (T) entries[0];
+        lastSqDist = keys[0];
+        pop();
+        return res;
+    }//next
+
+    /**
+     * Sq distance from the query location of the object most recently returned by {@link #next()}, or NaN if none has been
+     * @return
+     */
+    public double getLastSqDist() {return lastSqDist;}
+
+    /**
+     * Lower bound of the sq distance of every object not yet returned, or +inf if there are none
+     * @return
+     */
+    public double peekSqDist() {return (hasNext() ? keys[0] : Double.POSITIVE_INFINITY);}
+
+    /**
+     * Add an entry to the queue
+     */
+    private void push(Object entry, boolean isObj, double key) {
+        if (numEntries == keys.length) {grow();}
+        int idx = numEntries++;
+        while (idx > 0) {
+            int parent = (idx - 1) >>> 1;
+            //objects go ahead of nodes with equal keys, so they are returned without expanding the nodes
+            if ((keys[parent] < key) || ((keys[parent] == key) && (isObjs[parent] || !isObj))) {break;}
+            entries[idx] = entries[parent]; isObjs[idx] = isObjs[parent]; keys[idx] = keys[parent];
+            idx = parent;
+        }
+        entries[idx] = entry; isObjs[idx] = isObj; keys[idx] = key;
+    }//push
+
+    /**
+     * Remove the entry with the smallest key
+     */
+    private void pop() {
+        --numEntries;
+        Object entry = entries[numEntries];
+        boolean isObj = isObjs[numEntries];
+        double key = keys[numEntries];
+        entries[numEntries] = null;
+        if (numEntries == 0) {return;}
+        int idx = 0, child;
+        while ((child = (idx << 1) + 1) < numEntries) {
+            if ((child + 1 < numEntries) && isBefore(child + 1, child)) {++child;}
+            if ((key < keys[child]) || ((key == keys[child]) && (isObj || !isObjs[child]))) {break;}
+            entries[idx] = entries[child]; isObjs[idx] = isObjs[child]; keys[idx] = keys[child];
+            idx = child;
+        }
+        entries[idx] = entry; isObjs[idx] = isObj; keys[idx] = key;
+    }//pop
+
+    /**
+     * Whether entry i comes before entry j in the queue
+     */
+    private boolean isBefore(int i, int j) {return (keys[i] < keys[j]) || ((keys[i] == keys[j]) && isObjs[i] && !isObjs[j]);}
+
+    /**
+     * Double the storage of the queue
+     */
+    private void grow() {
+        int newSize = keys.length << 1;
+        Object[] tmpEntries = new Object[newSize];
+        boolean[] tmpIsObjs = new boolean[newSize];
+        double[] tmpKeys = new double[newSize];
+        System.arraycopy(entries, 0, tmpEntries, 0, numEntries);
+        System.arraycopy(isObjs, 0, tmpIsObjs, 0, numEntries);
+        System.arraycopy(keys, 0, tmpKeys, 0, numEntries);
+        entries = tmpEntries; isObjs = tmpIsObjs; keys = tmpKeys;
+    }//grow
+
+}//class KDNeighborIterator
@@ -6,11 +6,15 @@ public class KDNode <T extends Base_KDObject<T>> {
     protected T nodeObject;
     protected int splitAxis;           // which axis separates children: 0, 1 or 2 (-1 signals we are at a leaf node)
     public KDNode<T> left,right;      // child nodes
+    protected int numSubtreeObjs;     // # of live objects in the subtree rooted at this node, including this node's object
+    protected boolean isDeleted;      // whether this node's object has been removed; the node remains in the tree to route searches until its subtree is rebuilt
 
     public KDNode() {
         splitAxis = -1;
         left = null;
         right = null;
+        numSubtreeObjs = 1;
+        isDeleted = false;
     }
     
     public T getNodeObject() {    return nodeObject;}
@@ -18,5 +22,11 @@ public class KDNode <T extends Base_KDObject<T>> {
     
     public int getSplitAxis() {return splitAxis;}
     public void setSplitAxis(int _splitAxis) {    splitAxis = _splitAxis;}
+    
+    public int getNumSubtreeObjs() {return numSubtreeObjs;}
+    public void setNumSubtreeObjs(int _numSubtreeObjs) {    numSubtreeObjs = _numSubtreeObjs;}
+    
+    public boolean getIsDeleted() {return isDeleted;}
+    public void setIsDeleted(boolean _isDeleted) {    isDeleted = _isDeleted;}
 
 }//class Base_KDNode
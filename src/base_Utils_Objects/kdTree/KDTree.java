@@ -2,12 +2,26 @@ package base_Utils_Objects.kdTree;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 import base_Utils_Objects.kdTree.base.Base_KDObject;
+import base_Utils_Objects.kdTree.base.KDNeighborIndex;
+import base_Utils_Objects.kdTree.base.KDSplitRule;
+import base_Utils_Objects.kdTree.metric.KDEuclideanMetric;
+import base_Utils_Objects.kdTree.metric.KDMetric;
+import base_Utils_Objects.kdTree.query.KDNeighborhood;
+import base_Utils_Objects.kdTree.query.KDQueryCounters;
+import base_Utils_Objects.kdTree.query.KDQueryStats;
+import base_Utils_Objects.kdTree.query.KDQueryStatsSnapshot;
+import base_Utils_Objects.kdTree.query.KDTreeStats;
 
-public class KDTree <T extends Base_KDObject<T>> {
+public class KDTree <T extends Base_KDObject<T>> implements KDNeighborIndex<T> {
     /**
      * root node of kd-tree
      */
@@ -42,6 +56,59 @@ public class KDTree <T extends Base_KDObject<T>> {
      * # Of objects in this three
      */
     protected int numNodeObjs;
+    
+    /**
+     * Whether to build the tree by in-place median selection (O(n log n)) rather than by sorting each sublist 
+     * at every level (O(n log^2 n)). Both produce a tree of the same shape.
+     */
+    protected boolean useSelectionBuild;
+    
+    /**
+     * During a parallel build, subtrees with more than this many objects have their children built as separate tasks
+     */
+    protected int parallelBuildCutoff;
+    
+    /**
+     * Rule used to choose the axis each node splits its objects along
+     */
+    protected KDSplitRule splitRule;
+    
+    /**
+     * Per-axis min and max position values of all objects in this tree - the bounds of the root cell
+     */
+    protected double[] treeMins, treeMaxs;
+    
+    /**
+     * A subtree with at least minRebalanceSize objects is rebuilt after an insert or removal if either child 
+     * holds more than rebalanceAlpha of its objects
+     */
+    protected double rebalanceAlpha;
+    protected int minRebalanceSize;
+    
+    /**
+     * # of removed objects whose nodes are still in the tree. The whole tree is rebuilt once this exceeds numNodeObjs.
+     */
+    protected int numDeletedNodes;
+    
+    /**
+     * Objects removed from the tree since nodeObjectList was last purged of removed objects
+     */
+    protected Set<T> removedObjs;
+    
+    /**
+     * path from root of the most recent insert or removal
+     */
+    private ArrayList<KDNode<T>> updatePath;
+    
+    /**
+     * Cumulative counters of reentrant kNN and radius queries, or null if query stats are not being collected
+     */
+    protected KDQueryCounters queryCounters;
+    
+    /**
+     * Metric used by reentrant queries, or null for squared Euclidean distance
+     */
+    protected KDMetric metric;
         
     public KDTree(int _maxNumNeighbors, double _maxNeighborSqDist) {
         root = null;
@@ -50,6 +117,16 @@ public class KDTree <T extends Base_KDObject<T>> {
         maxNeighborSqDist = _maxNeighborSqDist;
         nodeObjectList = new ArrayList<T>();
         numNodeObjs = 0;
+        useSelectionBuild = true;
+        parallelBuildCutoff = 10000;
+        splitRule = KDSplitRule.WidestSpread;
+        rebalanceAlpha = 0.75;
+        minRebalanceSize = 16;
+        numDeletedNodes = 0;
+        removedObjs = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+        updatePath = new ArrayList<KDNode<T>>();
+        queryCounters = null;
+        metric = null;
     }
 
     /**
@@ -65,27 +142,211 @@ public class KDTree <T extends Base_KDObject<T>> {
      * Build the kd-tree. Should only be called after all of the objects have been added to the initial list.
      */
     public void buildKDTree() {    
+        purgeRemovedObjs();
         if(numNodeObjs == 0) {
             System.out.println("No Objects added to build KD Tree from. Aborting.");
             return;
         }
         int numPosVals = nodeObjectList.get(0).getNumPosVals();     
-        root = buildKDTree(nodeObjectList,numPosVals);        
+        if(useSelectionBuild) {
+            T[] objAra = buildObjAra(numNodeObjs);
+            nodeObjectList.toArray(objAra);
+            root = buildKDTree(objAra, 0, numNodeObjs, numPosVals, 0, buildAxisStats(numPosVals));
+        } else {
+            root = buildKDTree(nodeObjectList,numPosVals, 0, buildAxisStats(numPosVals));
+        }
+        finishBuild(numPosVals);
+    }
+    
+    /**
+     * Build the kd-tree, building independent subtrees in parallel on the common ForkJoinPool. Always uses 
+     * median selection. Should only be called after all of the objects have been added to the initial list.
+     */
+    public void buildKDTreeParallel() {buildKDTreeParallel(ForkJoinPool.commonPool());}
+    
+    /**
+     * Build the kd-tree, building independent subtrees in parallel on the passed ForkJoinPool. Always uses 
+     * median selection. Should only be called after all of the objects have been added to the initial list.
+     * @param pool
+     */
+    public void buildKDTreeParallel(ForkJoinPool pool) {    
+        purgeRemovedObjs();
+        if(numNodeObjs == 0) {
+            System.out.println("No Objects added to build KD Tree from. Aborting.");
+            return;
+        }
+        int numPosVals = nodeObjectList.get(0).getNumPosVals();
+        T[] objAra = buildObjAra(numNodeObjs);
+        nodeObjectList.toArray(objAra);
+        root = pool.invoke(new KDBuildTask(objAra, 0, numNodeObjs, numPosVals, 0));
+        finishBuild(numPosVals);
     }
     
+    /**
+     * Calculate the tree bounds and the # of objects in every subtree of a newly built tree
+     * @param numPosVals
+     */
+    private void finishBuild(int numPosVals) {
+        treeMins = new double[numPosVals];
+        treeMaxs = new double[numPosVals];
+        for (int j = 0; j < numPosVals; j++) {
+            treeMins[j] = Double.POSITIVE_INFINITY;
+            treeMaxs[j] = Double.NEGATIVE_INFINITY;
+        }
+        for (T obj : nodeObjectList) {
+            for (int j = 0; j < numPosVals; j++) {
+                double v = obj.getPosVal(j);
+                if (v < treeMins[j]) {treeMins[j] = v;}
+                if (v > treeMaxs[j]) {treeMaxs[j] = v;}
+            }
+        }
+        calcNumSubtreeObjs(root);
+        numDeletedNodes = 0;
+    }//finishBuild
+    
+    /**
+     * Remove any objects that have been removed from the tree from nodeObjectList, so that it can be rebuilt
+     */
+    private void purgeRemovedObjs() {
+        if(removedObjs.isEmpty()) {return;}
+        nodeObjectList.removeIf(removedObjs::contains);
+        removedObjs.clear();
+        numNodeObjs = nodeObjectList.size();
+    }
+    
+    /**
+     * Recursively set the # of objects in each subtree rooted at node
+     * @param node
+     * @return # of objects in subtree rooted at node
+     */
+    protected int calcNumSubtreeObjs(KDNode<T> node) {
+        if (node == null) {return 0;}
+        int res = (node.getIsDeleted() ? 0 : 1) + calcNumSubtreeObjs(node.left) + calcNumSubtreeObjs(node.right);
+        node.setNumSubtreeObjs(res);
+        return res;
+    }
+    
+    /**
+     * build array of objects of passed size
+     * @param size
+     * @return
+     */
+    private T[] buildObjAra(int size) {
+        @SuppressWarnings("unchecked")
+        T[] res = (T[]) new Base_KDObject<?>[size];   
+        return res;
+    }
+    
+    /**
+     * Build scratch space for the per-axis stats used to choose split axes : a row each of shifts, mins, maxs, sums 
+     * and sums of squares. Allocated once per build (or build task) and reused for every node.
+     * @param numPosVals
+     * @return
+     */
+    private double[][] buildAxisStats(int numPosVals) {return new double[5][numPosVals];}
+    
+    /**
+     * Find the axis to split the objects in the range [lo, hi) of objAra along, using this tree's split rule
+     * @param objAra
+     * @param lo
+     * @param hi
+     * @param numPosVals Number of position-related values available to use to partition tree
+     * @param depth depth of the node being built
+     * @param axisStats scratch space from {@link #buildAxisStats(int)}
+     * @return
+     */
+    private int findSplitAxis(T[] objAra, int lo, int hi, int numPosVals, int depth, double[][] axisStats) {
+        if (!splitRule.needsAxisStats()) {return depth % numPosVals;}
+        initAxisStats(objAra[lo].getPosVals(), numPosVals, axisStats);
+        for (int i = lo+1; i < hi; i++) {addAxisStats(objAra[i].getPosVals(), numPosVals, axisStats);}
+        return findMaxScoreAxis(hi - lo, numPosVals, axisStats);
+    }//findSplitAxis
+    
+    /**
+     * Find the axis to split the objects in the range [lo, hi) of objList along, using this tree's split rule
+     * @param objList
+     * @param lo
+     * @param hi
+     * @param numPosVals Number of position-related values available to use to partition tree
+     * @param depth depth of the node being built
+     * @param axisStats scratch space from {@link #buildAxisStats(int)}
+     * @return
+     */
+    private int findSplitAxis(List<T> objList, int lo, int hi, int numPosVals, int depth, double[][] axisStats) {
+        if (!splitRule.needsAxisStats()) {return depth % numPosVals;}
+        initAxisStats(objList.get(lo).getPosVals(), numPosVals, axisStats);
+        for (int i = lo+1; i < hi; i++) {addAxisStats(objList.get(i).getPosVals(), numPosVals, axisStats);}
+        return findMaxScoreAxis(hi - lo, numPosVals, axisStats);
+    }//findSplitAxis
+    
+    /**
+     * Start the per-axis stats of a range with its first object's values, which every value is shifted by for stability
+     * (ignoring the last value in T's posVals array, which is sqDist)
+     */
+    private void initAxisStats(double[] shift, int numPosVals, double[][] axisStats) {
+        double[] shifts = axisStats[0], mins = axisStats[1], maxs = axisStats[2], sums = axisStats[3], sumSqs = axisStats[4];
+        for (int j = 0; j < numPosVals; j++) {
+            shifts[j] = shift[j];
+            mins[j] = shift[j];
+            maxs[j] = shift[j];
+            sums[j] = 0;
+            sumSqs[j] = 0;
+        }
+    }//initAxisStats
+    
+    /**
+     * Add an object's values to the per-axis stats of a range
+     */
+    private void addAxisStats(double[] posVals, int numPosVals, double[][] axisStats) {
+        double[] shifts = axisStats[0], mins = axisStats[1], maxs = axisStats[2], sums = axisStats[3], sumSqs = axisStats[4];
+        for (int j = 0; j < numPosVals; j++) {
+            double v = posVals[j], diff = v - shifts[j];
+            if (v < mins[j]) {mins[j] = v;}
+            if (v > maxs[j]) {maxs[j] = v;}
+            sums[j] += diff;
+            sumSqs[j] += diff * diff;
+        }
+    }//addAxisStats
+    
+    /**
+     * Find the axis of greatest score under this tree's split rule - ties go to the lowest axis
+     */
+    private int findMaxScoreAxis(int count, int numPosVals, double[][] axisStats) {
+        double[] mins = axisStats[1], maxs = axisStats[2], sums = axisStats[3], sumSqs = axisStats[4];
+        int res = 0;
+        double maxScore = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < numPosVals; j++) {
+            double score = splitRule.calcAxisScore(mins[j], maxs[j], sums[j], sumSqs[j], count);
+            if (score > maxScore) {maxScore = score; res = j;}
+        }
+        return res;
+    }//findMaxScoreAxis
+    
     
+    /**
+     * Sort the passed list along the given axis. Compares position values directly rather than using 
+     * {@link Base_KDObject#compareTo}, so objects need no owning tree.
+     * @param _objList
+     * @param _sortAxis
+     */
     private void sortSublist(List<T> _objList, int _sortAxis) {
-        //set sort axis that is used by objects in list
+        //set sort axis, used as the node's split axis
         sortAxis = _sortAxis;
         // sort the elements in list according to the selected axis
-        Collections.sort(_objList);    }
+        _objList.sort((a, b) -> {
+            double aVal = a.getPosVal(_sortAxis), bVal = b.getPosVal(_sortAxis);
+            return (aVal < bVal) ? -1 : ((aVal > bVal) ? 1 : 0);
+        });
+    }//sortSublist
     /**
      * helper function to build tree -- should not be called by user
      * @param objList
      * @param numPosVals Number of position-related values available to use to partition tree
+     * @param depth depth of the node being built
+     * @param axisStats scratch space from {@link #buildAxisStats(int)}
      * @return
      */    
-    private KDNode<T> buildKDTree(List<T> objList, int numPosVals) {
+    private KDNode<T> buildKDTree(List<T> objList, int numPosVals, int depth, double[][] axisStats) {
         KDNode<T> node = new KDNode<T>();
           
         T p = objList.get(0);
@@ -96,47 +357,307 @@ public class KDTree <T extends Base_KDObject<T>> {
         }        
         
         sortAxis = -1;            
-        // if we get here, we need to decide which axis to split
-        // the split axis is the one that is longest
-        // (ignoring the last value in T's posVals array, which is sqDist)
-        //set first value in list as having both min and max
-        double[] mins = new double[]{1e20,1e20,1e20};
-        double[] maxs = new double[]{-1e20,-1e20,-1e20};    
-        double[] posVals;
-        // now find min and max values for each axis for rest of objects in list
-        for (int i = 0; i < objList.size(); i++) {
-            posVals = objList.get(i).getPosVals();
-            for (int j = 0; j < numPosVals; j++) {
-                if (posVals[j] < mins[j]) {mins[j] = posVals[j];}
-                if (posVals[j] > maxs[j]) {maxs[j] = posVals[j];}
-            }
-        }
-
-        double dx = maxs[0] - mins[0];
-        double dy = maxs[1] - mins[1];
-        double dz = maxs[2] - mins[2];    
-        //find axis of greatest difference and sort
-        if (dx >= dy) {
-            if(dx >= dz) {            sortSublist(objList, 0);}    //dx > dy & dx > dz : dx greatest 
-            else {                    sortSublist(objList, 2);}    //dx > dy & dz > dx : dz greatest        
-        } else if (dy >= dz) {        sortSublist(objList, 1);}    //dy > dx & dy > dz : dy greatest 
-        else {                         sortSublist(objList, 2);}   //dz > dy & dy > dx : dz greatest
+        // if we get here, we need to decide which axis to split, and sort along it
+        sortSublist(objList, findSplitAxis(objList, 0, objList.size(), numPosVals, depth, axisStats));
         
         // determine the median element and make that this node's object
         int splitPoint = objList.size() / 2;
         node.setNodeObject(objList.get(splitPoint));
         node.setSplitAxis(sortAxis);
             
-        if(splitPoint == 0){node.left = null;} else {node.left = buildKDTree(objList.subList(0, splitPoint), numPosVals);}        
-        if(splitPoint == objList.size()-1){node.right = null;} else {node.right = buildKDTree (objList.subList(splitPoint+1,  objList.size()),numPosVals);}
+        if(splitPoint == 0){node.left = null;} else {node.left = buildKDTree(objList.subList(0, splitPoint), numPosVals, depth+1, axisStats);}        
+        if(splitPoint == objList.size()-1){node.right = null;} else {node.right = buildKDTree (objList.subList(splitPoint+1,  objList.size()),numPosVals, depth+1, axisStats);}
     
         // return the newly created node
         return node;
     }// buildKDTree
     
+    /**
+     * helper function to build tree using in-place median selection on the range [lo, hi) of objAra 
+     * rather than sorting -- should not be called by user. Builds the same tree shape as {@link #buildKDTree(List, int, int, double[][])}
+     * without allocating sublists or relying on {@link Base_KDObject#compareTo}.
+     * @param objAra
+     * @param lo
+     * @param hi
+     * @param numPosVals Number of position-related values available to use to partition tree
+     * @param depth depth of the node being built
+     * @param axisStats scratch space from {@link #buildAxisStats(int)}
+     * @return
+     */
+    private KDNode<T> buildKDTree(T[] objAra, int lo, int hi, int numPosVals, int depth, double[][] axisStats) {
+        KDNode<T> node = buildKDNode(objAra, lo, hi, numPosVals, depth, axisStats);
+        // leaf node
+        if (hi - lo == 1) {return node;}
+        int splitPoint = lo + (hi - lo) / 2;
+        if(splitPoint == lo){node.left = null;} else {node.left = buildKDTree(objAra, lo, splitPoint, numPosVals, depth+1, axisStats);}        
+        if(splitPoint == hi-1){node.right = null;} else {node.right = buildKDTree(objAra, splitPoint+1, hi, numPosVals, depth+1, axisStats);}
+        return node;
+    }// buildKDTree
+    
+    /**
+     * Build the node for the range [lo, hi) of objAra, partitioning the range about the median of its split axis. 
+     * Children are not built. 
+     * @param objAra
+     * @param lo
+     * @param hi
+     * @param numPosVals
+     * @param depth depth of the node being built
+     * @param axisStats scratch space from {@link #buildAxisStats(int)}
+     * @return
+     */
+    private KDNode<T> buildKDNode(T[] objAra, int lo, int hi, int numPosVals, int depth, double[][] axisStats) {
+        KDNode<T> node = new KDNode<T>();
+        // see if we should make a leaf node
+        if (hi - lo == 1) {
+            node.setNodeObject(objAra[lo]);
+            return node;
+        }
+        int axis = findSplitAxis(objAra, lo, hi, numPosVals, depth, axisStats);
+        // determine the median element and make that this node's object
+        int splitPoint = lo + (hi - lo) / 2;
+        selectMedian(objAra, lo, hi - 1, splitPoint, axis);
+        node.setNodeObject(objAra[splitPoint]);
+        node.setSplitAxis(axis);
+        return node;
+    }// buildKDNode
+    
+    /**
+     * Task to build the subtree for the range [lo, hi) of an object array, forking the builds of 
+     * its children if it is larger than parallelBuildCutoff
+     */
+    private class KDBuildTask extends RecursiveTask<KDNode<T>> {
+        private static final long serialVersionUID = 1L;
+        private final T[] objAra;
+        private final int lo, hi, numPosVals, depth;
+        
+        public KDBuildTask(T[] _objAra, int _lo, int _hi, int _numPosVals, int _depth) {
+            objAra = _objAra; lo = _lo; hi = _hi; numPosVals = _numPosVals; depth = _depth;
+        }
+        
+        @Override
+        protected KDNode<T> compute() {
+            double[][] axisStats = buildAxisStats(numPosVals);
+            if (hi - lo <= parallelBuildCutoff) {return buildKDTree(objAra, lo, hi, numPosVals, depth, axisStats);}
+            KDNode<T> node = buildKDNode(objAra, lo, hi, numPosVals, depth, axisStats);
+            int splitPoint = lo + (hi - lo) / 2;
+            //cutoff is always > 1, so both children exist
+            KDBuildTask leftTask = new KDBuildTask(objAra, lo, splitPoint, numPosVals, depth+1);
+            leftTask.fork();
+            node.right = new KDBuildTask(objAra, splitPoint+1, hi, numPosVals, depth+1).compute();
+            node.left = leftTask.join();
+            return node;
+        }
+    }//class KDBuildTask
+    
+    /**
+     * In-place selection (Hoare's quickselect) of the k'th object along axis in the inclusive range [lo, hi] of objAra, 
+     * so that every object in [lo,k) has a value for axis <= k's value and every object in (k, hi] has a value >= k's value.
+     * @param objAra
+     * @param lo
+     * @param hi inclusive
+     * @param k
+     * @param axis
+     */
+    private void selectMedian(T[] objAra, int lo, int hi, int k, int axis) {
+        while (hi > lo) {
+            //median of 3 pivot
+            int mid = (lo + hi) >>> 1;
+            if (objAra[mid].getPosVal(axis) < objAra[lo].getPosVal(axis)) {swap(objAra, mid, lo);}
+            if (objAra[hi].getPosVal(axis) < objAra[lo].getPosVal(axis)) {swap(objAra, hi, lo);}
+            if (objAra[hi].getPosVal(axis) < objAra[mid].getPosVal(axis)) {swap(objAra, hi, mid);}
+            double pivot = objAra[mid].getPosVal(axis);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (objAra[i].getPosVal(axis) < pivot) {++i;}
+                while (objAra[j].getPosVal(axis) > pivot) {--j;}
+                if (i <= j) {swap(objAra, i++, j--);}
+            }
+            //[lo, j] <= pivot, [i, hi] >= pivot, anything between is == pivot
+            if (k <= j) {        hi = j;}
+            else if (k >= i) {    lo = i;}
+            else {                return;}
+        }
+    }//selectMedian
+    
+    private void swap(T[] objAra, int i, int j) {T tmp = objAra[i]; objAra[i] = objAra[j]; objAra[j] = tmp;}
+    
+    /**
+     * Insert an object into a built tree, without rebuilding the whole tree. The object is added as a leaf, and the 
+     * highest subtree along its path that has become unbalanced, if any, is rebuilt. Not safe to call concurrently with
+     * queries or other updates. If objects have been added with addKDObject but the tree has not been built yet, the 
+     * tree is built from them and the inserted object.
+     * @param p Object to insert
+     */
+    public void insertKDObject(T p) {
+        if((root == null) && (numNodeObjs > 0)) {
+            //staged objects would be unreachable below a new root, so build the tree from all of them instead
+            addKDObject(p);
+            buildKDTree();
+            return;
+        }
+        //a removed object being reinserted is still in nodeObjectList
+        if(!removedObjs.remove(p)) {nodeObjectList.add(p);}
+        ++numNodeObjs;
+        int numPosVals = p.getNumPosVals();
+        if(treeMins == null) {
+            treeMins = new double[numPosVals];
+            treeMaxs = new double[numPosVals];
+            for (int j = 0; j < numPosVals; j++) {treeMins[j] = Double.POSITIVE_INFINITY; treeMaxs[j] = Double.NEGATIVE_INFINITY;}
+        }
+        for (int j = 0; j < numPosVals; j++) {
+            double v = p.getPosVal(j);
+            if (v < treeMins[j]) {treeMins[j] = v;}
+            if (v > treeMaxs[j]) {treeMaxs[j] = v;}
+        }
+        KDNode<T> newNode = new KDNode<T>();
+        newNode.setNodeObject(p);
+        if(root == null) {
+            root = newNode;
+            return;
+        }
+        updatePath.clear();
+        KDNode<T> node = root;
+        while(true) {
+            updatePath.add(node);
+            node.setNumSubtreeObjs(node.getNumSubtreeObjs() + 1);
+            int axis = node.getSplitAxis();
+            T nodeObj = node.getNodeObject();
+            if (axis == -1) {
+                //leaf becomes a splitting node
+                axis = findSplitAxis(nodeObj, p, updatePath.size() - 1);
+                node.setSplitAxis(axis);
+            }
+            if (p.getPosVal(axis) < nodeObj.getPosVal(axis)) {
+                if (node.left == null) {node.left = newNode; break;}
+                node = node.left;
+            } else {
+                if (node.right == null) {node.right = newNode; break;}
+                node = node.right;
+            }
+        }
+        rebalanceUpdatePath();
+    }//insertKDObject
+    
+    /**
+     * Find the axis to split a leaf holding obj along, so that p can be added as its child
+     * @param obj
+     * @param p
+     * @param depth
+     * @return
+     */
+    private int findSplitAxis(T obj, T p, int depth) {
+        int numPosVals = p.getNumPosVals();
+        if (!splitRule.needsAxisStats()) {return depth % numPosVals;}
+        int res = 0;
+        double maxDiff = -1;
+        for (int j = 0; j < numPosVals; j++) {
+            double diff = Math.abs(p.getPosVal(j) - obj.getPosVal(j));
+            if (diff > maxDiff) {maxDiff = diff; res = j;}
+        }
+        return res;
+    }//findSplitAxis
+    
+    /**
+     * Remove an object from a built tree, without rebuilding the whole tree. The object's node is marked as deleted and 
+     * kept to route searches until the highest subtree along its path that has become unbalanced is rebuilt, or until 
+     * deleted nodes outnumber live objects and the whole tree is rebuilt. Not safe to call concurrently with queries or 
+     * other updates.
+     * @param p Object to remove
+     * @return whether p was found and removed
+     */
+    public boolean removeKDObject(T p) {
+        updatePath.clear();
+        if ((root == null) || !findPathToObj(root, p)) {return false;}
+        updatePath.get(updatePath.size() - 1).setIsDeleted(true);
+        for (KDNode<T> node : updatePath) {node.setNumSubtreeObjs(node.getNumSubtreeObjs() - 1);}
+        removedObjs.add(p);
+        --numNodeObjs;
+        ++numDeletedNodes;
+        if (numDeletedNodes > numNodeObjs) {
+            root = rebuildSubtree(root, 0);
+        } else {
+            rebalanceUpdatePath();
+        }
+        return true;
+    }//removeKDObject
+    
+    /**
+     * Find the path from node to the live node holding p, adding it to updatePath
+     * @param node
+     * @param p
+     * @return whether p was found
+     */
+    private boolean findPathToObj(KDNode<T> node, T p) {
+        updatePath.add(node);
+        T nodeObj = node.getNodeObject();
+        if ((nodeObj == p) && !node.getIsDeleted()) {return true;}
+        int axis = node.getSplitAxis();
+        if (axis != -1) {
+            //objects with the same value as the split may be on either side
+            double delta = p.getPosVal(axis) - nodeObj.getPosVal(axis);
+            if ((delta <= 0) && (node.left != null) && findPathToObj(node.left, p)) {return true;}
+            if ((delta >= 0) && (node.right != null) && findPathToObj(node.right, p)) {return true;}
+        }
+        updatePath.remove(updatePath.size() - 1);
+        return false;
+    }//findPathToObj
+    
+    /**
+     * Rebuild the highest subtree on updatePath that is unbalanced, if any
+     */
+    private void rebalanceUpdatePath() {
+        for (int i = 0; i < updatePath.size(); ++i) {
+            KDNode<T> node = updatePath.get(i);
+            int numObjs = node.getNumSubtreeObjs();
+            if (numObjs < minRebalanceSize) {return;}
+            int maxChild = Math.max((node.left == null ? 0 : node.left.getNumSubtreeObjs()), (node.right == null ? 0 : node.right.getNumSubtreeObjs()));
+            if (maxChild > rebalanceAlpha * numObjs) {
+                KDNode<T> newNode = rebuildSubtree(node, i);
+                if (i == 0) {    root = newNode;} 
+                else {
+                    KDNode<T> parent = updatePath.get(i - 1);
+                    if (parent.left == node) {parent.left = newNode;} else {parent.right = newNode;}
+                }
+                return;
+            }
+        }
+    }//rebalanceUpdatePath
+    
+    /**
+     * Rebuild the subtree rooted at node from its live objects, discarding any deleted nodes
+     * @param node
+     * @param depth depth of node in tree
+     * @return root of rebuilt subtree, or null if it has no live objects
+     */
+    private KDNode<T> rebuildSubtree(KDNode<T> node, int depth) {
+        ArrayList<T> liveObjs = new ArrayList<T>(node.getNumSubtreeObjs());
+        collectLiveObjs(node, liveObjs);
+        if (liveObjs.size() == 0) {return null;}
+        T[] objAra = buildObjAra(liveObjs.size());
+        liveObjs.toArray(objAra);
+        KDNode<T> res = buildKDTree(objAra, 0, objAra.length, objAra[0].getNumPosVals(), depth, buildAxisStats(objAra[0].getNumPosVals()));
+        calcNumSubtreeObjs(res);
+        return res;
+    }//rebuildSubtree
+    
+    /**
+     * Add the live objects in the subtree rooted at node to the list, counting discarded deleted nodes
+     * @param node
+     * @param liveObjs
+     */
+    private void collectLiveObjs(KDNode<T> node, ArrayList<T> liveObjs) {
+        if (node == null) {return;}
+        if (node.getIsDeleted()) {--numDeletedNodes;} else {liveObjs.add(node.getNodeObject());}
+        collectLiveObjs(node.left, liveObjs);
+        collectLiveObjs(node.right, liveObjs);
+    }//collectLiveObjs
+    
     /**
      * Find the nearby objects to the given location.  Return them in Priority queue, to obviate the need for copying to array.
      * Once the queue is created, no need to worry about in-order traversal of nodes.
+     * NOTE : this writes query state into this tree and the sq distance into each found object, so it is not
+     * safe to call concurrently. Use {@link #findNeighborhood(double[], KDNeighborhood)} for concurrent queries.
+     * Always uses squared Euclidean distance, regardless of this tree's metric.
      * @param x given location for finding nearby nodes
      * @param y given location for finding nearby nodes
      * @param z given location for finding nearby nodes
@@ -146,11 +667,12 @@ public class KDTree <T extends Base_KDObject<T>> {
         double[] pos = new double[]{x,y,z};
         //reset from last run of find findNeighborhood
         tempMaxNeighborSqDist = maxNeighborSqDist;    
-        // create a max queue to sort the objects by distance from the given position
-        PriorityQueue<T> queue = new PriorityQueue<T>(maxNumNeighbors+10, Collections.reverseOrder());
-        // sort on sq distance (stored as the last idx of the posVals array in the Base_KDObject) 
-        // See Base_KDObject::compareTo
-        sortAxis = 3;  
+        // create a max queue to sort the objects by sq distance from the given position
+        PriorityQueue<T> queue = new PriorityQueue<T>(maxNumNeighbors+10, (a, b) -> Double.compare(b.getSqDist(), a.getSqDist()));
+        if (root == null) {return queue;}
+        // objects compare on sq distance, stored as the last idx of the posVals array in the Base_KDObject, 
+        // whatever their # of position values. See Base_KDObject::compareTo
+        sortAxis = root.getNodeObject().getNumPosVals();
         // find maxNumNeighbors of the closest nodes
         findNearbyNodes(pos, root, queue);        
         // can return the queue and traverse it with 
@@ -168,7 +690,7 @@ public class KDTree <T extends Base_KDObject<T>> {
      */
     protected void findNearbyNodes(double[] pos, KDNode<T> node, PriorityQueue<T> queue) {
         T nodeObj = node.getNodeObject();
-        double len2 = nodeObj.calcSqDist(pos);
+        double len2 = node.getIsDeleted() ? Double.POSITIVE_INFINITY : nodeObj.calcSqDist(pos);
         if (len2 < tempMaxNeighborSqDist) {
             // store distance squared in 4th double of a node (for comparing distances)
             nodeObj.setSqDist(len2);
@@ -201,6 +723,482 @@ public class KDTree <T extends Base_KDObject<T>> {
         }        
     }//findNearbyNodes
     
+    /**
+     * Build a neighborhood to be used for reentrant queries of this tree, using this tree's maximum 
+     * neighborhood size and distance. Each thread querying this tree should own its own neighborhood.
+     * @return
+     */
+    public KDNeighborhood<T> buildNeighborhood() {return new KDNeighborhood<T>(maxNumNeighbors, maxNeighborSqDist);}
+
+    /**
+     * Iterate over this tree's objects in increasing order of sq distance from the given location, finding each
+     * only when it is asked for, so the # of neighbors need not be known ahead of time. Distances are always
+     * squared Euclidean; a warning is printed if this tree has any other metric. This tree must not be modified 
+     * while the iterator is in use.
+     * @param pos given location. Must have at least as many values as the objects' numPosVals. Not copied.
+     * @param maxSqDist objects further than this sq distance are not returned; MaxDouble for all objects
+     * @return
+     */
+    public KDNeighborIterator<T> iterateNeighbors(double[] pos, double maxSqDist) {
+        if ((metric != null) && !((metric instanceof KDEuclideanMetric) && (((KDEuclideanMetric) metric).getWeights() == null))) {
+            System.out.println("KD Tree neighbor iteration ignores this tree's "+metric.getClass().getSimpleName()+" and uses squared Euclidean distance.");
+        }
+        return new KDNeighborIterator<T>(this).reset(pos, maxSqDist);
+    }//iterateNeighbors
+
+    /**
+     * Iterate over all of this tree's objects in increasing order of sq distance from the given location,
+     * as {@link #iterateNeighbors(double[], double)}
+     * @param pos given location. Must have at least as many values as the objects' numPosVals. Not copied.
+     * @return
+     */
+    public KDNeighborIterator<T> iterateNeighbors(double[] pos) {return iterateNeighbors(pos, Double.MAX_VALUE);}
+
+    /**
+     * Find the nearby objects to the given location without modifying this tree or the objects it holds.
+     * All per-query state, including the found objects and their sq distances, lives in the passed neighborhood,
+     * so any number of threads may query a built tree concurrently, each with its own neighborhood. 
+     * If this tree has a metric, distances are the metric's search distances, and so is the neighborhood's max distance.
+     * @param pos given location for finding nearby nodes. Must have at least as many values as the objects' numPosVals
+     * @param nbhd the neighborhood to populate. It is reset before the search.
+     * @return nbhd, holding the found objects and their sq distances from pos
+     */
+    public KDNeighborhood<T> findNeighborhood(double[] pos, KDNeighborhood<T> nbhd) {
+        if (queryCounters != null) {return findNeighborhood(pos, nbhd, nbhd.getQueryStats());}
+        nbhd.reset();
+        if (root != null) {
+            if (metric == null) {    findNearbyNodes(pos, root, nbhd);}
+            else {                    findNearbyNodesMetric(pos, nbhd, null);}
+        }
+        return nbhd;
+    }//findNeighborhood
+    
+    /**
+     * Find the nearby objects to the given location, as {@link #findNeighborhood(double[], KDNeighborhood)}, recording
+     * the work done by the search in stats. If query stats are being collected, they are also added to this tree's counters.
+     * @param pos given location for finding nearby nodes. Must have at least as many values as the objects' numPosVals
+     * @param nbhd the neighborhood to populate. It is reset before the search.
+     * @param stats the stats to populate. They are reset before the search.
+     * @return nbhd, holding the found objects and their sq distances from pos
+     */
+    public KDNeighborhood<T> findNeighborhood(double[] pos, KDNeighborhood<T> nbhd, KDQueryStats stats) {
+        nbhd.reset();
+        stats.reset();
+        if (root != null) {
+            if (metric == null) {    findNearbyNodes(pos, root, nbhd, stats);}
+            else {                    findNearbyNodesMetric(pos, nbhd, stats);}
+        }
+        stats.setFinalPruneSqDist(nbhd.getPruneSqDist());
+        KDQueryCounters counters = queryCounters;
+        if (counters != null) {counters.add(stats);}
+        return nbhd;
+    }//findNeighborhood
+    
+    /**
+     * help find nearby nodes for reentrant queries (should not be called by user)
+     * @param pos
+     * @param node
+     * @param nbhd
+     */
+    protected void findNearbyNodes(double[] pos, KDNode<T> node, KDNeighborhood<T> nbhd) {
+        T nodeObj = node.getNodeObject();
+        // neighborhood only adds if closer than its current pruning distance
+        if (!node.getIsDeleted()) {nbhd.offer(nodeObj, nodeObj.calcSqDist(pos));}
+        
+        //Get split axis that node was built with
+        int axis = node.getSplitAxis();
+        if (axis != -1) {  // make sure we're not at a leaf
+            // calculate distance to split plane
+            double delta = pos[axis] - nodeObj.getPosVal(axis), delta2 = delta * delta;
+            if (delta < 0) {
+                if (node.left != null){                                        findNearbyNodes (pos, node.left, nbhd);}
+                if (node.right != null && delta2 < nbhd.getPruneSqDist()){    findNearbyNodes (pos, node.right, nbhd);}
+            } else {
+                if (node.right != null){                                    findNearbyNodes (pos, node.right, nbhd);}
+                if (node.left != null && delta2 < nbhd.getPruneSqDist()){    findNearbyNodes (pos, node.left, nbhd);}
+            }
+        }        
+    }//findNearbyNodes
+    
+    /**
+     * help find nearby nodes for reentrant queries, counting the work done (should not be called by user)
+     * @param pos
+     * @param node
+     * @param nbhd
+     * @param stats
+     */
+    protected void findNearbyNodes(double[] pos, KDNode<T> node, KDNeighborhood<T> nbhd, KDQueryStats stats) {
+        stats.incrNodesVisited();
+        T nodeObj = node.getNodeObject();
+        if (!node.getIsDeleted()) {
+            stats.incrDistEvals();
+            boolean wasFull = nbhd.size() >= nbhd.getMaxNumNeighbors();
+            if (nbhd.offer(nodeObj, nodeObj.calcSqDist(pos))) {
+                stats.incrHeapPushes();
+                if (wasFull) {stats.incrHeapPolls();}
+            }
+        }
+        int axis = node.getSplitAxis();
+        if (axis == -1) {return;}
+        double delta = pos[axis] - nodeObj.getPosVal(axis), delta2 = delta * delta;
+        KDNode<T> near = (delta < 0 ? node.left : node.right), far = (delta < 0 ? node.right : node.left);
+        if (near != null) {findNearbyNodes(pos, near, nbhd, stats);}
+        if (far != null) {
+            if (delta2 < nbhd.getPruneSqDist()) {    findNearbyNodes(pos, far, nbhd, stats);} 
+            else {                                    stats.incrSubtreesPruned();}
+        }
+    }//findNearbyNodes
+    
+    /**
+     * Build the per-axis lower bounds of this tree's metric from pos to the root cell 
+     * @param pos
+     * @param axisDists destination for each axis' bound
+     * @return lower bound of the search distance from pos to the root cell
+     */
+    private double initMetricCellDists(double[] pos, double[] axisDists) {
+        double cellDist = 0;
+        for(int j=0;j<axisDists.length;++j) {
+            axisDists[j] = metric.calcAxisDist(j, pos[j], treeMins[j], treeMaxs[j]);
+            cellDist = metric.updateCellDist(cellDist, 0, axisDists[j]);
+        }
+        return cellDist;
+    }//initMetricCellDists
+    
+    /**
+     * Search the tree for nearby nodes using this tree's metric (should not be called by user)
+     * @param pos
+     * @param nbhd
+     * @param stats stats to record work in, or null
+     */
+    private void findNearbyNodesMetric(double[] pos, KDNeighborhood<T> nbhd, KDQueryStats stats) {
+        double[] axisDists = new double[treeMins.length];
+        double cellDist = initMetricCellDists(pos, axisDists);
+        if (cellDist >= nbhd.getPruneSqDist()) {return;}
+        findNearbyNodes(pos, root, nbhd, stats, treeMins.clone(), treeMaxs.clone(), axisDists, cellDist);
+    }//findNearbyNodesMetric
+    
+    /**
+     * help find nearby nodes using this tree's metric (should not be called by user). Each child is searched if the 
+     * metric's lower bound of the distance to its cell is within the pruning distance, nearer child first.
+     * @param pos
+     * @param node
+     * @param nbhd
+     * @param stats stats to record work in, or null
+     * @param cellMins per-axis min of node's cell
+     * @param cellMaxs per-axis max of node's cell
+     * @param axisDists metric's per-axis lower bounds of the distance from pos to node's cell
+     * @param cellDist metric's lower bound of the distance from pos to node's cell
+     */
+    protected void findNearbyNodes(double[] pos, KDNode<T> node, KDNeighborhood<T> nbhd, KDQueryStats stats, 
+            double[] cellMins, double[] cellMaxs, double[] axisDists, double cellDist) {
+        if (stats != null) {stats.incrNodesVisited();}
+        T nodeObj = node.getNodeObject();
+        if (!node.getIsDeleted()) {
+            boolean wasFull = nbhd.size() >= nbhd.getMaxNumNeighbors();
+            boolean added = nbhd.offer(nodeObj, metric.calcDist(pos, nodeObj.getPosVals(), cellMins.length));
+            if (stats != null) {
+                stats.incrDistEvals();
+                if (added) {
+                    stats.incrHeapPushes();
+                    if (wasFull) {stats.incrHeapPolls();}
+                }
+            }
+        }
+        int axis = node.getSplitAxis();
+        if (axis == -1) {return;}
+        double splitVal = nodeObj.getPosVal(axis), oldAxisDist = axisDists[axis];
+        double leftAxisDist = metric.calcAxisDist(axis, pos[axis], cellMins[axis], splitVal), 
+                rightAxisDist = metric.calcAxisDist(axis, pos[axis], splitVal, cellMaxs[axis]);
+        double leftDist = metric.updateCellDist(cellDist, oldAxisDist, leftAxisDist), 
+                rightDist = metric.updateCellDist(cellDist, oldAxisDist, rightAxisDist);
+        boolean leftFirst = (leftDist == rightDist ? pos[axis] < splitVal : leftDist < rightDist);
+        for(int c=0;c<2;++c) {
+            boolean isLeft = (leftFirst == (c == 0));
+            KDNode<T> child = (isLeft ? node.left : node.right);
+            if (child == null) {continue;}
+            double childDist = (isLeft ? leftDist : rightDist);
+            if (childDist >= nbhd.getPruneSqDist()) {
+                if (stats != null) {stats.incrSubtreesPruned();}
+                continue;
+            }
+            //shrink cell to child's along split axis
+            double[] bnds = (isLeft ? cellMaxs : cellMins);
+            double oldBnd = bnds[axis];
+            bnds[axis] = splitVal;
+            axisDists[axis] = (isLeft ? leftAxisDist : rightAxisDist);
+            findNearbyNodes(pos, child, nbhd, stats, cellMins, cellMaxs, axisDists, childDist);
+            bnds[axis] = oldBnd;
+            axisDists[axis] = oldAxisDist;
+        }
+    }//findNearbyNodes
+    
+    /**
+     * Find every object within the given radius of the given location, passing each to the visitor in no particular order.
+     * Does not modify the tree or its objects, so may be called concurrently. While query stats are being collected, 
+     * each call allocates the stats it records; pass caller-owned stats to 
+     * {@link #findInRadius(double[], double, Consumer, KDQueryStats)} to avoid this.
+     * @param pos given location. Must have at least as many values as the objects' numPosVals
+     * @param sqRadius square of the radius; objects at a sq distance <= sqRadius are found. If this tree has a metric,
+     *         the radius as a search distance of the metric (see {@link KDMetric#toSearchDist(double)})
+     * @param visitor
+     */
+    public void findInRadius(double[] pos, double sqRadius, Consumer<T> visitor) {
+        if (queryCounters != null) {findInRadius(pos, sqRadius, visitor, new KDQueryStats()); return;}
+        if (root == null) {return;}
+        if (metric == null) {    findInRadius(pos, sqRadius, root, visitor);}
+        else {                    findInRadiusMetric(pos, sqRadius, visitor, null);}
+    }
+    
+    /**
+     * Find every object within the given radius of the given location, as {@link #findInRadius(double[], double, Consumer)}, 
+     * recording the work done by the search in stats. If query stats are being collected, they are also added to this tree's counters.
+     * @param pos given location. Must have at least as many values as the objects' numPosVals
+     * @param sqRadius square of the radius; objects at a sq distance <= sqRadius are found
+     * @param visitor
+     * @param stats the stats to populate. They are reset before the search.
+     */
+    public void findInRadius(double[] pos, double sqRadius, Consumer<T> visitor, KDQueryStats stats) {
+        stats.reset();
+        if (root != null) {
+            if (metric == null) {    findInRadius(pos, sqRadius, root, visitor, stats);}
+            else {                    findInRadiusMetric(pos, sqRadius, visitor, stats);}
+        }
+        stats.setFinalPruneSqDist(sqRadius);
+        KDQueryCounters counters = queryCounters;
+        if (counters != null) {counters.add(stats);}
+    }//findInRadius
+    
+    /**
+     * help find objects within radius (should not be called by user)
+     */
+    protected void findInRadius(double[] pos, double sqRadius, KDNode<T> node, Consumer<T> visitor) {
+        T nodeObj = node.getNodeObject();
+        if (!node.getIsDeleted() && (nodeObj.calcSqDist(pos) <= sqRadius)) {visitor.accept(nodeObj);}
+        int axis = node.getSplitAxis();
+        if (axis == -1) {return;}
+        double delta = pos[axis] - nodeObj.getPosVal(axis), delta2 = delta * delta;
+        if ((node.left != null) && ((delta <= 0) || (delta2 <= sqRadius))) {    findInRadius(pos, sqRadius, node.left, visitor);}
+        if ((node.right != null) && ((delta >= 0) || (delta2 <= sqRadius))) {    findInRadius(pos, sqRadius, node.right, visitor);}
+    }//findInRadius
+    
+    /**
+     * help find objects within radius, counting the work done (should not be called by user)
+     */
+    protected void findInRadius(double[] pos, double sqRadius, KDNode<T> node, Consumer<T> visitor, KDQueryStats stats) {
+        stats.incrNodesVisited();
+        T nodeObj = node.getNodeObject();
+        if (!node.getIsDeleted()) {
+            stats.incrDistEvals();
+            if (nodeObj.calcSqDist(pos) <= sqRadius) {visitor.accept(nodeObj);}
+        }
+        int axis = node.getSplitAxis();
+        if (axis == -1) {return;}
+        double delta = pos[axis] - nodeObj.getPosVal(axis), delta2 = delta * delta;
+        if (node.left != null) {
+            if ((delta <= 0) || (delta2 <= sqRadius)) {    findInRadius(pos, sqRadius, node.left, visitor, stats);}
+            else {                                        stats.incrSubtreesPruned();}
+        }
+        if (node.right != null) {
+            if ((delta >= 0) || (delta2 <= sqRadius)) {    findInRadius(pos, sqRadius, node.right, visitor, stats);}
+            else {                                        stats.incrSubtreesPruned();}
+        }
+    }//findInRadius
+    
+    /**
+     * Find objects within radius using this tree's metric (should not be called by user)
+     * @param pos
+     * @param radius radius as a search distance of the metric
+     * @param visitor
+     * @param stats stats to record work in, or null
+     */
+    private void findInRadiusMetric(double[] pos, double radius, Consumer<T> visitor, KDQueryStats stats) {
+        double[] axisDists = new double[treeMins.length];
+        double cellDist = initMetricCellDists(pos, axisDists);
+        if (cellDist > radius) {return;}
+        findInRadius(pos, radius, root, visitor, stats, treeMins.clone(), treeMaxs.clone(), axisDists, cellDist);
+    }//findInRadiusMetric
+    
+    /**
+     * help find objects within radius using this tree's metric (should not be called by user)
+     */
+    protected void findInRadius(double[] pos, double radius, KDNode<T> node, Consumer<T> visitor, KDQueryStats stats, 
+            double[] cellMins, double[] cellMaxs, double[] axisDists, double cellDist) {
+        if (stats != null) {stats.incrNodesVisited();}
+        T nodeObj = node.getNodeObject();
+        if (!node.getIsDeleted()) {
+            if (stats != null) {stats.incrDistEvals();}
+            if (metric.calcDist(pos, nodeObj.getPosVals(), cellMins.length) <= radius) {visitor.accept(nodeObj);}
+        }
+        int axis = node.getSplitAxis();
+        if (axis == -1) {return;}
+        double splitVal = nodeObj.getPosVal(axis), oldAxisDist = axisDists[axis];
+        for(int c=0;c<2;++c) {
+            boolean isLeft = (c == 0);
+            KDNode<T> child = (isLeft ? node.left : node.right);
+            if (child == null) {continue;}
+            double childAxisDist = (isLeft ? metric.calcAxisDist(axis, pos[axis], cellMins[axis], splitVal) : metric.calcAxisDist(axis, pos[axis], splitVal, cellMaxs[axis]));
+            double childDist = metric.updateCellDist(cellDist, oldAxisDist, childAxisDist);
+            if (childDist > radius) {
+                if (stats != null) {stats.incrSubtreesPruned();}
+                continue;
+            }
+            double[] bnds = (isLeft ? cellMaxs : cellMins);
+            double oldBnd = bnds[axis];
+            bnds[axis] = splitVal;
+            axisDists[axis] = childAxisDist;
+            findInRadius(pos, radius, child, visitor, stats, cellMins, cellMaxs, axisDists, childDist);
+            bnds[axis] = oldBnd;
+            axisDists[axis] = oldAxisDist;
+        }
+    }//findInRadius
+    
+    /**
+     * Count the objects within the given radius of the given location. Subtrees whose cells lie entirely within 
+     * the radius are counted by their size without being traversed. If this tree has a metric, objects are counted 
+     * by a metric radius search instead.
+     * @param pos given location. Must have at least as many values as the objects' numPosVals
+     * @param sqRadius square of the radius; objects at a sq distance <= sqRadius are counted. If this tree has a metric,
+     *         the radius as a search distance of the metric
+     * @return
+     */
+    public int countInRadius(double[] pos, double sqRadius) {
+        if (root == null) {return 0;}
+        if (metric != null) {
+            int[] res = new int[1];
+            findInRadiusMetric(pos, sqRadius, (obj) -> ++res[0], null);
+            return res[0];
+        }
+        return countInRadius(pos, sqRadius, root, treeMins.clone(), treeMaxs.clone());
+    }
+    
+    /**
+     * help count objects within radius in the subtree rooted at node with the given cell bounds (should not be called by user)
+     */
+    protected int countInRadius(double[] pos, double sqRadius, KDNode<T> node, double[] cellMins, double[] cellMaxs) {
+        if (node == null) {return 0;}
+        //find nearest and furthest distance from pos to cell
+        double minSqDist = 0, maxSqDist = 0;
+        for(int j=0;j<cellMins.length;++j) {
+            double toMin = pos[j] - cellMins[j], toMax = cellMaxs[j] - pos[j];
+            if (toMin < 0) {        minSqDist += toMin * toMin;} 
+            else if (toMax < 0) {    minSqDist += toMax * toMax;}
+            double far = (toMin > toMax ? toMin : toMax);
+            maxSqDist += far * far;
+        }
+        if (minSqDist > sqRadius) {return 0;}
+        if (maxSqDist <= sqRadius) {return node.getNumSubtreeObjs();}
+        T nodeObj = node.getNodeObject();
+        int res = (!node.getIsDeleted() && (nodeObj.calcSqDist(pos) <= sqRadius)) ? 1 : 0;
+        int axis = node.getSplitAxis();
+        if (axis == -1) {return res;}
+        double splitVal = nodeObj.getPosVal(axis), oldBnd = cellMaxs[axis];
+        cellMaxs[axis] = splitVal;
+        res += countInRadius(pos, sqRadius, node.left, cellMins, cellMaxs);
+        cellMaxs[axis] = oldBnd;
+        oldBnd = cellMins[axis];
+        cellMins[axis] = splitVal;
+        res += countInRadius(pos, sqRadius, node.right, cellMins, cellMaxs);
+        cellMins[axis] = oldBnd;
+        return res;
+    }//countInRadius
+    
+    /**
+     * Find every object within the given axis-aligned box, passing each to the visitor in no particular order.
+     * Does not modify the tree or its objects, so may be called concurrently.
+     * @param mins per-axis minimum of box (inclusive)
+     * @param maxs per-axis maximum of box (inclusive)
+     * @param visitor
+     */
+    public void findInBox(double[] mins, double[] maxs, Consumer<T> visitor) {
+        if (root != null) {findInBox(mins, maxs, root, visitor);}
+    }
+    
+    /**
+     * Whether obj is within the box
+     */
+    private boolean isInBox(double[] mins, double[] maxs, T obj) {
+        for(int j=0;j<mins.length;++j) {
+            double v = obj.getPosVal(j);
+            if((v < mins[j]) || (v > maxs[j])) {return false;}
+        }
+        return true;
+    }
+    
+    /**
+     * help find objects within box (should not be called by user)
+     */
+    protected void findInBox(double[] mins, double[] maxs, KDNode<T> node, Consumer<T> visitor) {
+        T nodeObj = node.getNodeObject();
+        if (!node.getIsDeleted() && isInBox(mins, maxs, nodeObj)) {visitor.accept(nodeObj);}
+        int axis = node.getSplitAxis();
+        if (axis == -1) {return;}
+        double splitVal = nodeObj.getPosVal(axis);
+        if ((node.left != null) && (mins[axis] <= splitVal)) {    findInBox(mins, maxs, node.left, visitor);}
+        if ((node.right != null) && (maxs[axis] >= splitVal)) {    findInBox(mins, maxs, node.right, visitor);}
+    }//findInBox
+    
+    /**
+     * Count the objects within the given axis-aligned box. Subtrees whose cells lie entirely within 
+     * the box are counted by their size without being traversed.
+     * @param mins per-axis minimum of box (inclusive). Must have as many values as the objects' numPosVals
+     * @param maxs per-axis maximum of box (inclusive). Must have as many values as the objects' numPosVals
+     * @return
+     */
+    public int countInBox(double[] mins, double[] maxs) {
+        if (root == null) {return 0;}
+        return countInBox(mins, maxs, root, treeMins.clone(), treeMaxs.clone());
+    }
+    
+    /**
+     * help count objects within box in the subtree rooted at node with the given cell bounds (should not be called by user)
+     */
+    protected int countInBox(double[] mins, double[] maxs, KDNode<T> node, double[] cellMins, double[] cellMaxs) {
+        if (node == null) {return 0;}
+        boolean isContained = true;
+        for(int j=0;j<cellMins.length;++j) {
+            if((cellMins[j] > maxs[j]) || (cellMaxs[j] < mins[j])) {return 0;}
+            if((cellMins[j] < mins[j]) || (cellMaxs[j] > maxs[j])) {isContained = false;}
+        }
+        if (isContained) {return node.getNumSubtreeObjs();}
+        T nodeObj = node.getNodeObject();
+        int res = (!node.getIsDeleted() && isInBox(mins, maxs, nodeObj)) ? 1 : 0;
+        int axis = node.getSplitAxis();
+        if (axis == -1) {return res;}
+        double splitVal = nodeObj.getPosVal(axis), oldBnd = cellMaxs[axis];
+        cellMaxs[axis] = splitVal;
+        res += countInBox(mins, maxs, node.left, cellMins, cellMaxs);
+        cellMaxs[axis] = oldBnd;
+        oldBnd = cellMins[axis];
+        cellMins[axis] = splitVal;
+        res += countInBox(mins, maxs, node.right, cellMins, cellMaxs);
+        cellMins[axis] = oldBnd;
+        return res;
+    }//countInBox
+    
+    /**
+     * Calculate the structural stats of this tree : the depth histogram of its leaves and how many of them hold
+     * a live object. Nodes of removed objects that are still in the tree count as empty.
+     * @return
+     */
+    public KDTreeStats calcTreeStats() {
+        KDTreeStats res = new KDTreeStats();
+        if (root != null) {calcTreeStats(root, 0, res);}
+        return res;
+    }
+    
+    /**
+     * help calculate tree stats of the subtree rooted at node (should not be called by user)
+     */
+    private void calcTreeStats(KDNode<T> node, int depth, KDTreeStats stats) {
+        if ((node.left == null) && (node.right == null)) {
+            stats.addLeaf(depth, (node.getIsDeleted() ? 0 : 1));
+            return;
+        }
+        stats.addInternalNode();
+        if (node.left != null) {calcTreeStats(node.left, depth + 1, stats);}
+        if (node.right != null) {calcTreeStats(node.right, depth + 1, stats);}
+    }//calcTreeStats
+    
     //////////////////////////////
     // Getters and setters
     public int getSortAxis() {                    return sortAxis;    }
@@ -211,5 +1209,65 @@ public class KDTree <T extends Base_KDObject<T>> {
     
     public int getNumNodeObjs() {return numNodeObjs;} 
     
+    public boolean getUseSelectionBuild() {                            return useSelectionBuild;}
+    public void setUseSelectionBuild(boolean _useSelectionBuild) {    useSelectionBuild = _useSelectionBuild;}
+    
+    public KDSplitRule getSplitRule() {                    return splitRule;}
+    /**
+     * Set the rule used to choose each node's split axis. Takes effect the next time the tree is built.
+     * @param _splitRule
+     */
+    public void setSplitRule(KDSplitRule _splitRule) {    splitRule = _splitRule;}
+    
+    public double getRebalanceAlpha() {                        return rebalanceAlpha;}
+    /**
+     * Set the fraction of a subtree's objects one child may hold before the subtree is rebuilt after an insert or removal
+     * @param _rebalanceAlpha in (0.5, 1)
+     */
+    public void setRebalanceAlpha(double _rebalanceAlpha) {    rebalanceAlpha = Math.min(Math.max(_rebalanceAlpha, 0.55), 0.99);}
+    
+    public int getMinRebalanceSize() {                        return minRebalanceSize;}
+    public void setMinRebalanceSize(int _minRebalanceSize) {    minRebalanceSize = _minRebalanceSize;}
+    
+    public int getParallelBuildCutoff() {                            return parallelBuildCutoff;}
+    public void setParallelBuildCutoff(int _parallelBuildCutoff) {    parallelBuildCutoff = (_parallelBuildCutoff < 2 ? 2 : _parallelBuildCutoff);}
+    
+    public KDMetric getMetric() {return metric;}
+    /**
+     * Set the metric used by reentrant kNN and radius queries. Neighborhood and radius distances are then the 
+     * metric's search distances. Should be set while no queries are running.
+     * @param _metric metric, or null for squared Euclidean distance
+     */
+    public void setMetric(KDMetric _metric) {metric = _metric;}
+    
+    public boolean getCollectQueryStats() {return queryCounters != null;}
+    /**
+     * Set whether the work done by every reentrant kNN and radius query is added to this tree's cumulative query counters. 
+     * Enabling starts the counters from zero. When disabled, queries take their uninstrumented path and pay nothing.
+     * Should be set while no queries are running.
+     * @param _collectQueryStats
+     */
+    public void setCollectQueryStats(boolean _collectQueryStats) {
+        if (_collectQueryStats == (queryCounters != null)) {return;}
+        queryCounters = (_collectQueryStats ? new KDQueryCounters() : null);
+    }
+    
+    /**
+     * Get a snapshot of this tree's cumulative query counters, or null if query stats are not being collected
+     * @return
+     */
+    public KDQueryStatsSnapshot getQueryStatsSnapshot() {
+        KDQueryCounters counters = queryCounters;
+        return (counters == null ? null : counters.getSnapshot());
+    }
+    
+    /**
+     * Reset this tree's cumulative query counters to zero, if they are being collected
+     */
+    public void resetQueryStats() {
+        KDQueryCounters counters = queryCounters;
+        if (counters != null) {counters.reset();}
+    }
+    
     
 }//class KDTree
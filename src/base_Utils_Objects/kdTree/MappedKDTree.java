@@ -0,0 +1,108 @@
+package base_Utils_Objects.kdTree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import base_Utils_Objects.kdTree.base.Base_BufferKDTree;
+
+/**
+ * Read-only pointerless kd-tree loaded by memory-mapping a file saved with
+ * {@link base_Utils_Objects.kdTree.base.Base_ArrayKDTree#saveTree(String)}. Nothing is copied or rebuilt when the
+ * file is loaded - queries read the tree straight from the mapped file, so loading is near-instant regardless of
+ * the tree's size, and processes that map the same file share a single copy of it in the OS page cache.
+ *
+ * Points are reported by the source index they had in the tree that was saved.
+ *
+ * @author John Turner
+ *
+ */
+public class MappedKDTree extends Base_BufferKDTree {
+
+    protected MappedKDTree(int _numDims, int _numPts, int _leafSize, double[] _treeMins, double[] _treeMaxs,
+            int _chunkShift, DoubleBuffer[][] _coords, IntBuffer[] _srcIdxs, ByteBuffer[] _splitAxes) {
+        super(_numDims, _numPts, _leafSize, _treeMins, _treeMaxs, _chunkShift, _coords, _srcIdxs, _splitAxes);
+    }//ctor
+
+    /**
+     * Map the saved kd-tree in the given file. See {@link #loadTree(String, int)}
+     */
+    public static MappedKDTree loadTree(String fileName) {return loadTree(fileName, DEFAULT_CHUNK_SHIFT);}
+
+    /**
+     * Map the saved kd-tree in the given file. The mappings remain valid after this returns, until the tree is
+     * garbage collected. The file must not be modified while it is mapped.
+     * @param fileName fully qualified name of the file
+     * @param chunkShift log2 of the # of points to map in each chunk of the tree's arrays
+     * @return the mapped tree, or null if the file could not be mapped
+     */
+    public static MappedKDTree loadTree(String fileName, int chunkShift) {
+        if ((chunkShift < 1) || (chunkShift > 27)) {
+            System.out.println("Mapped KD Tree chunk shift must be in [1, 27] but was "+chunkShift+". Aborting.");
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer hdr = ByteBuffer.allocate(FILE_HEADER_SIZE).order(FILE_BYTE_ORDER);
+            readFully(channel, hdr, 0);
+            int magic = hdr.getInt(), version = hdr.getInt(), numDims = hdr.getInt(), numPts = hdr.getInt(), leafSize = hdr.getInt();
+            if ((magic != FILE_MAGIC) || (version != FILE_VERSION)) {
+                System.out.println("Mapped KD Tree file "+fileName+" is not a version "+FILE_VERSION+" kd-tree file. Aborting.");
+                return null;
+            }
+            long boundsSize = 16L * numDims, offset = FILE_HEADER_SIZE + boundsSize;
+            long expSize = offset + (8L * numDims + 5L) * numPts;
+            if ((numDims < 1) || (numPts < 0) || (leafSize < 1) || (channel.size() != expSize)) {
+                System.out.println("Mapped KD Tree file "+fileName+" is malformed or truncated. Aborting.");
+                return null;
+            }
+            ByteBuffer bnds = ByteBuffer.allocate((int) boundsSize).order(FILE_BYTE_ORDER);
+            readFully(channel, bnds, FILE_HEADER_SIZE);
+            double[] treeMins = new double[numDims], treeMaxs = new double[numDims];
+            for(int axis=0;axis<numDims;++axis) {treeMins[axis] = bnds.getDouble();}
+            for(int axis=0;axis<numDims;++axis) {treeMaxs[axis] = bnds.getDouble();}
+
+            int numChunks = calcNumChunks(numPts, chunkShift);
+            DoubleBuffer[][] coords = new DoubleBuffer[numDims][numChunks];
+            for(int axis=0;axis<numDims;++axis) {
+                for(int c=0;c<numChunks;++c) {coords[axis][c] = mapChunk(channel, offset, 8, chunkShift, numPts, c).asDoubleBuffer();}
+                offset += 8L * numPts;
+            }
+            IntBuffer[] srcIdxs = new IntBuffer[numChunks];
+            for(int c=0;c<numChunks;++c) {srcIdxs[c] = mapChunk(channel, offset, 4, chunkShift, numPts, c).asIntBuffer();}
+            offset += 4L * numPts;
+            ByteBuffer[] splitAxes = new ByteBuffer[numChunks];
+            for(int c=0;c<numChunks;++c) {splitAxes[c] = mapChunk(channel, offset, 1, chunkShift, numPts, c);}
+            return new MappedKDTree(numDims, numPts, leafSize, treeMins, treeMaxs, chunkShift, coords, srcIdxs, splitAxes);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Mapping KD Tree file "+fileName+" failed.");
+            return null;
+        }
+    }//loadTree
+
+    /**
+     * Map chunk c of the array of numPts elements of elemSize bytes each that starts at sectionOffset in the file
+     */
+    private static ByteBuffer mapChunk(FileChannel channel, long sectionOffset, int elemSize, int chunkShift, int numPts, int c) throws IOException {
+        long start = sectionOffset + ((long) c << chunkShift) * elemSize;
+        long len = (long) calcChunkSize(numPts, chunkShift, c) * elemSize;
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, len).order(FILE_BYTE_ORDER);
+    }//mapChunk
+
+    /**
+     * Read buf.remaining() bytes from the channel starting at position, and flip buf for reading
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int numRead = channel.read(buf, position);
+            if (numRead < 0) {throw new IOException("Unexpected end of file");}
+            position += numRead;
+        }
+        buf.flip();
+    }//readFully
+
+}//class MappedKDTree
@@ -0,0 +1,131 @@
+package base_Utils_Objects.kdTree;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+import base_Utils_Objects.kdTree.base.Base_BufferKDTree;
+
+/**
+ * Pointerless kd-tree whose coordinates and node arrays live entirely in off-heap direct buffers, for point sets
+ * too large to hold as per-point objects on the java heap. The GC only ever sees the handful of buffer objects,
+ * never the points themselves. Each point costs (8 * numDims + 5) bytes.
+ *
+ * Points are written straight into the tree's buffers with {@link #setPoint(int, double[])}, then the tree is built
+ * in place. Closing the tree drops its buffers, but their direct memory is only released when the garbage collector
+ * collects them, some time after close; direct memory is limited by -XX:MaxDirectMemorySize.
+ *
+ * @author John Turner
+ *
+ */
+public class OffHeapKDTree extends Base_BufferKDTree {
+    /**
+     * Whether the tree has been built from its points
+     */
+    protected boolean isBuilt;
+
+    /**
+     * Allocate an empty tree with the default chunk size. See {@link #OffHeapKDTree(int, int, int, int)}
+     */
+    public OffHeapKDTree(int _numPts, int _numDims, int _leafSize) {this(_numPts, _numDims, _leafSize, DEFAULT_CHUNK_SHIFT);}
+
+    /**
+     * Allocate the off-heap storage of a tree of the given # of points. Every point must be set before the tree is built,
+     * and the tree cannot be queried until it is built.
+     * @param _numPts # of points in the tree
+     * @param _numDims # of position values/axes of each point; at most Byte.MAX_VALUE
+     * @param _leafSize Maximum # of points in a leaf bucket
+     * @param _chunkShift log2 of the # of points in each buffer chunk; at most 27
+     */
+    public OffHeapKDTree(int _numPts, int _numDims, int _leafSize, int _chunkShift) {
+        super(clampNumDims(_numDims), _numPts, (_leafSize < 1 ? 1 : _leafSize), new double[clampNumDims(_numDims)], new double[clampNumDims(_numDims)],
+                clampChunkShift(_chunkShift), new DoubleBuffer[clampNumDims(_numDims)][calcNumChunks(_numPts, clampChunkShift(_chunkShift))],
+                new IntBuffer[calcNumChunks(_numPts, clampChunkShift(_chunkShift))], new ByteBuffer[calcNumChunks(_numPts, clampChunkShift(_chunkShift))]);
+        if(_numDims != numDims) {
+            System.out.println("Off Heap KD Tree supports at most "+Byte.MAX_VALUE+" dimensions but "+_numDims+" requested; using "+numDims+".");
+        }
+        for(int c=0;c<srcIdxs.length;++c) {
+            int chunkSize = calcChunkSize(numPts, chunkShift, c);
+            for(int axis=0;axis<numDims;++axis) {
+                coords[axis][c] = ByteBuffer.allocateDirect(chunkSize * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+            srcIdxs[c] = ByteBuffer.allocateDirect(chunkSize * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+            splitAxes[c] = ByteBuffer.allocateDirect(chunkSize);
+        }
+        isBuilt = false;
+    }//ctor
+
+    private static int clampNumDims(int _numDims) {return Math.min(Math.max(_numDims, 1), Byte.MAX_VALUE);}
+    private static int clampChunkShift(int _chunkShift) {return Math.min(Math.max(_chunkShift, 1), 27);}
+
+    /**
+     * Set the position of the point with the given index. Only valid before the tree is built or closed.
+     * @param idx index of point; it is reported by this index in query results
+     * @param pos position of point. Must have at least numDims values
+     */
+    public void setPoint(int idx, double[] pos) {
+        if (isBuilt || isClosed) {
+            System.out.println("Off Heap KD Tree points cannot be set after the tree is built or closed. Aborting.");
+            return;
+        }
+        for(int axis=0;axis<numDims;++axis) {setCoord(axis, idx, pos[axis]);}
+    }//setPoint
+
+    /**
+     * Build the tree in place from its points
+     */
+    public void buildTree() {
+        if (!initBuild()) {return;}
+        buildSubtrees(null);
+        sortLeavesByCurve();
+    }//buildTree
+
+    /**
+     * Build the tree in place from its points, building independent subtrees in parallel on the passed pool
+     * @param pool
+     */
+    public void buildTree(ForkJoinPool pool) {
+        if (!initBuild()) {return;}
+        buildSubtrees(pool);
+        sortLeavesByCurve();
+    }//buildTree
+
+    /**
+     * Set every point's source index and mark it as a leaf point, and find the tree bounds
+     * @return whether the tree can be built
+     */
+    private boolean initBuild() {
+        if (isBuilt || isClosed) {
+            System.out.println("Off Heap KD Tree has already been built or has been closed. Aborting.");
+            return false;
+        }
+        for(int axis=0;axis<numDims;++axis) {
+            treeMins[axis] = Double.POSITIVE_INFINITY;
+            treeMaxs[axis] = Double.NEGATIVE_INFINITY;
+        }
+        for(int i=0;i<numPts;++i) {
+            setSrcIdx(i, i);
+            setSplitAxis(i, -1);
+            for(int axis=0;axis<numDims;++axis) {
+                double v = getCoord(axis, i);
+                if(v < treeMins[axis]) {treeMins[axis] = v;}
+                if(v > treeMaxs[axis]) {treeMaxs[axis] = v;}
+            }
+        }
+        isBuilt = true;
+        return true;
+    }//initBuild
+
+    //////////////////////////////
+    // Getters and setters
+
+    /**
+     * Whether this tree has been built from its points and not since closed
+     * @return
+     */
+    @Override
+    public boolean isBuilt() {return isBuilt && !isClosed;}
+
+}//class OffHeapKDTree
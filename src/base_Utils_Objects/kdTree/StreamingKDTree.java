@@ -0,0 +1,367 @@
+package base_Utils_Objects.kdTree;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import base_Utils_Objects.kdTree.base.Base_ArrayKDTree;
+import base_Utils_Objects.kdTree.base.Base_KDObject;
+import base_Utils_Objects.kdTree.query.KDIndexList;
+import base_Utils_Objects.kdTree.query.KDIndexNeighborhood;
+import base_Utils_Objects.kdTree.query.KDRangeVisitor;
+
+/**
+ * Spatial index of Base_KDObjects for append-heavy workloads, using the logarithmic method (Bentley-Saxe) :
+ * objects are held in a set of static array kd-trees whose sizes are distinct powers of two multiples of a base size,
+ * along with a small unindexed buffer of the most recently appended objects. When the buffer fills, it and every
+ * consecutively occupied level below the first empty one are merged into a single tree at that empty level,
+ * the same way a carry propagates through a binary counter. Each object is rebuilt O(log n) times, for an amortized
+ * append cost of O(log^2 n) rather than the O(n log n) cost of rebuilding a static tree, and queries search every
+ * live tree and the buffer.
+ *
+ * Merges can be built in the background on a ForkJoinPool. While a merge is in progress, the trees and buffered objects
+ * it consumes remain searchable, and the result is installed on a later append (or by {@link #finishMerges()}).
+ *
+ * Objects are reported by their index in the order they were appended. The positions of objects must not change
+ * once they have been appended. Appends and queries are not safe to call concurrently with each other.
+ *
+ * @author John Turner
+ *
+ * @param <T> type of object held in this tree
+ */
+public class StreamingKDTree <T extends Base_KDObject<T>> {
+    /**
+     * list of all objects appended to this tree, in the order they were appended. Objects are reported by their index in this list.
+     */
+    protected ArrayList<T> nodeObjectList;
+
+    /**
+     * Static trees at each level, or null if a level is empty. The tree at level i holds (baseSize << i) objects,
+     * and every tree holds a contiguous range of appended objects, with older objects at higher levels
+     */
+    protected ArrayList<StreamingKDLevel> levels;
+
+    /**
+     * # of objects appended before a level 0 tree is built from them
+     */
+    protected final int baseSize;
+
+    /**
+     * Maximum # of objects in a leaf bucket of each level's tree
+     */
+    protected final int leafSize;
+
+    /**
+     * Index of the first appended object not held by any installed level tree
+     */
+    protected int bufferStart;
+
+    /**
+     * # of position values of each object; set by the first object appended
+     */
+    protected int numDims;
+
+    /**
+     * Pool to build merges in the background on, or null to merge on the appending thread
+     */
+    protected ForkJoinPool mergePool;
+
+    /**
+     * Merge currently being built in the background, or null if none
+     */
+    protected ForkJoinTask<StreamingKDLevel> pendingMerge;
+
+    /**
+     * Level the pending merge will be installed at
+     */
+    protected int pendingLevel;
+
+    /**
+     * Index of the first appended object not being merged by the pending merge
+     */
+    protected int pendingMergeEnd;
+
+    /**
+     * While a background merge is in progress, appends wait for it to finish once this many multiples of baseSize
+     * objects are waiting in the buffer beyond those being merged
+     */
+    public static final int MAX_PENDING_BUFFER_MULT = 4;
+
+    /**
+     * Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     */
+    protected double maxNeighborSqDist;
+
+    /**
+     * Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     */
+    protected int maxNumNeighbors;
+
+    public StreamingKDTree(int _maxNumNeighbors, double _maxNeighborSqDist) {
+        this(_maxNumNeighbors, _maxNeighborSqDist, 4 * Base_ArrayKDTree.DEFAULT_LEAF_SIZE, Base_ArrayKDTree.DEFAULT_LEAF_SIZE);
+    }//ctor
+
+    /**
+     * @param _maxNumNeighbors Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     * @param _maxNeighborSqDist Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     * @param _baseSize # of objects in the smallest level's tree; also the most objects that will be searched linearly in the buffer
+     * @param _leafSize Maximum # of objects in a leaf bucket
+     */
+    public StreamingKDTree(int _maxNumNeighbors, double _maxNeighborSqDist, int _baseSize, int _leafSize) {
+        maxNumNeighbors = _maxNumNeighbors;
+        maxNeighborSqDist = _maxNeighborSqDist;
+        baseSize = (_baseSize < 1 ? 1 : _baseSize);
+        leafSize = (_leafSize < 1 ? 1 : _leafSize);
+        nodeObjectList = new ArrayList<T>();
+        levels = new ArrayList<StreamingKDLevel>();
+        bufferStart = 0;
+        numDims = 0;
+        mergePool = null;
+        pendingMerge = null;
+        pendingLevel = -1;
+        pendingMergeEnd = 0;
+    }//ctor
+
+    /**
+     * Append an object to this tree. It is immediately visible to queries. Its index in this tree is the # of objects appended before it.
+     * @param p Object to append
+     */
+    public void addKDObject(T p) {
+        if (nodeObjectList.size() == 0) {numDims = p.getNumPosVals();}
+        else if (p.getNumPosVals() != numDims) {
+            System.out.println("Streaming KD Tree object has "+p.getNumPosVals()+" position values but tree has "+numDims+". Aborting.");
+            return;
+        }
+        nodeObjectList.add(p);
+        int firstUnmerged = (pendingMerge == null ? bufferStart : pendingMergeEnd);
+        if (nodeObjectList.size() - firstUnmerged >= baseSize) {carry();}
+    }//addKDObject
+
+    /**
+     * Merge full buffers of appended objects into the level trees, for as long as there are full buffers and
+     * any background merge in progress has finished
+     */
+    protected void carry() {
+        while (true) {
+            if (pendingMerge != null) {
+                int numWaiting = nodeObjectList.size() - pendingMergeEnd;
+                if (numWaiting < baseSize) {return;}
+                if (!pendingMerge.isDone() && (numWaiting < MAX_PENDING_BUFFER_MULT * baseSize)) {return;}
+                installPendingMerge();
+            }
+            if (nodeObjectList.size() - bufferStart < baseSize) {return;}
+            //find first empty level - every level below it is merged with the buffer
+            int lvl = 0;
+            while ((lvl < levels.size()) && (levels.get(lvl) != null)) {++lvl;}
+            if (lvl == levels.size()) {levels.add(null);}
+            int mergeStart = (lvl == 0 ? bufferStart : levels.get(lvl - 1).getSrcIdxOffset());
+            StreamingKDLevel merged = new StreamingKDLevel(mergeStart, baseSize << lvl);
+            if (mergePool == null) {
+                merged.build();
+                installMerge(lvl, merged);
+            } else {
+                pendingLevel = lvl;
+                pendingMergeEnd = mergeStart + merged.getNumSrcPts();
+                pendingMerge = mergePool.submit(() -> {merged.build(); return merged;});
+            }
+        }
+    }//carry
+
+    /**
+     * Wait for the pending background merge to finish and install it
+     */
+    private void installPendingMerge() {
+        StreamingKDLevel merged = pendingMerge.join();
+        int lvl = pendingLevel;
+        pendingMerge = null;
+        pendingLevel = -1;
+        installMerge(lvl, merged);
+    }//installPendingMerge
+
+    /**
+     * Replace the levels below lvl and the merged part of the buffer with the merged tree
+     */
+    private void installMerge(int lvl, StreamingKDLevel merged) {
+        for(int i=0;i<lvl;++i) {levels.set(i, null);}
+        levels.set(lvl, merged);
+        bufferStart = merged.getSrcIdxOffset() + merged.getNumSrcPts();
+    }//installMerge
+
+    /**
+     * Wait for any background merge to finish, and merge any full buffers of appended objects
+     */
+    public void finishMerges() {
+        if (pendingMerge != null) {installPendingMerge();}
+        ForkJoinPool pool = mergePool;
+        mergePool = null;
+        carry();
+        mergePool = pool;
+    }//finishMerges
+
+    /**
+     * Build a neighborhood to be used for queries of this tree, using this tree's maximum
+     * neighborhood size and distance.
+     * @return
+     */
+    public KDIndexNeighborhood buildNeighborhood() {return new KDIndexNeighborhood(maxNumNeighbors, maxNeighborSqDist);}
+
+    /**
+     * Find the nearby objects to the given location, searching every level tree and the buffer.
+     * @param pos given location for finding nearby objects. Must have at least numDims values
+     * @param nbhd the neighborhood to populate with the indices and sq distances of the objects found.
+     *         It is reset before the search.
+     * @return nbhd
+     */
+    public KDIndexNeighborhood findNeighborhood(double[] pos, KDIndexNeighborhood nbhd) {
+        nbhd.reset();
+        //search larger levels first, since they are most likely to hold the nearest objects
+        for(int lvl=levels.size()-1;lvl>=0;--lvl) {
+            StreamingKDLevel level = levels.get(lvl);
+            if (level != null) {level.addToNeighborhood(pos, nbhd);}
+        }
+        for(int i=bufferStart, end=nodeObjectList.size();i<end;++i) {nbhd.offer(i, nodeObjectList.get(i).calcSqDist(pos));}
+        return nbhd;
+    }//findNeighborhood
+
+    /**
+     * Find every object within the given radius of the given location, passing the index of each to the visitor in no particular order.
+     * @param pos given location. Must have at least numDims values
+     * @param sqRadius square of the radius; objects at a sq distance <= sqRadius are found
+     * @param visitor
+     */
+    public void findInRadius(double[] pos, double sqRadius, KDRangeVisitor visitor) {
+        KDIndexList scratch = new KDIndexList(1);
+        for(StreamingKDLevel level : levels) {if (level != null) {level.findInRadius(pos, sqRadius, visitor, scratch);}}
+        for(int i=bufferStart, end=nodeObjectList.size();i<end;++i) {
+            if(nodeObjectList.get(i).calcSqDist(pos) <= sqRadius) {visitor.visit(i);}
+        }
+    }//findInRadius
+
+    /**
+     * Count the objects within the given radius of the given location.
+     * @param pos given location. Must have at least numDims values
+     * @param sqRadius square of the radius; objects at a sq distance <= sqRadius are counted
+     * @return
+     */
+    public int countInRadius(double[] pos, double sqRadius) {
+        int res = 0;
+        KDIndexList scratch = new KDIndexList(1);
+        for(StreamingKDLevel level : levels) {if (level != null) {res += level.countInRadius(pos, sqRadius, scratch);}}
+        for(int i=bufferStart, end=nodeObjectList.size();i<end;++i) {
+            if(nodeObjectList.get(i).calcSqDist(pos) <= sqRadius) {++res;}
+        }
+        return res;
+    }//countInRadius
+
+    /**
+     * Find every object within the given axis-aligned box, passing the index of each to the visitor in no particular order.
+     * @param mins per-axis minimum of box (inclusive). Must have at least numDims values
+     * @param maxs per-axis maximum of box (inclusive). Must have at least numDims values
+     * @param visitor
+     */
+    public void findInBox(double[] mins, double[] maxs, KDRangeVisitor visitor) {
+        for(StreamingKDLevel level : levels) {if (level != null) {level.findInBox(mins, maxs, visitor);}}
+        for(int i=bufferStart, end=nodeObjectList.size();i<end;++i) {
+            if(isInBox(mins, maxs, nodeObjectList.get(i))) {visitor.visit(i);}
+        }
+    }//findInBox
+
+    /**
+     * Whether obj is within the box
+     */
+    private boolean isInBox(double[] mins, double[] maxs, T obj) {
+        for(int axis=0;axis<numDims;++axis) {
+            double v = obj.getPosVal(axis);
+            if((v < mins[axis]) || (v > maxs[axis])) {return false;}
+        }
+        return true;
+    }//isInBox
+
+    //////////////////////////////
+    // Getters and setters
+
+    /**
+     * Get the object with the given index
+     * @param idx index of object, as reported in query results
+     * @return
+     */
+    public T getKDObject(int idx) {return nodeObjectList.get(idx);}
+
+    public int getNumNodeObjs() {return nodeObjectList.size();}
+
+    /**
+     * # of level trees currently holding objects
+     * @return
+     */
+    public int getNumLiveLevels() {
+        int res = 0;
+        for(StreamingKDLevel level : levels) {if (level != null) {++res;}}
+        return res;
+    }
+
+    /**
+     * # of appended objects not held by any installed level tree, which are searched linearly
+     * @return
+     */
+    public int getNumBuffered() {return nodeObjectList.size() - bufferStart;}
+
+    public int getBaseSize() {return baseSize;}
+    public int getLeafSize() {return leafSize;}
+
+    public ForkJoinPool getMergePool() {return mergePool;}
+    /**
+     * Set the pool to build merges in the background on.
+     * @param _mergePool pool, or null to build merges on the appending thread
+     */
+    public void setMergePool(ForkJoinPool _mergePool) {mergePool = _mergePool;}
+
+    public int getMaxNumNeighbors() {                        return maxNumNeighbors;    }
+    public void setMaxNumNeighbors(int _maxNumNeighbors) {    maxNumNeighbors = _maxNumNeighbors;}
+
+    public double getMaxNeighborSqDist() {                            return maxNeighborSqDist;    }
+    public void setMaxNeighborSqDist(double _maxNeighborSqDist) {    maxNeighborSqDist = _maxNeighborSqDist;}
+
+    /**
+     * Static tree of a contiguous range of appended objects. The positions of the objects are copied when the level
+     * is created so that it can be built on another thread while objects continue to be appended.
+     */
+    protected class StreamingKDLevel extends Base_ArrayKDTree {
+        /**
+         * flattened positions of this level's objects : object i's axis a value is at [(i - srcIdxOffset)*numDims + a]
+         */
+        private double[] srcPos;
+        private final int numSrcPts, numSrcDims;
+
+        /**
+         * @param _srcIdxOffset index of first object in this level
+         * @param _numSrcPts # of objects in this level
+         */
+        public StreamingKDLevel(int _srcIdxOffset, int _numSrcPts) {
+            super(StreamingKDTree.this.maxNumNeighbors, StreamingKDTree.this.maxNeighborSqDist);
+            srcIdxOffset = _srcIdxOffset;
+            numSrcPts = _numSrcPts;
+            numSrcDims = StreamingKDTree.this.numDims;
+            setLeafSize(StreamingKDTree.this.leafSize);
+            srcPos = new double[numSrcPts * numSrcDims];
+            for(int i=0;i<numSrcPts;++i) {
+                T obj = nodeObjectList.get(srcIdxOffset + i);
+                for(int axis=0;axis<numSrcDims;++axis) {srcPos[i*numSrcDims + axis] = obj.getPosVal(axis);}
+            }
+        }//ctor
+
+        /**
+         * Build this level's tree. Releases the copied positions once done.
+         */
+        public void build() {
+            buildTree(numSrcPts, numSrcDims);
+            srcPos = null;
+        }
+
+        @Override
+        protected double getSrcPosVal(int srcIdx, int axis) {return srcPos[(srcIdx - srcIdxOffset)*numSrcDims + axis];}
+
+        public int getSrcIdxOffset() {return srcIdxOffset;}
+        public int getNumSrcPts() {return numSrcPts;}
+    }//class StreamingKDLevel
+
+}//class StreamingKDTree
@@ -0,0 +1,825 @@
+package base_Utils_Objects.kdTree.base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import base_Utils_Objects.kdTree.query.KDIndexNeighborhood;
+import base_Utils_Objects.kdTree.query.KDNeighborGraph;
+import base_Utils_Objects.kdTree.query.KDPairList;
+
+/**
+ * This class is the base of a pointerless, array-backed kd-tree. No node objects are built; instead the tree
+ * is implicit in the order of the points it holds, as described in {@link Base_ImplicitKDTree}, which holds the
+ * build and the queries shared with the other pointerless trees.
+ *
+ * Point coordinates are held in tree order in contiguous per-axis arrays (structure of arrays), and the source
+ * objects/points are only referenced by their index in the source data the tree was built from.
+ *
+ * Once built, the tree is read-only and any number of threads may query it concurrently, each with its own
+ * neighborhood.
+ *
+ * @author John Turner
+ *
+ */
+public abstract class Base_ArrayKDTree extends Base_ImplicitKDTree {
+    /**
+     * Point coordinates, in tree order, per axis : coords[axis][treeIdx]
+     */
+    protected double[][] coords;
+    /**
+     * Index in the source data of the point at each tree idx
+     */
+    protected int[] srcIdxs;
+    /**
+     * Split axis of the subtree whose median point is at each tree idx; -1 if the point is in a leaf.
+     */
+    protected byte[] splitAxes;
+    /**
+     * Source index of the first point in this tree; the tree is built from the source points in [srcIdxOffset, srcIdxOffset + numPts)
+     */
+    protected int srcIdxOffset = 0;
+    /**
+     * Per-axis bounds of every subtree, used by the pair join : nodeBoxMins[axis][boxIdx]. Found on first use and kept 
+     * until the tree is rebuilt or refit, when nodeBoxesValid is cleared.
+     */
+    private double[][] nodeBoxMins, nodeBoxMaxs;
+    private boolean nodeBoxesValid = false;
+
+    /**
+     * @param _maxNumNeighbors Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     * @param _maxNeighborSqDist Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     */
+    public Base_ArrayKDTree(int _maxNumNeighbors, double _maxNeighborSqDist) {
+        super(_maxNumNeighbors, _maxNeighborSqDist);
+    }//ctor
+
+    /**
+     * Get the position value for the given axis of the source point with the given index. Only called while
+     * building the tree.
+     * @param srcIdx index of point in source data
+     * @param axis
+     * @return
+     */
+    protected abstract double getSrcPosVal(int srcIdx, int axis);
+
+    /**
+     * Build the tree from the source data.
+     * @param _numPts # of points in the source data
+     * @param _numDims # of position values/axes of each point
+     */
+    protected final void buildTree(int _numPts, int _numDims) {
+        if(!initTreeArrays(_numPts, _numDims)) {return;}
+        buildSubtrees(null);
+        sortLeavesByCurve();
+    }//buildTree
+    
+    /**
+     * Build the tree from the source data, building independent subtrees in parallel on the passed pool.
+     * @param _numPts # of points in the source data
+     * @param _numDims # of position values/axes of each point
+     * @param pool
+     */
+    protected final void buildTree(int _numPts, int _numDims, ForkJoinPool pool) {
+        if(!initTreeArrays(_numPts, _numDims)) {return;}
+        buildSubtrees(pool);
+        sortLeavesByCurve();
+    }//buildTree
+    
+    /**
+     * Allocate this tree's arrays and load the source data into them, in source order
+     * @param _numPts
+     * @param _numDims
+     * @return whether the arrays were successfully built
+     */
+    private boolean initTreeArrays(int _numPts, int _numDims) {
+        if(_numDims > Byte.MAX_VALUE) {
+            System.out.println("Array KD Tree supports at most "+Byte.MAX_VALUE+" dimensions but "+_numDims+" requested. Aborting.");
+            return false;
+        }
+        numPts = _numPts;
+        numDims = _numDims;
+        invalidateNodeBoxes();
+        coords = new double[numDims][numPts];
+        srcIdxs = new int[numPts];
+        splitAxes = new byte[numPts];
+        Arrays.fill(splitAxes, (byte) -1);
+        for(int i=0;i<numPts;++i) {
+            srcIdxs[i] = srcIdxOffset + i;
+            for(int axis=0;axis<numDims;++axis) {coords[axis][i] = getSrcPosVal(srcIdxs[i], axis);}
+        }
+        calcTreeBounds();
+        return true;
+    }//initTreeArrays
+
+    /**
+     * Calculate the per-axis bounds of all the points in this tree
+     */
+    protected final void calcTreeBounds() {
+        if((treeMins == null) || (treeMins.length != numDims)) {
+            treeMins = new double[numDims];
+            treeMaxs = new double[numDims];
+        }
+        for(int axis=0;axis<numDims;++axis) {
+            double[] c = coords[axis];
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for(int i=0;i<numPts;++i) {
+                double v = c[i];
+                if(v < min) {min = v;} 
+                if(v > max) {max = v;}
+            }
+            treeMins[axis] = min;
+            treeMaxs[axis] = max;
+        }
+    }//calcTreeBounds
+
+    /**
+     * Score the values of axis in the range [lo, hi) using this tree's split rule, reading the coordinate array directly
+     * @param lo
+     * @param hi
+     * @param axis
+     * @return
+     */
+    @Override
+    protected final double calcAxisScore(int lo, int hi, int axis) {
+        double[] c = coords[axis];
+        //shift values by first value for stability
+        double shift = c[lo], min = shift, max = shift, sum = 0, sumSq = 0;
+        for(int i=lo+1;i<hi;++i) {
+            double v = c[i], diff = v - shift;
+            if(v < min) {min = v;} else if (v > max) {max = v;}
+            sum += diff;
+            sumSq += diff * diff;
+        }
+        return splitRule.calcAxisScore(min, max, sum, sumSq, hi - lo);
+    }//calcAxisScore
+    
+    /**
+     * Refit this tree in place after its source points have moved, reusing all of its storage so no garbage is generated.
+     * Coordinates are re-read from the source in the current tree order, then the subtrees are refit as described in
+     * {@link Base_ImplicitKDTree#refitSubtrees()}. The set of source points must not have changed since the tree was built. 
+     * Not safe to call concurrently with queries.
+     * @return # of subtrees that were rebuilt from scratch
+     */
+    protected final int refitTree() {
+        if (numPts == 0) {return 0;}
+        invalidateNodeBoxes();
+        for(int axis=0;axis<numDims;++axis) {
+            double[] c = coords[axis];
+            for(int i=0;i<numPts;++i) {c[i] = getSrcPosVal(srcIdxs[i], axis);}
+        }
+        calcTreeBounds();
+        return refitSubtrees();
+    }//refitTree
+    
+    /**
+     * In-place selection (Hoare's quickselect) of the k'th point along axis in the inclusive range [lo, hi], as 
+     * {@link Base_ImplicitKDTree#selectMedian(int, int, int, int)}, reading the coordinate array directly
+     * @param lo
+     * @param hi inclusive
+     * @param k
+     * @param axis
+     */
+    @Override
+    protected final void selectMedian(int lo, int hi, int k, int axis) {
+        double[] c = coords[axis];
+        while (hi > lo) {
+            //median of 3 pivot
+            int mid = (lo + hi) >>> 1;
+            if (c[mid] < c[lo]) {swapPts(mid, lo);}
+            if (c[hi] < c[lo]) {swapPts(hi, lo);}
+            if (c[hi] < c[mid]) {swapPts(hi, mid);}
+            double pivot = c[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (c[i] < pivot) {++i;}
+                while (c[j] > pivot) {--j;}
+                if (i <= j) {swapPts(i++, j--);}
+            }
+            //[lo, j] <= pivot, [i, hi] >= pivot, anything between is == pivot
+            if (k <= j) {        hi = j;}
+            else if (k >= i) {    lo = i;}
+            else {                return;}
+        }
+    }//selectMedian
+
+    /**
+     * Swap the points at the two tree idxs
+     * @param i
+     * @param j
+     */
+    @Override
+    protected final void swapPts(int i, int j) {
+        for(int axis=0;axis<numDims;++axis) {
+            double[] c = coords[axis];
+            double tmp = c[i]; c[i] = c[j]; c[j] = tmp;
+        }
+        int tmpIdx = srcIdxs[i]; srcIdxs[i] = srcIdxs[j]; srcIdxs[j] = tmpIdx;
+    }//swapPts
+
+    /**
+     * Get the square distance of the point at the given tree idx from the passed point
+     * @param pos
+     * @param treeIdx
+     * @return
+     */
+    @Override
+    protected final double calcSqDist(double[] pos, int treeIdx) {
+        double res = 0, diff;
+        for(int axis=0;axis<numDims;++axis) {
+            diff = pos[axis] - coords[axis][treeIdx];
+            res += diff * diff;
+        }
+        return res;
+    }//calcSqDist
+
+    @Override
+    protected final void calcSqDists(double[] pos, int lo, int hi, double[] res) {KDDistKernels.calcSqDists(coords, numDims, lo, hi, pos, res);}
+
+    @Override
+    protected final double getCoord(int axis, int treeIdx) {return coords[axis][treeIdx];}
+    @Override
+    protected final int getSrcIdx(int treeIdx) {return srcIdxs[treeIdx];}
+    @Override
+    protected final int getSplitAxis(int treeIdx) {return splitAxes[treeIdx];}
+    @Override
+    protected final void setSplitAxis(int treeIdx, int axis) {splitAxes[treeIdx] = (byte) axis;}
+
+    
+    /**
+     * Build the graph of the nearest points to every point in this tree in parallel on the common ForkJoinPool, 
+     * using this tree's maximum neighborhood size and distance. 
+     * See {@link #buildKNNGraph(int, double, boolean, ForkJoinPool)}
+     * @param excludeSelf whether a point should be excluded from its own neighbors
+     * @return the graph, with a row for each point indexed by its source index (relative to srcIdxOffset)
+     */
+    public final KDNeighborGraph buildKNNGraph(boolean excludeSelf) {
+        return buildKNNGraph(maxNumNeighbors, maxNeighborSqDist, excludeSelf, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Build the k-nearest-neighbor graph of every point in this tree. Rather than searching from the root for each 
+     * point, each leaf bucket's points are searched for together in a single traversal of the tree (leaf-to-leaf), 
+     * pruned by the box bounding the bucket and the largest pruning distance of its points, so that nearby queries 
+     * share the work and bounds of the search. Leaf buckets are processed in parallel on the passed pool.
+     * @param maxNumNeighbors # of neighbors to find for each point
+     * @param maxNeighborSqDist Max Sq Distance to be considered a neighbor
+     * @param excludeSelf whether a point should be excluded from its own neighbors
+     * @param pool pool to execute on, or null to execute on the calling thread
+     * @return the graph, with a row for each point indexed by its source index (relative to srcIdxOffset), or null if 
+     *         the tree is not built
+     */
+    public final KDNeighborGraph buildKNNGraph(int maxNumNeighbors, double maxNeighborSqDist, boolean excludeSelf, ForkJoinPool pool) {
+        if ((numPts == 0) || (maxNumNeighbors < 1) || ((long) numPts * maxNumNeighbors > Integer.MAX_VALUE)) {
+            System.out.println("Array KD Tree cannot build a kNN graph of "+maxNumNeighbors+" neighbors for "+numPts+" points. Aborting.");
+            return null;
+        }
+        int[] counts = new int[numPts], resIdxs = new int[numPts * maxNumNeighbors];
+        double[] resSqDists = new double[numPts * maxNumNeighbors];
+        KNNGraphTask task = new KNNGraphTask(0, numPts, maxNumNeighbors, maxNeighborSqDist, excludeSelf, counts, resIdxs, resSqDists);
+        if (pool == null) {task.compute();} else {pool.invoke(task);}
+        return new KDNeighborGraph(numPts, maxNumNeighbors, counts, resIdxs, resSqDists);
+    }//buildKNNGraph
+    
+    /**
+     * Per-thread scratch space used while building a kNN graph
+     */
+    private static class KNNGraphScratch {
+        /**
+         * a neighborhood for each query point of a leaf bucket
+         */
+        final KDIndexNeighborhood[] nbhds;
+        /**
+         * bounds of the current query box, and of the current cell being searched
+         */
+        final double[] qMins, qMaxs, cellMins, cellMaxs;
+        /**
+         * tree idxs of the query points still active at each depth of the search
+         */
+        final int[][] activeQs;
+        
+        KNNGraphScratch(int numNbhds, int maxNumNeighbors, double maxNeighborSqDist, int numDims, int maxDepth) {
+            nbhds = new KDIndexNeighborhood[numNbhds];
+            for(int i=0;i<numNbhds;++i) {nbhds[i] = new KDIndexNeighborhood(maxNumNeighbors, maxNeighborSqDist);}
+            qMins = new double[numDims]; qMaxs = new double[numDims]; cellMins = new double[numDims]; cellMaxs = new double[numDims];
+            activeQs = new int[maxDepth + 1][numNbhds];
+        }
+    }//class KNNGraphScratch
+    
+    /**
+     * Find the neighbors of the query points at tree idxs [qLo, qHi) - either a leaf bucket or a single median point - 
+     * together, and write them to the graph's result buffers
+     */
+    private void findGraphNeighbors(int qLo, int qHi, boolean excludeSelf, KNNGraphScratch scr, int[] counts, int[] resIdxs, double[] resSqDists) {
+        int[] active = scr.activeQs[0];
+        for(int q=qLo;q<qHi;++q) {
+            scr.nbhds[q-qLo].reset();
+            active[q-qLo] = q;
+        }
+        for(int axis=0;axis<numDims;++axis) {
+            double[] c = coords[axis];
+            double min = c[qLo], max = min;
+            for(int q=qLo+1;q<qHi;++q) {
+                if(c[q] < min) {min = c[q];} else if (c[q] > max) {max = c[q];}
+            }
+            scr.qMins[axis] = min;
+            scr.qMaxs[axis] = max;
+        }
+        System.arraycopy(treeMins, 0, scr.cellMins, 0, numDims);
+        System.arraycopy(treeMaxs, 0, scr.cellMaxs, 0, numDims);
+        findGraphNeighbors(qLo, qHi - qLo, 0, numPts, 1, excludeSelf, scr);
+        int stride = scr.nbhds[0].getMaxNumNeighbors();
+        for(int q=qLo;q<qHi;++q) {
+            int row = srcIdxs[q] - srcIdxOffset;
+            counts[row] = scr.nbhds[q-qLo].copySortedTo(resIdxs, resSqDists, row * stride);
+            for(int i=0;i<counts[row];++i) {resIdxs[row * stride + i] -= srcIdxOffset;}
+        }
+    }//findGraphNeighbors
+    
+    /**
+     * help find the neighbors of the query points active at the parent depth within the subtree spanning [lo, hi), 
+     * whose cell bounds are in scr (should not be called by user). Query points whose pruning distance is nearer than 
+     * the cell are dropped, and the search of the subtree ends when none are left. Each query point's distance from 
+     * the cell is recomputed from every axis' bounds, rather than updated from its parent cell's distance, so that 
+     * rounding error cannot build up down the tree and wrongly prune a cell.
+     * @param qLo tree idx of first query point
+     * @param numParentActive # of query points active at depth - 1
+     * @param depth
+     */
+    private void findGraphNeighbors(int qLo, int numParentActive, int lo, int hi, int depth, boolean excludeSelf, KNNGraphScratch scr) {
+        if (hi <= lo) {return;}
+        int[] parentActive = scr.activeQs[depth - 1], active = scr.activeQs[depth];
+        double[] cellMins = scr.cellMins, cellMaxs = scr.cellMaxs;
+        int numActive = 0;
+        for(int a=0;a<numParentActive;++a) {
+            int q = parentActive[a];
+            if (calcCellSqDist(q, cellMins, cellMaxs) < scr.nbhds[q-qLo].getPruneSqDist()) {active[numActive++] = q;}
+        }
+        if (numActive == 0) {return;}
+        if (hi - lo <= builtLeafSize) {
+            for(int a=0;a<numActive;++a) {
+                int q = active[a];
+                KDIndexNeighborhood nbhd = scr.nbhds[q-qLo];
+                for(int i=lo;i<hi;++i) {
+                    if (excludeSelf && (q == i)) {continue;}
+                    nbhd.offer(srcIdxs[i], calcSqDist(q, i));
+                }
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        for(int a=0;a<numActive;++a) {
+            int q = active[a];
+            if (excludeSelf && (q == mid)) {continue;}
+            scr.nbhds[q-qLo].offer(srcIdxs[mid], calcSqDist(q, mid));
+        }
+        int axis = splitAxes[mid];
+        double splitVal = coords[axis][mid];
+        //search the child on the same side as the query box's center first
+        boolean leftFirst = (scr.qMins[axis] + scr.qMaxs[axis]) * 0.5 < splitVal;
+        for(int pass=0;pass<2;++pass) {
+            if (leftFirst == (pass == 0)) {
+                double oldBnd = cellMaxs[axis];
+                cellMaxs[axis] = splitVal;
+                findGraphNeighbors(qLo, numActive, lo, mid, depth + 1, excludeSelf, scr);
+                cellMaxs[axis] = oldBnd;
+            } else {
+                double oldBnd = cellMins[axis];
+                cellMins[axis] = splitVal;
+                findGraphNeighbors(qLo, numActive, mid + 1, hi, depth + 1, excludeSelf, scr);
+                cellMins[axis] = oldBnd;
+            }
+        }
+    }//findGraphNeighbors
+    
+    /**
+     * Get the square distance from the point at tree idx treeIdx to the nearest point of the cell with the given bounds
+     */
+    private double calcCellSqDist(int treeIdx, double[] cellMins, double[] cellMaxs) {
+        double res = 0, gap;
+        for(int axis=0;axis<numDims;++axis) {
+            double v = coords[axis][treeIdx];
+            gap = (v < cellMins[axis]) ? cellMins[axis] - v : ((v > cellMaxs[axis]) ? v - cellMaxs[axis] : 0);
+            res += gap * gap;
+        }
+        return res;
+    }//calcCellSqDist
+    
+    /**
+     * Get the square distance between the points at the two tree idxs
+     */
+    private double calcSqDist(int treeIdxA, int treeIdxB) {
+        double res = 0, diff;
+        for(int axis=0;axis<numDims;++axis) {
+            diff = coords[axis][treeIdxA] - coords[axis][treeIdxB];
+            res += diff * diff;
+        }
+        return res;
+    }//calcSqDist
+    
+    /**
+     * Task to build the kNN graph rows of the points in the subtree spanning [lo, hi), splitting it into its children 
+     * if it holds more than batchQueryCutoff points. Each point writes to its own disjoint range of the result buffers.
+     */
+    private class KNNGraphTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo, hi, maxNumNeighbors;
+        private final double maxNeighborSqDist;
+        private final boolean excludeSelf;
+        private final int[] counts, resIdxs;
+        private final double[] resSqDists;
+        
+        public KNNGraphTask(int _lo, int _hi, int _maxNumNeighbors, double _maxNeighborSqDist, boolean _excludeSelf, 
+                int[] _counts, int[] _resIdxs, double[] _resSqDists) {
+            lo = _lo; hi = _hi; maxNumNeighbors = _maxNumNeighbors; maxNeighborSqDist = _maxNeighborSqDist; excludeSelf = _excludeSelf;
+            counts = _counts; resIdxs = _resIdxs; resSqDists = _resSqDists;
+        }
+        
+        @Override
+        protected void compute() {
+            if ((hi - lo > batchQueryCutoff) && (hi - lo > builtLeafSize)) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new KNNGraphTask(lo, mid, maxNumNeighbors, maxNeighborSqDist, excludeSelf, counts, resIdxs, resSqDists),
+                        new KNNGraphTask(mid, mid + 1, maxNumNeighbors, maxNeighborSqDist, excludeSelf, counts, resIdxs, resSqDists),
+                        new KNNGraphTask(mid + 1, hi, maxNumNeighbors, maxNeighborSqDist, excludeSelf, counts, resIdxs, resSqDists));
+                return;
+            }
+            //depth of the implicit tree is < 64
+            KNNGraphScratch scr = new KNNGraphScratch(Math.min(builtLeafSize, hi - lo), maxNumNeighbors, maxNeighborSqDist, numDims, 64);
+            processSubtree(lo, hi, scr);
+        }
+        
+        /**
+         * Find the neighbors of every point in the subtree spanning [stLo, stHi) on this thread
+         */
+        private void processSubtree(int stLo, int stHi, KNNGraphScratch scr) {
+            if (stHi <= stLo) {return;}
+            if (stHi - stLo <= builtLeafSize) {
+                findGraphNeighbors(stLo, stHi, excludeSelf, scr, counts, resIdxs, resSqDists);
+                return;
+            }
+            int mid = (stLo + stHi) >>> 1;
+            findGraphNeighbors(mid, mid + 1, excludeSelf, scr, counts, resIdxs, resSqDists);
+            processSubtree(stLo, mid, scr);
+            processSubtree(mid + 1, stHi, scr);
+        }
+    }//class KNNGraphTask
+    
+    /**
+     * Find every pair of points within the given radius of each other, as {@link #findPairsInRadius(double, KDPairList, ForkJoinPool)}
+     * @param sqRadius square of the radius; pairs at a sq distance <= sqRadius are found
+     * @param pool pool to execute on, or null to execute on the calling thread
+     * @return a new list holding each pair found, exactly once
+     */
+    public final KDPairList findPairsInRadius(double sqRadius, ForkJoinPool pool) {return findPairsInRadius(sqRadius, new KDPairList(), pool);}
+    
+    /**
+     * Find every pair of points in this tree within the given radius of each other, exactly once, in parallel on the 
+     * common ForkJoinPool. See {@link #findPairsInRadius(double, KDPairList, ForkJoinPool)}
+     * @param sqRadius square of the radius; pairs at a sq distance <= sqRadius are found
+     * @param res list to receive the source indices and sq distance of each pair found. It is cleared first.
+     * @return res
+     */
+    public final KDPairList findPairsInRadius(double sqRadius, KDPairList res) {return findPairsInRadius(sqRadius, res, ForkJoinPool.commonPool());}
+    
+    /**
+     * Find every pair of points within the given radius of each other (a fixed-radius self-join), reporting each pair exactly 
+     * once with its smaller source index first. Pairs of subtrees are traversed together (a dual-tree traversal), and pairs 
+     * whose bounding boxes are further apart than the radius are pruned without visiting their points. The bounding boxes 
+     * of all subtrees are found by the first join after the tree is built or refit, and kept for later joins, using 
+     * 2 * numDims * numPts doubles. 
+     * 
+     * Subtrees and subtree pairs with more than batchQueryCutoff points are split into tasks on the passed pool. The tasks 
+     * depend only on the tree, and their pairs are gathered in task order, so the result, including its order, does not 
+     * depend on the pool or on timing.
+     * @param sqRadius square of the radius; pairs at a sq distance <= sqRadius are found
+     * @param res list to receive the source indices and sq distance of each pair found. It is cleared first.
+     * @param pool pool to execute on, or null to execute on the calling thread
+     * @return res
+     */
+    public final KDPairList findPairsInRadius(double sqRadius, KDPairList res, ForkJoinPool pool) {
+        res.clear();
+        if (numPts < 2) {return res;}
+        ensureNodeBoxes();
+        PairJoinTask task = new PairJoinTask(0, numPts, -1, -1, sqRadius, nodeBoxMins, nodeBoxMaxs);
+        if (pool == null) {task.compute();} else {pool.invoke(task);}
+        long numPairs = task.countPairs();
+        if (numPairs > (Integer.MAX_VALUE - 8) >> 1) {
+            System.out.println("Array KD Tree cannot hold the "+numPairs+" pairs found within a sq radius of "+sqRadius+". Aborting.");
+            return res;
+        }
+        res.ensureCapacity((int) numPairs);
+        task.appendPairsTo(res);
+        return res;
+    }//findPairsInRadius
+    
+    /**
+     * Get the tree idx that the bounds of the non-empty subtree spanning [lo, hi) are stored at by {@link #calcNodeBoxes} : 
+     * its median if it is split, or its first point if it is a leaf bucket. No two subtrees share an idx.
+     */
+    private int getNodeBoxIdx(int lo, int hi) {return (hi - lo <= builtLeafSize) ? lo : (lo + hi) >>> 1;}
+    
+    /**
+     * Find the bounding boxes of all subtrees if they have not been found since the tree was last built or refit, 
+     * reusing their arrays if the tree's size has not changed. Synchronized so that concurrent joins find them once.
+     */
+    private synchronized void ensureNodeBoxes() {
+        if (nodeBoxesValid) {return;}
+        if ((nodeBoxMins == null) || (nodeBoxMins.length != numDims) || (nodeBoxMins[0].length != numPts)) {
+            nodeBoxMins = new double[numDims][numPts];
+            nodeBoxMaxs = new double[numDims][numPts];
+        }
+        calcNodeBoxes(0, numPts, nodeBoxMins, nodeBoxMaxs);
+        nodeBoxesValid = true;
+    }//ensureNodeBoxes
+    
+    /**
+     * Mark the subtree bounding boxes as stale, after the tree's points have been rebuilt or moved
+     */
+    private synchronized void invalidateNodeBoxes() {nodeBoxesValid = false;}
+    
+    /**
+     * Find the bounding box of every non-empty subtree within the subtree spanning [lo, hi), bottom up
+     * @param boxMins destination for the per-axis minimum of each subtree : boxMins[axis][boxIdx]
+     * @param boxMaxs destination for the per-axis maximum of each subtree : boxMaxs[axis][boxIdx]
+     */
+    private void calcNodeBoxes(int lo, int hi, double[][] boxMins, double[][] boxMaxs) {
+        if (hi <= lo) {return;}
+        if (hi - lo <= builtLeafSize) {
+            for(int axis=0;axis<numDims;++axis) {
+                double[] c = coords[axis];
+                double min = c[lo], max = min;
+                for(int i=lo+1;i<hi;++i) {
+                    if(c[i] < min) {min = c[i];} else if (c[i] > max) {max = c[i];}
+                }
+                boxMins[axis][lo] = min;
+                boxMaxs[axis][lo] = max;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        calcNodeBoxes(lo, mid, boxMins, boxMaxs);
+        calcNodeBoxes(mid + 1, hi, boxMins, boxMaxs);
+        //left child is never empty
+        int leftIdx = getNodeBoxIdx(lo, mid), rightIdx = (hi > mid + 1 ? getNodeBoxIdx(mid + 1, hi) : -1);
+        for(int axis=0;axis<numDims;++axis) {
+            double[] mins = boxMins[axis], maxs = boxMaxs[axis];
+            double v = coords[axis][mid];
+            double min = Math.min(v, mins[leftIdx]), max = Math.max(v, maxs[leftIdx]);
+            if (rightIdx >= 0) {
+                min = Math.min(min, mins[rightIdx]);
+                max = Math.max(max, maxs[rightIdx]);
+            }
+            mins[mid] = min;
+            maxs[mid] = max;
+        }
+    }//calcNodeBoxes
+    
+    /**
+     * Task to find the pairs of points within a radius either in the subtree spanning [aLo, aHi) (when bLo is -1) or with 
+     * one point in each of the disjoint subtrees spanning [aLo, aHi) and [bLo, bHi). Joins of more than batchQueryCutoff 
+     * points are split as the sequential join would be : the pairs of the median point are found by this task, and the 
+     * rest by a fixed list of subtasks. Each task owns its result list, so no synchronization is needed, and the lists 
+     * are gathered in task order once all are done.
+     */
+    private class PairJoinTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int aLo, aHi, bLo, bHi;
+        private final double sqRadius;
+        /**
+         * bounding boxes of the tree's subtrees, by {@link #getNodeBoxIdx(int, int)}
+         */
+        private final double[][] boxMins, boxMaxs;
+        /**
+         * pairs found by this task itself, or null if none, and the subtasks it split into, or null if none
+         */
+        private KDPairList res;
+        private PairJoinTask[] subTasks;
+        /**
+         * location of the point being joined to a block, and its sq distances from the block's points
+         */
+        private double[] pos, sqDists;
+        
+        public PairJoinTask(int _aLo, int _aHi, int _bLo, int _bHi, double _sqRadius, double[][] _boxMins, double[][] _boxMaxs) {
+            aLo = _aLo; aHi = _aHi; bLo = _bLo; bHi = _bHi; sqRadius = _sqRadius; boxMins = _boxMins; boxMaxs = _boxMaxs;
+        }
+        
+        @Override
+        protected void compute() {
+            if ((aHi <= aLo) || ((bLo >= 0) && ((bHi <= bLo) || (calcBoxSqDist(getNodeBoxIdx(aLo, aHi), getNodeBoxIdx(bLo, bHi)) > sqRadius)))) {return;}
+            res = new KDPairList(16);
+            pos = new double[numDims];
+            sqDists = new double[Math.min(numPts, builtLeafSize)];
+            if (bLo < 0) {
+                if ((aHi - aLo <= batchQueryCutoff) || (aHi - aLo <= builtLeafSize)) {
+                    joinSubtree(aLo, aHi);
+                } else {
+                    int mid = (aLo + aHi) >>> 1;
+                    joinPtToSubtree(mid, aLo, mid);
+                    joinPtToSubtree(mid, mid + 1, aHi);
+                    subTasks = new PairJoinTask[] {
+                            new PairJoinTask(aLo, mid, -1, -1, sqRadius, boxMins, boxMaxs),
+                            new PairJoinTask(mid + 1, aHi, -1, -1, sqRadius, boxMins, boxMaxs),
+                            new PairJoinTask(aLo, mid, mid + 1, aHi, sqRadius, boxMins, boxMaxs)};
+                }
+            } else if ((aHi - aLo + bHi - bLo <= batchQueryCutoff) || ((aHi - aLo <= builtLeafSize) && (bHi - bLo <= builtLeafSize))) {
+                joinSubtrees(aLo, aHi, bLo, bHi);
+            } else if (isSplitFirst(aLo, aHi, bLo, bHi)) {
+                int mid = (aLo + aHi) >>> 1;
+                joinPtToSubtree(mid, bLo, bHi);
+                subTasks = new PairJoinTask[] {
+                        new PairJoinTask(aLo, mid, bLo, bHi, sqRadius, boxMins, boxMaxs),
+                        new PairJoinTask(mid + 1, aHi, bLo, bHi, sqRadius, boxMins, boxMaxs)};
+            } else {
+                int mid = (bLo + bHi) >>> 1;
+                joinPtToSubtree(mid, aLo, aHi);
+                subTasks = new PairJoinTask[] {
+                        new PairJoinTask(aLo, aHi, bLo, mid, sqRadius, boxMins, boxMaxs),
+                        new PairJoinTask(aLo, aHi, mid + 1, bHi, sqRadius, boxMins, boxMaxs)};
+            }
+            //tasks are kept until their pairs are gathered, so drop what is no longer needed
+            pos = null;
+            sqDists = null;
+            if (res.isEmpty()) {res = null;}
+            if (subTasks != null) {invokeAll(subTasks);}
+        }
+        
+        /**
+         * Find the pairs of points in the subtree spanning [lo, hi) on this thread
+         */
+        private void joinSubtree(int lo, int hi) {
+            if (hi - lo <= builtLeafSize) {
+                for(int i=lo;i<hi-1;++i) {joinPtToBlock(i, i + 1, hi);}
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            joinPtToSubtree(mid, lo, mid);
+            joinPtToSubtree(mid, mid + 1, hi);
+            joinSubtree(lo, mid);
+            joinSubtree(mid + 1, hi);
+            joinSubtrees(lo, mid, mid + 1, hi);
+        }//joinSubtree
+        
+        /**
+         * Find the pairs of points with one point in each of the disjoint subtrees spanning [aLo, aHi) and [bLo, bHi) on this thread
+         */
+        private void joinSubtrees(int aLo, int aHi, int bLo, int bHi) {
+            if ((aHi <= aLo) || (bHi <= bLo)) {return;}
+            int aBoxIdx = getNodeBoxIdx(aLo, aHi), bBoxIdx = getNodeBoxIdx(bLo, bHi);
+            if (calcBoxSqDist(aBoxIdx, bBoxIdx) > sqRadius) {return;}
+            if ((aHi - aLo <= builtLeafSize) && (bHi - bLo <= builtLeafSize)) {
+                for(int i=aLo;i<aHi;++i) {
+                    if (calcPtBoxSqDist(i, bBoxIdx) <= sqRadius) {joinPtToBlock(i, bLo, bHi);}
+                }
+                return;
+            }
+            if (isSplitFirst(aLo, aHi, bLo, bHi)) {
+                int mid = (aLo + aHi) >>> 1;
+                joinPtToSubtree(mid, bLo, bHi);
+                joinSubtrees(aLo, mid, bLo, bHi);
+                joinSubtrees(mid + 1, aHi, bLo, bHi);
+            } else {
+                int mid = (bLo + bHi) >>> 1;
+                joinPtToSubtree(mid, aLo, aHi);
+                joinSubtrees(aLo, aHi, bLo, mid);
+                joinSubtrees(aLo, aHi, mid + 1, bHi);
+            }
+        }//joinSubtrees
+        
+        /**
+         * Find the points in the subtree spanning [lo, hi) within the radius of the point at tree idx p, which is not in it
+         */
+        private void joinPtToSubtree(int p, int lo, int hi) {
+            if ((hi <= lo) || (calcPtBoxSqDist(p, getNodeBoxIdx(lo, hi)) > sqRadius)) {return;}
+            if (hi - lo <= builtLeafSize) {
+                joinPtToBlock(p, lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            double sqDist = calcSqDist(p, mid);
+            if (sqDist <= sqRadius) {res.add(srcIdxs[p], srcIdxs[mid], sqDist);}
+            joinPtToSubtree(p, lo, mid);
+            joinPtToSubtree(p, mid + 1, hi);
+        }//joinPtToSubtree
+        
+        /**
+         * Find the points in the block [lo, hi) within the radius of the point at tree idx p, which is not in it
+         */
+        private void joinPtToBlock(int p, int lo, int hi) {
+            for(int axis=0;axis<numDims;++axis) {pos[axis] = coords[axis][p];}
+            KDDistKernels.calcSqDists(coords, numDims, lo, hi, pos, sqDists);
+            for(int i=lo;i<hi;++i) {if(sqDists[i - lo] <= sqRadius) {res.add(srcIdxs[p], srcIdxs[i], sqDists[i - lo]);}}
+        }//joinPtToBlock
+        
+        /**
+         * Whether the join of the subtrees spanning [aLo, aHi) and [bLo, bHi) should split the first of them : the larger, 
+         * unless it is a leaf bucket
+         */
+        private boolean isSplitFirst(int aLo, int aHi, int bLo, int bHi) {
+            return (bHi - bLo <= builtLeafSize) || ((aHi - aLo > builtLeafSize) && (aHi - aLo >= bHi - bLo));
+        }
+        
+        /**
+         * Get the square distance between the nearest points of the bounding boxes at the two box idxs
+         */
+        private double calcBoxSqDist(int aBoxIdx, int bBoxIdx) {
+            double res = 0;
+            for(int axis=0;axis<numDims;++axis) {
+                double[] mins = boxMins[axis], maxs = boxMaxs[axis];
+                double gap = Math.max(mins[aBoxIdx] - maxs[bBoxIdx], mins[bBoxIdx] - maxs[aBoxIdx]);
+                if (gap > 0) {res += gap * gap;}
+            }
+            return res;
+        }//calcBoxSqDist
+        
+        /**
+         * Get the square distance between the point at tree idx p and the nearest point of the bounding box at the box idx
+         */
+        private double calcPtBoxSqDist(int p, int boxIdx) {
+            double res = 0;
+            for(int axis=0;axis<numDims;++axis) {
+                double v = coords[axis][p], gap = Math.max(boxMins[axis][boxIdx] - v, v - boxMaxs[axis][boxIdx]);
+                if (gap > 0) {res += gap * gap;}
+            }
+            return res;
+        }//calcPtBoxSqDist
+        
+        /**
+         * Get the # of pairs found by this task and its subtasks
+         */
+        private long countPairs() {
+            long numPairs = (res == null ? 0 : res.size());
+            if (subTasks != null) {for(PairJoinTask task : subTasks) {numPairs += task.countPairs();}}
+            return numPairs;
+        }
+        
+        /**
+         * Append the pairs found by this task and its subtasks, in order, to dest
+         */
+        private void appendPairsTo(KDPairList dest) {
+            if (res != null) {dest.addAll(res);}
+            if (subTasks != null) {for(PairJoinTask task : subTasks) {task.appendPairsTo(dest);}}
+        }
+    }//class PairJoinTask
+    
+    /**
+     * Save this tree to a compact binary file : its node order, split axes, coordinates and the source index of each point. 
+     * The file can be memory-mapped by {@link base_Utils_Objects.kdTree.MappedKDTree#loadTree(String)} and queried without 
+     * being rebuilt. See {@link Base_BufferKDTree#FILE_HEADER_SIZE} for the layout.
+     * @param fileName fully qualified name of the file; it is overwritten if it exists
+     * @return success
+     */
+    public final boolean saveTree(String fileName) {
+        if (numPts == 0) {
+            System.out.println("Array KD Tree has not been built so cannot be saved. Aborting.");
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), 
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 20).order(Base_BufferKDTree.FILE_BYTE_ORDER);
+            buf.putInt(Base_BufferKDTree.FILE_MAGIC).putInt(Base_BufferKDTree.FILE_VERSION).putInt(numDims).putInt(numPts).putInt(builtLeafSize).putInt(0);
+            for(int axis=0;axis<numDims;++axis) {buf.putDouble(treeMins[axis]);}
+            for(int axis=0;axis<numDims;++axis) {buf.putDouble(treeMaxs[axis]);}
+            for(int axis=0;axis<numDims;++axis) {
+                double[] c = coords[axis];
+                for(int i=0;i<numPts;++i) {
+                    if(buf.remaining() < 8) {writeBuf(channel, buf);}
+                    buf.putDouble(c[i]);
+                }
+            }
+            for(int i=0;i<numPts;++i) {
+                if(buf.remaining() < 4) {writeBuf(channel, buf);}
+                buf.putInt(srcIdxs[i]);
+            }
+            for(int i=0;i<numPts;++i) {
+                if(!buf.hasRemaining()) {writeBuf(channel, buf);}
+                buf.put(splitAxes[i]);
+            }
+            writeBuf(channel, buf);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Saving Array KD Tree of "+numPts+" points to "+fileName+" failed.");
+            return false;
+        }
+    }//saveTree
+    
+    /**
+     * Write the contents of buf to the channel and clear it
+     */
+    private static void writeBuf(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {channel.write(buf);}
+        buf.clear();
+    }//writeBuf
+
+    //////////////////////////////
+    // Getters and setters
+
+    
+}//class Base_ArrayKDTree
@@ -0,0 +1,178 @@
+package base_Utils_Objects.kdTree.base;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Read-only pointerless kd-tree whose arrays are held in nio buffers rather than on the java heap, for instance
+ * when mapped from a file. The layout, build and queries are those of {@link Base_ImplicitKDTree}, reading and
+ * writing the points through the buffers.
+ *
+ * Since a single nio buffer can hold at most Integer.MAX_VALUE elements, each array is split into chunks
+ * of (1 << chunkShift) points. Queries only use absolute buffer reads, so a tree can be queried by multiple
+ * threads concurrently.
+ *
+ * Closing a tree does not free its memory itself : it only drops the tree's references to its buffers, and a buffer's
+ * memory (or file mapping) is released when the garbage collector collects the buffer object, some time after close.
+ * A closed tree holds no points, and cannot be queried.
+ *
+ * @author John Turner
+ *
+ */
+public abstract class Base_BufferKDTree extends Base_ImplicitKDTree implements AutoCloseable {
+    /**
+     * Identifies a saved array kd-tree file ("KDT1")
+     */
+    public static final int FILE_MAGIC = 0x4B445431;
+    /**
+     * Version of the saved array kd-tree file format
+     */
+    public static final int FILE_VERSION = 1;
+    /**
+     * Byte order of saved array kd-tree files
+     */
+    public static final ByteOrder FILE_BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    /**
+     * # of bytes in the fixed part of a saved file's header : magic, version, numDims, numPts, leafSize and padding.
+     * It is followed by the per-axis tree mins and maxs, then each axis' coordinates in tree order, then the source
+     * indices of the points in tree order, then the split axis of each point (-1 for leaf points).
+     */
+    public static final int FILE_HEADER_SIZE = 24;
+    /**
+     * Default log2 of the # of points per buffer chunk
+     */
+    public static final int DEFAULT_CHUNK_SHIFT = 24;
+
+    /**
+     * log2 of the # of points in each chunk, and the mask to find a point's idx within its chunk
+     */
+    protected final int chunkShift, chunkMask;
+    /**
+     * Point coordinates, per-axis and chunked : tree idx i's axis value is at coords[axis][i >>> chunkShift].get(i & chunkMask)
+     */
+    protected final DoubleBuffer[][] coords;
+    /**
+     * Source index of the point at each tree idx, chunked
+     */
+    protected final IntBuffer[] srcIdxs;
+    /**
+     * Split axis of the point at each tree idx, or -1 if it is in a leaf bucket, chunked
+     */
+    protected final ByteBuffer[] splitAxes;
+    /**
+     * Whether this tree has been closed
+     */
+    protected boolean isClosed;
+
+    /**
+     * @param _numDims
+     * @param _numPts
+     * @param _leafSize
+     * @param _treeMins
+     * @param _treeMaxs
+     * @param _chunkShift
+     * @param _coords
+     * @param _srcIdxs
+     * @param _splitAxes
+     */
+    public Base_BufferKDTree(int _numDims, int _numPts, int _leafSize, double[] _treeMins, double[] _treeMaxs,
+            int _chunkShift, DoubleBuffer[][] _coords, IntBuffer[] _srcIdxs, ByteBuffer[] _splitAxes) {
+        super();
+        numDims = _numDims;
+        numPts = _numPts;
+        leafSize = _leafSize;
+        builtLeafSize = _leafSize;
+        treeMins = _treeMins;
+        treeMaxs = _treeMaxs;
+        chunkShift = _chunkShift;
+        chunkMask = (1 << chunkShift) - 1;
+        coords = _coords;
+        srcIdxs = _srcIdxs;
+        splitAxes = _splitAxes;
+        isClosed = false;
+    }//ctor
+
+    /**
+     * # of chunks needed to hold numPts points with chunks of (1 << chunkShift) points
+     * @param numPts
+     * @param chunkShift
+     * @return
+     */
+    public static int calcNumChunks(int numPts, int chunkShift) {return (int) ((numPts + (1L << chunkShift) - 1) >>> chunkShift);}
+
+    /**
+     * # of points in chunk c of an array of numPts points with chunks of (1 << chunkShift) points
+     * @param numPts
+     * @param chunkShift
+     * @param c
+     * @return
+     */
+    public static int calcChunkSize(int numPts, int chunkShift, int c) {return (int) Math.min(1L << chunkShift, numPts - ((long) c << chunkShift));}
+
+    @Override
+    protected final double getCoord(int axis, int treeIdx) {return coords[axis][treeIdx >>> chunkShift].get(treeIdx & chunkMask);}
+    @Override
+    protected final int getSrcIdx(int treeIdx) {return srcIdxs[treeIdx >>> chunkShift].get(treeIdx & chunkMask);}
+    @Override
+    protected final int getSplitAxis(int treeIdx) {return splitAxes[treeIdx >>> chunkShift].get(treeIdx & chunkMask);}
+    @Override
+    protected final void setSplitAxis(int treeIdx, int axis) {splitAxes[treeIdx >>> chunkShift].put(treeIdx & chunkMask, (byte) axis);}
+    protected final void setCoord(int axis, int treeIdx, double val) {coords[axis][treeIdx >>> chunkShift].put(treeIdx & chunkMask, val);}
+    protected final void setSrcIdx(int treeIdx, int srcIdx) {srcIdxs[treeIdx >>> chunkShift].put(treeIdx & chunkMask, srcIdx);}
+
+    /**
+     * Swap the points at the two tree idxs. Only valid for trees whose buffers are writable.
+     */
+    @Override
+    protected final void swapPts(int i, int j) {
+        for(int axis=0;axis<numDims;++axis) {
+            double tmp = getCoord(axis, i);
+            setCoord(axis, i, getCoord(axis, j));
+            setCoord(axis, j, tmp);
+        }
+        int tmpIdx = getSrcIdx(i);
+        setSrcIdx(i, getSrcIdx(j));
+        setSrcIdx(j, tmpIdx);
+    }//swapPts
+
+    /**
+     * Drop this tree's references to its buffers, so their memory can be released when the garbage collector collects
+     * them; this call frees no memory itself. Must not be called while the tree is being queried.
+     */
+    @Override
+    public void close() {
+        numPts = 0;
+        isClosed = true;
+        for(DoubleBuffer[] axisCoords : coords) {Arrays.fill(axisCoords, null);}
+        Arrays.fill(srcIdxs, null);
+        Arrays.fill(splitAxes, null);
+    }//close
+
+    /**
+     * A buffer tree can only be queried once it has been built and until it is closed. Querying it at any other time
+     * finds nothing and reports why, rather than reading unbuilt or dropped buffers.
+     */
+    @Override
+    protected final boolean isQueryable() {
+        if (isClosed) {
+            System.out.println("Buffer KD Tree has been closed, so cannot be queried. Aborting.");
+            return false;
+        }
+        if (!isBuilt()) {
+            if (numPts > 0) {System.out.println("Buffer KD Tree has not been built yet, so cannot be queried. Aborting.");}
+            return false;
+        }
+        return true;
+    }//isQueryable
+
+    //////////////////////////////
+    // Getters
+
+    public final boolean isClosed() {return isClosed;}
+    public final double getTreeMin(int axis) {return treeMins[axis];}
+    public final double getTreeMax(int axis) {return treeMaxs[axis];}
+
+}//class Base_BufferKDTree
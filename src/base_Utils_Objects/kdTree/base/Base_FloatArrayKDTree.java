@@ -0,0 +1,173 @@
+package base_Utils_Objects.kdTree.base;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Single precision version of Base_ArrayKDTree : a pointerless, array-backed kd-tree whose point coordinates are
+ * held as floats, halving the memory footprint and bandwidth of the tree. The layout, build and queries are those
+ * of {@link Base_ImplicitKDTree}.
+ *
+ * Query locations are doubles, and every distance is computed in double precision from the float coordinates,
+ * so no precision is lost beyond the rounding of the stored coordinates and distances are never compared across
+ * precisions. Reported distances are from the stored (rounded) coordinates.
+ *
+ * Once built, the tree is read-only and any number of threads may query it concurrently, each with its own
+ * neighborhood.
+ *
+ * @author John Turner
+ *
+ */
+public abstract class Base_FloatArrayKDTree extends Base_ImplicitKDTree {
+    /**
+     * Point coordinates, in tree order, per axis : coords[axis][treeIdx]
+     */
+    protected float[][] coords;
+    /**
+     * Index in the source data of the point at each tree idx
+     */
+    protected int[] srcIdxs;
+    /**
+     * Split axis of the subtree whose median point is at each tree idx; -1 if the point is in a leaf.
+     */
+    protected byte[] splitAxes;
+
+    /**
+     * @param _maxNumNeighbors Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     * @param _maxNeighborSqDist Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     */
+    public Base_FloatArrayKDTree(int _maxNumNeighbors, double _maxNeighborSqDist) {
+        super(_maxNumNeighbors, _maxNeighborSqDist);
+    }//ctor
+
+    /**
+     * Get the position value for the given axis of the source point with the given index. Only called while
+     * building or refitting the tree.
+     * @param srcIdx index of point in source data
+     * @param axis
+     * @return
+     */
+    protected abstract float getSrcPosVal(int srcIdx, int axis);
+
+    /**
+     * Build the tree from the source data.
+     * @param _numPts # of points in the source data
+     * @param _numDims # of position values/axes of each point
+     */
+    protected final void buildTree(int _numPts, int _numDims) {
+        if(!initTreeArrays(_numPts, _numDims)) {return;}
+        buildSubtrees(null);
+        sortLeavesByCurve();
+    }//buildTree
+
+    /**
+     * Build the tree from the source data, building independent subtrees in parallel on the passed pool.
+     * @param _numPts # of points in the source data
+     * @param _numDims # of position values/axes of each point
+     * @param pool
+     */
+    protected final void buildTree(int _numPts, int _numDims, ForkJoinPool pool) {
+        if(!initTreeArrays(_numPts, _numDims)) {return;}
+        buildSubtrees(pool);
+        sortLeavesByCurve();
+    }//buildTree
+
+    /**
+     * Allocate this tree's arrays and load the source data into them, in source order
+     * @return whether the arrays were successfully built
+     */
+    private boolean initTreeArrays(int _numPts, int _numDims) {
+        if(_numDims > Byte.MAX_VALUE) {
+            System.out.println("Float Array KD Tree supports at most "+Byte.MAX_VALUE+" dimensions but "+_numDims+" requested. Aborting.");
+            return false;
+        }
+        numPts = _numPts;
+        numDims = _numDims;
+        coords = new float[numDims][numPts];
+        srcIdxs = new int[numPts];
+        splitAxes = new byte[numPts];
+        Arrays.fill(splitAxes, (byte) -1);
+        for(int i=0;i<numPts;++i) {
+            srcIdxs[i] = i;
+            for(int axis=0;axis<numDims;++axis) {coords[axis][i] = getSrcPosVal(i, axis);}
+        }
+        calcTreeBounds();
+        return true;
+    }//initTreeArrays
+
+    /**
+     * Calculate the per-axis bounds of all the points in this tree
+     */
+    protected final void calcTreeBounds() {
+        if((treeMins == null) || (treeMins.length != numDims)) {
+            treeMins = new double[numDims];
+            treeMaxs = new double[numDims];
+        }
+        for(int axis=0;axis<numDims;++axis) {
+            float[] c = coords[axis];
+            float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+            for(int i=0;i<numPts;++i) {
+                float v = c[i];
+                if(v < min) {min = v;}
+                if(v > max) {max = v;}
+            }
+            treeMins[axis] = min;
+            treeMaxs[axis] = max;
+        }
+    }//calcTreeBounds
+
+    /**
+     * Refit this tree in place after its source points have moved, reusing all of its storage. Coordinates are re-read
+     * from the source in the current tree order, then the subtrees are refit as described in
+     * {@link Base_ImplicitKDTree#refitSubtrees()}. The set of source points must not have changed since the tree was built.
+     * Not safe to call concurrently with queries.
+     * @return # of subtrees that were rebuilt from scratch
+     */
+    protected final int refitTree() {
+        if (numPts == 0) {return 0;}
+        for(int axis=0;axis<numDims;++axis) {
+            float[] c = coords[axis];
+            for(int i=0;i<numPts;++i) {c[i] = getSrcPosVal(srcIdxs[i], axis);}
+        }
+        calcTreeBounds();
+        return refitSubtrees();
+    }//refitTree
+
+    /**
+     * Swap the points at the two tree idxs
+     */
+    @Override
+    protected final void swapPts(int i, int j) {
+        for(int axis=0;axis<numDims;++axis) {
+            float[] c = coords[axis];
+            float tmp = c[i]; c[i] = c[j]; c[j] = tmp;
+        }
+        int tmpIdx = srcIdxs[i]; srcIdxs[i] = srcIdxs[j]; srcIdxs[j] = tmpIdx;
+    }//swapPts
+
+    /**
+     * Get the square distance, in double precision, of the point at the given tree idx from the passed point
+     */
+    @Override
+    protected final double calcSqDist(double[] pos, int treeIdx) {
+        double res = 0, diff;
+        for(int axis=0;axis<numDims;++axis) {
+            diff = pos[axis] - coords[axis][treeIdx];
+            res += diff * diff;
+        }
+        return res;
+    }//calcSqDist
+
+    @Override
+    protected final void calcSqDists(double[] pos, int lo, int hi, double[] res) {KDDistKernels.calcSqDists(coords, numDims, lo, hi, pos, res);}
+
+    @Override
+    protected final double getCoord(int axis, int treeIdx) {return coords[axis][treeIdx];}
+    @Override
+    protected final int getSrcIdx(int treeIdx) {return srcIdxs[treeIdx];}
+    @Override
+    protected final int getSplitAxis(int treeIdx) {return splitAxes[treeIdx];}
+    @Override
+    protected final void setSplitAxis(int treeIdx, int axis) {splitAxes[treeIdx] = (byte) axis;}
+
+}//class Base_FloatArrayKDTree
@@ -0,0 +1,1053 @@
+package base_Utils_Objects.kdTree.base;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import base_Utils_Objects.kdTree.query.KDApproxSearchStats;
+import base_Utils_Objects.kdTree.query.KDIndexList;
+import base_Utils_Objects.kdTree.query.KDIndexNeighborhood;
+import base_Utils_Objects.kdTree.query.KDRangeVisitor;
+import base_Utils_Objects.kdTree.query.KDTreeStats;
+
+/**
+ * This class is the base of every pointerless kd-tree, whatever its points are stored in. No node objects are built;
+ * instead the tree is implicit in the order of the points it holds : the subtree spanning the range [lo, hi) of the
+ * point storage has its splitting (median) point at (lo+hi)/2, its left subtree in [lo, mid) and its right subtree in
+ * [mid+1, hi). Subtrees of at most leafSize points are not split, but are kept as leaf buckets that are scanned linearly.
+ *
+ * The build and the queries here only reach the points through the accessors below, so they are shared by trees
+ * whose coordinates are held in double or float arrays or in nio buffers. Leaf buckets are scanned a block at a time
+ * by {@link #calcSqDists(double[], int, int, double[])}, which array-backed trees implement with a vectorizable kernel.
+ *
+ * Once built, the tree is read-only and any number of threads may query it concurrently, each with its own
+ * neighborhood.
+ *
+ * @author John Turner
+ *
+ */
+public abstract class Base_ImplicitKDTree {
+    /**
+     * # of position values/axes of every point in this tree
+     */
+    protected int numDims;
+    /**
+     * # of points in this tree
+     */
+    protected int numPts;
+    /**
+     * Per-axis min and max position values of all points in this tree - the bounds of the root cell
+     */
+    protected double[] treeMins, treeMaxs;
+    /**
+     * Default maximum # of points in a leaf bucket
+     */
+    public static final int DEFAULT_LEAF_SIZE = 16;
+    /**
+     * Subtrees with this many points or fewer are leaf buckets, which are not split further and are scanned
+     * linearly over their contiguous coordinates when queried
+     */
+    protected int leafSize = DEFAULT_LEAF_SIZE;
+    /**
+     * Leaf size the current tree was built with. Queries and refits use this rather than {@link #leafSize}, so that
+     * changing the leaf size of a built tree only takes effect when it is rebuilt.
+     */
+    protected int builtLeafSize = DEFAULT_LEAF_SIZE;
+    /**
+     * During a parallel build, subtrees with more than this many points have their children built as separate tasks
+     */
+    protected int parallelBuildCutoff = 10000;
+    /**
+     * Rule used to choose the axis each subtree splits its points along
+     */
+    protected KDSplitRule splitRule = KDSplitRule.WidestSpread;
+    /**
+     * Trees with no more than this many points are searched by a single block scan of all their points rather than by traversal
+     */
+    protected int bruteForceCutoff = 64;
+    /**
+     * During a parallel batch query, ranges of more than this many queries are split into separate tasks
+     */
+    protected int batchQueryCutoff = 256;
+    /**
+     * During a refit, a subtree is rebuilt from scratch if the score of its split axis has fallen below this 
+     * fraction of the best axis' score
+     */
+    protected double refitDegradeRatio = 0.5;
+    /**
+     * Space-filling curve the queries of a batch query, and the points within each leaf bucket of trees that reorder their
+     * storage once built, are ordered along, so that successive leaf scans and queries touch neighboring memory
+     */
+    protected KDSpaceFillingCurve curveOrder = KDSpaceFillingCurve.None;
+    /**
+     * Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     */
+    protected double maxNeighborSqDist;
+    /**
+     * Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     */
+    protected int maxNumNeighbors;
+
+    /**
+     * Build a tree whose neighborhoods hold the single nearest point, at any distance
+     */
+    public Base_ImplicitKDTree() {this(1, Double.MAX_VALUE);}
+
+    /**
+     * @param _maxNumNeighbors Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     * @param _maxNeighborSqDist Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     */
+    public Base_ImplicitKDTree(int _maxNumNeighbors, double _maxNeighborSqDist) {
+        numDims = 0;
+        numPts = 0;
+        maxNumNeighbors = _maxNumNeighbors;
+        maxNeighborSqDist = _maxNeighborSqDist;
+    }//ctor
+
+    /**
+     * Get the position value for the given axis of the point at the given tree idx
+     * @param axis
+     * @param treeIdx
+     * @return
+     */
+    protected abstract double getCoord(int axis, int treeIdx);
+
+    /**
+     * Get the index in the source data of the point at the given tree idx
+     * @param treeIdx
+     * @return
+     */
+    protected abstract int getSrcIdx(int treeIdx);
+
+    /**
+     * Get the split axis of the subtree whose median point is at the given tree idx; -1 if the point is in a leaf.
+     * @param treeIdx
+     * @return
+     */
+    protected abstract int getSplitAxis(int treeIdx);
+
+    /**
+     * Set the split axis of the subtree whose median point is at the given tree idx. Only called while building the tree.
+     * @param treeIdx
+     * @param axis
+     */
+    protected abstract void setSplitAxis(int treeIdx, int axis);
+
+    /**
+     * Swap the points at the two tree idxs. Only called while building the tree.
+     * @param i
+     * @param j
+     */
+    protected abstract void swapPts(int i, int j);
+
+    /**
+     * Get the square distance of the point at the given tree idx from the passed point
+     * @param pos
+     * @param treeIdx
+     * @return
+     */
+    protected double calcSqDist(double[] pos, int treeIdx) {
+        double res = 0, diff;
+        for(int axis=0;axis<numDims;++axis) {
+            diff = pos[axis] - getCoord(axis, treeIdx);
+            res += diff * diff;
+        }
+        return res;
+    }//calcSqDist
+
+    /**
+     * Calculate the squared distances from pos to each of the points in the block of tree idxs [lo, hi)
+     * @param pos query location
+     * @param lo
+     * @param hi
+     * @param res destination : the distance to point i is written to res[i - lo]. Must hold at least hi - lo values
+     */
+    protected void calcSqDists(double[] pos, int lo, int hi, double[] res) {
+        for(int i=lo;i<hi;++i) {res[i - lo] = calcSqDist(pos, i);}
+    }//calcSqDists
+
+    /**
+     * Build the tree over the points already loaded into its storage in source order, and whose tree bounds are set.
+     * @param pool pool to build independent subtrees on in parallel, or null to build on the calling thread
+     */
+    protected final void buildSubtrees(ForkJoinPool pool) {
+        builtLeafSize = leafSize;
+        if (pool == null) {    buildSubtree(0, numPts, 0);}
+        else {                pool.invoke(new ImplicitKDBuildTask(0, numPts, 0));}
+    }//buildSubtrees
+
+    /**
+     * Recursively build the subtree spanning [lo, hi) by partitioning about the median of its split axis
+     * @param lo
+     * @param hi
+     * @param depth depth of subtree's root
+     */
+    protected final void buildSubtree(int lo, int hi, int depth) {
+        if (hi - lo <= builtLeafSize) {return;}
+        int mid = partitionSubtree(lo, hi, depth);
+        buildSubtree(lo, mid, depth + 1);
+        buildSubtree(mid + 1, hi, depth + 1);
+    }//buildSubtree
+
+    /**
+     * Partition the subtree spanning [lo, hi) about the median of its split axis, and record the split axis
+     * @param lo
+     * @param hi
+     * @param depth depth of subtree's root
+     * @return tree idx of median
+     */
+    protected final int partitionSubtree(int lo, int hi, int depth) {
+        int axis = findSplitAxis(lo, hi, depth);
+        int mid = (lo + hi) >>> 1;
+        selectMedian(lo, hi - 1, mid, axis);
+        setSplitAxis(mid, axis);
+        return mid;
+    }//partitionSubtree
+
+    /**
+     * Task to build the subtree spanning [lo, hi), forking the build of its children if it is larger than parallelBuildCutoff.
+     * Subtrees occupy disjoint ranges of the tree's storage, so no synchronization is needed.
+     */
+    private class ImplicitKDBuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo, hi, depth;
+
+        public ImplicitKDBuildTask(int _lo, int _hi, int _depth) {lo = _lo; hi = _hi; depth = _depth;}
+
+        @Override
+        protected void compute() {
+            if ((hi - lo <= parallelBuildCutoff) || (hi - lo <= builtLeafSize)) {buildSubtree(lo, hi, depth); return;}
+            int mid = partitionSubtree(lo, hi, depth);
+            invokeAll(new ImplicitKDBuildTask(lo, mid, depth + 1), new ImplicitKDBuildTask(mid + 1, hi, depth + 1));
+        }
+    }//class ImplicitKDBuildTask
+
+    /**
+     * Find the axis to split the points in the range [lo, hi) along, using this tree's split rule
+     * @param lo
+     * @param hi
+     * @param depth depth of subtree's root
+     * @return
+     */
+    protected final int findSplitAxis(int lo, int hi, int depth) {
+        if (!splitRule.needsAxisStats()) {return depth % numDims;}
+        int res = 0;
+        double maxScore = Double.NEGATIVE_INFINITY;
+        for(int axis=0;axis<numDims;++axis) {
+            double score = calcAxisScore(lo, hi, axis);
+            if(score > maxScore) {maxScore = score; res = axis;}
+        }
+        return res;
+    }//findSplitAxis
+
+    /**
+     * Score the values of axis in the range [lo, hi) using this tree's split rule. Stats are accumulated in double precision.
+     * @param lo
+     * @param hi
+     * @param axis
+     * @return
+     */
+    protected double calcAxisScore(int lo, int hi, int axis) {
+        //shift values by first value for stability
+        double shift = getCoord(axis, lo), min = shift, max = shift, sum = 0, sumSq = 0;
+        for(int i=lo+1;i<hi;++i) {
+            double v = getCoord(axis, i), diff = v - shift;
+            if(v < min) {min = v;} else if (v > max) {max = v;}
+            sum += diff;
+            sumSq += diff * diff;
+        }
+        return splitRule.calcAxisScore(min, max, sum, sumSq, hi - lo);
+    }//calcAxisScore
+
+    /**
+     * In-place selection (Hoare's quickselect) of the k'th point along axis in the inclusive range [lo, hi], so that
+     * every point in [lo,k) has a value for axis <= k's value and every point in (k, hi] has a value >= k's value.
+     * @param lo
+     * @param hi inclusive
+     * @param k
+     * @param axis
+     */
+    protected void selectMedian(int lo, int hi, int k, int axis) {
+        while (hi > lo) {
+            //median of 3 pivot
+            int mid = (lo + hi) >>> 1;
+            if (getCoord(axis, mid) < getCoord(axis, lo)) {swapPts(mid, lo);}
+            if (getCoord(axis, hi) < getCoord(axis, lo)) {swapPts(hi, lo);}
+            if (getCoord(axis, hi) < getCoord(axis, mid)) {swapPts(hi, mid);}
+            double pivot = getCoord(axis, mid);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (getCoord(axis, i) < pivot) {++i;}
+                while (getCoord(axis, j) > pivot) {--j;}
+                if (i <= j) {swapPts(i++, j--);}
+            }
+            //[lo, j] <= pivot, [i, hi] >= pivot, anything between is == pivot
+            if (k <= j) {        hi = j;}
+            else if (k >= i) {    lo = i;}
+            else {                return;}
+        }
+    }//selectMedian
+
+    /**
+     * Refit the tree in place after the coordinates of its points have changed. The coordinates must already be updated
+     * in the current tree order and the tree bounds recalculated. Each subtree is then re-partitioned about its existing
+     * split axis starting from the previous order, which for small movements is nearly partitioned already. Subtrees whose
+     * split axis no longer scores well enough under the split rule are rebuilt from scratch.
+     * @return # of subtrees that were rebuilt from scratch
+     */
+    protected final int refitSubtrees() {
+        int res = refitSubtree(0, numPts, 0);
+        sortLeavesByCurve();
+        return res;
+    }//refitSubtrees
+
+    /**
+     * Refit the subtree spanning [lo, hi)
+     * @param lo
+     * @param hi
+     * @param depth depth of subtree's root
+     * @return # of subtrees rebuilt from scratch
+     */
+    private int refitSubtree(int lo, int hi, int depth) {
+        if (hi - lo <= builtLeafSize) {return 0;}
+        int mid = (lo + hi) >>> 1;
+        int axis = getSplitAxis(mid);
+        if (splitRule.needsAxisStats()) {
+            double curScore = calcAxisScore(lo, hi, axis), maxScore = curScore;
+            for(int otrAxis=0;otrAxis<numDims;++otrAxis) {
+                if(otrAxis == axis) {continue;}
+                double score = calcAxisScore(lo, hi, otrAxis);
+                if(score > maxScore) {maxScore = score;}
+            }
+            if (curScore < refitDegradeRatio * maxScore) {
+                clearSplitAxes(lo, hi);
+                buildSubtree(lo, hi, depth);
+                return 1;
+            }
+        }
+        if (!isPartitioned(lo, hi, mid, axis)) {selectMedian(lo, hi - 1, mid, axis);}
+        return refitSubtree(lo, mid, depth + 1) + refitSubtree(mid + 1, hi, depth + 1);
+    }//refitSubtree
+    
+    /**
+     * Whether the points in [lo, hi) are still partitioned about the point at mid along axis
+     */
+    private boolean isPartitioned(int lo, int hi, int mid, int axis) {
+        double splitVal = getCoord(axis, mid);
+        for(int i=lo;i<mid;++i) {if(getCoord(axis, i) > splitVal) {return false;}}
+        for(int i=mid+1;i<hi;++i) {if(getCoord(axis, i) < splitVal) {return false;}}
+        return true;
+    }//isPartitioned
+    
+    /**
+     * Mark every point in [lo, hi) as a leaf point, prior to rebuilding the subtree
+     */
+    private void clearSplitAxes(int lo, int hi) {
+        for(int i=lo;i<hi;++i) {setSplitAxis(i, -1);}
+    }
+
+    /**
+     * Order the points within each leaf bucket along this tree's space-filling curve, if it has one. Called by the trees
+     * that reorder their storage once built. Points are quantized relative to the whole tree's bounds, so leaves are
+     * consistently ordered.
+     */
+    protected final void sortLeavesByCurve() {
+        if ((curveOrder == KDSpaceFillingCurve.None) || (numPts == 0) || (builtLeafSize < 2)) {return;}
+        int numKeyAxes = KDSpaceFillingCurve.calcNumKeyAxes(numDims);
+        double[] invExtents = new double[numKeyAxes];
+        for(int axis=0;axis<numKeyAxes;++axis) {
+            double extent = treeMaxs[axis] - treeMins[axis];
+            invExtents[axis] = (extent > 0 ? 1.0/extent : 0.0);
+        }
+        sortLeavesByCurve(0, numPts, new long[builtLeafSize], new int[numKeyAxes], invExtents);
+    }//sortLeavesByCurve
+    
+    /**
+     * Insertion sort the points of each leaf bucket in the subtree spanning [lo, hi) by their curve keys
+     */
+    private void sortLeavesByCurve(int lo, int hi, long[] keys, int[] quantVals, double[] invExtents) {
+        if (hi - lo > builtLeafSize) {
+            int mid = (lo + hi) >>> 1;
+            sortLeavesByCurve(lo, mid, keys, quantVals, invExtents);
+            sortLeavesByCurve(mid + 1, hi, keys, quantVals, invExtents);
+            return;
+        }
+        int numKeyAxes = quantVals.length, bits = KDSpaceFillingCurve.calcBitsPerAxis(numDims);
+        for(int i=lo;i<hi;++i) {
+            for(int axis=0;axis<numKeyAxes;++axis) {quantVals[axis] = KDSpaceFillingCurve.quantize(getCoord(axis, i), treeMins[axis], invExtents[axis], bits);}
+            long key = curveOrder.calcKey(quantVals, numKeyAxes, bits);
+            int j = i - lo;
+            while ((j > 0) && (keys[j-1] > key)) {
+                keys[j] = keys[j-1];
+                swapPts(lo + j, lo + j - 1);
+                --j;
+            }
+            keys[j] = key;
+        }
+    }//sortLeavesByCurve
+
+    /**
+     * Build a neighborhood to be used for queries of this tree, using this tree's maximum
+     * neighborhood size and distance. Each thread querying this tree should own its own neighborhood.
+     * @return
+     */
+    public final KDIndexNeighborhood buildNeighborhood() {return new KDIndexNeighborhood(maxNumNeighbors, maxNeighborSqDist);}
+
+    /**
+     * Find the nearby points to each of a batch of query locations in parallel, using this tree's maximum neighborhood 
+     * size and distance. See {@link #findNeighborhoods(double[], int, int, double, int[], double[], int[], ForkJoinPool)}
+     * @param queryPts flattened query locations : query q's axis a value is at [q*numDims + a]
+     * @param numQueries # of queries in queryPts
+     * @param resIdxs destination for source indices of neighbors, length >= numQueries * maxNumNeighbors
+     * @param resSqDists destination for sq distances of neighbors, length >= numQueries * maxNumNeighbors
+     * @param resCounts destination for # of neighbors found per query, length >= numQueries. May be null.
+     */
+    public final void findNeighborhoods(double[] queryPts, int numQueries, int[] resIdxs, double[] resSqDists, int[] resCounts) {
+        findNeighborhoods(queryPts, numQueries, maxNumNeighbors, maxNeighborSqDist, resIdxs, resSqDists, resCounts);
+    }
+
+    /**
+     * Find the nearby points to each of a batch of query locations, in parallel on the common ForkJoinPool. 
+     * See {@link #findNeighborhoods(double[], int, int, double, int[], double[], int[], ForkJoinPool)}
+     */
+    public final void findNeighborhoods(double[] queryPts, int numQueries, int maxNumNeighbors, double maxNeighborSqDist, 
+            int[] resIdxs, double[] resSqDists, int[] resCounts) {
+        findNeighborhoods(queryPts, numQueries, maxNumNeighbors, maxNeighborSqDist, resIdxs, resSqDists, resCounts, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Find the nearby points to each of a batch of query locations, writing the results into caller-provided buffers. 
+     * Only a single neighborhood and position buffer is allocated per task, regardless of the # of queries.
+     * 
+     * Results for query q occupy [q*maxNumNeighbors, (q+1)*maxNumNeighbors) of resIdxs and resSqDists, in ascending 
+     * distance order. If fewer than maxNumNeighbors are found, the remaining slots are filled with -1 and Double.POSITIVE_INFINITY.
+     * @param queryPts flattened query locations : query q's axis a value is at [q*numDims + a]
+     * @param numQueries # of queries in queryPts
+     * @param maxNumNeighbors Maximum # of neighbors to find per query; must be > 0 and small enough for the result buffers
+     * @param maxNeighborSqDist Max Sq Distance to be considered within a neighborhood
+     * @param resIdxs destination for source indices of neighbors, length >= numQueries * maxNumNeighbors
+     * @param resSqDists destination for sq distances of neighbors, length >= numQueries * maxNumNeighbors
+     * @param resCounts destination for # of neighbors found per query, length >= numQueries. May be null.
+     * @param pool pool to execute on, or null to execute on the calling thread
+     */
+    public final void findNeighborhoods(double[] queryPts, int numQueries, int maxNumNeighbors, double maxNeighborSqDist, 
+            int[] resIdxs, double[] resSqDists, int[] resCounts, ForkJoinPool pool) {
+        if((maxNumNeighbors < 1) || (queryPts.length < (long) numQueries * numDims) 
+                || (resIdxs.length < (long) numQueries * maxNumNeighbors) || (resSqDists.length < (long) numQueries * maxNumNeighbors)
+                || ((resCounts != null) && (resCounts.length < numQueries))) {
+            System.out.println("KD Tree batch query buffers too small for "+numQueries+" queries of "+maxNumNeighbors+" neighbors each. Aborting.");
+            return;
+        }
+        if (!isQueryable()) {
+            //nothing can be found
+            Arrays.fill(resIdxs, 0, numQueries * maxNumNeighbors, -1);
+            Arrays.fill(resSqDists, 0, numQueries * maxNumNeighbors, Double.POSITIVE_INFINITY);
+            if (resCounts != null) {Arrays.fill(resCounts, 0, numQueries, 0);}
+            return;
+        }
+        int[] qOrder = curveOrder.calcOrder(queryPts, numQueries, numDims);
+        BatchKNNTask task = new BatchKNNTask(queryPts, qOrder, 0, numQueries, maxNumNeighbors, maxNeighborSqDist, resIdxs, resSqDists, resCounts);
+        if (pool == null) {task.compute();} else {pool.invoke(task);}
+    }//findNeighborhoods
+    
+    /**
+     * Execute the queries in [qSt, qEnd) of the execution order of a batch query on the calling thread
+     */
+    private void findNeighborhoods(double[] queryPts, int[] qOrder, int qSt, int qEnd, int maxNumNeighbors, double maxNeighborSqDist, 
+            int[] resIdxs, double[] resSqDists, int[] resCounts) {
+        KDIndexNeighborhood nbhd = new KDIndexNeighborhood(maxNumNeighbors, maxNeighborSqDist);
+        double[] pos = new double[numDims];
+        for(int qIdx=qSt;qIdx<qEnd;++qIdx) {
+            int q = (qOrder == null ? qIdx : qOrder[qIdx]);
+            System.arraycopy(queryPts, q*numDims, pos, 0, numDims);
+            findNeighborhood(pos, nbhd);
+            int numFound = nbhd.copySortedTo(resIdxs, resSqDists, q * maxNumNeighbors);
+            for(int i=q*maxNumNeighbors + numFound, end = (q+1)*maxNumNeighbors; i<end;++i) {
+                resIdxs[i] = -1;
+                resSqDists[i] = Double.POSITIVE_INFINITY;
+            }
+            if(resCounts != null) {resCounts[q] = numFound;}
+        }
+    }//findNeighborhoods
+    
+    /**
+     * Task to execute a range of queries of a batch query, splitting the range if it is larger than batchQueryCutoff. 
+     * Each query writes to its own disjoint range of the result buffers. If qOrder is not null, the range is of 
+     * positions in qOrder, which holds the query indices in curve order.
+     */
+    private class BatchKNNTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final double[] queryPts;
+        private final int[] qOrder;
+        private final int qSt, qEnd, maxNumNeighbors;
+        private final double maxNeighborSqDist;
+        private final int[] resIdxs, resCounts;
+        private final double[] resSqDists;
+        
+        public BatchKNNTask(double[] _queryPts, int[] _qOrder, int _qSt, int _qEnd, int _maxNumNeighbors, double _maxNeighborSqDist, 
+                int[] _resIdxs, double[] _resSqDists, int[] _resCounts) {
+            queryPts = _queryPts; qOrder = _qOrder; qSt = _qSt; qEnd = _qEnd; maxNumNeighbors = _maxNumNeighbors; maxNeighborSqDist = _maxNeighborSqDist;
+            resIdxs = _resIdxs; resSqDists = _resSqDists; resCounts = _resCounts;
+        }
+        
+        @Override
+        protected void compute() {
+            if (qEnd - qSt <= batchQueryCutoff) {
+                findNeighborhoods(queryPts, qOrder, qSt, qEnd, maxNumNeighbors, maxNeighborSqDist, resIdxs, resSqDists, resCounts);
+                return;
+            }
+            int qMid = (qSt + qEnd) >>> 1;
+            invokeAll(new BatchKNNTask(queryPts, qOrder, qSt, qMid, maxNumNeighbors, maxNeighborSqDist, resIdxs, resSqDists, resCounts),
+                    new BatchKNNTask(queryPts, qOrder, qMid, qEnd, maxNumNeighbors, maxNeighborSqDist, resIdxs, resSqDists, resCounts));
+        }
+    }//class BatchKNNTask
+
+    /**
+     * Find the nearby points to the given location.
+     * @param pos given location for finding nearby points. Must have at least numDims values
+     * @param nbhd the neighborhood to populate with the source indices and sq distances of the points found.
+     *         It is reset before the search.
+     * @return nbhd
+     */
+    public final KDIndexNeighborhood findNeighborhood(double[] pos, KDIndexNeighborhood nbhd) {
+        nbhd.reset();
+        addToNeighborhood(pos, nbhd);
+        return nbhd;
+    }//findNeighborhood
+
+    /**
+     * Offer the points of this tree that are nearer than the neighborhood's current pruning distance to the neighborhood,
+     * without resetting it first. Used to search several trees with a single neighborhood.
+     * @param pos given location for finding nearby points. Must have at least numDims values
+     * @param nbhd
+     */
+    public final void addToNeighborhood(double[] pos, KDIndexNeighborhood nbhd) {
+        if (!isQueryable()) {return;}
+        if (numPts <= bruteForceCutoff) {    offerBlock(pos, 0, numPts, nbhd);}
+        else {                                findNearbyPts(pos, 0, numPts, nbhd);}
+    }//addToNeighborhood
+
+    /**
+     * Offer every point in [lo, hi) to the neighborhood, using a block distance kernel
+     */
+    protected final void offerBlock(double[] pos, int lo, int hi, KDIndexNeighborhood nbhd) {
+        double[] sqDists = nbhd.getDistScratch(hi - lo);
+        calcSqDists(pos, lo, hi, sqDists);
+        for(int i=lo;i<hi;++i) {nbhd.offer(getSrcIdx(i), sqDists[i - lo]);}
+    }//offerBlock
+
+    /**
+     * help find nearby points in the subtree spanning [lo, hi) (should not be called by user)
+     * @param pos
+     * @param lo
+     * @param hi
+     * @param nbhd
+     */
+    protected final void findNearbyPts(double[] pos, int lo, int hi, KDIndexNeighborhood nbhd) {
+        if (hi - lo <= builtLeafSize) {
+            offerBlock(pos, lo, hi, nbhd);
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        nbhd.offer(getSrcIdx(mid), calcSqDist(pos, mid));
+        int axis = getSplitAxis(mid);
+        // calculate distance to split plane
+        double delta = pos[axis] - getCoord(axis, mid);
+        if (delta < 0) {
+            findNearbyPts(pos, lo, mid, nbhd);
+            if (delta * delta < nbhd.getPruneSqDist()) {    findNearbyPts(pos, mid + 1, hi, nbhd);}
+        } else {
+            findNearbyPts(pos, mid + 1, hi, nbhd);
+            if (delta * delta < nbhd.getPruneSqDist()) {    findNearbyPts(pos, lo, mid, nbhd);}
+        }
+    }//findNearbyPts
+
+    /**
+     * Approximately find the nearby points to the given location. See
+     * {@link #findApproxNeighborhood(double[], double, int, KDIndexNeighborhood, KDSubtreeQueue, KDApproxSearchStats)}
+     */
+    public final KDIndexNeighborhood findApproxNeighborhood(double[] pos, double eps, int maxLeafVisits, KDIndexNeighborhood nbhd, KDApproxSearchStats stats) {
+        return findApproxNeighborhood(pos, eps, maxLeafVisits, nbhd, new KDSubtreeQueue(), stats);
+    }
+
+    /**
+     * Approximately find the nearby points to the given location, using a best-bin-first search : subtrees are
+     * examined in increasing order of their distance from pos, rather than in tree order.
+     *
+     * The search stops when either the closest unexamined subtree is no closer than the current pruning distance
+     * shrunk by a factor of (1+eps), or when maxLeafVisits leaf buckets have been scanned. If the budget is not reached,
+     * every neighbor found is within (1+eps) times the distance of the corresponding true neighbor.
+     * @param pos given location for finding nearby points. Must have at least numDims values
+     * @param eps error bound; 0 for no approximation error
+     * @param maxLeafVisits maximum # of leaf buckets to scan; <= 0 for no limit
+     * @param nbhd the neighborhood to populate. It is reset before the search.
+     * @param queue queue of pending subtrees, reused across queries to avoid allocation. It is cleared before the search.
+     * @param stats receives the visit counts and certified recall of this search. May be null.
+     * @return nbhd
+     */
+    public final KDIndexNeighborhood findApproxNeighborhood(double[] pos, double eps, int maxLeafVisits, KDIndexNeighborhood nbhd,
+            KDSubtreeQueue queue, KDApproxSearchStats stats) {
+        nbhd.reset();
+        queue.clear();
+        if (stats != null) {stats.reset();}
+        if (!isQueryable()) {return nbhd;}
+        // scale applied to pruning distance; subtrees at least this far are not examined
+        double epsScale = 1.0 / ((1.0 + eps) * (1.0 + eps));
+        double minSkippedSqDist = Double.POSITIVE_INFINITY;
+        int numLeavesVisited = 0;
+        boolean budgetExhausted = false;
+        queue.insert(0, numPts, 0.0);
+        while (!queue.isEmpty()) {
+            double bound = queue.getMinKey();
+            // every remaining subtree is at least this far
+            if (bound >= nbhd.getPruneSqDist() * epsScale) {break;}
+            if ((maxLeafVisits > 0) && (numLeavesVisited >= maxLeafVisits)) {budgetExhausted = true; break;}
+            int lo = queue.getMinLo(), hi = queue.getMinHi();
+            queue.removeMin();
+            // descend to leaf along nearer children, queueing farther children
+            while (hi - lo > builtLeafSize) {
+                int mid = (lo + hi) >>> 1;
+                nbhd.offer(getSrcIdx(mid), calcSqDist(pos, mid));
+                if (stats != null) {stats.incrNodesVisited(); stats.incrDistEvals(1);}
+                int axis = getSplitAxis(mid);
+                double delta = pos[axis] - getCoord(axis, mid);
+                double farBound = delta * delta;
+                if (farBound < bound) {farBound = bound;}
+                int farLo, farHi;
+                if (delta < 0) {    farLo = mid + 1; farHi = hi; hi = mid;}
+                else {                farLo = lo; farHi = mid; lo = mid + 1;}
+                if (hi == lo) {
+                    //nearer child is empty if the subtree has only 2 points; farther never is, so descend into it unless too far
+                    if (farBound >= nbhd.getPruneSqDist() * epsScale) {
+                        if (farBound < minSkippedSqDist) {minSkippedSqDist = farBound;}
+                        break;
+                    }
+                    lo = farLo; hi = farHi; bound = farBound;
+                } else if (farHi > farLo) {
+                    if (farBound < nbhd.getPruneSqDist() * epsScale) {    queue.insert(farLo, farHi, farBound);}
+                    else if (farBound < minSkippedSqDist) {                minSkippedSqDist = farBound;}
+                }
+            }
+            //only scanned leaves count against the budget
+            if (hi > lo) {
+                offerBlock(pos, lo, hi, nbhd);
+                ++numLeavesVisited;
+                if (stats != null) {stats.incrLeavesVisited(); stats.incrDistEvals(hi - lo);}
+            }
+        }
+        if (stats != null) {
+            double minUnvisited = queue.getMinKey();
+            stats.setResults(nbhd, (minSkippedSqDist < minUnvisited ? minSkippedSqDist : minUnvisited), budgetExhausted);
+        }
+        return nbhd;
+    }//findApproxNeighborhood
+
+    /**
+     * Measure the mean recall of approximate searches with the given settings against exact searches, for a set of
+     * sample queries. Useful for tuning eps and maxLeafVisits.
+     * @param queryPts flattened sample query locations : query q's axis a value is at [q*numDims + a]
+     * @param numQueries # of queries in queryPts
+     * @param maxNumNeighbors # of neighbors to find per query
+     * @param eps error bound
+     * @param maxLeafVisits maximum # of leaf buckets to scan; <= 0 for no limit
+     * @return mean fraction of true nearest neighbors found by approximate search
+     */
+    public final double calcApproxRecall(double[] queryPts, int numQueries, int maxNumNeighbors, double eps, int maxLeafVisits) {
+        if ((numQueries == 0) || !isQueryable()) {return 1.0;}
+        KDIndexNeighborhood exact = new KDIndexNeighborhood(maxNumNeighbors, Double.MAX_VALUE);
+        KDIndexNeighborhood approx = new KDIndexNeighborhood(maxNumNeighbors, Double.MAX_VALUE);
+        KDSubtreeQueue queue = new KDSubtreeQueue();
+        double[] pos = new double[numDims];
+        double ttlRecall = 0;
+        for(int q=0;q<numQueries;++q) {
+            System.arraycopy(queryPts, q*numDims, pos, 0, numDims);
+            findNeighborhood(pos, exact);
+            findApproxNeighborhood(pos, eps, maxLeafVisits, approx, queue, null);
+            int numMatched = 0;
+            for(int i=0;i<approx.size();++i) {
+                int idx = approx.getIdx(i);
+                for(int j=0;j<exact.size();++j) {if(exact.getIdx(j) == idx) {++numMatched; break;}}
+            }
+            ttlRecall += (exact.size() == 0 ? 1.0 : numMatched / (1.0 * exact.size()));
+        }
+        return ttlRecall / numQueries;
+    }//calcApproxRecall
+
+    /**
+     * Find every point within the given radius of the given location, passing each to the visitor in no particular order.
+     * Allocates its scratch space on each call; use {@link #findInRadius(double[], double, KDRangeVisitor, KDIndexList)} to reuse it.
+     * @param pos given location. Must have at least numDims values
+     * @param sqRadius square of the radius; points at a sq distance <= sqRadius are found
+     * @param visitor
+     */
+    public final void findInRadius(double[] pos, double sqRadius, KDRangeVisitor visitor) {
+        findInRadius(pos, sqRadius, visitor, new KDIndexList(1));
+    }
+
+    /**
+     * Find every point within the given radius of the given location, passing each to the visitor in no particular order.
+     * @param pos given location. Must have at least numDims values
+     * @param sqRadius square of the radius; points at a sq distance <= sqRadius are found
+     * @param visitor
+     * @param scratch list whose scratch space is used by the search. Its contents are unchanged.
+     */
+    public final void findInRadius(double[] pos, double sqRadius, KDRangeVisitor visitor, KDIndexList scratch) {
+        if (isQueryable()) {findInRadius(pos, sqRadius, 0, numPts, visitor, scratch.getDistScratch(calcDistScratchSize()));}
+    }
+
+    /**
+     * Find every point within the given radius of the given location, in no particular order.
+     * @param pos given location. Must have at least numDims values
+     * @param sqRadius square of the radius; points at a sq distance <= sqRadius are found
+     * @param res list to receive the source indices and sq distances of the points found. It is cleared first.
+     * @return # of points found
+     */
+    public final int findInRadius(double[] pos, double sqRadius, KDIndexList res) {
+        res.clear();
+        if (isQueryable()) {findInRadius(pos, sqRadius, 0, numPts, res, res.getDistScratch(calcDistScratchSize()));}
+        return res.size();
+    }
+
+    /**
+     * help find points within radius in the subtree spanning [lo, hi) (should not be called by user)
+     */
+    private void findInRadius(double[] pos, double sqRadius, int lo, int hi, KDRangeVisitor visitor, double[] sqDists) {
+        if (isBlockScanned(lo, hi)) {
+            calcSqDists(pos, lo, hi, sqDists);
+            for(int i=lo;i<hi;++i) {if(sqDists[i - lo] <= sqRadius) {visitor.visit(getSrcIdx(i));}}
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if(calcSqDist(pos, mid) <= sqRadius) {visitor.visit(getSrcIdx(mid));}
+        int axis = getSplitAxis(mid);
+        double delta = pos[axis] - getCoord(axis, mid);
+        if ((delta <= 0) || (delta * delta <= sqRadius)) {findInRadius(pos, sqRadius, lo, mid, visitor, sqDists);}
+        if ((delta >= 0) || (delta * delta <= sqRadius)) {findInRadius(pos, sqRadius, mid + 1, hi, visitor, sqDists);}
+    }//findInRadius
+
+    /**
+     * help find points within radius in the subtree spanning [lo, hi) (should not be called by user)
+     */
+    private void findInRadius(double[] pos, double sqRadius, int lo, int hi, KDIndexList res, double[] sqDists) {
+        if (isBlockScanned(lo, hi)) {
+            calcSqDists(pos, lo, hi, sqDists);
+            for(int i=lo;i<hi;++i) {if(sqDists[i - lo] <= sqRadius) {res.add(getSrcIdx(i), sqDists[i - lo]);}}
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double sqDist = calcSqDist(pos, mid);
+        if(sqDist <= sqRadius) {res.add(getSrcIdx(mid), sqDist);}
+        int axis = getSplitAxis(mid);
+        double delta = pos[axis] - getCoord(axis, mid);
+        if ((delta <= 0) || (delta * delta <= sqRadius)) {findInRadius(pos, sqRadius, lo, mid, res, sqDists);}
+        if ((delta >= 0) || (delta * delta <= sqRadius)) {findInRadius(pos, sqRadius, mid + 1, hi, res, sqDists);}
+    }//findInRadius
+
+    /**
+     * Count the points within the given radius of the given location. Subtrees whose cells lie entirely within
+     * the radius are counted by their size without being traversed. Allocates its scratch space on each call;
+     * use {@link #countInRadius(double[], double, KDIndexList)} to reuse it.
+     * @param pos given location. Must have at least numDims values
+     * @param sqRadius square of the radius; points at a sq distance <= sqRadius are counted
+     * @return
+     */
+    public final int countInRadius(double[] pos, double sqRadius) {return countInRadius(pos, sqRadius, new KDIndexList(1));}
+
+    /**
+     * Count the points within the given radius of the given location. Subtrees whose cells lie entirely within
+     * the radius are counted by their size without being traversed.
+     * @param pos given location. Must have at least numDims values
+     * @param sqRadius square of the radius; points at a sq distance <= sqRadius are counted
+     * @param scratch list whose scratch space is used by the search. Its contents are unchanged.
+     * @return
+     */
+    public final int countInRadius(double[] pos, double sqRadius, KDIndexList scratch) {
+        if (!isQueryable()) {return 0;}
+        scratch.loadCellBounds(treeMins, treeMaxs, numDims);
+        return countInRadius(pos, sqRadius, 0, numPts, scratch.getCellMins(), scratch.getCellMaxs(), scratch.getDistScratch(calcDistScratchSize()));
+    }
+
+    /**
+     * Whether the subtree spanning [lo, hi) is scanned as a single block : either it is a leaf bucket or it is the
+     * whole of a tree no bigger than bruteForceCutoff
+     */
+    private boolean isBlockScanned(int lo, int hi) {return (hi - lo <= builtLeafSize) || ((lo == 0) && (hi == numPts) && (numPts <= bruteForceCutoff));}
+
+    /**
+     * Size of scratch space big enough for the distances of any block scanned by a query of this tree
+     */
+    private int calcDistScratchSize() {return Math.min(numPts, Math.max(builtLeafSize, bruteForceCutoff));}
+
+    /**
+     * help count points within radius in the subtree spanning [lo, hi) with the given cell bounds (should not be called by user)
+     */
+    private int countInRadius(double[] pos, double sqRadius, int lo, int hi, double[] cellMins, double[] cellMaxs, double[] sqDists) {
+        if (hi <= lo) {return 0;}
+        //find nearest and furthest distance from pos to cell
+        double minSqDist = 0, maxSqDist = 0;
+        for(int axis=0;axis<numDims;++axis) {
+            double toMin = pos[axis] - cellMins[axis], toMax = cellMaxs[axis] - pos[axis];
+            if (toMin < 0) {        minSqDist += toMin * toMin;}
+            else if (toMax < 0) {    minSqDist += toMax * toMax;}
+            double far = (toMin > toMax ? toMin : toMax);
+            maxSqDist += far * far;
+        }
+        if (minSqDist > sqRadius) {return 0;}
+        if (maxSqDist <= sqRadius) {return hi - lo;}
+        if (isBlockScanned(lo, hi)) {
+            calcSqDists(pos, lo, hi, sqDists);
+            int res = 0;
+            for(int j=0;j<hi-lo;++j) {if(sqDists[j] <= sqRadius) {++res;}}
+            return res;
+        }
+        int mid = (lo + hi) >>> 1;
+        int res = (calcSqDist(pos, mid) <= sqRadius) ? 1 : 0;
+        int axis = getSplitAxis(mid);
+        double splitVal = getCoord(axis, mid), oldBnd = cellMaxs[axis];
+        cellMaxs[axis] = splitVal;
+        res += countInRadius(pos, sqRadius, lo, mid, cellMins, cellMaxs, sqDists);
+        cellMaxs[axis] = oldBnd;
+        oldBnd = cellMins[axis];
+        cellMins[axis] = splitVal;
+        res += countInRadius(pos, sqRadius, mid + 1, hi, cellMins, cellMaxs, sqDists);
+        cellMins[axis] = oldBnd;
+        return res;
+    }//countInRadius
+
+    /**
+     * Find every point within the given axis-aligned box, passing each to the visitor in no particular order.
+     * @param mins per-axis minimum of box (inclusive). Must have at least numDims values
+     * @param maxs per-axis maximum of box (inclusive). Must have at least numDims values
+     * @param visitor
+     */
+    public final void findInBox(double[] mins, double[] maxs, KDRangeVisitor visitor) {
+        if (isQueryable()) {findInBox(mins, maxs, 0, numPts, visitor);}
+    }
+
+    /**
+     * Find every point within the given axis-aligned box, in no particular order.
+     * @param mins per-axis minimum of box (inclusive). Must have at least numDims values
+     * @param maxs per-axis maximum of box (inclusive). Must have at least numDims values
+     * @param res list to receive the source indices of the points found. It is cleared first.
+     * @return # of points found
+     */
+    public final int findInBox(double[] mins, double[] maxs, KDIndexList res) {
+        res.clear();
+        if (isQueryable()) {findInBox(mins, maxs, 0, numPts, res);}
+        return res.size();
+    }
+
+    /**
+     * Whether the point at tree idx i is within the box
+     */
+    private boolean isInBox(double[] mins, double[] maxs, int i) {
+        for(int axis=0;axis<numDims;++axis) {
+            double v = getCoord(axis, i);
+            if((v < mins[axis]) || (v > maxs[axis])) {return false;}
+        }
+        return true;
+    }
+
+    /**
+     * help find points within box in the subtree spanning [lo, hi) (should not be called by user)
+     */
+    private void findInBox(double[] mins, double[] maxs, int lo, int hi, KDRangeVisitor visitor) {
+        if (hi - lo <= builtLeafSize) {
+            for(int i=lo;i<hi;++i) {if(isInBox(mins, maxs, i)) {visitor.visit(getSrcIdx(i));}}
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if(isInBox(mins, maxs, mid)) {visitor.visit(getSrcIdx(mid));}
+        int axis = getSplitAxis(mid);
+        double splitVal = getCoord(axis, mid);
+        if (mins[axis] <= splitVal) {findInBox(mins, maxs, lo, mid, visitor);}
+        if (maxs[axis] >= splitVal) {findInBox(mins, maxs, mid + 1, hi, visitor);}
+    }//findInBox
+
+    /**
+     * help find points within box in the subtree spanning [lo, hi) (should not be called by user)
+     */
+    private void findInBox(double[] mins, double[] maxs, int lo, int hi, KDIndexList res) {
+        if (hi - lo <= builtLeafSize) {
+            for(int i=lo;i<hi;++i) {if(isInBox(mins, maxs, i)) {res.add(getSrcIdx(i));}}
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if(isInBox(mins, maxs, mid)) {res.add(getSrcIdx(mid));}
+        int axis = getSplitAxis(mid);
+        double splitVal = getCoord(axis, mid);
+        if (mins[axis] <= splitVal) {findInBox(mins, maxs, lo, mid, res);}
+        if (maxs[axis] >= splitVal) {findInBox(mins, maxs, mid + 1, hi, res);}
+    }//findInBox
+
+    /**
+     * Count the points within the given axis-aligned box. Subtrees whose cells lie entirely within
+     * the box are counted by their size without being traversed. Allocates its scratch space on each call;
+     * use {@link #countInBox(double[], double[], KDIndexList)} to reuse it.
+     * @param mins per-axis minimum of box (inclusive). Must have at least numDims values
+     * @param maxs per-axis maximum of box (inclusive). Must have at least numDims values
+     * @return
+     */
+    public final int countInBox(double[] mins, double[] maxs) {return countInBox(mins, maxs, new KDIndexList(1));}
+
+    /**
+     * Count the points within the given axis-aligned box. Subtrees whose cells lie entirely within
+     * the box are counted by their size without being traversed.
+     * @param mins per-axis minimum of box (inclusive). Must have at least numDims values
+     * @param maxs per-axis maximum of box (inclusive). Must have at least numDims values
+     * @param scratch list whose scratch space is used by the search. Its contents are unchanged.
+     * @return
+     */
+    public final int countInBox(double[] mins, double[] maxs, KDIndexList scratch) {
+        if (!isQueryable()) {return 0;}
+        scratch.loadCellBounds(treeMins, treeMaxs, numDims);
+        return countInBox(mins, maxs, 0, numPts, scratch.getCellMins(), scratch.getCellMaxs());
+    }
+
+    /**
+     * help count points within box in the subtree spanning [lo, hi) with the given cell bounds (should not be called by user)
+     */
+    private int countInBox(double[] mins, double[] maxs, int lo, int hi, double[] cellMins, double[] cellMaxs) {
+        if (hi <= lo) {return 0;}
+        boolean isContained = true;
+        for(int axis=0;axis<numDims;++axis) {
+            if((cellMins[axis] > maxs[axis]) || (cellMaxs[axis] < mins[axis])) {return 0;}
+            if((cellMins[axis] < mins[axis]) || (cellMaxs[axis] > maxs[axis])) {isContained = false;}
+        }
+        if (isContained) {return hi - lo;}
+        if (hi - lo <= builtLeafSize) {
+            int res = 0;
+            for(int i=lo;i<hi;++i) {if(isInBox(mins, maxs, i)) {++res;}}
+            return res;
+        }
+        int mid = (lo + hi) >>> 1;
+        int res = isInBox(mins, maxs, mid) ? 1 : 0;
+        int axis = getSplitAxis(mid);
+        double splitVal = getCoord(axis, mid), oldBnd = cellMaxs[axis];
+        cellMaxs[axis] = splitVal;
+        res += countInBox(mins, maxs, lo, mid, cellMins, cellMaxs);
+        cellMaxs[axis] = oldBnd;
+        oldBnd = cellMins[axis];
+        cellMins[axis] = splitVal;
+        res += countInBox(mins, maxs, mid + 1, hi, cellMins, cellMaxs);
+        cellMins[axis] = oldBnd;
+        return res;
+    }//countInBox
+
+    /**
+     * Calculate the structural stats of this tree : the depth histogram of its leaf buckets and how full they are
+     * @return
+     */
+    public final KDTreeStats calcTreeStats() {
+        KDTreeStats res = new KDTreeStats();
+        if (isQueryable()) {calcTreeStats(0, numPts, 0, res);}
+        return res;
+    }
+
+    /**
+     * help calculate tree stats of the subtree spanning [lo, hi) (should not be called by user)
+     */
+    private void calcTreeStats(int lo, int hi, int depth, KDTreeStats stats) {
+        if (hi <= lo) {return;}
+        if (hi - lo <= builtLeafSize) {
+            stats.addLeaf(depth, hi - lo);
+            return;
+        }
+        stats.addInternalNode();
+        int mid = (lo + hi) >>> 1;
+        calcTreeStats(lo, mid, depth + 1, stats);
+        calcTreeStats(mid + 1, hi, depth + 1, stats);
+    }//calcTreeStats
+
+    //////////////////////////////
+    // Getters and setters
+
+    public final KDSplitRule getSplitRule() {return splitRule;}
+    /**
+     * Set the rule used to choose each subtree's split axis. Takes effect the next time the tree is built.
+     * @param _splitRule
+     */
+    public final void setSplitRule(KDSplitRule _splitRule) {splitRule = _splitRule;}
+
+    public final int getBruteForceCutoff() {return bruteForceCutoff;}
+    /**
+     * Set the # of points at or below which a whole tree is searched by a single block scan rather than by traversal
+     * @param _bruteForceCutoff
+     */
+    public final void setBruteForceCutoff(int _bruteForceCutoff) {bruteForceCutoff = (_bruteForceCutoff < 0 ? 0 : _bruteForceCutoff);}
+
+    public final int getLeafSize() {return leafSize;}
+    /**
+     * Get the leaf size the current tree was built with
+     * @return
+     */
+    public final int getBuiltLeafSize() {return builtLeafSize;}
+    /**
+     * Set the maximum # of points in a leaf bucket. Takes effect the next time the tree is built.
+     * @param _leafSize max # of points in a leaf; 1 gives a tree with a node for every point
+     */
+    public final void setLeafSize(int _leafSize) {leafSize = (_leafSize < 1 ? 1 : _leafSize);}
+
+    /**
+     * # of internal (splitting) nodes in this tree. Every other point lives in a leaf bucket.
+     * @return
+     */
+    public final int getNumInternalNodes() {
+        if (!isBuilt()) {return 0;}
+        int res = 0;
+        for(int i=0;i<numPts;++i) {if(getSplitAxis(i) != -1) {++res;}}
+        return res;
+    }
+
+    public final int getMaxNumNeighbors() {                        return maxNumNeighbors;    }
+    public final void setMaxNumNeighbors(int _maxNumNeighbors) {    maxNumNeighbors = _maxNumNeighbors;}
+
+    public final double getMaxNeighborSqDist() {                            return maxNeighborSqDist;    }
+    public final void setMaxNeighborSqDist(double _maxNeighborSqDist) {    maxNeighborSqDist = _maxNeighborSqDist;}
+
+    public final int getBatchQueryCutoff() {                        return batchQueryCutoff;}
+    public final void setBatchQueryCutoff(int _batchQueryCutoff) {    batchQueryCutoff = (_batchQueryCutoff < 1 ? 1 : _batchQueryCutoff);}
+
+    public final double getRefitDegradeRatio() {return refitDegradeRatio;}
+    /**
+     * Set the fraction of the best axis' score a subtree's split axis must keep to avoid being rebuilt during a refit
+     * @param _refitDegradeRatio in [0, 1]; 0 never rebuilds, 1 rebuilds whenever a better axis exists
+     */
+    public final void setRefitDegradeRatio(double _refitDegradeRatio) {refitDegradeRatio = Math.min(Math.max(_refitDegradeRatio, 0.0), 1.0);}
+    
+    public final KDSpaceFillingCurve getCurveOrder() {return curveOrder;}
+    /**
+     * Set the space-filling curve leaf buckets and batch queries are ordered along. Leaf order takes effect 
+     * the next time the tree is built or refit; batch query order takes effect immediately.
+     * @param _curveOrder
+     */
+    public final void setCurveOrder(KDSpaceFillingCurve _curveOrder) {curveOrder = _curveOrder;}
+
+    public final int getParallelBuildCutoff() {                            return parallelBuildCutoff;}
+    public final void setParallelBuildCutoff(int _parallelBuildCutoff) {    parallelBuildCutoff = (_parallelBuildCutoff < 2 ? 2 : _parallelBuildCutoff);}
+
+    /**
+     * # of points in this tree
+     * @return
+     */
+    public final int getNumPts() {return numPts;}
+
+    /**
+     * # of position values/axes of every point in this tree
+     * @return
+     */
+    public final int getNumDims() {return numDims;}
+
+    /**
+     * Whether this tree has been built and holds points
+     * @return
+     */
+    public boolean isBuilt() {return numPts > 0;}
+
+    /**
+     * Whether this tree can be queried. Queries of a tree that cannot be queried find nothing.
+     * @return
+     */
+    protected boolean isQueryable() {return numPts > 0;}
+
+}//class Base_ImplicitKDTree
@@ -29,6 +29,14 @@ public abstract class Base_KDObject <T extends Base_KDObject<T>> implements Comp
         System.arraycopy(_locVals, 0, posVals, 0, _locVals.length);
     }
     
+    /**
+     * Build an object with no owning KDTree, for use in trees that do not use {@link #compareTo}, such as ArrayKDTree
+     * @param _locVals
+     */
+    public Base_KDObject(double[] _locVals) {
+        this(null, _locVals);
+    }
+    
     /**
      * Get value for dist entry (last value)
      */
@@ -71,10 +79,11 @@ public abstract class Base_KDObject <T extends Base_KDObject<T>> implements Comp
      * Compare two objects, used in two different circumstances with KD-Tree 
      *    1) for sorting along a given axis during kd-tree construction (sortAxis is [0..posVals.length-2]) 
      *    2) for comparing distances when locating nearby objects (sortAxis is posVals.length -1)
+     * Objects built without an owning tree always compare their sq distances.
      */
     @Override
     public final int compareTo(Base_KDObject<T> o) {
-        int sortAxis = owningTree.getSortAxis();
+        int sortAxis = (owningTree == null) ? numPosVals : owningTree.getSortAxis();
         return ((posVals[sortAxis] < o.posVals[sortAxis]) ? 
                 -1 : 
                     ((posVals[sortAxis] > o.posVals[sortAxis]) ? 
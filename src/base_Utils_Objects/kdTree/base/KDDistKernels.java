@@ -0,0 +1,70 @@
+package base_Utils_Objects.kdTree.base;
+
+/**
+ * Block distance kernels for point coordinates held in per-axis (structure of arrays) form. Each kernel computes the
+ * squared distances from one query location to a contiguous block of points, one axis at a time, so that every
+ * inner loop is a unit-stride pass over a primitive array with no loop-carried dependence, which the JIT compiles
+ * to SIMD instructions.
+ *
+ * @author John Turner
+ *
+ */
+public final class KDDistKernels {
+
+    private KDDistKernels() {}
+
+    /**
+     * Calculate the squared distances from pos to each of the points [lo, hi) of coords
+     * @param coords per-axis point coordinates : coords[axis][idx]
+     * @param numDims # of axes to include
+     * @param lo first point idx
+     * @param hi last point idx, exclusive
+     * @param pos query location
+     * @param res destination : the distance to point i is written to res[i - lo]. Must hold at least hi - lo values
+     */
+    public static void calcSqDists(double[][] coords, int numDims, int lo, int hi, double[] pos, double[] res) {
+        int n = hi - lo;
+        double[] c = coords[0];
+        double p = pos[0];
+        for(int j=0;j<n;++j) {
+            double diff = c[lo + j] - p;
+            res[j] = diff * diff;
+        }
+        for(int axis=1;axis<numDims;++axis) {
+            c = coords[axis];
+            p = pos[axis];
+            for(int j=0;j<n;++j) {
+                double diff = c[lo + j] - p;
+                res[j] += diff * diff;
+            }
+        }
+    }//calcSqDists
+
+    /**
+     * Calculate the squared distances, in double precision, from pos to each of the points [lo, hi) of single precision coords
+     * @param coords per-axis point coordinates : coords[axis][idx]
+     * @param numDims # of axes to include
+     * @param lo first point idx
+     * @param hi last point idx, exclusive
+     * @param pos query location
+     * @param res destination : the distance to point i is written to res[i - lo]. Must hold at least hi - lo values
+     */
+    public static void calcSqDists(float[][] coords, int numDims, int lo, int hi, double[] pos, double[] res) {
+        int n = hi - lo;
+        float[] c = coords[0];
+        double p = pos[0];
+        for(int j=0;j<n;++j) {
+            double diff = c[lo + j] - p;
+            res[j] = diff * diff;
+        }
+        for(int axis=1;axis<numDims;++axis) {
+            c = coords[axis];
+            p = pos[axis];
+            for(int j=0;j<n;++j) {
+                double diff = c[lo + j] - p;
+                res[j] += diff * diff;
+            }
+        }
+    }//calcSqDists
+
+}//class KDDistKernels
@@ -0,0 +1,57 @@
+package base_Utils_Objects.kdTree.base;
+
+import java.util.function.Consumer;
+
+import base_Utils_Objects.kdTree.query.KDNeighborhood;
+
+/**
+ * Reentrant neighbor queries shared by the spatial indexes of Base_KDObjects, such as KDTree and SpatialGrid,
+ * so that code can use whichever index is fastest for its data. Distances are squared Euclidean unless the
+ * index has been given another metric.
+ *
+ * @author John Turner
+ *
+ * @param <T> type of object held in the index
+ */
+public interface KDNeighborIndex <T extends Base_KDObject<T>> {
+
+    /**
+     * Build a neighborhood to be used for queries of this index, using its maximum neighborhood size and distance.
+     * Each thread querying this index should own its own neighborhood.
+     * @return
+     */
+    public KDNeighborhood<T> buildNeighborhood();
+
+    /**
+     * Find the nearby objects to the given location without modifying the index or the objects it holds.
+     * @param pos given location. Must have at least as many values as the objects' numPosVals
+     * @param nbhd the neighborhood to populate. It is reset before the search.
+     * @return nbhd, holding the found objects and their sq distances from pos
+     */
+    public KDNeighborhood<T> findNeighborhood(double[] pos, KDNeighborhood<T> nbhd);
+
+    /**
+     * Find every object within the given radius of the given location, passing each to the visitor in no particular order.
+     * @param pos given location. Must have at least as many values as the objects' numPosVals
+     * @param sqRadius square of the radius; objects at a sq distance <= sqRadius are found
+     * @param visitor
+     */
+    public void findInRadius(double[] pos, double sqRadius, Consumer<T> visitor);
+
+    /**
+     * Count the objects within the given radius of the given location
+     * @param pos given location. Must have at least as many values as the objects' numPosVals
+     * @param sqRadius square of the radius; objects at a sq distance <= sqRadius are counted
+     * @return
+     */
+    public int countInRadius(double[] pos, double sqRadius);
+
+    /**
+     * Find every object within the given axis-aligned box, passing each to the visitor in no particular order.
+     * @param mins per-axis minimum of box (inclusive)
+     * @param maxs per-axis maximum of box (inclusive)
+     * @param visitor
+     */
+    public void findInBox(double[] mins, double[] maxs, Consumer<T> visitor);
+
+}//interface KDNeighborIndex
@@ -0,0 +1,169 @@
+package base_Utils_Objects.kdTree.base;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enum describing the space-filling curves available for ordering points and queries so that points that are
+ * near each other in space are near each other in memory/execution order
+ * @author John Turner
+ */
+public enum KDSpaceFillingCurve {
+    None,
+    Morton,
+    Hilbert;
+    private final String[] _typeExplanation = new String[]{
+            "Do not reorder.",
+            "Order along the Morton (Z-order) curve, by interleaving the bits of each axis' quantized value.",
+            "Order along the Hilbert curve, which unlike Morton never jumps between distant cells."
+    };
+    private static Map<Integer, KDSpaceFillingCurve> map = new HashMap<Integer, KDSpaceFillingCurve>();
+    static { for (KDSpaceFillingCurve enumV : KDSpaceFillingCurve.values()) { map.put(enumV.ordinal(), enumV);}}
+    public int getOrdinal() {return ordinal();}
+    public static KDSpaceFillingCurve getEnumByIndex(int idx){return map.get(idx);}
+    public static KDSpaceFillingCurve getEnumFromValue(int idx){return map.get(idx);}
+    public static int getNumVals(){return map.size();}                        //get # of values in enum
+
+    /**
+     * # of bits each axis is quantized to so that a key of numDims axes fits in 63 bits
+     * @param numDims
+     * @return
+     */
+    public static int calcBitsPerAxis(int numDims) {return Math.max(1, Math.min(21, 63 / Math.max(numDims, 1)));}
+
+    /**
+     * # of axes that contribute to a key; at most 63
+     * @param numDims
+     * @return
+     */
+    public static int calcNumKeyAxes(int numDims) {return Math.min(numDims, 63);}
+
+    /**
+     * Quantize a value within [min, min + 1/invExtent] to an integer in [0, 2^bits)
+     * @param v
+     * @param min
+     * @param invExtent 1/(max - min), or 0 if max == min
+     * @param bits
+     * @return
+     */
+    public static int quantize(double v, double min, double invExtent, int bits) {
+        int maxVal = (1 << bits) - 1;
+        int res = (int) ((v - min) * invExtent * maxVal + 0.5);
+        return (res < 0 ? 0 : (res > maxVal ? maxVal : res));
+    }//quantize
+
+    /**
+     * Calculate the position along this curve of a point whose axis values have been quantized
+     * @param quantVals quantized axis values, each in [0, 2^bits). Modified by the Hilbert curve.
+     * @param numKeyAxes # of axes in quantVals
+     * @param bits # of bits per axis; numKeyAxes * bits must be <= 63
+     * @return
+     */
+    public long calcKey(int[] quantVals, int numKeyAxes, int bits) {
+        if (this == None) {return 0;}
+        if (this == Hilbert) {axesToTranspose(quantVals, numKeyAxes, bits);}
+        //interleave bits, most significant first
+        long res = 0;
+        for(int bit=bits-1;bit>=0;--bit) {
+            for(int axis=0;axis<numKeyAxes;++axis) {res = (res << 1) | ((quantVals[axis] >>> bit) & 1);}
+        }
+        return res;
+    }//calcKey
+
+    /**
+     * Convert axis values to the transposed Hilbert index (Skilling, "Programming the Hilbert curve", 2004), in place.
+     * Interleaving the bits of the result gives the Hilbert index.
+     */
+    private static void axesToTranspose(int[] x, int n, int bits) {
+        int m = 1 << (bits - 1), t;
+        //inverse undo
+        for(int q=m;q>1;q>>>=1) {
+            int p = q - 1;
+            for(int i=0;i<n;++i) {
+                if ((x[i] & q) != 0) {    x[0] ^= p;}
+                else {                    t = (x[0] ^ x[i]) & p; x[0] ^= t; x[i] ^= t;}
+            }
+        }
+        //gray encode
+        for(int i=1;i<n;++i) {x[i] ^= x[i-1];}
+        t = 0;
+        for(int q=m;q>1;q>>>=1) {if ((x[n-1] & q) != 0) {t ^= q - 1;}}
+        for(int i=0;i<n;++i) {x[i] ^= t;}
+    }//axesToTranspose
+
+    /**
+     * Calculate the curve key of each of a set of flattened points
+     * @param pts flattened points : point p's axis a value is at [p*numDims + a]
+     * @param numPts
+     * @param numDims
+     * @return keys, or null if this is None
+     */
+    public long[] calcKeys(double[] pts, int numPts, int numDims) {
+        if ((this == None) || (numPts == 0)) {return null;}
+        double[] mins = new double[numDims], invExtents = new double[numDims];
+        for(int axis=0;axis<numDims;++axis) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for(int p=0;p<numPts;++p) {
+                double v = pts[p*numDims + axis];
+                if(v < min) {min = v;}
+                if(v > max) {max = v;}
+            }
+            mins[axis] = min;
+            invExtents[axis] = (max > min ? 1.0/(max - min) : 0.0);
+        }
+        int numKeyAxes = calcNumKeyAxes(numDims), bits = calcBitsPerAxis(numDims);
+        int[] quantVals = new int[numKeyAxes];
+        long[] res = new long[numPts];
+        for(int p=0;p<numPts;++p) {
+            for(int axis=0;axis<numKeyAxes;++axis) {quantVals[axis] = quantize(pts[p*numDims + axis], mins[axis], invExtents[axis], bits);}
+            res[p] = calcKey(quantVals, numKeyAxes, bits);
+        }
+        return res;
+    }//calcKeys
+
+    /**
+     * Find the order of the points along this curve
+     * @param pts flattened points : point p's axis a value is at [p*numDims + a]
+     * @param numPts
+     * @param numDims
+     * @return index of each point in curve order, or null if this is None
+     */
+    public int[] calcOrder(double[] pts, int numPts, int numDims) {
+        long[] keys = calcKeys(pts, numPts, numDims);
+        return (keys == null ? null : sortByKey(keys, numPts));
+    }//calcOrder
+
+    /**
+     * Stable LSD radix sort of the indices [0, n) by their non-negative keys
+     * @param keys keys of each index; reordered by the sort
+     * @param n
+     * @return indices in ascending key order
+     */
+    public static int[] sortByKey(long[] keys, int n) {
+        int[] idxs = new int[n], tmpIdxs = new int[n];
+        long[] tmpKeys = new long[n];
+        for(int i=0;i<n;++i) {idxs[i] = i;}
+        if (n == 0) {return idxs;}
+        int[] counts = new int[1 << 16];
+        for(int shift=0;shift<64;shift+=16) {
+            Arrays.fill(counts, 0);
+            for(int i=0;i<n;++i) {++counts[(int) ((keys[i] >>> shift) & 0xFFFF)];}
+            //skip passes where every key has the same digit
+            if (counts[(int) ((keys[0] >>> shift) & 0xFFFF)] == n) {continue;}
+            for(int d=0, sum=0;d<counts.length;++d) {int c = counts[d]; counts[d] = sum; sum += c;}
+            for(int i=0;i<n;++i) {
+                int dst = counts[(int) ((keys[i] >>> shift) & 0xFFFF)]++;
+                tmpKeys[dst] = keys[i];
+                tmpIdxs[dst] = idxs[i];
+            }
+            System.arraycopy(tmpKeys, 0, keys, 0, n);
+            int[] swp = idxs; idxs = tmpIdxs; tmpIdxs = swp;
+        }
+        return idxs;
+    }//sortByKey
+
+    @Override
+    public String toString() { return ""+this.name()+":"+_typeExplanation[ordinal()]; }
+    public String toStrBrf() { return ""+_typeExplanation[ordinal()]; }
+}
@@ -0,0 +1,55 @@
+package base_Utils_Objects.kdTree.base;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enum describing the rules available for choosing the axis along which a kd-tree node partitions its points
+ * @author John Turner
+ */
+public enum KDSplitRule {
+    WidestSpread,
+    HighestVariance,
+    RoundRobin;
+    private final String[] _typeExplanation = new String[]{
+            "Split along the axis with the largest difference between min and max values.", 
+            "Split along the axis with the highest variance of values.", 
+            "Cycle through the axes in order with each level of the tree."
+    };
+    private static Map<Integer, KDSplitRule> map = new HashMap<Integer, KDSplitRule>(); 
+    static { for (KDSplitRule enumV : KDSplitRule.values()) { map.put(enumV.ordinal(), enumV);}}
+    public int getOrdinal() {return ordinal();}
+    public static KDSplitRule getEnumByIndex(int idx){return map.get(idx);}
+    public static KDSplitRule getEnumFromValue(int idx){return map.get(idx);}
+    public static int getNumVals(){return map.size();}                        //get # of values in enum
+    
+    /**
+     * Whether this rule needs per-axis statistics of the points being split
+     * @return
+     */
+    public boolean needsAxisStats() {return this != RoundRobin;}
+    
+    /**
+     * Score an axis for splitting from statistics of its values; the highest scoring axis is split. 
+     * Sums are of values shifted by an arbitrary constant (i.e. the first value), for numerical stability.
+     * @param min minimum value along axis
+     * @param max maximum value along axis
+     * @param shiftedSum sum of shifted values along axis
+     * @param shiftedSumSq sum of squares of shifted values along axis
+     * @param count # of values
+     * @return
+     */
+    public double calcAxisScore(double min, double max, double shiftedSum, double shiftedSumSq, int count) {
+        switch(this) {
+            case HighestVariance : {
+                double mean = shiftedSum / count;
+                return shiftedSumSq / count - mean * mean;
+            }
+            default : return max - min;
+        }
+    }//calcAxisScore
+    
+    @Override
+    public String toString() { return ""+this.name()+":"+_typeExplanation[ordinal()]; }    
+    public String toStrBrf() { return ""+_typeExplanation[ordinal()]; }
+}
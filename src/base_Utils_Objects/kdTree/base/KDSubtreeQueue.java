@@ -0,0 +1,96 @@
+package base_Utils_Objects.kdTree.base;
+
+/**
+ * Min priority queue of subtrees of an array-backed kd-tree, each identified by the range [lo, hi) of tree idxs 
+ * it spans, keyed by a lower bound on the sq distance from a query point to the subtree. Built on primitive 
+ * arrays so that best-first searches generate no garbage beyond growing the queue. Reuse across queries by 
+ * calling {@link #clear()}.
+ * @author John Turner
+ *
+ */
+public class KDSubtreeQueue {
+    /**
+     * start (inclusive) and end (exclusive) tree idxs of each subtree in the queue, in heap order
+     */
+    protected int[] los, his;
+    /**
+     * key of each subtree in the queue
+     */
+    protected double[] keys;
+    /**
+     * # of subtrees in the queue
+     */
+    protected int numElems;
+    
+    public KDSubtreeQueue() {this(64);}
+    
+    public KDSubtreeQueue(int initSize) {
+        if(initSize < 1) {initSize = 1;}
+        los = new int[initSize];
+        his = new int[initSize];
+        keys = new double[initSize];
+        numElems = 0;
+    }//ctor
+    
+    public final void clear() {numElems = 0;}
+    public final boolean isEmpty() {return numElems == 0;}
+    public final int size() {return numElems;}
+    
+    /**
+     * Add a subtree to the queue
+     * @param lo start tree idx of subtree
+     * @param hi end tree idx (exclusive) of subtree
+     * @param key lower bound of sq distance to subtree
+     */
+    public final void insert(int lo, int hi, double key) {
+        if(numElems == keys.length) {grow();}
+        int idx = numElems++;
+        while (idx > 0) {
+            int parent = (idx - 1) >>> 1;
+            if (keys[parent] <= key) {break;}
+            los[idx] = los[parent]; his[idx] = his[parent]; keys[idx] = keys[parent];
+            idx = parent;
+        }
+        los[idx] = lo; his[idx] = hi; keys[idx] = key;
+    }//insert
+    
+    /**
+     * Remove the subtree with the smallest key. Read its values with the getMin accessors first.
+     */
+    public final void removeMin() {
+        if(numElems == 0) {return;}
+        --numElems;
+        int lo = los[numElems], hi = his[numElems];
+        double key = keys[numElems];
+        int idx = 0, child;
+        while ((child = (idx << 1) + 1) < numElems) {
+            if ((child + 1 < numElems) && (keys[child + 1] < keys[child])) {++child;}
+            if (key <= keys[child]) {break;}
+            los[idx] = los[child]; his[idx] = his[child]; keys[idx] = keys[child];
+            idx = child;
+        }
+        los[idx] = lo; his[idx] = hi; keys[idx] = key;
+    }//removeMin
+    
+    /**
+     * Smallest key in queue, or +inf if empty
+     * @return
+     */
+    public final double getMinKey() {return (numElems == 0 ? Double.POSITIVE_INFINITY : keys[0]);}
+    public final int getMinLo() {return los[0];}
+    public final int getMinHi() {return his[0];}
+    
+    /**
+     * Double the storage of this queue
+     */
+    private void grow() {
+        int newSize = keys.length << 1;
+        int[] tmpLos = new int[newSize], tmpHis = new int[newSize];
+        double[] tmpKeys = new double[newSize];
+        System.arraycopy(los, 0, tmpLos, 0, numElems);
+        System.arraycopy(his, 0, tmpHis, 0, numElems);
+        System.arraycopy(keys, 0, tmpKeys, 0, numElems);
+        los = tmpLos; his = tmpHis; keys = tmpKeys;
+    }//grow
+
+}//class KDSubtreeQueue
@@ -0,0 +1,54 @@
+package base_Utils_Objects.kdTree.metric;
+
+/**
+ * Base class of metrics with optional per-axis weights. The contribution of an axis to a distance is a function 
+ * of its weight and the gap between the two locations along it, so a cell's per-axis lower bound is that 
+ * function of the gap between the query and the nearer edge of the cell.
+ * @author John Turner
+ *
+ */
+public abstract class Base_KDMetric implements KDMetric {
+    /**
+     * Per-axis weights, or null if every axis has weight 1
+     */
+    protected final double[] weights;
+    
+    /**
+     * @param _weights per-axis weights, each >= 0, or null for unweighted. Must have a value for every axis of the points searched.
+     */
+    public Base_KDMetric(double[] _weights) {
+        weights = (_weights == null ? null : _weights.clone());
+    }//ctor
+    
+    /**
+     * Weight of axis
+     */
+    protected final double getWeight(int axis) {return (weights == null ? 1.0 : weights[axis]);}
+    
+    /**
+     * Contribution to the search distance of an axis along which two locations differ by gap
+     * @param axis
+     * @param gap >= 0
+     * @return
+     */
+    protected abstract double calcAxisDistFromGap(int axis, double gap);
+    
+    /**
+     * Gap along axis between a query value and the nearest value in [lo, hi]
+     */
+    protected double calcCellGap(int axis, double pos, double lo, double hi) {
+        return (pos < lo ? lo - pos : (pos > hi ? pos - hi : 0.0));
+    }
+    
+    @Override
+    public final double calcAxisDist(int axis, double pos, double lo, double hi) {return calcAxisDistFromGap(axis, calcCellGap(axis, pos, lo, hi));}
+    
+    /**
+     * Per-axis contributions are summed
+     */
+    @Override
+    public double updateCellDist(double cellDist, double oldAxisDist, double newAxisDist) {return cellDist - oldAxisDist + newAxisDist;}
+    
+    public final double[] getWeights() {return (weights == null ? null : weights.clone());}
+
+}//class Base_KDMetric
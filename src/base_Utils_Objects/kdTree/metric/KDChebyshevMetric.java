@@ -0,0 +1,43 @@
+package base_Utils_Objects.kdTree.metric;
+
+/**
+ * Weighted Chebyshev (L-infinity) metric : the search distance is the distance itself, max(w_i * |d_i|).
+ * @author John Turner
+ *
+ */
+public class KDChebyshevMetric extends Base_KDMetric {
+    
+    /**
+     * @param _weights per-axis weights, each >= 0, or null for unweighted
+     */
+    public KDChebyshevMetric(double[] _weights) {super(_weights);}
+    
+    public KDChebyshevMetric() {this(null);}
+    
+    @Override
+    public double calcDist(double[] pos, double[] ptPos, int numDims) {
+        double res = 0;
+        for(int i=0;i<numDims;++i) {
+            double d = getWeight(i) * Math.abs(pos[i] - ptPos[i]);
+            if (d > res) {res = d;}
+        }
+        return res;
+    }//calcDist
+    
+    @Override
+    protected double calcAxisDistFromGap(int axis, double gap) {return getWeight(axis) * gap;}
+    
+    /**
+     * Per-axis contributions are combined by their max. Since an axis' contribution only grows, the 
+     * new bound is the larger of the old bound and the new contribution.
+     */
+    @Override
+    public double updateCellDist(double cellDist, double oldAxisDist, double newAxisDist) {return (newAxisDist > cellDist ? newAxisDist : cellDist);}
+    
+    @Override
+    public double toSearchDist(double dist) {return dist;}
+    
+    @Override
+    public double fromSearchDist(double searchDist) {return searchDist;}
+
+}//class KDChebyshevMetric
@@ -0,0 +1,37 @@
+package base_Utils_Objects.kdTree.metric;
+
+/**
+ * Weighted Euclidean metric : the search distance is the weighted squared distance, sum(w_i * d_i^2).
+ * @author John Turner
+ *
+ */
+public class KDEuclideanMetric extends Base_KDMetric {
+    
+    /**
+     * @param _weights per-axis weights, each >= 0, or null for unweighted
+     */
+    public KDEuclideanMetric(double[] _weights) {super(_weights);}
+    
+    public KDEuclideanMetric() {this(null);}
+    
+    @Override
+    public double calcDist(double[] pos, double[] ptPos, int numDims) {
+        double res = 0;
+        if (weights == null) {
+            for(int i=0;i<numDims;++i) {double diff = pos[i] - ptPos[i]; res += diff * diff;}
+        } else {
+            for(int i=0;i<numDims;++i) {double diff = pos[i] - ptPos[i]; res += weights[i] * diff * diff;}
+        }
+        return res;
+    }//calcDist
+    
+    @Override
+    protected double calcAxisDistFromGap(int axis, double gap) {return getWeight(axis) * gap * gap;}
+    
+    @Override
+    public double toSearchDist(double dist) {return dist * dist;}
+    
+    @Override
+    public double fromSearchDist(double searchDist) {return Math.sqrt(searchDist);}
+
+}//class KDEuclideanMetric
@@ -0,0 +1,37 @@
+package base_Utils_Objects.kdTree.metric;
+
+/**
+ * Weighted Manhattan (L1) metric : the search distance is the distance itself, sum(w_i * |d_i|).
+ * @author John Turner
+ *
+ */
+public class KDManhattanMetric extends Base_KDMetric {
+    
+    /**
+     * @param _weights per-axis weights, each >= 0, or null for unweighted
+     */
+    public KDManhattanMetric(double[] _weights) {super(_weights);}
+    
+    public KDManhattanMetric() {this(null);}
+    
+    @Override
+    public double calcDist(double[] pos, double[] ptPos, int numDims) {
+        double res = 0;
+        if (weights == null) {
+            for(int i=0;i<numDims;++i) {res += Math.abs(pos[i] - ptPos[i]);}
+        } else {
+            for(int i=0;i<numDims;++i) {res += weights[i] * Math.abs(pos[i] - ptPos[i]);}
+        }
+        return res;
+    }//calcDist
+    
+    @Override
+    protected double calcAxisDistFromGap(int axis, double gap) {return getWeight(axis) * gap;}
+    
+    @Override
+    public double toSearchDist(double dist) {return dist;}
+    
+    @Override
+    public double fromSearchDist(double searchDist) {return searchDist;}
+
+}//class KDManhattanMetric
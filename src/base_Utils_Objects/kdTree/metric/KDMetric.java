@@ -0,0 +1,62 @@
+package base_Utils_Objects.kdTree.metric;
+
+/**
+ * Distance metric used by a kd-tree search in place of squared Euclidean distance.
+ * 
+ * A metric works in "search distance" units : a monotonic function of the true distance that is cheap to compute, 
+ * such as the squared distance for Euclidean metrics. Neighborhoods and radius queries hold and compare search 
+ * distances, so a search radius must be given with {@link #toSearchDist(double)}.
+ * 
+ * To prune the tree, the metric supplies a lower bound of the search distance from a query to any point in a 
+ * kd-tree cell, built up one axis at a time from the cell's per-axis extents.
+ * @author John Turner
+ *
+ */
+public interface KDMetric {
+    
+    /**
+     * Search distance between a query location and a point
+     * @param pos query location
+     * @param ptPos point location
+     * @param numDims # of axes
+     * @return
+     */
+    public double calcDist(double[] pos, double[] ptPos, int numDims);
+    
+    /**
+     * Lower bound of the contribution of one axis to the search distance from a query location to any point whose 
+     * value along that axis is in [lo, hi]
+     * @param axis
+     * @param pos query value along axis
+     * @param lo min value of cell along axis
+     * @param hi max value of cell along axis
+     * @return
+     */
+    public double calcAxisDist(int axis, double pos, double lo, double hi);
+    
+    /**
+     * Update a cell's lower bound search distance when one axis' contribution grows from oldAxisDist to newAxisDist,
+     * as it does when a cell is split and the query is outside the child's extent along the split axis.
+     * A cell distance of 0 with every axis' contribution 0 is a valid starting point.
+     * @param cellDist current lower bound of cell
+     * @param oldAxisDist previous contribution of axis
+     * @param newAxisDist new contribution of axis, >= oldAxisDist
+     * @return
+     */
+    public double updateCellDist(double cellDist, double oldAxisDist, double newAxisDist);
+    
+    /**
+     * Convert a true distance to this metric's search distance
+     * @param dist
+     * @return
+     */
+    public double toSearchDist(double dist);
+    
+    /**
+     * Convert a search distance of this metric to the true distance
+     * @param searchDist
+     * @return
+     */
+    public double fromSearchDist(double searchDist);
+
+}//interface KDMetric
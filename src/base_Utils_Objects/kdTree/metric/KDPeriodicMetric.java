@@ -0,0 +1,71 @@
+package base_Utils_Objects.kdTree.metric;
+
+/**
+ * Weighted Euclidean metric on a periodic (toroidal) domain : along each periodic axis the difference between two 
+ * values is the shorter way around, min(|d|, period - |d|). The search distance is the weighted squared distance.
+ * 
+ * A single search finds neighbors across the wrapped boundaries; the per-axis cell bound measures the gap to a 
+ * cell both ways around the axis, so pruning stays as tight as for a non-periodic domain.
+ * @author John Turner
+ *
+ */
+public class KDPeriodicMetric extends KDEuclideanMetric {
+    /**
+     * Period of each axis; an axis with a period <= 0 does not wrap
+     */
+    protected final double[] periods;
+    
+    /**
+     * @param _periods period of each axis, or <= 0 for an axis that does not wrap. Must have a value for every axis of the points searched.
+     * @param _weights per-axis weights, each >= 0, or null for unweighted
+     */
+    public KDPeriodicMetric(double[] _periods, double[] _weights) {
+        super(_weights);
+        periods = _periods.clone();
+    }//ctor
+    
+    /**
+     * @param _periods period of each axis, or <= 0 for an axis that does not wrap
+     */
+    public KDPeriodicMetric(double[] _periods) {this(_periods, null);}
+    
+    /**
+     * Shorter difference between two values along axis
+     */
+    protected final double calcPtGap(int axis, double a, double b) {
+        double gap = Math.abs(a - b), period = periods[axis];
+        if (period <= 0) {return gap;}
+        if (gap >= period) {gap %= period;}
+        return (gap > period - gap ? period - gap : gap);
+    }//calcPtGap
+    
+    @Override
+    public double calcDist(double[] pos, double[] ptPos, int numDims) {
+        double res = 0;
+        for(int i=0;i<numDims;++i) {
+            double gap = calcPtGap(i, pos[i], ptPos[i]);
+            res += getWeight(i) * gap * gap;
+        }
+        return res;
+    }//calcDist
+    
+    /**
+     * Gap from pos to the nearer of the cell's edges, measured forward to lo and backward to hi around the axis
+     */
+    @Override
+    protected double calcCellGap(int axis, double pos, double lo, double hi) {
+        double period = periods[axis];
+        if (period <= 0) {return super.calcCellGap(axis, pos, lo, hi);}
+        if (hi - lo >= period) {return 0.0;}
+        //offset of pos past lo, wrapped into [0, period)
+        double fromLo = (pos - lo) % period;
+        if (fromLo < 0) {fromLo += period;}
+        if (fromLo <= hi - lo) {return 0.0;}
+        //pos is past hi by fromLo - (hi - lo), and before lo by period - fromLo
+        double pastHi = fromLo - (hi - lo), beforeLo = period - fromLo;
+        return (pastHi < beforeLo ? pastHi : beforeLo);
+    }//calcCellGap
+    
+    public final double[] getPeriods() {return periods.clone();}
+
+}//class KDPeriodicMetric
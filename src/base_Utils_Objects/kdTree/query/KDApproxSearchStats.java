@@ -0,0 +1,99 @@
+package base_Utils_Objects.kdTree.query;
+
+/**
+ * Statistics describing a single approximate nearest neighbor search of an array-backed kd-tree. Reused across 
+ * queries; it is reset at the start of each search.
+ * 
+ * Recall is reported as a certified lower bound : when a search stops early, every unvisited point is at least 
+ * {@link #getMinUnvisitedSqDist()} from the query, so any neighbor found closer than that is guaranteed to be 
+ * a true nearest neighbor.
+ * @author John Turner
+ *
+ */
+public class KDApproxSearchStats {
+    /**
+     * # of internal (splitting) nodes visited
+     */
+    protected int numNodesVisited;
+    /**
+     * # of leaf buckets scanned
+     */
+    protected int numLeavesVisited;
+    /**
+     * # of point distance evaluations
+     */
+    protected int numDistEvals;
+    /**
+     * Whether the search stopped because it reached its maximum # of leaf visits
+     */
+    protected boolean budgetExhausted;
+    /**
+     * Lower bound of the sq distance from the query to every point that was not examined; +inf if every 
+     * subtree that could hold a closer point was examined.
+     */
+    protected double minUnvisitedSqDist;
+    /**
+     * # of neighbors found that are guaranteed to be true nearest neighbors
+     */
+    protected int numCertified;
+    /**
+     * # of neighbors found
+     */
+    protected int numFound;
+    
+    public KDApproxSearchStats() {reset();}
+    
+    /**
+     * Clear all stats for a new search
+     */
+    public final void reset() {
+        numNodesVisited = 0;
+        numLeavesVisited = 0;
+        numDistEvals = 0;
+        budgetExhausted = false;
+        minUnvisitedSqDist = Double.POSITIVE_INFINITY;
+        numCertified = 0;
+        numFound = 0;
+    }
+    
+    /**
+     * Finish the stats for a search, given its results
+     * @param nbhd results of search
+     * @param _minUnvisitedSqDist lower bound of sq distance to every point not examined
+     * @param _budgetExhausted whether search stopped due to its leaf visit budget
+     */
+    public final void setResults(KDIndexNeighborhood nbhd, double _minUnvisitedSqDist, boolean _budgetExhausted) {
+        minUnvisitedSqDist = _minUnvisitedSqDist;
+        budgetExhausted = _budgetExhausted;
+        numFound = nbhd.size();
+        numCertified = 0;
+        for(int i=0;i<numFound;++i) {if(nbhd.getSqDist(i) <= minUnvisitedSqDist) {++numCertified;}}
+    }
+    
+    public final void incrNodesVisited() {++numNodesVisited;}
+    public final void incrLeavesVisited() {++numLeavesVisited;}
+    public final void incrDistEvals(int num) {numDistEvals += num;}
+    
+    //////////////////////////////
+    // Getters
+    
+    public final int getNumNodesVisited() {return numNodesVisited;}
+    public final int getNumLeavesVisited() {return numLeavesVisited;}
+    public final int getNumDistEvals() {return numDistEvals;}
+    public final boolean isBudgetExhausted() {return budgetExhausted;}
+    public final double getMinUnvisitedSqDist() {return minUnvisitedSqDist;}
+    public final int getNumCertified() {return numCertified;}
+    
+    /**
+     * Fraction of the neighbors found that are guaranteed to be true nearest neighbors - a lower bound on the recall of the search
+     * @return
+     */
+    public final double getCertifiedRecall() {return (numFound == 0 ? 1.0 : numCertified / (1.0 * numFound));}
+    
+    @Override
+    public String toString() {
+        return "Nodes visited : "+numNodesVisited+" | Leaves visited : "+numLeavesVisited+" | Dist evals : "+numDistEvals
+                +" | Budget exhausted : "+budgetExhausted+" | Certified recall : "+getCertifiedRecall();
+    }
+
+}//class KDApproxSearchStats
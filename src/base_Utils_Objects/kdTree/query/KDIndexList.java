@@ -0,0 +1,150 @@
+package base_Utils_Objects.kdTree.query;
+
+/**
+ * Growable primitive buffer of point indices, with an optional squared distance per index, used to receive 
+ * the unordered results of range queries of array-backed kd-trees without boxing. Reuse across queries by calling 
+ * {@link #clear()}; storage is only reallocated when it needs to grow. A list also holds the scratch space of the 
+ * range queries it is passed to, so that reusing a list makes those queries allocation-free.
+ * @author John Turner
+ *
+ */
+public class KDIndexList {
+    /**
+     * Source indices of points in this list
+     */
+    protected int[] idxs;
+    /**
+     * Squared distance of each point from the query location, if known
+     */
+    protected double[] sqDists;
+    /**
+     * # of points in this list
+     */
+    protected int numIdxs;
+    /**
+     * Scratch space for the distances of a block of points scanned by a query; grown as needed
+     */
+    protected double[] distScratch;
+    /**
+     * Scratch space for the per-axis bounds of the cell of the subtree being visited by a query; grown as needed
+     */
+    protected double[] cellMins, cellMaxs;
+    
+    public KDIndexList() {this(64);}
+    
+    /**
+     * @param initSize initial capacity
+     */
+    public KDIndexList(int initSize) {
+        if(initSize < 1) {initSize = 1;}
+        idxs = new int[initSize];
+        sqDists = new double[initSize];
+        numIdxs = 0;
+        distScratch = new double[16];
+        cellMins = new double[0];
+        cellMaxs = new double[0];
+    }//ctor
+    
+    /**
+     * Empty this list, retaining its storage
+     */
+    public final void clear() {numIdxs = 0;}
+    
+    /**
+     * Add a point with no known distance
+     * @param idx
+     */
+    public final void add(int idx) {add(idx, Double.NaN);}
+    
+    /**
+     * Add a point and its squared distance from the query location
+     * @param idx
+     * @param sqDist
+     */
+    public final void add(int idx, double sqDist) {
+        if(numIdxs == idxs.length) {grow();}
+        idxs[numIdxs] = idx;
+        sqDists[numIdxs++] = sqDist;
+    }
+    
+    /**
+     * Double the storage of this list
+     */
+    private void grow() {
+        int newSize = idxs.length << 1;
+        if (newSize < 0) {newSize = Integer.MAX_VALUE - 8;}
+        int[] tmpIdxs = new int[newSize];
+        double[] tmpDists = new double[newSize];
+        System.arraycopy(idxs, 0, tmpIdxs, 0, numIdxs);
+        System.arraycopy(sqDists, 0, tmpDists, 0, numIdxs);
+        idxs = tmpIdxs;
+        sqDists = tmpDists;
+    }//grow
+    
+    /**
+     * Get scratch space for the distances of a block of points, holding at least minSize values.
+     * Contents are undefined, and are overwritten by the next query this list is passed to.
+     * @param minSize
+     * @return
+     */
+    public final double[] getDistScratch(int minSize) {
+        if (distScratch.length < minSize) {distScratch = new double[Math.max(minSize, distScratch.length << 1)];}
+        return distScratch;
+    }//getDistScratch
+    
+    /**
+     * Copy the first numDims values of the passed bounds into this list's cell bounds scratch space, growing it if needed.
+     * The copies are then retrieved by {@link #getCellMins()} and {@link #getCellMaxs()}.
+     * @param mins
+     * @param maxs
+     * @param numDims
+     */
+    public final void loadCellBounds(double[] mins, double[] maxs, int numDims) {
+        if (cellMins.length < numDims) {
+            cellMins = new double[numDims];
+            cellMaxs = new double[numDims];
+        }
+        System.arraycopy(mins, 0, cellMins, 0, numDims);
+        System.arraycopy(maxs, 0, cellMaxs, 0, numDims);
+    }//loadCellBounds
+    
+    //////////////////////////////
+    // Getters
+    
+    public final int size() {return numIdxs;}
+    public final boolean isEmpty() {return numIdxs == 0;}
+    
+    /**
+     * Get the source index of the i'th point in this list
+     * @param i
+     * @return
+     */
+    public final int getIdx(int i) {return idxs[i];}
+    
+    /**
+     * Get the sq distance of the i'th point in this list from the query location, or NaN if not known (i.e. box queries)
+     * @param i
+     * @return
+     */
+    public final double getSqDist(int i) {return sqDists[i];}
+    
+    /**
+     * Get the backing array of indices. Only the first {@link #size()} values are valid.
+     * @return
+     */
+    public final int[] getIdxArray() {return idxs;}
+    
+    /**
+     * Get the backing array of sq distances. Only the first {@link #size()} values are valid.
+     * @return
+     */
+    public final double[] getSqDistArray() {return sqDists;}
+    
+    /**
+     * Get the cell bounds scratch space last loaded by {@link #loadCellBounds(double[], double[], int)}
+     * @return
+     */
+    public final double[] getCellMins() {return cellMins;}
+    public final double[] getCellMaxs() {return cellMaxs;}
+
+}//class KDIndexList
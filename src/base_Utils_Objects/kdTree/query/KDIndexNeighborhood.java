@@ -0,0 +1,214 @@
+package base_Utils_Objects.kdTree.query;
+
+/**
+ * This class holds all the per-query state of a kNN search of an array-backed KD tree, along with its results.
+ * Neighbors are referenced only by their index in the tree's source data, and are kept with their squared
+ * distances from the query point in a bounded max-heap built on primitive arrays.
+ *
+ * A neighborhood can (and should) be reused across queries - it is reset at the start of each search.
+ * Not thread safe itself; each thread querying a tree should own its own neighborhood.
+ *
+ * @author John Turner
+ *
+ */
+public class KDIndexNeighborhood {
+    /**
+     * Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     */
+    protected final int maxNumNeighbors;
+    /**
+     * Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     */
+    protected final double maxNeighborSqDist;
+    /**
+     * Source indices of neighbors found so far, in heap order (or ascending distance order once sorted)
+     */
+    protected int[] idxs;
+    /**
+     * Squared distance from query point of each neighbor in idxs
+     */
+    protected double[] sqDists;
+    /**
+     * # of neighbors currently in the neighborhood
+     */
+    protected int numFound;
+    /**
+     * Whether the heap has been sorted into ascending distance order
+     */
+    protected boolean isSorted;
+    /**
+     * Scratch space for the block distance calculations of the search that owns this neighborhood
+     */
+    protected double[] distScratch;
+
+    /**
+     * Build a neighborhood
+     * @param _maxNumNeighbors Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     * @param _maxNeighborSqDist Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     */
+    public KDIndexNeighborhood(int _maxNumNeighbors, double _maxNeighborSqDist) {
+        maxNumNeighbors = _maxNumNeighbors;
+        maxNeighborSqDist = _maxNeighborSqDist;
+        int initSize = (maxNumNeighbors < 16 ? maxNumNeighbors : 16);
+        if(initSize < 1) {initSize = 1;}
+        idxs = new int[initSize];
+        sqDists = new double[initSize];
+        numFound = 0;
+        isSorted = false;
+        distScratch = new double[16];
+    }//ctor
+
+    /**
+     * Clear this neighborhood so that it can be used for a new query
+     */
+    public final void reset() {
+        numFound = 0;
+        isSorted = false;
+    }
+
+    /**
+     * Current pruning distance for the search : the distance of the furthest neighbor if the
+     * neighborhood is full, otherwise the maximum neighborhood sq distance.
+     * @return
+     */
+    public final double getPruneSqDist() {
+        if (numFound < maxNumNeighbors) {return maxNeighborSqDist;}
+        return isSorted ? sqDists[numFound - 1] : sqDists[0];
+    }
+
+    /**
+     * Attempt to add a neighbor to this neighborhood. It will be added if it is closer than the current pruning
+     * distance, in which case the most distant neighbor is evicted if the neighborhood is full.
+     * @param idx source index of neighbor to add
+     * @param sqDist squared distance of neighbor from query point
+     * @return whether the neighbor was added
+     */
+    public final boolean offer(int idx, double sqDist) {
+        if (sqDist >= getPruneSqDist()) {return false;}
+        if (isSorted) {heapify();}
+        if (numFound < maxNumNeighbors) {
+            if (numFound == idxs.length) {grow();}
+            //add at end and move toward root
+            int hIdx = numFound++;
+            while (hIdx > 0) {
+                int parent = (hIdx - 1) >>> 1;
+                if (sqDists[parent] >= sqDist) {break;}
+                idxs[hIdx] = idxs[parent];
+                sqDists[hIdx] = sqDists[parent];
+                hIdx = parent;
+            }
+            idxs[hIdx] = idx;
+            sqDists[hIdx] = sqDist;
+        } else {
+            //replace most distant (root) and move toward leaves
+            siftDown(0, idx, sqDist, numFound);
+        }
+        return true;
+    }//offer
+
+    /**
+     * Sort the found neighbors in increasing order of distance from the query point
+     */
+    public final void sortByDist() {
+        if(isSorted) {return;}
+        for (int end = numFound - 1; end > 0; --end) {
+            int tmpIdx = idxs[end];
+            double tmpDist = sqDists[end];
+            idxs[end] = idxs[0];
+            sqDists[end] = sqDists[0];
+            siftDown(0, tmpIdx, tmpDist, end);
+        }
+        isSorted = true;
+    }//sortByDist
+
+    /**
+     * Restore heap order after a sort
+     */
+    private void heapify() {
+        for (int i = (numFound >>> 1) - 1; i >= 0; --i) {siftDown(i, idxs[i], sqDists[i], numFound);}
+        isSorted = false;
+    }
+
+    /**
+     * Place idx at hIdx in heap of size n, moving it toward the leaves as necessary
+     */
+    private void siftDown(int hIdx, int idx, double sqDist, int n) {
+        int child;
+        while ((child = (hIdx << 1) + 1) < n) {
+            if ((child + 1 < n) && (sqDists[child + 1] > sqDists[child])) {++child;}
+            if (sqDist >= sqDists[child]) {break;}
+            idxs[hIdx] = idxs[child];
+            sqDists[hIdx] = sqDists[child];
+            hIdx = child;
+        }
+        idxs[hIdx] = idx;
+        sqDists[hIdx] = sqDist;
+    }//siftDown
+
+    /**
+     * Double the storage of this neighborhood, up to maxNumNeighbors
+     */
+    private void grow() {
+        int newSize = idxs.length << 1;
+        if ((newSize < 0) || (newSize > maxNumNeighbors)) {newSize = maxNumNeighbors;}
+        int[] tmpIdxs = new int[newSize];
+        double[] tmpDists = new double[newSize];
+        System.arraycopy(idxs, 0, tmpIdxs, 0, numFound);
+        System.arraycopy(sqDists, 0, tmpDists, 0, numFound);
+        idxs = tmpIdxs;
+        sqDists = tmpDists;
+    }//grow
+
+    /**
+     * Sort the found neighbors in ascending distance order and copy them into the passed arrays
+     * @param destIdxs destination for source indices of neighbors
+     * @param destSqDists destination for sq distances of neighbors
+     * @param destOffset idx in destination arrays to start copying to
+     * @return # of neighbors copied
+     */
+    public final int copySortedTo(int[] destIdxs, double[] destSqDists, int destOffset) {
+        sortByDist();
+        System.arraycopy(idxs, 0, destIdxs, destOffset, numFound);
+        System.arraycopy(sqDists, 0, destSqDists, destOffset, numFound);
+        return numFound;
+    }//copySortedTo
+
+    /**
+     * Get scratch space for the distances of a block of points, reused across queries. Only for use by the tree being searched.
+     * @param minSize # of distances needed
+     * @return
+     */
+    public final double[] getDistScratch(int minSize) {
+        if (distScratch.length < minSize) {distScratch = new double[Math.max(minSize, distScratch.length << 1)];}
+        return distScratch;
+    }//getDistScratch
+
+    //////////////////////////////
+    // Getters
+
+    /**
+     * # of neighbors found
+     * @return
+     */
+    public final int size() {return numFound;}
+    public final boolean isEmpty() {return numFound == 0;}
+
+    /**
+     * Get source index of i'th neighbor. Neighbors are in heap order (i == 0 is furthest) unless sortByDist
+     * has been called, in which case they are in ascending distance order.
+     * @param i
+     * @return
+     */
+    public final int getIdx(int i) {return idxs[i];}
+
+    /**
+     * Get the squared distance from the query point of the i'th neighbor
+     * @param i
+     * @return
+     */
+    public final double getSqDist(int i) {return sqDists[i];}
+
+    public final int getMaxNumNeighbors() {return maxNumNeighbors;}
+    public final double getMaxNeighborSqDist() {return maxNeighborSqDist;}
+
+}//class KDIndexNeighborhood
@@ -0,0 +1,88 @@
+package base_Utils_Objects.kdTree.query;
+
+/**
+ * k-nearest-neighbor graph of a point set, in compressed sparse row (CSR) form : the neighbors of point p are
+ * at [rowOffsets[p], rowOffsets[p+1]) of nbrIdxs and nbrSqDists, in ascending distance order.
+ *
+ * @author John Turner
+ *
+ */
+public class KDNeighborGraph {
+    /**
+     * Start of each point's neighbors in nbrIdxs/nbrSqDists; has numPts + 1 entries
+     */
+    protected final int[] rowOffsets;
+    /**
+     * Indices of the neighbors of every point, row by row
+     */
+    protected final int[] nbrIdxs;
+    /**
+     * Sq distances of the neighbors of every point, row by row
+     */
+    protected final double[] nbrSqDists;
+
+    /**
+     * Build a graph from fixed-stride per-point results, compacting away unfilled slots
+     * @param numPts # of points
+     * @param stride # of result slots per point
+     * @param counts # of neighbors found for each point
+     * @param idxs neighbor indices : point p's are at [p*stride, p*stride + counts[p])
+     * @param sqDists neighbor sq distances, laid out like idxs
+     */
+    public KDNeighborGraph(int numPts, int stride, int[] counts, int[] idxs, double[] sqDists) {
+        rowOffsets = new int[numPts + 1];
+        for(int p=0;p<numPts;++p) {rowOffsets[p+1] = rowOffsets[p] + counts[p];}
+        int numEdges = rowOffsets[numPts];
+        if (numEdges == numPts * stride) {
+            nbrIdxs = idxs;
+            nbrSqDists = sqDists;
+            return;
+        }
+        nbrIdxs = new int[numEdges];
+        nbrSqDists = new double[numEdges];
+        for(int p=0;p<numPts;++p) {
+            System.arraycopy(idxs, p*stride, nbrIdxs, rowOffsets[p], counts[p]);
+            System.arraycopy(sqDists, p*stride, nbrSqDists, rowOffsets[p], counts[p]);
+        }
+    }//ctor
+
+    /**
+     * # of points in the graph
+     * @return
+     */
+    public final int getNumPts() {return rowOffsets.length - 1;}
+
+    /**
+     * Total # of neighbor edges in the graph
+     * @return
+     */
+    public final int getNumEdges() {return rowOffsets[rowOffsets.length - 1];}
+
+    /**
+     * # of neighbors of point p
+     * @param p
+     * @return
+     */
+    public final int getNumNeighbors(int p) {return rowOffsets[p+1] - rowOffsets[p];}
+
+    /**
+     * Index of the i'th nearest neighbor of point p
+     * @param p
+     * @param i
+     * @return
+     */
+    public final int getNeighbor(int p, int i) {return nbrIdxs[rowOffsets[p] + i];}
+
+    /**
+     * Sq distance from point p to its i'th nearest neighbor
+     * @param p
+     * @param i
+     * @return
+     */
+    public final double getSqDist(int p, int i) {return nbrSqDists[rowOffsets[p] + i];}
+
+    public final int[] getRowOffsets() {return rowOffsets;}
+    public final int[] getNbrIdxs() {return nbrIdxs;}
+    public final double[] getNbrSqDists() {return nbrSqDists;}
+
+}//class KDNeighborGraph
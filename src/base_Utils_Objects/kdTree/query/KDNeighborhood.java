@@ -0,0 +1,236 @@
+package base_Utils_Objects.kdTree.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import base_Utils_Objects.kdTree.base.Base_KDObject;
+
+/**
+ * This class holds all the per-query state of a kNN search of a KDTree, along with its results.
+ * Found objects are kept in a bounded max-heap keyed on their squared distance from the query point,
+ * so that nothing is written to the tree or to the objects it holds during a search.  This allows
+ * multiple threads to query the same tree concurrently, as long as each thread uses its own neighborhood.
+ *
+ * A neighborhood can (and should) be reused across queries - it is reset at the start of each search.
+ *
+ * @author John Turner
+ *
+ * @param <T> type of object held in the KDTree being queried
+ */
+public class KDNeighborhood <T extends Base_KDObject<T>> {
+    /**
+     * Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     */
+    protected final int maxNumNeighbors;
+    /**
+     * Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     */
+    protected final double maxNeighborSqDist;
+    /**
+     * Objects found so far, in heap order (or ascending distance order once sorted)
+     */
+    protected Object[] objs;
+    /**
+     * Squared distance from query point of each object in objs
+     */
+    protected double[] sqDists;
+    /**
+     * # of objects currently in the neighborhood
+     */
+    protected int numFound;
+    /**
+     * Whether the heap has been sorted into ascending distance order
+     */
+    protected boolean isSorted;
+    /**
+     * Stats of the searches made with this neighborhood while the tree's query stats are being collected; built on first use
+     */
+    protected KDQueryStats queryStats;
+    /**
+     * Per-axis cell coordinate scratch space of the searches of uniform grids made with this neighborhood; built on first use
+     */
+    protected int[][] cellScratch;
+
+    /**
+     * Build a neighborhood
+     * @param _maxNumNeighbors Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     * @param _maxNeighborSqDist Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     */
+    public KDNeighborhood(int _maxNumNeighbors, double _maxNeighborSqDist) {
+        maxNumNeighbors = _maxNumNeighbors;
+        maxNeighborSqDist = _maxNeighborSqDist;
+        int initSize = (maxNumNeighbors < 16 ? maxNumNeighbors : 16);
+        if(initSize < 1) {initSize = 1;}
+        objs = new Object[initSize];
+        sqDists = new double[initSize];
+        numFound = 0;
+        isSorted = false;
+    }//ctor
+
+    /**
+     * Clear this neighborhood so that it can be used for a new query
+     */
+    public final void reset() {
+        for(int i=0;i<numFound;++i) {objs[i] = null;}
+        numFound = 0;
+        isSorted = false;
+    }
+
+    /**
+     * Current pruning distance for the search : the distance of the furthest neighbor if the
+     * neighborhood is full, otherwise the maximum neighborhood sq distance.
+     * @return
+     */
+    public final double getPruneSqDist() {
+        if (numFound < maxNumNeighbors) {return maxNeighborSqDist;}
+        return isSorted ? sqDists[numFound - 1] : sqDists[0];
+    }
+
+    /**
+     * Attempt to add an object to this neighborhood. It will be added if it is closer than the current pruning
+     * distance, in which case the most distant neighbor is evicted if the neighborhood is full.
+     * @param obj object to add
+     * @param sqDist squared distance of obj from query point
+     * @return whether obj was added
+     */
+    public final boolean offer(T obj, double sqDist) {
+        if (sqDist >= getPruneSqDist()) {return false;}
+        if (isSorted) {heapify();}
+        if (numFound < maxNumNeighbors) {
+            if (numFound == objs.length) {grow();}
+            //add at end and move toward root
+            int idx = numFound++;
+            while (idx > 0) {
+                int parent = (idx - 1) >>> 1;
+                if (sqDists[parent] >= sqDist) {break;}
+                objs[idx] = objs[parent];
+                sqDists[idx] = sqDists[parent];
+                idx = parent;
+            }
+            objs[idx] = obj;
+            sqDists[idx] = sqDist;
+        } else {
+            //replace most distant (root) and move toward leaves
+            siftDown(0, obj, sqDist, numFound);
+        }
+        return true;
+    }//offer
+
+    /**
+     * Sort the found neighbors in increasing order of distance from the query point
+     */
+    public final void sortByDist() {
+        if(isSorted) {return;}
+        for (int end = numFound - 1; end > 0; --end) {
+            Object tmpObj = objs[end];
+            double tmpDist = sqDists[end];
+            objs[end] = objs[0];
+            sqDists[end] = sqDists[0];
+            siftDown(0, tmpObj, tmpDist, end);
+        }
+        isSorted = true;
+    }//sortByDist
+
+    /**
+     * Restore heap order after a sort
+     */
+    private void heapify() {
+        for (int i = (numFound >>> 1) - 1; i >= 0; --i) {siftDown(i, objs[i], sqDists[i], numFound);}
+        isSorted = false;
+    }
+
+    /**
+     * Place obj at idx in heap of size n, moving it toward the leaves as necessary
+     */
+    private void siftDown(int idx, Object obj, double sqDist, int n) {
+        int child;
+        while ((child = (idx << 1) + 1) < n) {
+            if ((child + 1 < n) && (sqDists[child + 1] > sqDists[child])) {++child;}
+            if (sqDist >= sqDists[child]) {break;}
+            objs[idx] = objs[child];
+            sqDists[idx] = sqDists[child];
+            idx = child;
+        }
+        objs[idx] = obj;
+        sqDists[idx] = sqDist;
+    }//siftDown
+
+    /**
+     * Double the storage of this neighborhood, up to maxNumNeighbors
+     */
+    private void grow() {
+        int newSize = objs.length << 1;
+        if ((newSize < 0) || (newSize > maxNumNeighbors)) {newSize = maxNumNeighbors;}
+        Object[] tmpObjs = new Object[newSize];
+        double[] tmpDists = new double[newSize];
+        System.arraycopy(objs, 0, tmpObjs, 0, numFound);
+        System.arraycopy(sqDists, 0, tmpDists, 0, numFound);
+        objs = tmpObjs;
+        sqDists = tmpDists;
+    }//grow
+
+    //////////////////////////////
+    // Getters
+
+    /**
+     * # of neighbors found
+     * @return
+     */
+    public final int size() {return numFound;}
+    public final boolean isEmpty() {return numFound == 0;}
+
+    /**
+     * Get idx'th neighbor. Neighbors are in heap order (idx 0 is furthest) unless sortByDist has been called,
+     * in which case they are in ascending distance order.
+     * @param idx
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public final T getNeighbor(int idx) {return (T) objs[idx];}
+
+    /**
+     * Get the squared distance from the query point of the idx'th neighbor
+     * @param idx
+     * @return
+     */
+    public final double getSqDist(int idx) {return sqDists[idx];}
+
+    /**
+     * Get a list of the neighbors found, in ascending distance order
+     * @return
+     */
+    public final List<T> getSortedNeighbors(){
+        sortByDist();
+        List<T> res = new ArrayList<T>(numFound);
+        for(int i=0;i<numFound;++i) {res.add(getNeighbor(i));}
+        return res;
+    }
+
+    /**
+     * Get the stats used by searches with this neighborhood when the tree is collecting query stats, reused across 
+     * queries. Only for use by the tree being searched.
+     * @return
+     */
+    public final KDQueryStats getQueryStats() {
+        if (queryStats == null) {queryStats = new KDQueryStats();}
+        return queryStats;
+    }//getQueryStats
+
+    /**
+     * Get numArrays arrays of per-axis cell coordinate scratch space, each holding at least numDims values, reused
+     * across queries. Contents are undefined. Only for use by the grid being searched.
+     * @param numArrays
+     * @param numDims
+     * @return
+     */
+    public final int[][] getCellScratch(int numArrays, int numDims) {
+        if ((cellScratch == null) || (cellScratch.length < numArrays) || (cellScratch[0].length < numDims)) {
+            cellScratch = new int[Math.max(numArrays, (cellScratch == null ? 0 : cellScratch.length))][numDims];
+        }
+        return cellScratch;
+    }//getCellScratch
+
+    public final int getMaxNumNeighbors() {return maxNumNeighbors;}
+    public final double getMaxNeighborSqDist() {return maxNeighborSqDist;}
+
+}//class KDNeighborhood
@@ -0,0 +1,122 @@
+package base_Utils_Objects.kdTree.query;
+
+/**
+ * Growable primitive buffer of pairs of point indices and the squared distance between each pair's points, used to
+ * receive the results of self-joins of array-backed kd-trees without boxing. Each pair's smaller index is first.
+ * Reuse across joins by calling {@link #clear()}; storage is only reallocated when it needs to grow.
+ * @author John Turner
+ *
+ */
+public class KDPairList {
+    /**
+     * Source indices of the points of each pair, interleaved : pair i is at [2*i] and [2*i + 1]
+     */
+    protected int[] idxs;
+    /**
+     * Squared distance between the points of each pair
+     */
+    protected double[] sqDists;
+    /**
+     * # of pairs in this list
+     */
+    protected int numPairs;
+
+    public KDPairList() {this(64);}
+
+    /**
+     * @param initSize initial capacity, in pairs
+     */
+    public KDPairList(int initSize) {
+        if(initSize < 1) {initSize = 1;}
+        idxs = new int[initSize << 1];
+        sqDists = new double[initSize];
+        numPairs = 0;
+    }//ctor
+
+    /**
+     * Empty this list, retaining its storage
+     */
+    public final void clear() {numPairs = 0;}
+
+    /**
+     * Add a pair of points and the squared distance between them. The pair is stored with its smaller index first.
+     * @param idxA
+     * @param idxB
+     * @param sqDist
+     */
+    public final void add(int idxA, int idxB, double sqDist) {
+        if(numPairs == sqDists.length) {ensureCapacity(numPairs + 1);}
+        int i = numPairs << 1;
+        if (idxA < idxB) {    idxs[i] = idxA; idxs[i+1] = idxB;}
+        else {                idxs[i] = idxB; idxs[i+1] = idxA;}
+        sqDists[numPairs++] = sqDist;
+    }//add
+
+    /**
+     * Append all the pairs of another list to this one, in order
+     * @param other
+     */
+    public final void addAll(KDPairList other) {
+        if (other.numPairs == 0) {return;}
+        ensureCapacity(numPairs + other.numPairs);
+        System.arraycopy(other.idxs, 0, idxs, numPairs << 1, other.numPairs << 1);
+        System.arraycopy(other.sqDists, 0, sqDists, numPairs, other.numPairs);
+        numPairs += other.numPairs;
+    }//addAll
+
+    /**
+     * Grow the storage of this list, at least doubling it, so that it can hold the given # of pairs
+     * @param minSize
+     */
+    public final void ensureCapacity(int minSize) {
+        if (minSize <= sqDists.length) {return;}
+        int newSize = Math.max(sqDists.length << 1, minSize);
+        if ((newSize < 0) || (newSize > (Integer.MAX_VALUE - 8) >> 1)) {newSize = (Integer.MAX_VALUE - 8) >> 1;}
+        int[] tmpIdxs = new int[newSize << 1];
+        double[] tmpDists = new double[newSize];
+        System.arraycopy(idxs, 0, tmpIdxs, 0, numPairs << 1);
+        System.arraycopy(sqDists, 0, tmpDists, 0, numPairs);
+        idxs = tmpIdxs;
+        sqDists = tmpDists;
+    }//ensureCapacity
+
+    //////////////////////////////
+    // Getters
+
+    public final int size() {return numPairs;}
+    public final boolean isEmpty() {return numPairs == 0;}
+
+    /**
+     * Get the smaller source index of the i'th pair in this list
+     * @param i
+     * @return
+     */
+    public final int getIdxA(int i) {return idxs[i << 1];}
+
+    /**
+     * Get the larger source index of the i'th pair in this list
+     * @param i
+     * @return
+     */
+    public final int getIdxB(int i) {return idxs[(i << 1) + 1];}
+
+    /**
+     * Get the sq distance between the points of the i'th pair in this list
+     * @param i
+     * @return
+     */
+    public final double getSqDist(int i) {return sqDists[i];}
+
+    /**
+     * Get the backing array of interleaved pair indices. Only the first 2 * {@link #size()} values are valid.
+     * @return
+     */
+    public final int[] getIdxArray() {return idxs;}
+
+    /**
+     * Get the backing array of sq distances. Only the first {@link #size()} values are valid.
+     * @return
+     */
+    public final double[] getSqDistArray() {return sqDists;}
+
+}//class KDPairList
@@ -0,0 +1,72 @@
+package base_Utils_Objects.kdTree.query;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cumulative query counters of a KDTree, summed over every query made while they are being collected. Any number
+ * of threads may add to them concurrently; LongAdders keep contention between querying threads low.
+ * Read them through {@link #getSnapshot()}.
+ * @author John Turner
+ *
+ */
+public class KDQueryCounters {
+    /**
+     * # of queries counted
+     */
+    protected final LongAdder numQueries = new LongAdder();
+    /**
+     * Summed per-query counters. See {@link KDQueryStats}
+     */
+    protected final LongAdder numNodesVisited = new LongAdder(), numDistEvals = new LongAdder(), numSubtreesPruned = new LongAdder(),
+            numHeapPushes = new LongAdder(), numHeapPolls = new LongAdder();
+    /**
+     * # of queries that finished with a finite pruning distance, and the sum of those distances
+     */
+    protected final LongAdder numFinitePruneSqDists = new LongAdder();
+    protected final DoubleAdder sumFinalPruneSqDists = new DoubleAdder();
+
+    public KDQueryCounters() {}
+
+    /**
+     * Add the counters of a finished query
+     * @param stats
+     */
+    public final void add(KDQueryStats stats) {
+        numQueries.increment();
+        numNodesVisited.add(stats.getNumNodesVisited());
+        numDistEvals.add(stats.getNumDistEvals());
+        numSubtreesPruned.add(stats.getNumSubtreesPruned());
+        numHeapPushes.add(stats.getNumHeapPushes());
+        numHeapPolls.add(stats.getNumHeapPolls());
+        double pruneSqDist = stats.getFinalPruneSqDist();
+        if (pruneSqDist < Double.POSITIVE_INFINITY) {
+            numFinitePruneSqDists.increment();
+            sumFinalPruneSqDists.add(pruneSqDist);
+        }
+    }//add
+
+    /**
+     * Clear all counters. Queries running during the reset may be partially counted.
+     */
+    public final void reset() {
+        numQueries.reset();
+        numNodesVisited.reset();
+        numDistEvals.reset();
+        numSubtreesPruned.reset();
+        numHeapPushes.reset();
+        numHeapPolls.reset();
+        numFinitePruneSqDists.reset();
+        sumFinalPruneSqDists.reset();
+    }//reset
+
+    /**
+     * Get the current values of the counters. Queries running while the snapshot is taken may be partially counted.
+     * @return
+     */
+    public final KDQueryStatsSnapshot getSnapshot() {
+        return new KDQueryStatsSnapshot(numQueries.sum(), numNodesVisited.sum(), numDistEvals.sum(), numSubtreesPruned.sum(),
+                numHeapPushes.sum(), numHeapPolls.sum(), numFinitePruneSqDists.sum(), sumFinalPruneSqDists.sum());
+    }
+
+}//class KDQueryCounters
@@ -0,0 +1,73 @@
+package base_Utils_Objects.kdTree.query;
+
+/**
+ * Counters describing the work done by a single query of a KDTree. Reused across queries; it is reset at the
+ * start of each search. Each thread querying a tree should own its own stats.
+ * @author John Turner
+ *
+ */
+public class KDQueryStats {
+    /**
+     * # of tree nodes visited
+     */
+    protected int numNodesVisited;
+    /**
+     * # of object distance evaluations
+     */
+    protected int numDistEvals;
+    /**
+     * # of child subtrees skipped because they could not hold a result
+     */
+    protected int numSubtreesPruned;
+    /**
+     * # of objects added to the neighborhood heap
+     */
+    protected int numHeapPushes;
+    /**
+     * # of objects evicted from the neighborhood heap to make room for closer ones
+     */
+    protected int numHeapPolls;
+    /**
+     * Pruning sq distance when the search finished : the distance of the furthest neighbor of a full neighborhood,
+     * otherwise the maximum neighborhood sq distance. For a radius query, the sq radius.
+     */
+    protected double finalPruneSqDist;
+
+    public KDQueryStats() {reset();}
+
+    /**
+     * Clear all counters for a new search
+     */
+    public final void reset() {
+        numNodesVisited = 0;
+        numDistEvals = 0;
+        numSubtreesPruned = 0;
+        numHeapPushes = 0;
+        numHeapPolls = 0;
+        finalPruneSqDist = Double.POSITIVE_INFINITY;
+    }
+
+    public final void incrNodesVisited() {++numNodesVisited;}
+    public final void incrDistEvals() {++numDistEvals;}
+    public final void incrSubtreesPruned() {++numSubtreesPruned;}
+    public final void incrHeapPushes() {++numHeapPushes;}
+    public final void incrHeapPolls() {++numHeapPolls;}
+    public final void setFinalPruneSqDist(double _finalPruneSqDist) {finalPruneSqDist = _finalPruneSqDist;}
+
+    //////////////////////////////
+    // Getters
+
+    public final int getNumNodesVisited() {return numNodesVisited;}
+    public final int getNumDistEvals() {return numDistEvals;}
+    public final int getNumSubtreesPruned() {return numSubtreesPruned;}
+    public final int getNumHeapPushes() {return numHeapPushes;}
+    public final int getNumHeapPolls() {return numHeapPolls;}
+    public final double getFinalPruneSqDist() {return finalPruneSqDist;}
+
+    @Override
+    public String toString() {
+        return "Nodes visited : "+numNodesVisited+" | Dist evals : "+numDistEvals+" | Subtrees pruned : "+numSubtreesPruned
+                +" | Heap pushes : "+numHeapPushes+" | Heap polls : "+numHeapPolls+" | Final prune sq dist : "+finalPruneSqDist;
+    }
+
+}//class KDQueryStats
@@ -0,0 +1,74 @@
+package base_Utils_Objects.kdTree.query;
+
+/**
+ * Immutable copy of the cumulative query counters of a KDTree at one moment.
+ * @author John Turner
+ *
+ */
+public class KDQueryStatsSnapshot {
+    /**
+     * # of queries counted
+     */
+    protected final long numQueries;
+    /**
+     * Summed per-query counters. See {@link KDQueryStats}
+     */
+    protected final long numNodesVisited, numDistEvals, numSubtreesPruned, numHeapPushes, numHeapPolls;
+    /**
+     * # of queries that finished with a finite pruning distance, and the sum of those distances
+     */
+    protected final long numFinitePruneSqDists;
+    protected final double sumFinalPruneSqDists;
+
+    public KDQueryStatsSnapshot(long _numQueries, long _numNodesVisited, long _numDistEvals, long _numSubtreesPruned,
+            long _numHeapPushes, long _numHeapPolls, long _numFinitePruneSqDists, double _sumFinalPruneSqDists) {
+        numQueries = _numQueries;
+        numNodesVisited = _numNodesVisited;
+        numDistEvals = _numDistEvals;
+        numSubtreesPruned = _numSubtreesPruned;
+        numHeapPushes = _numHeapPushes;
+        numHeapPolls = _numHeapPolls;
+        numFinitePruneSqDists = _numFinitePruneSqDists;
+        sumFinalPruneSqDists = _sumFinalPruneSqDists;
+    }//ctor
+
+    /**
+     * Average of a total over the queries counted
+     */
+    private double perQuery(long total) {return (numQueries == 0 ? 0.0 : total / (1.0 * numQueries));}
+
+    public final long getNumQueries() {return numQueries;}
+    public final long getNumNodesVisited() {return numNodesVisited;}
+    public final long getNumDistEvals() {return numDistEvals;}
+    public final long getNumSubtreesPruned() {return numSubtreesPruned;}
+    public final long getNumHeapPushes() {return numHeapPushes;}
+    public final long getNumHeapPolls() {return numHeapPolls;}
+
+    public final double getMeanNodesVisited() {return perQuery(numNodesVisited);}
+    public final double getMeanDistEvals() {return perQuery(numDistEvals);}
+    public final double getMeanSubtreesPruned() {return perQuery(numSubtreesPruned);}
+    public final double getMeanHeapPushes() {return perQuery(numHeapPushes);}
+    public final double getMeanHeapPolls() {return perQuery(numHeapPolls);}
+
+    /**
+     * Mean final pruning sq distance of the queries that finished with a finite one; NaN if none did.
+     * For kNN queries, this is a typical sq distance to the k'th neighbor.
+     * @return
+     */
+    public final double getMeanFinalPruneSqDist() {return (numFinitePruneSqDists == 0 ? Double.NaN : sumFinalPruneSqDists / numFinitePruneSqDists);}
+
+    /**
+     * Fraction of the queries that finished with a finite pruning distance - for kNN queries with an unbounded
+     * max neighborhood distance, the fraction that found a full neighborhood
+     * @return
+     */
+    public final double getFracFinitePruneSqDist() {return (numQueries == 0 ? 0.0 : numFinitePruneSqDists / (1.0 * numQueries));}
+
+    @Override
+    public String toString() {
+        return "Queries : "+numQueries+" | Mean nodes visited : "+getMeanNodesVisited()+" | Mean dist evals : "+getMeanDistEvals()
+                +" | Mean subtrees pruned : "+getMeanSubtreesPruned()+" | Mean heap pushes : "+getMeanHeapPushes()
+                +" | Mean heap polls : "+getMeanHeapPolls()+" | Mean final prune sq dist : "+getMeanFinalPruneSqDist();
+    }
+
+}//class KDQueryStatsSnapshot
@@ -0,0 +1,16 @@
+package base_Utils_Objects.kdTree.query;
+
+/**
+ * Receives each point found by a range (radius or box) query of an array-backed kd-tree, in no particular order.
+ * @author John Turner
+ *
+ */
+@FunctionalInterface
+public interface KDRangeVisitor {
+    /**
+     * Called once for each point found by a range query
+     * @param srcIdx index of the found point in the tree's source data
+     */
+    public void visit(int srcIdx);
+
+}//interface KDRangeVisitor
@@ -0,0 +1,112 @@
+package base_Utils_Objects.kdTree.query;
+
+import java.util.Arrays;
+
+/**
+ * Structural quality statistics of a kd-tree : how deep its leaves are and how full they are. Built by walking
+ * the tree, adding each of its leaves and internal nodes.
+ * @author John Turner
+ *
+ */
+public class KDTreeStats {
+    /**
+     * # of leaves at each depth
+     */
+    protected int[] leafDepthCounts;
+    /**
+     * # of leaves holding each # of live points/objects
+     */
+    protected int[] leafOccupancyCounts;
+    /**
+     * # of internal (splitting) nodes
+     */
+    protected int numInternalNodes;
+    /**
+     * # of leaves
+     */
+    protected int numLeaves;
+    /**
+     * # of live points/objects held in leaves
+     */
+    protected long numLeafObjs;
+    /**
+     * Sum of the depths of all leaves
+     */
+    protected long sumLeafDepths;
+
+    public KDTreeStats() {
+        leafDepthCounts = new int[16];
+        leafOccupancyCounts = new int[2];
+        numInternalNodes = 0;
+        numLeaves = 0;
+        numLeafObjs = 0;
+        sumLeafDepths = 0;
+    }//ctor
+
+    /**
+     * Add a leaf
+     * @param depth depth of leaf; the root is at depth 0
+     * @param numObjs # of live points/objects in leaf
+     */
+    public final void addLeaf(int depth, int numObjs) {
+        if (depth >= leafDepthCounts.length) {leafDepthCounts = Arrays.copyOf(leafDepthCounts, Math.max(depth + 1, leafDepthCounts.length << 1));}
+        if (numObjs >= leafOccupancyCounts.length) {leafOccupancyCounts = Arrays.copyOf(leafOccupancyCounts, numObjs + 1);}
+        ++leafDepthCounts[depth];
+        ++leafOccupancyCounts[numObjs];
+        ++numLeaves;
+        numLeafObjs += numObjs;
+        sumLeafDepths += depth;
+    }//addLeaf
+
+    /**
+     * Add an internal (splitting) node
+     */
+    public final void addInternalNode() {++numInternalNodes;}
+
+    //////////////////////////////
+    // Getters
+
+    public final int getNumInternalNodes() {return numInternalNodes;}
+    public final int getNumLeaves() {return numLeaves;}
+
+    /**
+     * Depth of the deepest leaf, or -1 if there are no leaves
+     * @return
+     */
+    public final int getMaxLeafDepth() {
+        for(int d=leafDepthCounts.length-1;d>=0;--d) {if (leafDepthCounts[d] > 0) {return d;}}
+        return -1;
+    }
+
+    /**
+     * Depth of the shallowest leaf, or -1 if there are no leaves
+     * @return
+     */
+    public final int getMinLeafDepth() {
+        for(int d=0;d<leafDepthCounts.length;++d) {if (leafDepthCounts[d] > 0) {return d;}}
+        return -1;
+    }
+
+    public final double getMeanLeafDepth() {return (numLeaves == 0 ? 0.0 : sumLeafDepths / (1.0 * numLeaves));}
+    public final double getMeanLeafOccupancy() {return (numLeaves == 0 ? 0.0 : numLeafObjs / (1.0 * numLeaves));}
+
+    /**
+     * # of leaves at each depth, indexed by depth, up to the max leaf depth
+     * @return
+     */
+    public final int[] getLeafDepthHistogram() {return Arrays.copyOf(leafDepthCounts, getMaxLeafDepth() + 1);}
+
+    /**
+     * # of leaves holding each # of live points/objects, indexed by that #
+     * @return
+     */
+    public final int[] getLeafOccupancyHistogram() {return leafOccupancyCounts.clone();}
+
+    @Override
+    public String toString() {
+        return "Internal nodes : "+numInternalNodes+" | Leaves : "+numLeaves+" | Leaf depth min/mean/max : "+getMinLeafDepth()+"/"+getMeanLeafDepth()+"/"+getMaxLeafDepth()
+                +"\nLeaf depth histogram : "+Arrays.toString(getLeafDepthHistogram())
+                +"\nMean leaf occupancy : "+getMeanLeafOccupancy()+" | Leaf occupancy histogram : "+Arrays.toString(leafOccupancyCounts);
+    }
+
+}//class KDTreeStats
@@ -0,0 +1,514 @@
+package base_Utils_Objects.spatialGrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import base_Utils_Objects.kdTree.base.Base_KDObject;
+import base_Utils_Objects.kdTree.base.KDNeighborIndex;
+import base_Utils_Objects.kdTree.query.KDNeighborhood;
+
+/**
+ * Uniform grid spatial index of Base_KDObjects : the bounding box of the objects is divided into equal cubic cells,
+ * and the objects are counting-sorted by cell into flat arrays, so a build is O(n) with no per-cell allocation.
+ * Suited to dense, roughly uniform, low-dimensional data that moves every step, where rebuilding a kd-tree
+ * costs more than the queries it speeds up. Queries are those of KDTree, through {@link KDNeighborIndex}.
+ *
+ * The cell size should be about the typical query radius. If it would give more than {@link #MAX_CELLS_PER_OBJ}
+ * cells per object, it is grown to bound the grid's memory.
+ *
+ * Once built, the grid is read-only and any number of threads may query it concurrently, each with its own neighborhood.
+ * Objects may move between builds; each build reads their current positions.
+ *
+ * @author John Turner
+ *
+ * @param <T> type of object held in this grid
+ */
+public class SpatialGrid <T extends Base_KDObject<T>> implements KDNeighborIndex<T> {
+    /**
+     * Max # of cells per object in the grid, beyond which the cell size is grown
+     */
+    public static final int MAX_CELLS_PER_OBJ = 4;
+    /**
+     * Grids of any size may have at least this many cells
+     */
+    public static final int MIN_MAX_CELLS = 1024;
+
+    /**
+     * list of objects this grid is built from
+     */
+    protected ArrayList<T> nodeObjectList;
+    /**
+     * Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     */
+    protected double maxNeighborSqDist;
+    /**
+     * Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     */
+    protected int maxNumNeighbors;
+    /**
+     * Requested edge length of each cell
+     */
+    protected double cellSize;
+
+    /**
+     * # of position values/axes of the objects in the grid
+     */
+    protected int numDims;
+    /**
+     * # of objects in the built grid
+     */
+    protected int numObjs;
+    /**
+     * Edge length of each cell of the built grid, and its inverse
+     */
+    protected double gridCellSize, invGridCellSize;
+    /**
+     * Per-axis min position value of the built grid - the low corner of cell 0
+     */
+    protected double[] gridMins;
+    /**
+     * Per-axis # of cells, and the step in cell idx of one cell along each axis
+     */
+    protected int[] numCells, cellStrides;
+    /**
+     * Total # of cells
+     */
+    protected int totalCells;
+    /**
+     * Start of each cell's objects in cellObjs and coords; has totalCells + 1 entries
+     */
+    protected int[] cellStarts;
+    /**
+     * Objects, sorted by cell
+     */
+    protected Object[] cellObjs;
+    /**
+     * Object coordinates, sorted by cell, per axis : coords[axis][idx]
+     */
+    protected double[][] coords;
+    /**
+     * Cell idx of each object, in nodeObjectList order. Scratch space for building.
+     */
+    private int[] objCells;
+
+    /**
+     * @param _maxNumNeighbors Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     * @param _maxNeighborSqDist Max Sq Distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     * @param _cellSize edge length of each cell; about the typical query radius
+     */
+    public SpatialGrid(int _maxNumNeighbors, double _maxNeighborSqDist, double _cellSize) {
+        maxNumNeighbors = _maxNumNeighbors;
+        maxNeighborSqDist = _maxNeighborSqDist;
+        setCellSize(_cellSize);
+        nodeObjectList = new ArrayList<T>();
+        numDims = 0;
+        numObjs = 0;
+    }//ctor
+
+    /**
+     * add a KD Object to the grid. It is not found by queries until the grid is next built.
+     * @param p Object to add
+     */
+    public void addKDObject(T p){
+        nodeObjectList.add(p);
+    }
+
+    /**
+     * Remove every object from the list the grid is built from. The built grid is unchanged until it is next built.
+     */
+    public void clearKDObjects() {
+        nodeObjectList.clear();
+    }
+
+    /**
+     * Build the grid from the current positions of all the objects added to it. Storage from previous builds is reused
+     * where it is large enough, so rebuilding every step allocates nothing once the grid has reached its working size.
+     */
+    public void buildGrid() {
+        int n = nodeObjectList.size();
+        if(n == 0) {
+            System.out.println("No Objects added to build Spatial Grid from. Aborting.");
+            return;
+        }
+        numDims = nodeObjectList.get(0).getNumPosVals();
+        numObjs = 0;
+        double[] maxs = new double[numDims];
+        if ((gridMins == null) || (gridMins.length != numDims)) {
+            gridMins = new double[numDims];
+            numCells = new int[numDims];
+            cellStrides = new int[numDims];
+        }
+        Arrays.fill(gridMins, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+        for (T obj : nodeObjectList) {
+            for(int j=0;j<numDims;++j) {
+                double v = obj.getPosVal(j);
+                if (v < gridMins[j]) {gridMins[j] = v;}
+                if (v > maxs[j]) {maxs[j] = v;}
+            }
+        }
+        initCells(maxs, n);
+        //count each cell's objects, then find each cell's end by prefix sum
+        if ((cellStarts == null) || (cellStarts.length < totalCells + 1)) {cellStarts = new int[totalCells + 1];}
+        else {Arrays.fill(cellStarts, 0, totalCells + 1, 0);}
+        if ((objCells == null) || (objCells.length < n)) {objCells = new int[n];}
+        for(int i=0;i<n;++i) {
+            int cell = calcCellIdx(nodeObjectList.get(i));
+            objCells[i] = cell;
+            ++cellStarts[cell];
+        }
+        for(int c=1;c<totalCells;++c) {cellStarts[c] += cellStarts[c-1];}
+        cellStarts[totalCells] = n;
+        //place objects from the end of their cells back, leaving each cell's start in cellStarts; keeps objects in list order within a cell
+        if ((cellObjs == null) || (cellObjs.length < n)) {cellObjs = new Object[n];}
+        if ((coords == null) || (coords.length != numDims) || (coords[0].length < n)) {coords = new double[numDims][n];}
+        for(int i=n-1;i>=0;--i) {
+            T obj = nodeObjectList.get(i);
+            int dst = --cellStarts[objCells[i]];
+            cellObjs[dst] = obj;
+            for(int j=0;j<numDims;++j) {coords[j][dst] = obj.getPosVal(j);}
+        }
+        //release references to objects from a larger previous build
+        for(int i=n;i<cellObjs.length && cellObjs[i] != null;++i) {cellObjs[i] = null;}
+        numObjs = n;
+    }//buildGrid
+
+    /**
+     * Find the cell size and # of cells along each axis of a grid spanning [gridMins, maxs] holding n objects
+     */
+    private void initCells(double[] maxs, int n) {
+        long maxCells = Math.min(Math.max(MIN_MAX_CELLS, (long) MAX_CELLS_PER_OBJ * n), Integer.MAX_VALUE - 8);
+        gridCellSize = cellSize;
+        while (true) {
+            invGridCellSize = 1.0/gridCellSize;
+            long total = 1;
+            for(int j=0;j<numDims;++j) {
+                long numAxisCells = 1 + (long) ((maxs[j] - gridMins[j]) * invGridCellSize);
+                total *= Math.min(numAxisCells, maxCells + 1);
+                if (total > maxCells) {total = maxCells + 1;}
+                numCells[j] = (int) Math.min(numAxisCells, maxCells + 1);
+            }
+            if (total <= maxCells) {totalCells = (int) total; break;}
+            //grow the cells so that the grid is about maxCells in size
+            double maxExtent = 0;
+            for(int j=0;j<numDims;++j) {maxExtent = Math.max(maxExtent, maxs[j] - gridMins[j]);}
+            gridCellSize = Math.max(gridCellSize * 1.25, maxExtent / Math.pow(maxCells, 1.0/numDims));
+        }
+        int stride = 1;
+        for(int j=numDims-1;j>=0;--j) {cellStrides[j] = stride; stride *= numCells[j];}
+    }//initCells
+
+    /**
+     * Cell coordinate along axis of a position value, clamped to the grid
+     */
+    private int calcCellCoord(int axis, double v) {
+        double c = Math.floor((v - gridMins[axis]) * invGridCellSize);
+        return (c < 0 ? 0 : (c >= numCells[axis] ? numCells[axis] - 1 : (int) c));
+    }
+
+    /**
+     * Cell idx of an object's current position
+     */
+    private int calcCellIdx(T obj) {
+        int res = 0;
+        for(int j=0;j<numDims;++j) {res += calcCellCoord(j, obj.getPosVal(j)) * cellStrides[j];}
+        return res;
+    }
+
+    /**
+     * Sq distance from pos to the object at idx of the sorted arrays
+     */
+    private double calcSqDist(double[] pos, int idx) {
+        double res = 0;
+        for(int j=0;j<numDims;++j) {double diff = pos[j] - coords[j][idx]; res += diff * diff;}
+        return res;
+    }
+
+    /**
+     * Min sq distance from pos to the cell with the passed cell coordinates
+     */
+    private double calcCellMinSqDist(double[] pos, int[] cell) {
+        double res = 0;
+        for(int j=0;j<numDims;++j) {
+            double lo = gridMins[j] + cell[j] * gridCellSize, gap = lo - pos[j];
+            if (gap <= 0) {gap = pos[j] - (lo + gridCellSize);}
+            if (gap > 0) {res += gap * gap;}
+        }
+        return res;
+    }//calcCellMinSqDist
+
+    /**
+     * Max sq distance from pos to the cell with the passed cell coordinates
+     */
+    private double calcCellMaxSqDist(double[] pos, int[] cell) {
+        double res = 0;
+        for(int j=0;j<numDims;++j) {
+            double lo = gridMins[j] + cell[j] * gridCellSize;
+            double far = Math.max(pos[j] - lo, lo + gridCellSize - pos[j]);
+            res += far * far;
+        }
+        return res;
+    }//calcCellMaxSqDist
+
+    /**
+     * Cell idx of the passed cell coordinates
+     */
+    private int calcCellIdx(int[] cell) {
+        int res = 0;
+        for(int j=0;j<numDims;++j) {res += cell[j] * cellStrides[j];}
+        return res;
+    }
+
+    /**
+     * Set the cell coordinate ranges [lo, hi] of the cells overlapping the box [mins, maxs], clamped to the grid
+     * @return whether the box overlaps the grid
+     */
+    private boolean calcCellRange(double[] mins, double[] maxs, int[] lo, int[] hi) {
+        for(int j=0;j<numDims;++j) {
+            if (!calcAxisCellRange(j, mins[j], maxs[j], lo, hi)) {return false;}
+        }
+        return true;
+    }//calcCellRange
+
+    /**
+     * Set the cell coordinate range [lo[axis], hi[axis]] of the cells overlapping [min, max] along axis, clamped to the grid
+     * @return whether [min, max] overlaps the grid along axis
+     */
+    private boolean calcAxisCellRange(int axis, double min, double max, int[] lo, int[] hi) {
+        double cLo = Math.floor((min - gridMins[axis]) * invGridCellSize), cHi = Math.floor((max - gridMins[axis]) * invGridCellSize);
+        if ((cHi < 0) || (cLo >= numCells[axis]) || (cHi < cLo)) {return false;}
+        lo[axis] = (cLo < 0 ? 0 : (int) cLo);
+        hi[axis] = (cHi >= numCells[axis] ? numCells[axis] - 1 : (int) cHi);
+        return true;
+    }//calcAxisCellRange
+
+    /**
+     * Step cell to the next cell coordinates in the range [lo, hi], last axis fastest
+     * @return false if cell was the last in the range
+     */
+    private boolean nextCell(int[] cell, int[] lo, int[] hi) {
+        for(int j=numDims-1;j>=0;--j) {
+            if (cell[j] < hi[j]) {++cell[j]; return true;}
+            cell[j] = lo[j];
+        }
+        return false;
+    }//nextCell
+
+    /**
+     * Build a neighborhood to be used for queries of this grid, using this grid's maximum
+     * neighborhood size and distance. Each thread querying this grid should own its own neighborhood.
+     * @return
+     */
+    @Override
+    public KDNeighborhood<T> buildNeighborhood() {return new KDNeighborhood<T>(maxNumNeighbors, maxNeighborSqDist);}
+
+    /**
+     * Find the nearby objects to the given location. Cells are searched in rings of increasing distance from the
+     * query's cell, until a ring cannot hold anything closer than the neighborhood's pruning distance.
+     * @param pos given location for finding nearby objects. Must have at least as many values as the objects' numPosVals
+     * @param nbhd the neighborhood to populate. It is reset before the search.
+     * @return nbhd, holding the found objects and their sq distances from pos
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public KDNeighborhood<T> findNeighborhood(double[] pos, KDNeighborhood<T> nbhd) {
+        nbhd.reset();
+        if (numObjs == 0) {return nbhd;}
+        int[][] scratch = nbhd.getCellScratch(4, numDims);
+        int[] qCell = scratch[0], lo = scratch[1], hi = scratch[2], cell = scratch[3];
+        int maxRing = 0;
+        for(int j=0;j<numDims;++j) {
+            //query cell, clamped to one cell beyond the grid
+            double c = Math.floor((pos[j] - gridMins[j]) * invGridCellSize);
+            qCell[j] = (c < -1 ? -1 : (c > numCells[j] ? numCells[j] : (int) c));
+            maxRing = Math.max(maxRing, Math.max(qCell[j], numCells[j] - 1 - qCell[j]));
+        }
+        for(int ring=0;ring<=maxRing;++ring) {
+            //every cell of this ring is at least (ring - 1) cells from pos along some axis
+            if (ring > 1) {
+                double gap = (ring - 1) * gridCellSize;
+                if (gap * gap >= nbhd.getPruneSqDist()) {break;}
+            }
+            boolean isEmpty = false;
+            for(int j=0;j<numDims;++j) {
+                lo[j] = Math.max(0, qCell[j] - ring);
+                hi[j] = Math.min(numCells[j] - 1, qCell[j] + ring);
+                if (lo[j] > hi[j]) {isEmpty = true;}
+                cell[j] = lo[j];
+            }
+            if (isEmpty) {continue;}
+            do {
+                if (!isOnRing(qCell, cell, ring) || (calcCellMinSqDist(pos, cell) >= nbhd.getPruneSqDist())) {continue;}
+                int c = calcCellIdx(cell);
+                for(int i=cellStarts[c];i<cellStarts[c+1];++i) {nbhd.offer((T) cellObjs[i], calcSqDist(pos, i));}
+            } while (nextCell(cell, lo, hi));
+        }
+        return nbhd;
+    }//findNeighborhood
+
+    /**
+     * Whether cell is ring cells from qCell along at least one axis, and no further along any
+     */
+    private boolean isOnRing(int[] qCell, int[] cell, int ring) {
+        for(int j=0;j<numDims;++j) {if (Math.abs(cell[j] - qCell[j]) == ring) {return true;}}
+        return false;
+    }
+
+    /**
+     * Find every object within the given radius of the given location, passing each to the visitor in no particular order.
+     * Allocates its scratch space on each call; use {@link #findInRadius(double[], double, Consumer, KDNeighborhood)} to reuse it.
+     * @param pos given location. Must have at least as many values as the objects' numPosVals
+     * @param sqRadius square of the radius; objects at a sq distance <= sqRadius are found
+     * @param visitor
+     */
+    @Override
+    public void findInRadius(double[] pos, double sqRadius, Consumer<T> visitor) {findInRadius(pos, sqRadius, visitor, buildNeighborhood());}
+
+    /**
+     * Find every object within the given radius of the given location, passing each to the visitor in no particular order.
+     * @param pos given location. Must have at least as many values as the objects' numPosVals
+     * @param sqRadius square of the radius; objects at a sq distance <= sqRadius are found
+     * @param visitor
+     * @param scratch neighborhood whose scratch space is used by the search. Its contents are unchanged.
+     */
+    @SuppressWarnings("unchecked")
+    public void findInRadius(double[] pos, double sqRadius, Consumer<T> visitor, KDNeighborhood<T> scratch) {
+        if (numObjs == 0) {return;}
+        int[][] cellScratch = scratch.getCellScratch(3, numDims);
+        int[] lo = cellScratch[0], hi = cellScratch[1], cell = cellScratch[2];
+        if (!calcRadiusCellRange(pos, sqRadius, lo, hi)) {return;}
+        System.arraycopy(lo, 0, cell, 0, numDims);
+        do {
+            if (calcCellMinSqDist(pos, cell) > sqRadius) {continue;}
+            int c = calcCellIdx(cell);
+            for(int i=cellStarts[c];i<cellStarts[c+1];++i) {if (calcSqDist(pos, i) <= sqRadius) {visitor.accept((T) cellObjs[i]);}}
+        } while (nextCell(cell, lo, hi));
+    }//findInRadius
+
+    /**
+     * Count the objects within the given radius of the given location. Cells entirely within the radius are counted
+     * by their size without examining their objects. Allocates its scratch space on each call;
+     * use {@link #countInRadius(double[], double, KDNeighborhood)} to reuse it.
+     * @param pos given location. Must have at least as many values as the objects' numPosVals
+     * @param sqRadius square of the radius; objects at a sq distance <= sqRadius are counted
+     * @return
+     */
+    @Override
+    public int countInRadius(double[] pos, double sqRadius) {return countInRadius(pos, sqRadius, buildNeighborhood());}
+
+    /**
+     * Count the objects within the given radius of the given location. Cells entirely within the radius are counted
+     * by their size without examining their objects.
+     * @param pos given location. Must have at least as many values as the objects' numPosVals
+     * @param sqRadius square of the radius; objects at a sq distance <= sqRadius are counted
+     * @param scratch neighborhood whose scratch space is used by the search. Its contents are unchanged.
+     * @return
+     */
+    public int countInRadius(double[] pos, double sqRadius, KDNeighborhood<T> scratch) {
+        if (numObjs == 0) {return 0;}
+        int[][] cellScratch = scratch.getCellScratch(3, numDims);
+        int[] lo = cellScratch[0], hi = cellScratch[1], cell = cellScratch[2];
+        if (!calcRadiusCellRange(pos, sqRadius, lo, hi)) {return 0;}
+        System.arraycopy(lo, 0, cell, 0, numDims);
+        int res = 0;
+        do {
+            if (calcCellMinSqDist(pos, cell) > sqRadius) {continue;}
+            int c = calcCellIdx(cell);
+            if (calcCellMaxSqDist(pos, cell) <= sqRadius) {res += cellStarts[c+1] - cellStarts[c]; continue;}
+            for(int i=cellStarts[c];i<cellStarts[c+1];++i) {if (calcSqDist(pos, i) <= sqRadius) {++res;}}
+        } while (nextCell(cell, lo, hi));
+        return res;
+    }//countInRadius
+
+    /**
+     * Set the range of cells overlapping the bounding box of the sphere of radius sqrt(sqRadius) about pos
+     * @return whether the sphere's bounding box overlaps the grid
+     */
+    private boolean calcRadiusCellRange(double[] pos, double sqRadius, int[] lo, int[] hi) {
+        double radius = Math.sqrt(sqRadius);
+        for(int j=0;j<numDims;++j) {
+            if (!calcAxisCellRange(j, pos[j] - radius, pos[j] + radius, lo, hi)) {return false;}
+        }
+        return true;
+    }//calcRadiusCellRange
+
+    /**
+     * Find every object within the given axis-aligned box, passing each to the visitor in no particular order.
+     * Allocates its scratch space on each call; use {@link #findInBox(double[], double[], Consumer, KDNeighborhood)} to reuse it.
+     * @param mins per-axis minimum of box (inclusive). Must have at least as many values as the objects' numPosVals
+     * @param maxs per-axis maximum of box (inclusive). Must have at least as many values as the objects' numPosVals
+     * @param visitor
+     */
+    @Override
+    public void findInBox(double[] mins, double[] maxs, Consumer<T> visitor) {findInBox(mins, maxs, visitor, buildNeighborhood());}
+
+    /**
+     * Find every object within the given axis-aligned box, passing each to the visitor in no particular order.
+     * @param mins per-axis minimum of box (inclusive). Must have at least as many values as the objects' numPosVals
+     * @param maxs per-axis maximum of box (inclusive). Must have at least as many values as the objects' numPosVals
+     * @param visitor
+     * @param scratch neighborhood whose scratch space is used by the search. Its contents are unchanged.
+     */
+    @SuppressWarnings("unchecked")
+    public void findInBox(double[] mins, double[] maxs, Consumer<T> visitor, KDNeighborhood<T> scratch) {
+        if (numObjs == 0) {return;}
+        int[][] cellScratch = scratch.getCellScratch(3, numDims);
+        int[] lo = cellScratch[0], hi = cellScratch[1], cell = cellScratch[2];
+        if (!calcCellRange(mins, maxs, lo, hi)) {return;}
+        System.arraycopy(lo, 0, cell, 0, numDims);
+        do {
+            int c = calcCellIdx(cell);
+            for(int i=cellStarts[c];i<cellStarts[c+1];++i) {if (isInBox(mins, maxs, i)) {visitor.accept((T) cellObjs[i]);}}
+        } while (nextCell(cell, lo, hi));
+    }//findInBox
+
+    /**
+     * Whether the object at idx of the sorted arrays is within the box
+     */
+    private boolean isInBox(double[] mins, double[] maxs, int idx) {
+        for(int j=0;j<numDims;++j) {
+            double v = coords[j][idx];
+            if((v < mins[j]) || (v > maxs[j])) {return false;}
+        }
+        return true;
+    }
+
+    //////////////////////////////
+    // Getters and setters
+
+    public int getMaxNumNeighbors() {                        return maxNumNeighbors;    }
+    public void setMaxNumNeighbors(int _maxNumNeighbors) {    maxNumNeighbors = _maxNumNeighbors;}
+
+    public double getMaxNeighborSqDist() {                            return maxNeighborSqDist;    }
+    public void setMaxNeighborSqDist(double _maxNeighborSqDist) {    maxNeighborSqDist = _maxNeighborSqDist;}
+
+    public double getCellSize() {return cellSize;}
+    /**
+     * Set the requested edge length of each cell. Takes effect the next time the grid is built.
+     * @param _cellSize > 0
+     */
+    public void setCellSize(double _cellSize) {
+        if (!(_cellSize > 0)) {
+            System.out.println("Spatial Grid cell size must be > 0 but "+_cellSize+" requested; using 1.0.");
+            _cellSize = 1.0;
+        }
+        cellSize = _cellSize;
+    }
+
+    /**
+     * Edge length of each cell of the built grid. Larger than the requested cell size if that would have made too many cells.
+     * @return
+     */
+    public double getGridCellSize() {return gridCellSize;}
+    public int getTotalCells() {return totalCells;}
+    public int[] getNumCells() {return (numCells == null ? null : numCells.clone());}
+
+    /**
+     * # of objects in the built grid
+     * @return
+     */
+    public int getNumObjs() {return numObjs;}
+    public int getNumNodeObjs() {return nodeObjectList.size();}
+
+}//class SpatialGrid
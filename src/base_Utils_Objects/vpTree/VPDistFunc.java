@@ -0,0 +1,22 @@
+package base_Utils_Objects.vpTree;
+
+/**
+ * Distance function between two objects held in a VPTree. Must be a metric : non-negative, symmetric, zero between 
+ * identical objects, and obeying the triangle inequality, which the tree relies on to prune its searches.
+ * Must be safe to call from multiple threads.
+ * 
+ * @author John Turner
+ *
+ * @param <T> type of object whose distances are measured
+ */
+public interface VPDistFunc <T> {
+    
+    /**
+     * Distance between two objects
+     * @param a
+     * @param b
+     * @return
+     */
+    public double calcDist(T a, T b);
+
+}//interface VPDistFunc
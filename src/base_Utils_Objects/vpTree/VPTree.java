@@ -0,0 +1,481 @@
+package base_Utils_Objects.vpTree;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import base_Utils_Objects.kdTree.base.KDSubtreeQueue;
+import base_Utils_Objects.kdTree.query.KDApproxSearchStats;
+import base_Utils_Objects.kdTree.query.KDIndexNeighborhood;
+import base_Utils_Objects.kdTree.query.KDRangeVisitor;
+
+/**
+ * Vantage-point tree : a metric tree that needs nothing of its objects but a distance function, for data such as
+ * high-dimensional embeddings or objects with custom distances, where a kd-tree's single-axis splits stop pruning.
+ *
+ * Each subtree picks one of its objects as a vantage point and splits the rest at their median distance from it,
+ * into an inside and an outside child. The triangle inequality bounds the distance from a query to every object of
+ * a child by the query's distance to the vantage point and the child's range of distances from it.
+ *
+ * The tree is pointerless, like the array kd-trees : the subtree spanning [lo, hi) of the tree order holds its vantage
+ * point at lo, its inside child at [lo+1, mid) and its outside child at [mid, hi), with mid = lo + 1 + (hi - lo - 1)/2.
+ * Subtrees with leafSize or fewer objects are leaf buckets, scanned linearly.
+ *
+ * Found objects are reported by their index in the order they were added, and with their (unsquared) distance
+ * from the query in the neighborhood's distance slots. Once built, the tree is read-only and any number of
+ * threads may query it concurrently, each with its own neighborhood.
+ *
+ * @author John Turner
+ *
+ * @param <T> type of object held in this tree
+ */
+public class VPTree <T> {
+    /**
+     * Subtrees with at least this many objects choose their vantage point by sampling
+     */
+    private static final int MIN_SAMPLED_VP_SIZE = 64;
+    /**
+     * # of vantage point candidates sampled, and of objects each is measured against
+     */
+    private static final int NUM_VP_CANDIDATES = 5, NUM_VP_SAMPLES = 16;
+    /**
+     * Relative tolerance of triangle inequality bounds
+     */
+    private static final double BOUND_TOL = 1e-12;
+
+    /**
+     * Distance function of objects
+     */
+    protected final VPDistFunc<T> distFunc;
+    /**
+     * list of objects this tree is built from, in the order they were added. Neighbors are reported by their index in this list.
+     */
+    protected ArrayList<T> nodeObjectList;
+    /**
+     * Max distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     */
+    protected double maxNeighborDist;
+    /**
+     * Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     */
+    protected int maxNumNeighbors;
+    /**
+     * Subtrees with this many objects or fewer are leaf buckets
+     */
+    protected int leafSize;
+    /**
+     * Leaf size the current tree was built with. Queries use this rather than {@link #leafSize}, so that changing the
+     * leaf size of a built tree only takes effect when it is rebuilt.
+     */
+    protected int builtLeafSize;
+    /**
+     * During a parallel build, subtrees with more than this many objects have their children built as separate tasks
+     */
+    protected int parallelBuildCutoff = 10000;
+
+    /**
+     * # of objects in the built tree
+     */
+    protected int numObjs;
+    /**
+     * Objects, in tree order
+     */
+    protected Object[] treeObjs;
+    /**
+     * Index in nodeObjectList of the object at each tree idx
+     */
+    protected int[] srcIdxs;
+    /**
+     * For the subtree whose vantage point is at each tree idx, the min and max distance from the vantage point of
+     * the objects in its inside child and in its outside child. Unused for leaf objects.
+     */
+    protected double[] insideMins, insideMaxs, outsideMins, outsideMaxs;
+    /**
+     * Distance from its subtree's vantage point of each object; scratch space for building
+     */
+    private double[] buildDists;
+
+    /**
+     * @param _distFunc distance function; must be a metric
+     * @param _maxNumNeighbors Maximum # of neighbors to be considered in the neighborhood; MaxInt for all within distance
+     * @param _maxNeighborDist Max distance to be considered within a neighborhood; MaxDouble for maxNumNeighbors closest
+     * @param _leafSize Maximum # of objects in a leaf bucket
+     */
+    public VPTree(VPDistFunc<T> _distFunc, int _maxNumNeighbors, double _maxNeighborDist, int _leafSize) {
+        distFunc = _distFunc;
+        maxNumNeighbors = _maxNumNeighbors;
+        maxNeighborDist = _maxNeighborDist;
+        setLeafSize(_leafSize);
+        nodeObjectList = new ArrayList<T>();
+        numObjs = 0;
+    }//ctor
+
+    /**
+     * add an object to the tree. Its index in this tree is the # of objects added before it.
+     * @param p Object to add
+     */
+    public void addObject(T p){
+        nodeObjectList.add(p);
+    }
+
+    /**
+     * Build the tree. Should only be called after all of the objects have been added.
+     */
+    public void buildTree() {
+        if(!initBuild()) {return;}
+        buildSubtree(0, numObjs);
+        buildDists = null;
+    }//buildTree
+
+    /**
+     * Build the tree, building independent subtrees in parallel on the passed ForkJoinPool.
+     * Should only be called after all of the objects have been added.
+     * @param pool
+     */
+    public void buildTreeParallel(ForkJoinPool pool) {
+        if(!initBuild()) {return;}
+        pool.invoke(new VPBuildTask(0, numObjs));
+        buildDists = null;
+    }//buildTreeParallel
+
+    /**
+     * Allocate this tree's arrays and load the objects into them, in source order
+     * @return whether there are objects to build from
+     */
+    private boolean initBuild() {
+        if(nodeObjectList.size() == 0) {
+            System.out.println("No Objects added to build VP Tree from. Aborting.");
+            return false;
+        }
+        numObjs = nodeObjectList.size();
+        builtLeafSize = leafSize;
+        treeObjs = nodeObjectList.toArray();
+        srcIdxs = new int[numObjs];
+        for(int i=0;i<numObjs;++i) {srcIdxs[i] = i;}
+        insideMins = new double[numObjs];
+        insideMaxs = new double[numObjs];
+        outsideMins = new double[numObjs];
+        outsideMaxs = new double[numObjs];
+        buildDists = new double[numObjs];
+        return true;
+    }//initBuild
+
+    @SuppressWarnings("unchecked")
+    private T getTreeObj(int treeIdx) {return (T) treeObjs[treeIdx];}
+
+    /**
+     * Start of the outside child of the subtree spanning [lo, hi)
+     */
+    private static int calcMid(int lo, int hi) {return lo + 1 + ((hi - lo - 1) >>> 1);}
+
+    /**
+     * Recursively build the subtree spanning [lo, hi)
+     */
+    protected final void buildSubtree(int lo, int hi) {
+        if (hi - lo <= builtLeafSize) {return;}
+        int mid = partitionSubtree(lo, hi);
+        buildSubtree(lo + 1, mid);
+        buildSubtree(mid, hi);
+    }//buildSubtree
+
+    /**
+     * Choose the vantage point of the subtree spanning [lo, hi), move it to lo, and partition the rest of the subtree
+     * about their median distance from it
+     * @return start of the outside child
+     */
+    protected final int partitionSubtree(int lo, int hi) {
+        swap(lo, selectVantagePt(lo, hi));
+        T vp = getTreeObj(lo);
+        for(int i=lo+1;i<hi;++i) {buildDists[i] = distFunc.calcDist(vp, getTreeObj(i));}
+        int mid = calcMid(lo, hi);
+        selectMedian(lo + 1, hi - 1, mid);
+        insideMins[lo] = Double.POSITIVE_INFINITY;
+        insideMaxs[lo] = Double.NEGATIVE_INFINITY;
+        outsideMins[lo] = Double.POSITIVE_INFINITY;
+        outsideMaxs[lo] = Double.NEGATIVE_INFINITY;
+        for(int i=lo+1;i<mid;++i) {
+            double d = buildDists[i];
+            if (d < insideMins[lo]) {insideMins[lo] = d;}
+            if (d > insideMaxs[lo]) {insideMaxs[lo] = d;}
+        }
+        for(int i=mid;i<hi;++i) {
+            double d = buildDists[i];
+            if (d < outsideMins[lo]) {outsideMins[lo] = d;}
+            if (d > outsideMaxs[lo]) {outsideMaxs[lo] = d;}
+        }
+        return mid;
+    }//partitionSubtree
+
+    /**
+     * Choose the tree idx of the vantage point of the subtree spanning [lo, hi). Large subtrees sample a few
+     * candidates and take the one whose distances to a sample of the subtree are most spread, since it splits
+     * the subtree into the best separated children. Seeded by the subtree's range, so builds are deterministic.
+     */
+    private int selectVantagePt(int lo, int hi) {
+        int n = hi - lo;
+        SplittableRandom rnd = new SplittableRandom(((long) lo << 32) ^ hi);
+        if (n < MIN_SAMPLED_VP_SIZE) {return lo + rnd.nextInt(n);}
+        int res = lo;
+        double maxSpread = -1;
+        for(int c=0;c<NUM_VP_CANDIDATES;++c) {
+            int cand = lo + rnd.nextInt(n);
+            T candObj = getTreeObj(cand);
+            double sum = 0, sumSq = 0;
+            for(int s=0;s<NUM_VP_SAMPLES;++s) {
+                double d = distFunc.calcDist(candObj, getTreeObj(lo + rnd.nextInt(n)));
+                sum += d;
+                sumSq += d * d;
+            }
+            double mean = sum / NUM_VP_SAMPLES, spread = sumSq / NUM_VP_SAMPLES - mean * mean;
+            if (spread > maxSpread) {maxSpread = spread; res = cand;}
+        }
+        return res;
+    }//selectVantagePt
+
+    /**
+     * In-place selection (Hoare's quickselect) of the k'th object by buildDists in the inclusive range [lo, hi]
+     */
+    private void selectMedian(int lo, int hi, int k) {
+        while (hi > lo) {
+            //median of 3 pivot
+            int mid = (lo + hi) >>> 1;
+            if (buildDists[mid] < buildDists[lo]) {swap(mid, lo);}
+            if (buildDists[hi] < buildDists[lo]) {swap(hi, lo);}
+            if (buildDists[hi] < buildDists[mid]) {swap(hi, mid);}
+            double pivot = buildDists[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (buildDists[i] < pivot) {++i;}
+                while (buildDists[j] > pivot) {--j;}
+                if (i <= j) {swap(i++, j--);}
+            }
+            //[lo, j] <= pivot, [i, hi] >= pivot, anything between is == pivot
+            if (k <= j) {        hi = j;}
+            else if (k >= i) {    lo = i;}
+            else {                return;}
+        }
+    }//selectMedian
+
+    /**
+     * Swap the objects, and their source idxs and build distances, at two tree idxs
+     */
+    private void swap(int i, int j) {
+        Object tmpObj = treeObjs[i]; treeObjs[i] = treeObjs[j]; treeObjs[j] = tmpObj;
+        int tmpIdx = srcIdxs[i]; srcIdxs[i] = srcIdxs[j]; srcIdxs[j] = tmpIdx;
+        double tmpDist = buildDists[i]; buildDists[i] = buildDists[j]; buildDists[j] = tmpDist;
+    }//swap
+
+    /**
+     * Task to build the subtree spanning [lo, hi), forking the build of its children if it is larger than parallelBuildCutoff.
+     */
+    private class VPBuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo, hi;
+
+        public VPBuildTask(int _lo, int _hi) {lo = _lo; hi = _hi;}
+
+        @Override
+        protected void compute() {
+            if ((hi - lo <= parallelBuildCutoff) || (hi - lo <= builtLeafSize)) {buildSubtree(lo, hi); return;}
+            int mid = partitionSubtree(lo, hi);
+            invokeAll(new VPBuildTask(lo + 1, mid), new VPBuildTask(mid, hi));
+        }
+    }//class VPBuildTask
+
+    /**
+     * Lower bound of the distance from a query to every object in a child whose distances from its vantage point
+     * are in [min, max], given the query's distance d from the vantage point. Shrunk by BOUND_TOL of the distances
+     * involved, so that rounding in the distance function never lets the bound exceed a true distance.
+     */
+    private static double calcChildBound(double d, double min, double max) {
+        if (d < min) {return Math.max(0.0, (min - d) - BOUND_TOL * min);}
+        if (d > max) {return Math.max(0.0, (d - max) - BOUND_TOL * d);}
+        return 0.0;
+    }
+
+    /**
+     * Build a neighborhood to be used for queries of this tree, using this tree's maximum neighborhood size and distance.
+     * Each thread querying this tree should own its own neighborhood. Its distances are unsquared distances.
+     * @return
+     */
+    public KDIndexNeighborhood buildNeighborhood() {return new KDIndexNeighborhood(maxNumNeighbors, maxNeighborDist);}
+
+    /**
+     * Find the nearby objects to the given query object
+     * @param query object to find neighbors of. Need not be in the tree.
+     * @param nbhd the neighborhood to populate, with the found objects' indices and distances. It is reset before the search.
+     * @return nbhd
+     */
+    public KDIndexNeighborhood findNeighborhood(T query, KDIndexNeighborhood nbhd) {
+        nbhd.reset();
+        if (numObjs > 0) {findNearbyObjs(query, 0, numObjs, nbhd);}
+        return nbhd;
+    }//findNeighborhood
+
+    /**
+     * help find nearby objects in the subtree spanning [lo, hi) (should not be called by user)
+     */
+    private void findNearbyObjs(T query, int lo, int hi, KDIndexNeighborhood nbhd) {
+        if (hi - lo <= builtLeafSize) {
+            for(int i=lo;i<hi;++i) {nbhd.offer(srcIdxs[i], distFunc.calcDist(query, getTreeObj(i)));}
+            return;
+        }
+        double d = distFunc.calcDist(query, getTreeObj(lo));
+        nbhd.offer(srcIdxs[lo], d);
+        int mid = calcMid(lo, hi);
+        double insideBound = calcChildBound(d, insideMins[lo], insideMaxs[lo]),
+                outsideBound = calcChildBound(d, outsideMins[lo], outsideMaxs[lo]);
+        //search the nearer child first, so the farther is more likely to be pruned
+        if (insideBound <= outsideBound) {
+            if ((mid > lo + 1) && (insideBound < nbhd.getPruneSqDist())) {    findNearbyObjs(query, lo + 1, mid, nbhd);}
+            if (outsideBound < nbhd.getPruneSqDist()) {                        findNearbyObjs(query, mid, hi, nbhd);}
+        } else {
+            if (outsideBound < nbhd.getPruneSqDist()) {                        findNearbyObjs(query, mid, hi, nbhd);}
+            if ((mid > lo + 1) && (insideBound < nbhd.getPruneSqDist())) {    findNearbyObjs(query, lo + 1, mid, nbhd);}
+        }
+    }//findNearbyObjs
+
+    /**
+     * Approximately find the nearby objects to the given query object. See
+     * {@link #findApproxNeighborhood(Object, double, int, KDIndexNeighborhood, KDSubtreeQueue, KDApproxSearchStats)}
+     */
+    public KDIndexNeighborhood findApproxNeighborhood(T query, double eps, int maxLeafVisits, KDIndexNeighborhood nbhd, KDApproxSearchStats stats) {
+        return findApproxNeighborhood(query, eps, maxLeafVisits, nbhd, new KDSubtreeQueue(), stats);
+    }
+
+    /**
+     * Approximately find the nearby objects to the given query object, using a best-first search : subtrees are
+     * examined in increasing order of their distance bound from the query, rather than in tree order.
+     *
+     * The search stops when either the closest unexamined subtree is no closer than the current pruning distance
+     * shrunk by a factor of (1+eps), or when maxLeafVisits leaf buckets have been scanned. If the budget is not reached,
+     * every neighbor found is within (1+eps) times the distance of the corresponding true neighbor.
+     * @param query object to find neighbors of. Need not be in the tree.
+     * @param eps error bound; 0 for no approximation error
+     * @param maxLeafVisits maximum # of leaf buckets to scan; <= 0 for no limit
+     * @param nbhd the neighborhood to populate. It is reset before the search.
+     * @param queue queue of pending subtrees, reused across queries to avoid allocation. It is cleared before the search.
+     * @param stats receives the visit counts and certified recall of this search, with distances in place of sq distances. May be null.
+     * @return nbhd
+     */
+    public KDIndexNeighborhood findApproxNeighborhood(T query, double eps, int maxLeafVisits, KDIndexNeighborhood nbhd,
+            KDSubtreeQueue queue, KDApproxSearchStats stats) {
+        nbhd.reset();
+        queue.clear();
+        if (stats != null) {stats.reset();}
+        if (numObjs == 0) {return nbhd;}
+        // scale applied to pruning distance; subtrees at least this far are not examined
+        double epsScale = 1.0 / (1.0 + eps);
+        double minSkippedDist = Double.POSITIVE_INFINITY;
+        int numLeavesVisited = 0;
+        boolean budgetExhausted = false;
+        queue.insert(0, numObjs, 0.0);
+        while (!queue.isEmpty()) {
+            double bound = queue.getMinKey();
+            // every remaining subtree is at least this far
+            if (bound >= nbhd.getPruneSqDist() * epsScale) {break;}
+            if ((maxLeafVisits > 0) && (numLeavesVisited >= maxLeafVisits)) {budgetExhausted = true; break;}
+            int lo = queue.getMinLo(), hi = queue.getMinHi();
+            queue.removeMin();
+            // descend to leaf along nearer children, queueing farther children
+            while (hi - lo > builtLeafSize) {
+                double d = distFunc.calcDist(query, getTreeObj(lo));
+                nbhd.offer(srcIdxs[lo], d);
+                if (stats != null) {stats.incrNodesVisited(); stats.incrDistEvals(1);}
+                int mid = calcMid(lo, hi);
+                //inside child is empty if the subtree has only 2 objects; outside never is
+                double insideBound = (mid > lo + 1 ? Math.max(bound, calcChildBound(d, insideMins[lo], insideMaxs[lo])) : Double.POSITIVE_INFINITY),
+                        outsideBound = Math.max(bound, calcChildBound(d, outsideMins[lo], outsideMaxs[lo]));
+                int farLo, farHi;
+                double farBound;
+                if (insideBound <= outsideBound) {    farLo = mid; farHi = hi; farBound = outsideBound; bound = insideBound; hi = mid; ++lo;}
+                else {                                farLo = lo + 1; farHi = mid; farBound = insideBound; bound = outsideBound; lo = mid;}
+                if (farHi > farLo) {
+                    if (farBound < nbhd.getPruneSqDist() * epsScale) {    queue.insert(farLo, farHi, farBound);}
+                    else if (farBound < minSkippedDist) {                minSkippedDist = farBound;}
+                }
+                if (bound >= nbhd.getPruneSqDist() * epsScale) {break;}
+            }
+            if (hi - lo > builtLeafSize) {
+                //stopped above a leaf because the nearer child is too far
+                if (bound < minSkippedDist) {minSkippedDist = bound;}
+                continue;
+            }
+            for(int i=lo;i<hi;++i) {nbhd.offer(srcIdxs[i], distFunc.calcDist(query, getTreeObj(i)));}
+            ++numLeavesVisited;
+            if (stats != null) {stats.incrLeavesVisited(); stats.incrDistEvals(hi - lo);}
+        }
+        if (stats != null) {
+            double minUnvisited = queue.getMinKey();
+            stats.setResults(nbhd, (minSkippedDist < minUnvisited ? minSkippedDist : minUnvisited), budgetExhausted);
+        }
+        return nbhd;
+    }//findApproxNeighborhood
+
+    /**
+     * Find every object within the given distance of the query object, passing each one's index to the visitor in no particular order.
+     * @param query object to find neighbors of. Need not be in the tree.
+     * @param radius objects at a distance <= radius are found
+     * @param visitor
+     */
+    public void findInRadius(T query, double radius, KDRangeVisitor visitor) {
+        if (numObjs > 0) {findInRadius(query, radius, 0, numObjs, visitor);}
+    }
+
+    /**
+     * help find objects within radius in the subtree spanning [lo, hi) (should not be called by user)
+     */
+    private void findInRadius(T query, double radius, int lo, int hi, KDRangeVisitor visitor) {
+        if (hi - lo <= builtLeafSize) {
+            for(int i=lo;i<hi;++i) {if (distFunc.calcDist(query, getTreeObj(i)) <= radius) {visitor.visit(srcIdxs[i]);}}
+            return;
+        }
+        double d = distFunc.calcDist(query, getTreeObj(lo));
+        if (d <= radius) {visitor.visit(srcIdxs[lo]);}
+        int mid = calcMid(lo, hi);
+        if ((mid > lo + 1) && (calcChildBound(d, insideMins[lo], insideMaxs[lo]) <= radius)) {    findInRadius(query, radius, lo + 1, mid, visitor);}
+        if (calcChildBound(d, outsideMins[lo], outsideMaxs[lo]) <= radius) {                    findInRadius(query, radius, mid, hi, visitor);}
+    }//findInRadius
+
+    //////////////////////////////
+    // Getters and setters
+
+    /**
+     * Get the object with the given index
+     * @param idx index of object, as reported in query results
+     * @return
+     */
+    public T getObject(int idx) {return nodeObjectList.get(idx);}
+
+    public VPDistFunc<T> getDistFunc() {return distFunc;}
+
+    public int getMaxNumNeighbors() {                        return maxNumNeighbors;    }
+    public void setMaxNumNeighbors(int _maxNumNeighbors) {    maxNumNeighbors = _maxNumNeighbors;}
+
+    public double getMaxNeighborDist() {                        return maxNeighborDist;    }
+    public void setMaxNeighborDist(double _maxNeighborDist) {    maxNeighborDist = _maxNeighborDist;}
+
+    public int getLeafSize() {return leafSize;}
+    /**
+     * Get the leaf size the current tree was built with
+     * @return
+     */
+    public int getBuiltLeafSize() {return builtLeafSize;}
+    /**
+     * Set the maximum # of objects in a leaf bucket. Takes effect the next time the tree is built.
+     * @param _leafSize
+     */
+    public void setLeafSize(int _leafSize) {leafSize = (_leafSize < 1 ? 1 : _leafSize);}
+
+    public int getParallelBuildCutoff() {                            return parallelBuildCutoff;}
+    public void setParallelBuildCutoff(int _parallelBuildCutoff) {    parallelBuildCutoff = (_parallelBuildCutoff < 2 ? 2 : _parallelBuildCutoff);}
+
+    /**
+     * # of objects in the built tree
+     * @return
+     */
+    public int getNumObjs() {return numObjs;}
+    public int getNumNodeObjs() {return nodeObjectList.size();}
+
+}//class VPTree
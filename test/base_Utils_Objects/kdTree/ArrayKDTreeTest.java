@@ -0,0 +1,458 @@
+package base_Utils_Objects.kdTree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import base_Utils_Objects.kdTree.KDTestUtils.KDTestObj;
+import base_Utils_Objects.kdTree.base.Base_ImplicitKDTree;
+import base_Utils_Objects.kdTree.base.KDSpaceFillingCurve;
+import base_Utils_Objects.kdTree.base.KDSubtreeQueue;
+import base_Utils_Objects.kdTree.query.KDApproxSearchStats;
+import base_Utils_Objects.kdTree.query.KDIndexList;
+import base_Utils_Objects.kdTree.query.KDIndexNeighborhood;
+import base_Utils_Objects.kdTree.query.KDNeighborGraph;
+import base_Utils_Objects.kdTree.query.KDPairList;
+
+/**
+ * Checks ArrayKDTree queries against brute force
+ * @author John Turner
+ *
+ */
+public class ArrayKDTreeTest {
+
+    static ArrayKDTree<KDTestObj> buildTree(double[][] pts, int maxNumNeighbors, double maxNeighborSqDist, int leafSize) {
+        ArrayKDTree<KDTestObj> tree = new ArrayKDTree<KDTestObj>(maxNumNeighbors, maxNeighborSqDist, leafSize);
+        for(KDTestObj obj : KDTestUtils.buildObjs(pts)) {tree.addKDObject(obj);}
+        tree.buildKDTree();
+        return tree;
+    }//buildTree
+
+    /**
+     * Check the neighborhood found for pos holds the k nearest points, in ascending order, and that each reported
+     * index is of a point at its reported distance
+     */
+    static void checkNeighborhood(double[][] pts, double[] pos, int numDims, int k, double maxSqDist, KDIndexNeighborhood nbhd) {
+        double[] expSqDists = KDTestUtils.calcKNNSqDists(pts, pos, numDims, k, maxSqDist);
+        nbhd.sortByDist();
+        assertEquals(expSqDists.length, nbhd.size());
+        for(int i=0;i<expSqDists.length;++i) {
+            assertEquals(expSqDists[i], nbhd.getSqDist(i));
+            assertEquals(expSqDists[i], KDTestUtils.calcSqDist(pts[nbhd.getIdx(i)], pos, numDims));
+        }
+    }//checkNeighborhood
+
+    @Test
+    public void testFindNeighborhoodMatchesBruteForce() {
+        Random rnd = new Random(2);
+        for(int numDims : new int[] {1, 2, 3, 5}) {
+            for(int numPts : new int[] {1, 2, 3, 10, 2000}) {
+                double[][] pts = KDTestUtils.buildGridPts(rnd, numPts, numDims, 20);
+                ArrayKDTree<KDTestObj> tree = buildTree(pts, 5, 0.3, ArrayKDTree.DEFAULT_LEAF_SIZE);
+                KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+                for(int q=0;q<100;++q) {
+                    double[] pos = KDTestUtils.buildQuery(rnd, numDims);
+                    checkNeighborhood(pts, pos, numDims, 5, 0.3, tree.findNeighborhood(pos, nbhd));
+                }
+            }
+        }
+    }//testFindNeighborhoodMatchesBruteForce
+
+    @Test
+    public void testParallelBuildMatchesBruteForce() {
+        Random rnd = new Random(4);
+        for(int numPts : new int[] {1, 7, 20000}) {
+            double[][] pts = KDTestUtils.buildRandPts(rnd, numPts, 3);
+            ArrayKDTree<KDTestObj> tree = new ArrayKDTree<KDTestObj>(5, Double.MAX_VALUE);
+            tree.setParallelBuildCutoff(10);
+            for(KDTestObj obj : KDTestUtils.buildObjs(pts)) {tree.addKDObject(obj);}
+            tree.buildKDTreeParallel();
+            KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+            for(int q=0;q<100;++q) {
+                double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                checkNeighborhood(pts, pos, 3, 5, Double.MAX_VALUE, tree.findNeighborhood(pos, nbhd));
+            }
+        }
+    }//testParallelBuildMatchesBruteForce
+
+    /**
+     * Each query's row of the batch results must hold the brute force neighbors, padded when fewer are found
+     */
+    static void checkBatchQuery(double[][] pts, double[] queryPts, int numQueries, int numDims, int k, double maxSqDist, Base_ImplicitKDTree tree) {
+        int[] resIdxs = new int[numQueries * k], resCounts = new int[numQueries];
+        double[] resSqDists = new double[numQueries * k];
+        tree.findNeighborhoods(queryPts, numQueries, resIdxs, resSqDists, resCounts);
+        for(int q=0;q<numQueries;++q) {
+            double[] pos = Arrays.copyOfRange(queryPts, q * numDims, q * numDims + numDims);
+            double[] expSqDists = KDTestUtils.calcKNNSqDists(pts, pos, numDims, k, maxSqDist);
+            assertEquals(expSqDists.length, resCounts[q]);
+            for(int i=0;i<k;++i) {
+                if (i < expSqDists.length) {
+                    assertEquals(expSqDists[i], resSqDists[q * k + i]);
+                    assertEquals(expSqDists[i], KDTestUtils.calcSqDist(pts[resIdxs[q * k + i]], pos, numDims));
+                } else {
+                    assertEquals(-1, resIdxs[q * k + i]);
+                    assertEquals(Double.POSITIVE_INFINITY, resSqDists[q * k + i]);
+                }
+            }
+        }
+    }//checkBatchQuery
+
+    @Test
+    public void testBatchQueryMatchesBruteForce() {
+        Random rnd = new Random(5);
+        int numQueries = 1000, k = 6;
+        double maxSqDist = 0.002;
+        double[][] pts = KDTestUtils.buildRandPts(rnd, 5000, 3);
+        ArrayKDTree<KDTestObj> tree = buildTree(pts, k, maxSqDist, ArrayKDTree.DEFAULT_LEAF_SIZE);
+        tree.setBatchQueryCutoff(16);
+        double[] queryPts = new double[numQueries * 3];
+        for(int i=0;i<queryPts.length;++i) {queryPts[i] = rnd.nextDouble();}
+        checkBatchQuery(pts, queryPts, numQueries, 3, k, maxSqDist, tree);
+    }//testBatchQueryMatchesBruteForce
+
+    /**
+     * Trees built with their points in every curve order, queried in batches reordered along every curve, must
+     * answer as brute force does
+     */
+    @Test
+    public void testCurveOrdersMatchBruteForce() {
+        Random rnd = new Random(16);
+        int numQueries = 500, k = 5;
+        for(int numDims : new int[] {2, 3, 5}) {
+            double[][] pts = KDTestUtils.buildGridPts(rnd, 4000, numDims, 30);
+            double[] queryPts = new double[numQueries * numDims];
+            for(int q=0;q<numQueries;++q) {System.arraycopy(KDTestUtils.buildQuery(rnd, numDims), 0, queryPts, q * numDims, numDims);}
+            for(KDSpaceFillingCurve curve : KDSpaceFillingCurve.values()) {
+                ArrayKDTree<KDTestObj> tree = new ArrayKDTree<KDTestObj>(k, 0.05);
+                tree.setCurveOrder(curve);
+                tree.setBatchQueryCutoff(8);
+                for(KDTestObj obj : KDTestUtils.buildObjs(pts)) {tree.addKDObject(obj);}
+                tree.buildKDTree();
+                checkBatchQuery(pts, queryPts, numQueries, numDims, k, 0.05, tree);
+                KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+                for(int q=0;q<50;++q) {
+                    double[] pos = KDTestUtils.buildQuery(rnd, numDims);
+                    checkNeighborhood(pts, pos, numDims, k, 0.05, tree.findNeighborhood(pos, nbhd));
+                    assertEquals(KDTestUtils.countInRadius(pts, pos, numDims, 0.02), tree.countInRadius(pos, 0.02));
+                }
+            }
+        }
+    }//testCurveOrdersMatchBruteForce
+
+    @Test
+    public void testRangeQueriesMatchBruteForce() {
+        Random rnd = new Random(6);
+        KDIndexList res = new KDIndexList();
+        for(int numPts : new int[] {1, 2, 5, 3000}) {
+            double[][] pts = KDTestUtils.buildGridPts(rnd, numPts, 3, 30);
+            ArrayKDTree<KDTestObj> tree = buildTree(pts, 5, Double.MAX_VALUE, ArrayKDTree.DEFAULT_LEAF_SIZE);
+            for(int q=0;q<200;++q) {
+                double[] pos = KDTestUtils.buildQuery(rnd, 3), mins = new double[3], maxs = new double[3];
+                double sqRadius = rnd.nextDouble() * 0.05;
+                for(int axis=0;axis<3;++axis) {mins[axis] = pos[axis] - rnd.nextDouble() * 0.3; maxs[axis] = pos[axis] + rnd.nextDouble() * 0.3;}
+                int expInRadius = KDTestUtils.countInRadius(pts, pos, 3, sqRadius), expInBox = KDTestUtils.countInBox(pts, mins, maxs, 3);
+                assertEquals(expInRadius, tree.countInRadius(pos, sqRadius));
+                assertEquals(expInRadius, tree.findInRadius(pos, sqRadius, res));
+                for(int i=0;i<res.size();++i) {
+                    assertEquals(KDTestUtils.calcSqDist(pts[res.getIdx(i)], pos, 3), res.getSqDist(i));
+                    assertTrue(res.getSqDist(i) <= sqRadius);
+                }
+                //queries using res as scratch must leave its results alone
+                int[] numFound = new int[1];
+                tree.findInRadius(pos, sqRadius, (idx) -> ++numFound[0], res);
+                assertEquals(expInRadius, numFound[0]);
+                assertEquals(expInRadius, tree.countInRadius(pos, sqRadius, res));
+                assertEquals(expInBox, tree.countInBox(mins, maxs, res));
+                assertEquals(expInRadius, res.size());
+                assertEquals(expInBox, tree.countInBox(mins, maxs));
+                assertEquals(expInBox, tree.findInBox(mins, maxs, res));
+                for(int i=0;i<res.size();++i) {assertTrue(KDTestUtils.isInBox(pts[res.getIdx(i)], mins, maxs, 3));}
+            }
+        }
+    }//testRangeQueriesMatchBruteForce
+
+    @Test
+    public void testLeafSizesMatchBruteForce() {
+        Random rnd = new Random(7);
+        double[][] pts = KDTestUtils.buildGridPts(rnd, 3000, 3, 40);
+        for(int leafSize : new int[] {1, 2, 5, 64, 5000}) {
+            ArrayKDTree<KDTestObj> tree = buildTree(pts, 6, Double.MAX_VALUE, leafSize);
+            KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+            for(int q=0;q<100;++q) {
+                double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                checkNeighborhood(pts, pos, 3, 6, Double.MAX_VALUE, tree.findNeighborhood(pos, nbhd));
+                assertEquals(KDTestUtils.countInRadius(pts, pos, 3, 0.01), tree.countInRadius(pos, 0.01));
+            }
+        }
+    }//testLeafSizesMatchBruteForce
+
+    /**
+     * Changing the leaf size of a built tree must not change how its queries and refits read it until it is rebuilt
+     */
+    @Test
+    public void testLeafSizeChangeAfterBuildMatchesBruteForce() {
+        Random rnd = new Random(8);
+        double[][] pts = KDTestUtils.buildRandPts(rnd, 2000, 3);
+        KDTestObj[] objs = KDTestUtils.buildObjs(pts);
+        ArrayKDTree<KDTestObj> tree = new ArrayKDTree<KDTestObj>(5, Double.MAX_VALUE, 16);
+        for(KDTestObj obj : objs) {tree.addKDObject(obj);}
+        tree.buildKDTree();
+        tree.setLeafSize(1);
+        assertEquals(16, tree.getBuiltLeafSize());
+        KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+        for(int pass=0;pass<2;++pass) {
+            for(int q=0;q<100;++q) {
+                double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                checkNeighborhood(pts, pos, 3, 5, Double.MAX_VALUE, tree.findNeighborhood(pos, nbhd));
+            }
+            //move the points and refit
+            for(int i=0;i<objs.length;++i) {
+                for(int axis=0;axis<3;++axis) {pts[i][axis] += rnd.nextGaussian() * 0.01; objs[i].getPosVals()[axis] = pts[i][axis];}
+            }
+            tree.refitKDTree();
+            assertEquals(16, tree.getBuiltLeafSize());
+        }
+        tree.buildKDTree();
+        assertEquals(1, tree.getBuiltLeafSize());
+    }//testLeafSizeChangeAfterBuildMatchesBruteForce
+
+    /**
+     * With no error bound and no budget the approximate search must be exact; with an error bound each neighbor
+     * found must be within (1+eps) of the matching true neighbor, and with a budget every certified neighbor must be exact
+     */
+    @Test
+    public void testApproxSearchMatchesBruteForce() {
+        Random rnd = new Random(9);
+        int numDims = 16, k = 8;
+        double eps = 0.5;
+        double[][] pts = new double[4000][numDims];
+        for(double[] pt : pts) {for(int axis=0;axis<numDims;++axis) {pt[axis] = rnd.nextGaussian();}}
+        ArrayKDTree<KDTestObj> tree = buildTree(pts, k, Double.MAX_VALUE, ArrayKDTree.DEFAULT_LEAF_SIZE);
+        KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+        KDSubtreeQueue queue = new KDSubtreeQueue();
+        KDApproxSearchStats stats = new KDApproxSearchStats();
+        for(int q=0;q<50;++q) {
+            double[] pos = new double[numDims];
+            for(int axis=0;axis<numDims;++axis) {pos[axis] = rnd.nextGaussian();}
+            double[] expSqDists = KDTestUtils.calcKNNSqDists(pts, pos, numDims, k, Double.MAX_VALUE);
+            tree.findApproxNeighborhood(pos, 0.0, 0, nbhd, queue, stats);
+            assertEquals(1.0, stats.getCertifiedRecall());
+            checkNeighborhood(pts, pos, numDims, k, Double.MAX_VALUE, nbhd);
+
+            tree.findApproxNeighborhood(pos, eps, 0, nbhd, queue, null);
+            nbhd.sortByDist();
+            assertEquals(k, nbhd.size());
+            for(int i=0;i<k;++i) {
+                assertEquals(KDTestUtils.calcSqDist(pts[nbhd.getIdx(i)], pos, numDims), nbhd.getSqDist(i));
+                assertTrue(nbhd.getSqDist(i) <= (1.0 + eps) * (1.0 + eps) * expSqDists[i]);
+            }
+
+            tree.findApproxNeighborhood(pos, 0.0, 3, nbhd, queue, stats);
+            nbhd.sortByDist();
+            assertEquals(k, nbhd.size());
+            for(int i=0;i<stats.getNumCertified();++i) {assertEquals(expSqDists[i], nbhd.getSqDist(i));}
+        }
+    }//testApproxSearchMatchesBruteForce
+
+    /**
+     * With single-point leaves, subtrees of 2 points have an empty child. Every leaf visit the approximate search
+     * counts must scan a point, and the leaf budget must only be spent on leaves that hold points.
+     */
+    @Test
+    public void testApproxSearchSkipsEmptyLeaves() {
+        Random rnd = new Random(91);
+        double[][] pts = KDTestUtils.buildRandPts(rnd, 2000, 3);
+        ArrayKDTree<KDTestObj> tree = buildTree(pts, 4, Double.MAX_VALUE, 1);
+        KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+        KDSubtreeQueue queue = new KDSubtreeQueue();
+        KDApproxSearchStats stats = new KDApproxSearchStats();
+        for(int q=0;q<100;++q) {
+            double[] pos = KDTestUtils.buildQuery(rnd, 3);
+            tree.findApproxNeighborhood(pos, 0.0, 0, nbhd, queue, stats);
+            assertEquals(1.0, stats.getCertifiedRecall());
+            checkNeighborhood(pts, pos, 3, 4, Double.MAX_VALUE, nbhd);
+            assertEquals(stats.getNumNodesVisited() + stats.getNumLeavesVisited(), stats.getNumDistEvals());
+            for(int budget : new int[] {1, 2, 5}) {
+                tree.findApproxNeighborhood(pos, 0.0, budget, nbhd, queue, stats);
+                assertTrue(stats.getNumLeavesVisited() <= budget);
+                assertEquals(stats.getNumNodesVisited() + stats.getNumLeavesVisited(), stats.getNumDistEvals());
+                assertTrue(nbhd.size() >= Math.min(4, stats.getNumNodesVisited() + stats.getNumLeavesVisited()));
+            }
+        }
+    }//testApproxSearchSkipsEmptyLeaves
+
+    /**
+     * Refitting after every object moves, whether subtrees are never, sometimes or always rebuilt, must give the same
+     * answers as brute force on the moved points
+     */
+    @Test
+    public void testRefitMatchesBruteForce() {
+        Random rnd = new Random(10);
+        for(double degradeRatio : new double[] {0.0, 0.5, 1.0}) {
+            double[][] pts = KDTestUtils.buildRandPts(rnd, 3000, 3);
+            KDTestObj[] objs = KDTestUtils.buildObjs(pts);
+            ArrayKDTree<KDTestObj> tree = new ArrayKDTree<KDTestObj>(5, Double.MAX_VALUE);
+            tree.setRefitDegradeRatio(degradeRatio);
+            for(KDTestObj obj : objs) {tree.addKDObject(obj);}
+            tree.buildKDTree();
+            KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+            for(int frame=0;frame<10;++frame) {
+                //drift every point, stretching the first axis so split axes degrade, and teleport a few
+                for(int i=0;i<pts.length;++i) {
+                    if (rnd.nextInt(100) == 0) {    for(int axis=0;axis<3;++axis) {pts[i][axis] = rnd.nextDouble();}}
+                    else {
+                        pts[i][0] *= 1.3;
+                        for(int axis=0;axis<3;++axis) {pts[i][axis] += rnd.nextGaussian() * 0.01;}
+                    }
+                    System.arraycopy(pts[i], 0, objs[i].getPosVals(), 0, 3);
+                }
+                tree.refitKDTree();
+                for(int q=0;q<50;++q) {
+                    double[] pos = KDTestUtils.buildQuery(rnd, 3), mins = new double[3], maxs = new double[3];
+                    pos[0] *= Math.pow(1.3, frame + 1);
+                    for(int axis=0;axis<3;++axis) {mins[axis] = pos[axis] - 0.2; maxs[axis] = pos[axis] + 0.2;}
+                    checkNeighborhood(pts, pos, 3, 5, Double.MAX_VALUE, tree.findNeighborhood(pos, nbhd));
+                    assertEquals(KDTestUtils.countInRadius(pts, pos, 3, 0.01), tree.countInRadius(pos, 0.01));
+                    assertEquals(KDTestUtils.countInBox(pts, mins, maxs, 3), tree.countInBox(mins, maxs));
+                }
+            }
+        }
+    }//testRefitMatchesBruteForce
+
+    /**
+     * Every row of the neighbor graph must hold the brute force neighbors of its point, with or without the point
+     * itself, on data with duplicate points and serial or parallel builds of the graph
+     */
+    @Test
+    public void testKNNGraphMatchesBruteForce() {
+        Random rnd = new Random(17);
+        int k = 6;
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for(double maxSqDist : new double[] {Double.MAX_VALUE, 0.003}) {
+                double[][] pts = KDTestUtils.buildGridPts(rnd, 3000, 3, 20);
+                ArrayKDTree<KDTestObj> tree = buildTree(pts, k, maxSqDist, 8);
+                for(boolean excludeSelf : new boolean[] {false, true}) {
+                    for(ForkJoinPool graphPool : new ForkJoinPool[] {null, pool}) {
+                        KDNeighborGraph graph = tree.buildKNNGraph(k, maxSqDist, excludeSelf, graphPool);
+                        assertEquals(pts.length, graph.getNumPts());
+                        for(int p=0;p<pts.length;++p) {
+                            double[] expSqDists = KDTestUtils.calcSortedSqDists(pts, pts[p], 3, maxSqDist, (excludeSelf ? p : -1));
+                            int numExp = Math.min(k, expSqDists.length);
+                            assertEquals(numExp, graph.getNumNeighbors(p));
+                            double[] sqDists = new double[numExp];
+                            for(int i=0;i<numExp;++i) {
+                                int nbr = graph.getNeighbor(p, i);
+                                assertTrue(!excludeSelf || (nbr != p));
+                                sqDists[i] = graph.getSqDist(p, i);
+                                assertEquals(KDTestUtils.calcSqDist(pts[nbr], pts[p], 3), sqDists[i]);
+                            }
+                            Arrays.sort(sqDists);
+                            for(int i=0;i<numExp;++i) {assertEquals(expSqDists[i], sqDists[i]);}
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }//testKNNGraphMatchesBruteForce
+
+    /**
+     * Whether a small tree is searched by scanning every point or by traversal must not change its answers
+     */
+    @Test
+    public void testBruteForceCutoffsMatchBruteForce() {
+        Random rnd = new Random(18);
+        for(int numPts : new int[] {1, 10, 63, 64, 65, 500}) {
+            double[][] pts = KDTestUtils.buildGridPts(rnd, numPts, 3, 10);
+            for(int cutoff : new int[] {0, 64, 1000}) {
+                ArrayKDTree<KDTestObj> tree = buildTree(pts, 5, 0.1, 4);
+                tree.setBruteForceCutoff(cutoff);
+                KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+                for(int q=0;q<50;++q) {
+                    double[] pos = KDTestUtils.buildQuery(rnd, 3), mins = new double[3], maxs = new double[3];
+                    for(int axis=0;axis<3;++axis) {mins[axis] = pos[axis] - 0.2; maxs[axis] = pos[axis] + 0.2;}
+                    checkNeighborhood(pts, pos, 3, 5, 0.1, tree.findNeighborhood(pos, nbhd));
+                    assertEquals(KDTestUtils.countInRadius(pts, pos, 3, 0.02), tree.countInRadius(pos, 0.02));
+                    assertEquals(KDTestUtils.countInBox(pts, mins, maxs, 3), tree.countInBox(mins, maxs));
+                }
+            }
+        }
+    }//testBruteForceCutoffsMatchBruteForce
+
+    /**
+     * Check the pairs found hold every pair of points within the radius exactly once, smaller index first
+     */
+    private static void checkPairs(double[][] pts, double sqRadius, KDPairList pairs) {
+        int numPts = pts.length;
+        boolean[] isFound = new boolean[numPts * numPts];
+        for(int i=0;i<pairs.size();++i) {
+            int a = pairs.getIdxA(i), b = pairs.getIdxB(i);
+            assertTrue(a < b);
+            assertTrue(!isFound[a * numPts + b]);
+            isFound[a * numPts + b] = true;
+            assertEquals(KDTestUtils.calcSqDist(pts[a], pts[b], 3), pairs.getSqDist(i));
+        }
+        int numExp = 0;
+        for(int a=0;a<numPts;++a) {
+            for(int b=a+1;b<numPts;++b) {
+                if (KDTestUtils.calcSqDist(pts[a], pts[b], 3) <= sqRadius) {
+                    ++numExp;
+                    assertTrue(isFound[a * numPts + b]);
+                }
+            }
+        }
+        assertEquals(numExp, pairs.size());
+    }//checkPairs
+
+    /**
+     * The self-join must find every close pair, serially or in parallel, after the tree's points move and are refit,
+     * and after it is rebuilt with more points
+     */
+    @Test
+    public void testPairJoinMatchesBruteForce() {
+        Random rnd = new Random(24);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            double[][] pts = KDTestUtils.buildGridPts(rnd, 2000, 3, 25);
+            KDTestObj[] objs = KDTestUtils.buildObjs(pts);
+            ArrayKDTree<KDTestObj> tree = new ArrayKDTree<KDTestObj>(5, Double.MAX_VALUE, 8);
+            tree.setBatchQueryCutoff(32);
+            for(KDTestObj obj : objs) {tree.addKDObject(obj);}
+            tree.buildKDTree();
+            KDPairList pairs = new KDPairList(), parPairs = new KDPairList();
+            for(int frame=0;frame<3;++frame) {
+                for(double sqRadius : new double[] {0.0, 0.002}) {
+                    checkPairs(pts, sqRadius, tree.findPairsInRadius(sqRadius, pairs, null));
+                    tree.findPairsInRadius(sqRadius, parPairs, pool);
+                    assertEquals(pairs.size(), parPairs.size());
+                    for(int i=0;i<pairs.size();++i) {
+                        assertEquals(pairs.getIdxA(i), parPairs.getIdxA(i));
+                        assertEquals(pairs.getIdxB(i), parPairs.getIdxB(i));
+                    }
+                }
+                for(int i=0;i<pts.length;++i) {
+                    for(int axis=0;axis<3;++axis) {pts[i][axis] += rnd.nextGaussian() * 0.02; objs[i].getPosVals()[axis] = pts[i][axis];}
+                }
+                tree.refitKDTree();
+            }
+            double[][] allPts = Arrays.copyOf(pts, 2500);
+            for(int i=pts.length;i<allPts.length;++i) {
+                allPts[i] = KDTestUtils.buildRandPts(rnd, 1, 3)[0];
+                tree.addKDObject(new KDTestObj(allPts[i], i));
+            }
+            tree.buildKDTree();
+            checkPairs(allPts, 0.002, tree.findPairsInRadius(0.002, pairs, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }//testPairJoinMatchesBruteForce
+
+}//class ArrayKDTreeTest
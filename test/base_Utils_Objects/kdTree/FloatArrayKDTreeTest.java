@@ -0,0 +1,98 @@
+package base_Utils_Objects.kdTree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import base_Utils_Objects.kdTree.KDTestUtils.KDTestObj;
+import base_Utils_Objects.kdTree.base.KDSpaceFillingCurve;
+
+/**
+ * Checks FloatArrayKDTree queries against brute force on the float-rounded points the tree holds
+ * @author John Turner
+ *
+ */
+public class FloatArrayKDTreeTest {
+
+    /**
+     * Trees built serially or in parallel must answer queries as brute force does on the points rounded to float
+     */
+    @Test
+    public void testQueriesMatchBruteForce() {
+        Random rnd = new Random(15);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for(ForkJoinPool buildPool : new ForkJoinPool[] {null, pool}) {
+                for(int numPts : new int[] {1, 17, 5000}) {
+                    double[][] pts = KDTestUtils.buildRandPts(rnd, numPts, 3);
+                    FloatArrayKDTree<KDTestObj> tree = new FloatArrayKDTree<KDTestObj>(5, 0.05, 8);
+                    tree.setParallelBuildCutoff(64);
+                    for(KDTestObj obj : KDTestUtils.buildObjs(pts)) {tree.addKDObject(obj);}
+                    if (buildPool == null) {    tree.buildKDTree();}
+                    else {                        tree.buildKDTreeParallel(buildPool);}
+                    KDTestUtils.checkRangeQueries(tree, roundToFloat(pts), rnd, 5, 0.05);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }//testQueriesMatchBruteForce
+
+    /**
+     * Round each point to float, as the tree holds it
+     */
+    private static double[][] roundToFloat(double[][] pts) {
+        double[][] res = new double[pts.length][];
+        for(int i=0;i<pts.length;++i) {
+            res[i] = new double[pts[i].length];
+            for(int axis=0;axis<pts[i].length;++axis) {res[i][axis] = (float) pts[i][axis];}
+        }
+        return res;
+    }//roundToFloat
+
+    /**
+     * Trees whose leaves and batch queries are ordered along every curve must answer batch queries as brute force does,
+     * and must keep doing so as they are refit after their objects move
+     */
+    @Test
+    public void testBatchQueryAndRefitMatchBruteForce() {
+        Random rnd = new Random(151);
+        int numQueries = 300, k = 5;
+        for(KDSpaceFillingCurve curve : KDSpaceFillingCurve.values()) {
+            double[][] pts = KDTestUtils.buildRandPts(rnd, 3000, 3);
+            KDTestObj[] objs = KDTestUtils.buildObjs(pts);
+            FloatArrayKDTree<KDTestObj> tree = new FloatArrayKDTree<KDTestObj>(k, 0.05);
+            tree.setCurveOrder(curve);
+            tree.setBatchQueryCutoff(16);
+            tree.setParallelBuildCutoff(64);
+            for(KDTestObj obj : objs) {tree.addKDObject(obj);}
+            tree.buildKDTreeParallel();
+            assertEquals(FloatArrayKDTree.DEFAULT_LEAF_SIZE, tree.getBuiltLeafSize());
+            assertEquals(k, tree.getMaxNumNeighbors());
+            for(int frame=0;frame<4;++frame) {
+                if (frame > 0) {
+                    //drift every point, stretching the first axis so split axes degrade
+                    for(int i=0;i<pts.length;++i) {
+                        pts[i][0] *= 1.3;
+                        for(int axis=0;axis<3;++axis) {pts[i][axis] += rnd.nextGaussian() * 0.01;}
+                        System.arraycopy(pts[i], 0, objs[i].getPosVals(), 0, 3);
+                    }
+                    tree.refitKDTree();
+                }
+                double[][] floatPts = roundToFloat(pts);
+                double[] queryPts = new double[numQueries * 3];
+                for(int q=0;q<numQueries;++q) {
+                    double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                    pos[0] *= Math.pow(1.3, frame);
+                    System.arraycopy(pos, 0, queryPts, q * 3, 3);
+                }
+                ArrayKDTreeTest.checkBatchQuery(floatPts, queryPts, numQueries, 3, k, 0.05, tree);
+                KDTestUtils.checkRangeQueries(tree, floatPts, rnd, k, 0.05);
+            }
+        }
+    }//testBatchQueryAndRefitMatchBruteForce
+
+}//class FloatArrayKDTreeTest
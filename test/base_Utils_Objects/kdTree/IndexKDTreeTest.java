@@ -0,0 +1,101 @@
+package base_Utils_Objects.kdTree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import base_Utils_Objects.kdTree.query.KDIndexNeighborhood;
+
+/**
+ * Checks IndexKDTree queries against brute force, for each layout of source points
+ * @author John Turner
+ *
+ */
+public class IndexKDTreeTest {
+
+    /**
+     * Source layouts : one array per point, holding extra values past the axes used; a flat array at an offset with 
+     * extra values between points; a tightly packed flat array
+     */
+    private static final int PER_PT = 0, STRIDED = 1, PACKED = 2;
+    private static final int NUM_DIMS = 3, STRIDE = 5, OFFSET = 7;
+
+    /**
+     * Copy the reference points into the source storage of the given layout
+     */
+    private static void writeSrcPts(int layout, double[][] pts, double[][] perPtSrc, double[] flatSrc) {
+        for(int i=0;i<pts.length;++i) {
+            for(int axis=0;axis<NUM_DIMS;++axis) {
+                switch (layout) {
+                    case PER_PT : {perPtSrc[i][axis] = pts[i][axis]; break;}
+                    case STRIDED : {flatSrc[OFFSET + i * STRIDE + axis] = pts[i][axis]; break;}
+                    default : {flatSrc[i * NUM_DIMS + axis] = pts[i][axis];}
+                }
+            }
+        }
+    }//writeSrcPts
+
+    private static void checkQueries(Random rnd, IndexKDTree tree, double[][] pts) {
+        KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+        for(int q=0;q<50;++q) {
+            double[] pos = KDTestUtils.buildQuery(rnd, NUM_DIMS), mins = new double[NUM_DIMS], maxs = new double[NUM_DIMS];
+            for(int axis=0;axis<NUM_DIMS;++axis) {mins[axis] = pos[axis] - 0.2; maxs[axis] = pos[axis] + 0.2;}
+            ArrayKDTreeTest.checkNeighborhood(pts, pos, NUM_DIMS, 5, 0.05, tree.findNeighborhood(pos, nbhd));
+            assertEquals(KDTestUtils.countInRadius(pts, pos, NUM_DIMS, 0.01), tree.countInRadius(pos, 0.01));
+            assertEquals(KDTestUtils.countInBox(pts, mins, maxs, NUM_DIMS), tree.countInBox(mins, maxs));
+        }
+        int numQueries = 100;
+        double[] queryPts = new double[numQueries * NUM_DIMS];
+        for(int i=0;i<queryPts.length;++i) {queryPts[i] = rnd.nextDouble();}
+        ArrayKDTreeTest.checkBatchQuery(pts, queryPts, numQueries, NUM_DIMS, 5, 0.05, tree);
+    }//checkQueries
+
+    /**
+     * Trees built serially or in parallel from each layout must answer queries as brute force does, both as built
+     * and after their source points move and they are refit, including a refit of a tree never built
+     */
+    @Test
+    public void testLayoutsMatchBruteForce() {
+        Random rnd = new Random(25);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for(int layout : new int[] {PER_PT, STRIDED, PACKED}) {
+                for(ForkJoinPool buildPool : new ForkJoinPool[] {null, pool}) {
+                    int numPts = 2000;
+                    double[][] pts = KDTestUtils.buildGridPts(rnd, numPts, NUM_DIMS, 30);
+                    double[][] perPtSrc = new double[numPts][STRIDE];
+                    double[] flatSrc = new double[layout == STRIDED ? OFFSET + numPts * STRIDE : numPts * NUM_DIMS];
+                    //values outside the axes read must be ignored
+                    for(double[] src : perPtSrc) {for(int axis=NUM_DIMS;axis<STRIDE;++axis) {src[axis] = Double.NaN;}}
+                    if (layout == STRIDED) {Arrays.fill(flatSrc, Double.NaN);}
+                    writeSrcPts(layout, pts, perPtSrc, flatSrc);
+                    IndexKDTree tree = new IndexKDTree(5, 0.05, 8);
+                    tree.setParallelBuildCutoff(64);
+                    switch (layout) {
+                        case PER_PT : {assertTrue(tree.setSrcPts(perPtSrc, NUM_DIMS)); break;}
+                        case STRIDED : {assertTrue(tree.setSrcPts(flatSrc, OFFSET, STRIDE, numPts, NUM_DIMS)); break;}
+                        default : {assertTrue(tree.setSrcPts(flatSrc, NUM_DIMS));}
+                    }
+                    assertEquals(numPts, tree.getNumSrcPts());
+                    if (buildPool == null) {    assertEquals(1, tree.refitKDTree());}
+                    else {                        tree.buildKDTreeParallel(buildPool);}
+                    checkQueries(rnd, tree, pts);
+                    for(int frame=0;frame<3;++frame) {
+                        for(double[] pt : pts) {for(int axis=0;axis<NUM_DIMS;++axis) {pt[axis] += rnd.nextGaussian() * 0.02;}}
+                        writeSrcPts(layout, pts, perPtSrc, flatSrc);
+                        tree.refitKDTree();
+                        checkQueries(rnd, tree, pts);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }//testLayoutsMatchBruteForce
+
+}//class IndexKDTreeTest
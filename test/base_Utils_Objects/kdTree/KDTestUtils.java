@@ -0,0 +1,145 @@
+package base_Utils_Objects.kdTree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import base_Utils_Objects.kdTree.base.Base_ImplicitKDTree;
+import base_Utils_Objects.kdTree.base.Base_KDObject;
+import base_Utils_Objects.kdTree.query.KDApproxSearchStats;
+import base_Utils_Objects.kdTree.query.KDIndexList;
+import base_Utils_Objects.kdTree.query.KDIndexNeighborhood;
+
+/**
+ * Point sets, brute-force reference answers and query checks shared by the kd-tree and neighbor index tests.
+ * @author John Turner
+ *
+ */
+public class KDTestUtils {
+
+    private KDTestUtils() {}
+
+    /**
+     * Simple kd object that remembers the index of the point it was built from
+     */
+    public static class KDTestObj extends Base_KDObject<KDTestObj> {
+        public final int idx;
+        public KDTestObj(double[] _pos, int _idx) {super(_pos); idx = _idx;}
+        public KDTestObj(KDTree<KDTestObj> _owningTree, double[] _pos, int _idx) {super(_owningTree, _pos); idx = _idx;}
+    }//class KDTestObj
+
+    /**
+     * Build numPts uniformly random points in the unit cube of numDims dimensions
+     */
+    public static double[][] buildRandPts(Random rnd, int numPts, int numDims) {
+        double[][] res = new double[numPts][numDims];
+        for(double[] pt : res) {for(int axis=0;axis<numDims;++axis) {pt[axis] = rnd.nextDouble();}}
+        return res;
+    }//buildRandPts
+
+    /**
+     * Build numPts random points whose coordinates are snapped to a grid of the given # of steps per axis, so
+     * that many points share coordinates and some are exact duplicates
+     */
+    public static double[][] buildGridPts(Random rnd, int numPts, int numDims, int numSteps) {
+        double[][] res = new double[numPts][numDims];
+        for(double[] pt : res) {for(int axis=0;axis<numDims;++axis) {pt[axis] = rnd.nextInt(numSteps) / (1.0 * numSteps);}}
+        return res;
+    }//buildGridPts
+
+    /**
+     * Build a kd object for every point, reported by its index in pts
+     */
+    public static KDTestObj[] buildObjs(double[][] pts) {
+        KDTestObj[] res = new KDTestObj[pts.length];
+        for(int i=0;i<pts.length;++i) {res[i] = new KDTestObj(pts[i], i);}
+        return res;
+    }//buildObjs
+
+    public static double calcSqDist(double[] a, double[] b, int numDims) {
+        double res = 0;
+        for(int axis=0;axis<numDims;++axis) {double diff = a[axis] - b[axis]; res += diff * diff;}
+        return res;
+    }//calcSqDist
+
+    /**
+     * Sq distance from pos to every point, in ascending order, skipping skipIdx and any point at a sq distance >= maxSqDist
+     */
+    public static double[] calcSortedSqDists(double[][] pts, double[] pos, int numDims, double maxSqDist, int skipIdx) {
+        double[] res = new double[pts.length];
+        int numFound = 0;
+        for(int i=0;i<pts.length;++i) {
+            if (i == skipIdx) {continue;}
+            double sqDist = calcSqDist(pts[i], pos, numDims);
+            if (sqDist < maxSqDist) {res[numFound++] = sqDist;}
+        }
+        res = Arrays.copyOf(res, numFound);
+        Arrays.sort(res);
+        return res;
+    }//calcSortedSqDists
+
+    /**
+     * Sq distances of the (up to) k nearest points to pos, in ascending order
+     */
+    public static double[] calcKNNSqDists(double[][] pts, double[] pos, int numDims, int k, double maxSqDist) {
+        double[] res = calcSortedSqDists(pts, pos, numDims, maxSqDist, -1);
+        return Arrays.copyOf(res, Math.min(k, res.length));
+    }//calcKNNSqDists
+
+    public static int countInRadius(double[][] pts, double[] pos, int numDims, double sqRadius) {
+        int res = 0;
+        for(double[] pt : pts) {if(calcSqDist(pt, pos, numDims) <= sqRadius) {++res;}}
+        return res;
+    }//countInRadius
+
+    public static boolean isInBox(double[] pt, double[] mins, double[] maxs, int numDims) {
+        for(int axis=0;axis<numDims;++axis) {if((pt[axis] < mins[axis]) || (pt[axis] > maxs[axis])) {return false;}}
+        return true;
+    }//isInBox
+
+    public static int countInBox(double[][] pts, double[] mins, double[] maxs, int numDims) {
+        int res = 0;
+        for(double[] pt : pts) {if(isInBox(pt, mins, maxs, numDims)) {++res;}}
+        return res;
+    }//countInBox
+
+    /**
+     * Build a random query location, spreading slightly past the unit cube so some queries fall outside every point's bounds
+     */
+    public static double[] buildQuery(Random rnd, int numDims) {
+        double[] res = new double[numDims];
+        for(int axis=0;axis<numDims;++axis) {res[axis] = rnd.nextDouble() * 1.2 - 0.1;}
+        return res;
+    }//buildQuery
+
+    /**
+     * Check the exact and approximate kNN, radius and box queries of an implicit kd-tree against brute force on pts,
+     * for 100 random queries
+     * @param k # of neighbors of the neighborhoods to search with
+     * @param maxSqDist max sq distance of the neighborhoods to search with
+     */
+    public static void checkRangeQueries(Base_ImplicitKDTree tree, double[][] pts, Random rnd, int k, double maxSqDist) {
+        int numDims = pts[0].length;
+        KDIndexNeighborhood nbhd = new KDIndexNeighborhood(k, maxSqDist);
+        KDIndexList res = new KDIndexList();
+        KDApproxSearchStats stats = new KDApproxSearchStats();
+        for(int q=0;q<100;++q) {
+            double[] pos = buildQuery(rnd, numDims), mins = new double[numDims], maxs = new double[numDims];
+            for(int axis=0;axis<numDims;++axis) {mins[axis] = pos[axis] - rnd.nextDouble() * 0.3; maxs[axis] = pos[axis] + rnd.nextDouble() * 0.3;}
+            ArrayKDTreeTest.checkNeighborhood(pts, pos, numDims, k, maxSqDist, tree.findNeighborhood(pos, nbhd));
+            ArrayKDTreeTest.checkNeighborhood(pts, pos, numDims, k, maxSqDist, tree.findApproxNeighborhood(pos, 0.0, 0, nbhd, stats));
+            assertEquals(1.0, stats.getCertifiedRecall());
+            int expInRadius = countInRadius(pts, pos, numDims, 0.01);
+            assertEquals(expInRadius, tree.countInRadius(pos, 0.01));
+            assertEquals(expInRadius, tree.findInRadius(pos, 0.01, res));
+            for(int i=0;i<res.size();++i) {assertEquals(calcSqDist(pts[res.getIdx(i)], pos, numDims), res.getSqDist(i));}
+            int expInBox = countInBox(pts, mins, maxs, numDims);
+            assertEquals(expInBox, tree.countInBox(mins, maxs));
+            assertEquals(expInBox, tree.findInBox(mins, maxs, res));
+            for(int i=0;i<res.size();++i) {assertTrue(isInBox(pts[res.getIdx(i)], mins, maxs, numDims));}
+        }
+    }//checkRangeQueries
+
+}//class KDTestUtils
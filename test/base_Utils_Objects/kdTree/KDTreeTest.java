@@ -0,0 +1,463 @@
+package base_Utils_Objects.kdTree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import base_Utils_Objects.kdTree.KDTestUtils.KDTestObj;
+import base_Utils_Objects.kdTree.base.KDSplitRule;
+import base_Utils_Objects.kdTree.metric.KDChebyshevMetric;
+import base_Utils_Objects.kdTree.metric.KDEuclideanMetric;
+import base_Utils_Objects.kdTree.metric.KDManhattanMetric;
+import base_Utils_Objects.kdTree.metric.KDMetric;
+import base_Utils_Objects.kdTree.metric.KDPeriodicMetric;
+import base_Utils_Objects.kdTree.query.KDIndexNeighborhood;
+import base_Utils_Objects.kdTree.query.KDNeighborhood;
+import base_Utils_Objects.kdTree.query.KDQueryStats;
+import base_Utils_Objects.kdTree.query.KDQueryStatsSnapshot;
+
+/**
+ * Checks KDTree queries against brute force
+ * @author John Turner
+ *
+ */
+public class KDTreeTest {
+
+    private static KDTree<KDTestObj> buildTree(double[][] pts, int maxNumNeighbors, double maxNeighborSqDist) {
+        KDTree<KDTestObj> tree = new KDTree<KDTestObj>(maxNumNeighbors, maxNeighborSqDist);
+        for(int i=0;i<pts.length;++i) {tree.addKDObject(new KDTestObj(tree, pts[i], i));}
+        tree.buildKDTree();
+        return tree;
+    }//buildTree
+
+    /**
+     * Check the neighborhood found for pos holds the k nearest points, in ascending order, and that each reported
+     * object is at its reported distance
+     */
+    static void checkNeighborhood(double[][] pts, double[] pos, int numDims, int k, double maxSqDist, KDNeighborhood<KDTestObj> nbhd) {
+        double[] expSqDists = KDTestUtils.calcKNNSqDists(pts, pos, numDims, k, maxSqDist);
+        nbhd.sortByDist();
+        assertEquals(expSqDists.length, nbhd.size());
+        for(int i=0;i<expSqDists.length;++i) {
+            assertEquals(expSqDists[i], nbhd.getSqDist(i));
+            assertEquals(expSqDists[i], KDTestUtils.calcSqDist(pts[nbhd.getNeighbor(i).idx], pos, numDims));
+        }
+    }//checkNeighborhood
+
+    @Test
+    public void testFindNeighborhoodMatchesBruteForce() {
+        Random rnd = new Random(1);
+        for(double maxSqDist : new double[] {Double.MAX_VALUE, 0.01}) {
+            double[][] pts = KDTestUtils.buildRandPts(rnd, 3000, 3);
+            KDTree<KDTestObj> tree = buildTree(pts, 7, maxSqDist);
+            KDNeighborhood<KDTestObj> nbhd = tree.buildNeighborhood();
+            for(int q=0;q<200;++q) {
+                double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                checkNeighborhood(pts, pos, 3, 7, maxSqDist, tree.findNeighborhood(pos, nbhd));
+            }
+        }
+    }//testFindNeighborhoodMatchesBruteForce
+
+    /**
+     * The selection build must give the same answers as the sort build and brute force, including for duplicate coordinates
+     */
+    @Test
+    public void testSelectionBuildMatchesSortBuildAndBruteForce() {
+        Random rnd = new Random(4);
+        for(int numPts : new int[] {1, 2, 3, 7, 100, 3000}) {
+            double[][] pts = KDTestUtils.buildGridPts(rnd, numPts, 3, 8);
+            KDTree<KDTestObj> selTree = new KDTree<KDTestObj>(6, Double.MAX_VALUE), sortTree = new KDTree<KDTestObj>(6, Double.MAX_VALUE);
+            sortTree.setUseSelectionBuild(false);
+            for(int i=0;i<numPts;++i) {
+                selTree.addKDObject(new KDTestObj(selTree, pts[i], i));
+                sortTree.addKDObject(new KDTestObj(sortTree, pts[i], i));
+            }
+            selTree.buildKDTree();
+            sortTree.buildKDTree();
+            assertEquals(numPts, selTree.calcTreeStats().getNumLeaves() + selTree.calcTreeStats().getNumInternalNodes());
+            KDNeighborhood<KDTestObj> selNbhd = selTree.buildNeighborhood(), sortNbhd = sortTree.buildNeighborhood();
+            for(int q=0;q<100;++q) {
+                double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                checkNeighborhood(pts, pos, 3, 6, Double.MAX_VALUE, selTree.findNeighborhood(pos, selNbhd));
+                checkNeighborhood(pts, pos, 3, 6, Double.MAX_VALUE, sortTree.findNeighborhood(pos, sortNbhd));
+            }
+        }
+    }//testSelectionBuildMatchesSortBuildAndBruteForce
+
+    @Test
+    public void testParallelBuildMatchesBruteForce() {
+        Random rnd = new Random(5);
+        for(int numPts : new int[] {1, 7, 20000}) {
+            double[][] pts = KDTestUtils.buildRandPts(rnd, numPts, 3);
+            KDTree<KDTestObj> tree = new KDTree<KDTestObj>(5, Double.MAX_VALUE);
+            tree.setParallelBuildCutoff(10);
+            for(int i=0;i<numPts;++i) {tree.addKDObject(new KDTestObj(tree, pts[i], i));}
+            tree.buildKDTreeParallel();
+            KDNeighborhood<KDTestObj> nbhd = tree.buildNeighborhood();
+            for(int q=0;q<100;++q) {
+                double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                checkNeighborhood(pts, pos, 3, 5, Double.MAX_VALUE, tree.findNeighborhood(pos, nbhd));
+            }
+        }
+    }//testParallelBuildMatchesBruteForce
+
+    @Test
+    public void testRangeQueriesMatchBruteForce() {
+        Random rnd = new Random(6);
+        for(int numPts : new int[] {1, 2, 5, 3000}) {
+            double[][] pts = KDTestUtils.buildGridPts(rnd, numPts, 3, 30);
+            KDTree<KDTestObj> tree = buildTree(pts, 5, Double.MAX_VALUE);
+            for(int q=0;q<200;++q) {
+                double[] pos = KDTestUtils.buildQuery(rnd, 3), mins = new double[3], maxs = new double[3];
+                double sqRadius = rnd.nextDouble() * 0.05;
+                for(int axis=0;axis<3;++axis) {mins[axis] = pos[axis] - rnd.nextDouble() * 0.3; maxs[axis] = pos[axis] + rnd.nextDouble() * 0.3;}
+                int expInRadius = KDTestUtils.countInRadius(pts, pos, 3, sqRadius), expInBox = KDTestUtils.countInBox(pts, mins, maxs, 3);
+                List<KDTestObj> found = new ArrayList<KDTestObj>();
+                tree.findInRadius(pos, sqRadius, found::add);
+                assertEquals(expInRadius, found.size());
+                for(KDTestObj obj : found) {assertTrue(KDTestUtils.calcSqDist(pts[obj.idx], pos, 3) <= sqRadius);}
+                assertEquals(expInRadius, tree.countInRadius(pos, sqRadius));
+                found.clear();
+                tree.findInBox(mins, maxs, found::add);
+                assertEquals(expInBox, found.size());
+                for(KDTestObj obj : found) {assertTrue(KDTestUtils.isInBox(pts[obj.idx], mins, maxs, 3));}
+                assertEquals(expInBox, tree.countInBox(mins, maxs));
+            }
+        }
+    }//testRangeQueriesMatchBruteForce
+
+    /**
+     * Every split rule must give correct trees in any # of dimensions, on axes of very different spreads
+     */
+    @Test
+    public void testSplitRulesAndDimsMatchBruteForce() {
+        Random rnd = new Random(8);
+        for(KDSplitRule rule : KDSplitRule.values()) {
+            for(int numDims : new int[] {1, 2, 3, 6, 12}) {
+                double[][] pts = new double[2000][numDims];
+                for(double[] pt : pts) {for(int axis=0;axis<numDims;++axis) {pt[axis] = rnd.nextGaussian() * (axis + 1) + 1000;}}
+                KDTree<KDTestObj> tree = new KDTree<KDTestObj>(5, Double.MAX_VALUE);
+                ArrayKDTree<KDTestObj> arrayTree = new ArrayKDTree<KDTestObj>(5, Double.MAX_VALUE);
+                tree.setSplitRule(rule);
+                arrayTree.setSplitRule(rule);
+                for(int i=0;i<pts.length;++i) {
+                    tree.addKDObject(new KDTestObj(tree, pts[i], i));
+                    arrayTree.addKDObject(new KDTestObj(pts[i], i));
+                }
+                tree.buildKDTree();
+                arrayTree.buildKDTree();
+                KDNeighborhood<KDTestObj> nbhd = tree.buildNeighborhood();
+                KDIndexNeighborhood arrayNbhd = arrayTree.buildNeighborhood();
+                for(int q=0;q<50;++q) {
+                    double[] pos = new double[numDims];
+                    for(int axis=0;axis<numDims;++axis) {pos[axis] = rnd.nextGaussian() * (axis + 1) + 1000;}
+                    checkNeighborhood(pts, pos, numDims, 5, Double.MAX_VALUE, tree.findNeighborhood(pos, nbhd));
+                    ArrayKDTreeTest.checkNeighborhood(pts, pos, numDims, 5, Double.MAX_VALUE, arrayTree.findNeighborhood(pos, arrayNbhd));
+                }
+            }
+        }
+    }//testSplitRulesAndDimsMatchBruteForce
+
+    /**
+     * The legacy x,y,z query must find the nearest objects of 2 and 3 dimensional trees, farthest first
+     */
+    @Test
+    public void testLegacyXYZQueryMatchesBruteForce() {
+        Random rnd = new Random(9);
+        for(int numDims : new int[] {2, 3}) {
+            double[][] pts = KDTestUtils.buildRandPts(rnd, 1500, numDims);
+            KDTree<KDTestObj> tree = buildTree(pts, 7, Double.MAX_VALUE);
+            for(int q=0;q<100;++q) {
+                double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                double[] expSqDists = KDTestUtils.calcKNNSqDists(pts, pos, numDims, 7, Double.MAX_VALUE);
+                PriorityQueue<KDTestObj> queue = tree.findNeighborhood(pos[0], pos[1], pos[2]);
+                assertEquals(expSqDists.length, queue.size());
+                for(int i=expSqDists.length-1;i>=0;--i) {assertEquals(expSqDists[i], queue.poll().getSqDist());}
+            }
+        }
+    }//testLegacyXYZQueryMatchesBruteForce
+
+    /**
+     * The sort-based build must work for objects with no owning tree
+     */
+    @Test
+    public void testSortBuildWithoutOwningTreeMatchesBruteForce() {
+        Random rnd = new Random(3);
+        double[][] pts = KDTestUtils.buildRandPts(rnd, 500, 2);
+        KDTree<KDTestObj> tree = new KDTree<KDTestObj>(5, Double.MAX_VALUE);
+        tree.setUseSelectionBuild(false);
+        for(KDTestObj obj : KDTestUtils.buildObjs(pts)) {tree.addKDObject(obj);}
+        tree.buildKDTree();
+        KDNeighborhood<KDTestObj> nbhd = tree.buildNeighborhood();
+        for(int q=0;q<100;++q) {
+            double[] pos = KDTestUtils.buildQuery(rnd, 2);
+            checkNeighborhood(pts, pos, 2, 5, Double.MAX_VALUE, tree.findNeighborhood(pos, nbhd));
+        }
+    }//testSortBuildWithoutOwningTreeMatchesBruteForce
+
+    /**
+     * Many threads querying one tree at once, each with its own neighborhood, must each get the brute force answer
+     */
+    @Test
+    public void testConcurrentQueriesMatchBruteForce() throws Exception {
+        double[][] pts = KDTestUtils.buildRandPts(new Random(2), 5000, 3);
+        KDTree<KDTestObj> tree = buildTree(pts, 5, Double.MAX_VALUE);
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for(int t=0;t<4;++t) {
+                final long seed = 100 + t;
+                futures.add(exec.submit(() -> {
+                    Random rnd = new Random(seed);
+                    KDNeighborhood<KDTestObj> nbhd = tree.buildNeighborhood();
+                    for(int q=0;q<300;++q) {
+                        double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                        checkNeighborhood(pts, pos, 3, 5, Double.MAX_VALUE, tree.findNeighborhood(pos, nbhd));
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> f : futures) {f.get();}
+        } finally {
+            exec.shutdown();
+        }
+    }//testConcurrentQueriesMatchBruteForce
+
+    /**
+     * Inserting into and removing from a tree, including inserts in sorted order that unbalance it and a first insert
+     * after objects were staged but not built, must leave queries finding exactly the live objects
+     */
+    @Test
+    public void testInsertAndRemoveMatchBruteForce() {
+        Random rnd = new Random(10);
+        double[][] pts = KDTestUtils.buildGridPts(rnd, 3000, 3, 25);
+        //later points arrive sorted along the first axis
+        Arrays.sort(pts, 1000, pts.length, (a, b) -> Double.compare(a[0], b[0]));
+        KDTree<KDTestObj> tree = new KDTree<KDTestObj>(6, Double.MAX_VALUE);
+        KDTestObj[] objs = new KDTestObj[pts.length];
+        boolean[] isLive = new boolean[pts.length];
+        for(int i=0;i<pts.length;++i) {objs[i] = new KDTestObj(tree, pts[i], i);}
+        for(int i=0;i<1000;++i) {isLive[i] = true;}
+        //inserting into a tree with staged objects that has never been built must build it from all of them
+        for(int i=0;i<999;++i) {tree.addKDObject(objs[i]);}
+        tree.insertKDObject(objs[999]);
+        KDNeighborhood<KDTestObj> nbhd = tree.buildNeighborhood();
+        for(int step=0;step<4000;++step) {
+            int i = (step < 2000 ? 1000 + step : rnd.nextInt(pts.length));
+            if (isLive[i]) {
+                assertTrue(tree.removeKDObject(objs[i]));
+                assertFalse(tree.removeKDObject(objs[i]));
+            } else {
+                tree.insertKDObject(objs[i]);
+            }
+            isLive[i] = !isLive[i];
+            if (step % 250 != 0) {continue;}
+            List<double[]> liveList = new ArrayList<double[]>();
+            for(int j=0;j<pts.length;++j) {if(isLive[j]) {liveList.add(pts[j]);}}
+            double[][] livePts = liveList.toArray(new double[0][]);
+            for(int q=0;q<50;++q) {
+                double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                double[] expSqDists = KDTestUtils.calcKNNSqDists(livePts, pos, 3, 6, Double.MAX_VALUE);
+                tree.findNeighborhood(pos, nbhd).sortByDist();
+                assertEquals(expSqDists.length, nbhd.size());
+                for(int n=0;n<expSqDists.length;++n) {
+                    assertTrue(isLive[nbhd.getNeighbor(n).idx]);
+                    assertEquals(expSqDists[n], nbhd.getSqDist(n));
+                }
+                assertEquals(KDTestUtils.countInRadius(livePts, pos, 3, 0.01), tree.countInRadius(pos, 0.01));
+            }
+        }
+    }//testInsertAndRemoveMatchBruteForce
+
+    /**
+     * Collecting query stats from many threads at once must not change the answers of queries, and must count every query,
+     * including queries nested in another's visitor
+     */
+    @Test
+    public void testQueryStatsMatchBruteForce() throws Exception {
+        double[][] pts = KDTestUtils.buildRandPts(new Random(19), 3000, 3);
+        KDTree<KDTestObj> tree = buildTree(pts, 5, Double.MAX_VALUE);
+        tree.setCollectQueryStats(true);
+        int numThreads = 4, numQueries = 200;
+        ExecutorService exec = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for(int t=0;t<numThreads;++t) {
+                final long seed = 200 + t;
+                futures.add(exec.submit(() -> {
+                    Random rnd = new Random(seed);
+                    KDNeighborhood<KDTestObj> nbhd = tree.buildNeighborhood();
+                    KDQueryStats stats = new KDQueryStats();
+                    for(int q=0;q<numQueries;++q) {
+                        double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                        checkNeighborhood(pts, pos, 3, 5, Double.MAX_VALUE, tree.findNeighborhood(pos, nbhd));
+                        checkNeighborhood(pts, pos, 3, 5, Double.MAX_VALUE, tree.findNeighborhood(pos, nbhd, stats));
+                        assertTrue((stats.getNumDistEvals() > 0) && (stats.getNumDistEvals() <= pts.length));
+                        int[] numFound = new int[1];
+                        tree.findInRadius(pos, 0.01, (obj) -> ++numFound[0]);
+                        assertEquals(KDTestUtils.countInRadius(pts, pos, 3, 0.01), numFound[0]);
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> f : futures) {f.get();}
+        } finally {
+            exec.shutdown();
+        }
+        assertEquals(3L * numThreads * numQueries, tree.getQueryStatsSnapshot().getNumQueries());
+        tree.resetQueryStats();
+        assertEquals(0L, tree.getQueryStatsSnapshot().getNumQueries());
+        //queries made from within another's visitor must be counted as if they had been made one after another
+        double[] pos = KDTestUtils.buildQuery(new Random(191), 3);
+        tree.findInRadius(pos, 0.01, (obj) -> tree.findInRadius(obj.getPosVals(), 0.001, (nbr) -> {}));
+        KDQueryStatsSnapshot nested = tree.getQueryStatsSnapshot();
+        tree.resetQueryStats();
+        List<KDTestObj> found = new ArrayList<KDTestObj>();
+        tree.findInRadius(pos, 0.01, found::add, new KDQueryStats());
+        for(KDTestObj obj : found) {tree.findInRadius(obj.getPosVals(), 0.001, (nbr) -> {}, new KDQueryStats());}
+        KDQueryStatsSnapshot sequential = tree.getQueryStatsSnapshot();
+        assertTrue(found.size() > 0);
+        assertEquals(sequential.getNumQueries(), nested.getNumQueries());
+        assertEquals(sequential.getNumNodesVisited(), nested.getNumNodesVisited());
+        assertEquals(sequential.getNumDistEvals(), nested.getNumDistEvals());
+        assertEquals(sequential.getNumSubtreesPruned(), nested.getNumSubtreesPruned());
+        tree.resetQueryStats();
+        tree.setCollectQueryStats(false);
+        assertNull(tree.getQueryStatsSnapshot());
+    }//testQueryStatsMatchBruteForce
+
+    /**
+     * Reference distance of each metric checked, calculated independently of the metric classes
+     */
+    private static double calcRefDist(int metricIdx, double[] a, double[] b) {
+        double[] weights = {1.0, 4.0, 0.25};
+        double res = 0;
+        for(int axis=0;axis<3;++axis) {
+            double gap = Math.abs(a[axis] - b[axis]);
+            switch (metricIdx) {
+                case 0 : {res += gap * gap; break;}
+                case 1 : {res += weights[axis] * gap * gap; break;}
+                case 2 : {res += weights[axis] * gap; break;}
+                case 3 : {res = Math.max(res, weights[axis] * gap); break;}
+                default : {
+                    //unit period on the first two axes only
+                    if (axis < 2) {gap %= 1.0; gap = Math.min(gap, 1.0 - gap);}
+                    res += gap * gap;
+                }
+            }
+        }
+        return res;
+    }//calcRefDist
+
+    /**
+     * Neighborhood and radius queries using each metric must find what brute force finds using that metric's distances
+     */
+    @Test
+    public void testMetricsMatchBruteForce() {
+        Random rnd = new Random(20);
+        double[] weights = {1.0, 4.0, 0.25};
+        KDMetric[] metrics = {new KDEuclideanMetric(), new KDEuclideanMetric(weights), new KDManhattanMetric(weights),
+                new KDChebyshevMetric(weights), new KDPeriodicMetric(new double[] {1.0, 1.0, 0.0})};
+        double[][] pts = KDTestUtils.buildGridPts(rnd, 3000, 3, 40);
+        for(int m=0;m<metrics.length;++m) {
+            KDMetric metric = metrics[m];
+            for(double maxDist : new double[] {Double.MAX_VALUE, metric.toSearchDist(0.1)}) {
+                KDTree<KDTestObj> tree = buildTree(pts, 6, maxDist);
+                tree.setMetric(metric);
+                KDNeighborhood<KDTestObj> nbhd = tree.buildNeighborhood();
+                double radius = metric.toSearchDist(0.08);
+                for(int q=0;q<100;++q) {
+                    double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                    double[] dists = new double[pts.length];
+                    int numInRange = 0, numInRadius = 0;
+                    for(double[] pt : pts) {
+                        double dist = metric.calcDist(pos, pt, 3);
+                        assertEquals(calcRefDist(m, pos, pt), dist, 1e-12);
+                        if (dist < maxDist) {dists[numInRange++] = dist;}
+                        if (dist <= radius) {++numInRadius;}
+                    }
+                    Arrays.sort(dists, 0, numInRange);
+                    tree.findNeighborhood(pos, nbhd).sortByDist();
+                    assertEquals(Math.min(6, numInRange), nbhd.size());
+                    for(int i=0;i<nbhd.size();++i) {
+                        assertEquals(dists[i], nbhd.getSqDist(i));
+                        assertEquals(nbhd.getSqDist(i), metric.calcDist(pos, pts[nbhd.getNeighbor(i).idx], 3));
+                    }
+                    int[] numFound = new int[1];
+                    tree.findInRadius(pos, radius, (obj) -> {assertTrue(metric.calcDist(pos, pts[obj.idx], 3) <= radius); ++numFound[0];});
+                    assertEquals(numInRadius, numFound[0]);
+                    assertEquals(numInRadius, tree.countInRadius(pos, radius));
+                }
+            }
+        }
+    }//testMetricsMatchBruteForce
+
+    /**
+     * Check the iterator returns every live object within maxSqDist of pos in ascending sq distance, as brute force on
+     * livePts finds them, or only the first numToTake of them
+     */
+    private static void checkIterator(KDNeighborIterator<KDTestObj> iter, double[][] pts, double[][] livePts, boolean[] isLive, double[] pos, double maxSqDist, int numToTake) {
+        double[] expSqDists = KDTestUtils.calcSortedSqDists(livePts, pos, 3, Double.MAX_VALUE, -1);
+        int numExp = 0;
+        while ((numExp < expSqDists.length) && (expSqDists[numExp] <= maxSqDist)) {++numExp;}
+        int numFound = 0;
+        while ((numFound < numToTake) && iter.hasNext()) {
+            double peekSqDist = iter.peekSqDist();
+            KDTestObj obj = iter.next();
+            assertTrue(isLive[obj.idx]);
+            assertEquals(peekSqDist, iter.getLastSqDist());
+            assertEquals(expSqDists[numFound], iter.getLastSqDist());
+            assertEquals(expSqDists[numFound], KDTestUtils.calcSqDist(pts[obj.idx], pos, 3));
+            ++numFound;
+        }
+        assertEquals(Math.min(numExp, numToTake), numFound);
+        if (numFound < numToTake) {assertEquals(Double.POSITIVE_INFINITY, iter.peekSqDist());}
+    }//checkIterator
+
+    /**
+     * Iterating neighbors must return them in the order brute force finds them, up to the max distance and skipping
+     * removed objects, and an iterator stopped early must give the same answers when reset for a new query
+     */
+    @Test
+    public void testIterateNeighborsMatchesBruteForce() {
+        Random rnd = new Random(23);
+        double[][] pts = KDTestUtils.buildGridPts(rnd, 2000, 3, 30);
+        KDTree<KDTestObj> tree = new KDTree<KDTestObj>(5, Double.MAX_VALUE);
+        KDTestObj[] objs = new KDTestObj[pts.length];
+        boolean[] isLive = new boolean[pts.length];
+        for(int i=0;i<pts.length;++i) {objs[i] = new KDTestObj(tree, pts[i], i); tree.addKDObject(objs[i]); isLive[i] = true;}
+        tree.buildKDTree();
+        KDNeighborIterator<KDTestObj> iter = tree.iterateNeighbors(pts[0]);
+        checkIterator(iter, pts, pts, isLive, pts[0], Double.MAX_VALUE, Integer.MAX_VALUE);
+        for(int stage=0;stage<2;++stage) {
+            if (stage == 1) {
+                //removed objects' nodes stay in the tree, marked as deleted
+                for(int i=0;i<pts.length;i+=7) {assertTrue(tree.removeKDObject(objs[i])); isLive[i] = false;}
+                assertTrue(tree.numDeletedNodes > 0);
+            }
+            List<double[]> liveList = new ArrayList<double[]>();
+            for(int j=0;j<pts.length;++j) {if(isLive[j]) {liveList.add(pts[j]);}}
+            double[][] livePts = liveList.toArray(new double[0][]);
+            for(int q=0;q<60;++q) {
+                double[] pos = KDTestUtils.buildQuery(rnd, 3);
+                double maxSqDist = (q % 3 == 0 ? Double.MAX_VALUE : rnd.nextDouble() * 0.05);
+                int numToTake = (q % 2 == 0 ? Integer.MAX_VALUE : 1 + rnd.nextInt(4));
+                iter.reset(pos, maxSqDist);
+                checkIterator(iter, pts, livePts, isLive, pos, maxSqDist, numToTake);
+            }
+        }
+    }//testIterateNeighborsMatchesBruteForce
+
+}//class KDTreeTest
@@ -0,0 +1,50 @@
+package base_Utils_Objects.kdTree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import base_Utils_Objects.kdTree.KDTestUtils.KDTestObj;
+
+/**
+ * Checks queries of saved and memory-mapped kd-trees against brute force
+ * @author John Turner
+ *
+ */
+public class MappedKDTreeTest {
+
+    /**
+     * A saved tree mapped back in, with chunks that either hold the whole tree or split it in many places, must
+     * answer queries as brute force does
+     */
+    @Test
+    public void testLoadedTreeMatchesBruteForce() throws Exception {
+        Random rnd = new Random(13);
+        File file = File.createTempFile("mappedKDTreeTest", ".kdt");
+        try {
+            for(int numPts : new int[] {1, 9, 3000}) {
+                double[][] pts = KDTestUtils.buildGridPts(rnd, numPts, 3, 30);
+                ArrayKDTree<KDTestObj> srcTree = ArrayKDTreeTest.buildTree(pts, 5, Double.MAX_VALUE, 8);
+                assertTrue(srcTree.saveTree(file.getAbsolutePath()));
+                for(int chunkShift : new int[] {MappedKDTree.DEFAULT_CHUNK_SHIFT, 3}) {
+                    MappedKDTree tree = MappedKDTree.loadTree(file.getAbsolutePath(), chunkShift);
+                    assertNotNull(tree);
+                    assertEquals(numPts, tree.getNumPts());
+                    assertEquals(8, tree.getBuiltLeafSize());
+                    KDTestUtils.checkRangeQueries(tree, pts, rnd, 5, Double.MAX_VALUE);
+                    tree.close();
+                    assertTrue(tree.isClosed());
+                    OffHeapKDTreeTest.checkQueriesFindNothing(tree, pts[0]);
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }//testLoadedTreeMatchesBruteForce
+
+}//class MappedKDTreeTest
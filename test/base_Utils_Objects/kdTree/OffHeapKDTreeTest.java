@@ -0,0 +1,98 @@
+package base_Utils_Objects.kdTree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import base_Utils_Objects.kdTree.base.Base_ImplicitKDTree;
+import base_Utils_Objects.kdTree.query.KDIndexList;
+import base_Utils_Objects.kdTree.query.KDIndexNeighborhood;
+
+/**
+ * Checks OffHeapKDTree queries against brute force
+ * @author John Turner
+ *
+ */
+public class OffHeapKDTreeTest {
+
+    /**
+     * Trees built serially or in parallel, with chunks that either hold every point or split them in many places,
+     * must answer queries as brute force does
+     */
+    @Test
+    public void testQueriesMatchBruteForce() {
+        Random rnd = new Random(14);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for(ForkJoinPool buildPool : new ForkJoinPool[] {null, pool}) {
+                for(int chunkShift : new int[] {OffHeapKDTree.DEFAULT_CHUNK_SHIFT, 4}) {
+                    for(int numPts : new int[] {1, 17, 5000}) {
+                        double[][] pts = KDTestUtils.buildGridPts(rnd, numPts, 3, 30);
+                        OffHeapKDTree tree = new OffHeapKDTree(numPts, 3, 8, chunkShift);
+                        tree.setParallelBuildCutoff(64);
+                        for(int i=0;i<numPts;++i) {tree.setPoint(i, pts[i]);}
+                        tree.buildTree(buildPool);
+                        assertTrue(tree.isBuilt());
+                        for(int axis=0;axis<3;++axis) {
+                            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+                            for(double[] pt : pts) {min = Math.min(min, pt[axis]); max = Math.max(max, pt[axis]);}
+                            assertEquals(min, tree.getTreeMin(axis));
+                            assertEquals(max, tree.getTreeMax(axis));
+                        }
+                        KDTestUtils.checkRangeQueries(tree, pts, rnd, 5, 0.05);
+                        assertEquals(numPts, tree.getNumPts());
+                        tree.close();
+                        assertTrue(tree.isClosed());
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }//testQueriesMatchBruteForce
+
+    /**
+     * Check every query of a tree that cannot be queried finds nothing
+     */
+    static void checkQueriesFindNothing(Base_ImplicitKDTree tree, double[] pos) {
+        double[] mins = {pos[0] - 1.0, pos[1] - 1.0, pos[2] - 1.0}, maxs = {pos[0] + 1.0, pos[1] + 1.0, pos[2] + 1.0};
+        KDIndexNeighborhood nbhd = new KDIndexNeighborhood(5, Double.MAX_VALUE);
+        KDIndexList res = new KDIndexList();
+        assertEquals(0, tree.findNeighborhood(pos, nbhd).size());
+        assertEquals(0, tree.findApproxNeighborhood(pos, 0.0, 0, nbhd, null).size());
+        assertEquals(0, tree.countInRadius(pos, 10.0));
+        assertEquals(0, tree.findInRadius(pos, 10.0, res));
+        assertEquals(0, tree.countInBox(mins, maxs));
+        assertEquals(0, tree.findInBox(mins, maxs, res));
+        assertEquals(0, tree.calcTreeStats().getNumLeaves());
+        assertEquals(0, tree.getNumInternalNodes());
+    }//checkQueriesFindNothing
+
+    /**
+     * A tree must not be queryable before it is built or after it is closed
+     */
+    @Test
+    public void testUnbuiltAndClosedTreesFindNothing() {
+        Random rnd = new Random(141);
+        double[][] pts = KDTestUtils.buildRandPts(rnd, 500, 3);
+        OffHeapKDTree tree = new OffHeapKDTree(pts.length, 3, 8);
+        for(int i=0;i<pts.length;++i) {tree.setPoint(i, pts[i]);}
+        assertFalse(tree.isBuilt());
+        checkQueriesFindNothing(tree, pts[0]);
+        tree.buildTree();
+        assertTrue(tree.isBuilt());
+        assertEquals(1, tree.countInRadius(pts[0], 0.0));
+        tree.close();
+        assertFalse(tree.isBuilt());
+        checkQueriesFindNothing(tree, pts[0]);
+        tree.setPoint(0, pts[1]);
+        tree.buildTree();
+        assertFalse(tree.isBuilt());
+    }//testUnbuiltAndClosedTreesFindNothing
+
+}//class OffHeapKDTreeTest
@@ -0,0 +1,77 @@
+package base_Utils_Objects.kdTree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import base_Utils_Objects.kdTree.KDTestUtils.KDTestObj;
+import base_Utils_Objects.kdTree.query.KDIndexNeighborhood;
+
+/**
+ * Checks StreamingKDTree queries against brute force on the objects appended so far
+ * @author John Turner
+ *
+ */
+public class StreamingKDTreeTest {
+
+    /**
+     * Check the queries of the tree against brute force on the first numAdded points
+     */
+    private static void checkQueries(Random rnd, StreamingKDTree<KDTestObj> tree, double[][] pts, int numAdded) {
+        double[][] addedPts = Arrays.copyOf(pts, numAdded);
+        KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+        for(int q=0;q<20;++q) {
+            double[] pos = KDTestUtils.buildQuery(rnd, 3), mins = new double[3], maxs = new double[3];
+            for(int axis=0;axis<3;++axis) {mins[axis] = pos[axis] - 0.15; maxs[axis] = pos[axis] + 0.15;}
+            ArrayKDTreeTest.checkNeighborhood(addedPts, pos, 3, 5, 0.05, tree.findNeighborhood(pos, nbhd));
+            int expInRadius = KDTestUtils.countInRadius(addedPts, pos, 3, 0.02);
+            assertEquals(expInRadius, tree.countInRadius(pos, 0.02));
+            boolean[] isFound = new boolean[numAdded];
+            int[] numFound = new int[1];
+            tree.findInRadius(pos, 0.02, (idx) -> {
+                assertTrue(KDTestUtils.calcSqDist(pts[idx], pos, 3) <= 0.02);
+                assertTrue(!isFound[idx]);
+                isFound[idx] = true;
+                ++numFound[0];
+            });
+            assertEquals(expInRadius, numFound[0]);
+            numFound[0] = 0;
+            tree.findInBox(mins, maxs, (idx) -> {assertTrue(KDTestUtils.isInBox(pts[idx], mins, maxs, 3)); ++numFound[0];});
+            assertEquals(KDTestUtils.countInBox(addedPts, mins, maxs, 3), numFound[0]);
+        }
+    }//checkQueries
+
+    /**
+     * Queries made between appends must see every object appended so far, whether merges are built on the appending
+     * thread or in the background
+     */
+    @Test
+    public void testAppendsMatchBruteForce() {
+        Random rnd = new Random(12);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for(ForkJoinPool mergePool : new ForkJoinPool[] {null, pool}) {
+                double[][] pts = KDTestUtils.buildRandPts(rnd, 5000, 3);
+                KDTestObj[] objs = KDTestUtils.buildObjs(pts);
+                StreamingKDTree<KDTestObj> tree = new StreamingKDTree<KDTestObj>(5, 0.05, 16, 4);
+                tree.setMergePool(mergePool);
+                for(int i=0;i<objs.length;++i) {
+                    tree.addKDObject(objs[i]);
+                    if ((i < 100) || (i % 97 == 0)) {checkQueries(rnd, tree, pts, i + 1);}
+                }
+                tree.finishMerges();
+                checkQueries(rnd, tree, pts, objs.length);
+                assertEquals(objs.length, tree.getNumNodeObjs());
+                assertTrue(tree.getNumBuffered() < 16);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }//testAppendsMatchBruteForce
+
+}//class StreamingKDTreeTest
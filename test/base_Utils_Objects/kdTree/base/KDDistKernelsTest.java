@@ -0,0 +1,52 @@
+package base_Utils_Objects.kdTree.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the block distance kernels against a point-at-a-time calculation
+ * @author John Turner
+ *
+ */
+public class KDDistKernelsTest {
+
+    /**
+     * Every sub-block of double and float coordinates, in any # of dimensions, must give the distances a scalar
+     * loop over the same points gives, written from the start of the result array
+     */
+    @Test
+    public void testKernelsMatchScalarDists() {
+        Random rnd = new Random(18);
+        int numPts = 67;
+        for(int numDims : new int[] {1, 2, 3, 7}) {
+            double[][] coords = new double[numDims][numPts];
+            float[][] floatCoords = new float[numDims][numPts];
+            for(int axis=0;axis<numDims;++axis) {
+                for(int i=0;i<numPts;++i) {coords[axis][i] = rnd.nextGaussian(); floatCoords[axis][i] = (float) rnd.nextGaussian();}
+            }
+            double[] pos = new double[numDims];
+            for(int axis=0;axis<numDims;++axis) {pos[axis] = rnd.nextGaussian();}
+            double[] res = new double[numPts], floatRes = new double[numPts];
+            for(int lo=0;lo<numPts;lo+=5) {
+                for(int hi=lo;hi<=numPts;hi+=3) {
+                    KDDistKernels.calcSqDists(coords, numDims, lo, hi, pos, res);
+                    KDDistKernels.calcSqDists(floatCoords, numDims, lo, hi, pos, floatRes);
+                    for(int i=lo;i<hi;++i) {
+                        double expSqDist = 0, expFloatSqDist = 0;
+                        for(int axis=0;axis<numDims;++axis) {
+                            double diff = coords[axis][i] - pos[axis], floatDiff = floatCoords[axis][i] - pos[axis];
+                            expSqDist += diff * diff;
+                            expFloatSqDist += floatDiff * floatDiff;
+                        }
+                        assertEquals(expSqDist, res[i - lo]);
+                        assertEquals(expFloatSqDist, floatRes[i - lo]);
+                    }
+                }
+            }
+        }
+    }//testKernelsMatchScalarDists
+
+}//class KDDistKernelsTest
@@ -0,0 +1,107 @@
+package base_Utils_Objects.spatialGrid;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import base_Utils_Objects.kdTree.KDTestUtils;
+import base_Utils_Objects.kdTree.KDTestUtils.KDTestObj;
+import base_Utils_Objects.kdTree.query.KDNeighborhood;
+
+/**
+ * Checks SpatialGrid queries against brute force
+ * @author John Turner
+ *
+ */
+public class SpatialGridTest {
+
+    /**
+     * Check every query of the grid against brute force on pts
+     */
+    private static void checkQueries(Random rnd, SpatialGrid<KDTestObj> grid, double[][] pts, int numDims, int k, double maxSqDist) {
+        KDNeighborhood<KDTestObj> nbhd = grid.buildNeighborhood();
+        for(int q=0;q<100;++q) {
+            double[] pos = KDTestUtils.buildQuery(rnd, numDims), mins = new double[numDims], maxs = new double[numDims];
+            for(int axis=0;axis<numDims;++axis) {mins[axis] = pos[axis] - rnd.nextDouble() * 0.3; maxs[axis] = pos[axis] + rnd.nextDouble() * 0.3;}
+            double[] expSqDists = KDTestUtils.calcKNNSqDists(pts, pos, numDims, k, maxSqDist);
+            grid.findNeighborhood(pos, nbhd).sortByDist();
+            assertEquals(expSqDists.length, nbhd.size());
+            for(int i=0;i<expSqDists.length;++i) {
+                assertEquals(expSqDists[i], nbhd.getSqDist(i));
+                assertEquals(expSqDists[i], KDTestUtils.calcSqDist(pts[nbhd.getNeighbor(i).idx], pos, numDims));
+            }
+            double sqRadius = rnd.nextDouble() * 0.03;
+            int expInRadius = KDTestUtils.countInRadius(pts, pos, numDims, sqRadius);
+            int[] numFound = new int[1];
+            grid.findInRadius(pos, sqRadius, (obj) -> {assertTrue(KDTestUtils.calcSqDist(pts[obj.idx], pos, numDims) <= sqRadius); ++numFound[0];});
+            assertEquals(expInRadius, numFound[0]);
+            assertEquals(expInRadius, grid.countInRadius(pos, sqRadius));
+            numFound[0] = 0;
+            grid.findInBox(mins, maxs, (obj) -> {assertTrue(KDTestUtils.isInBox(pts[obj.idx], mins, maxs, numDims)); ++numFound[0];});
+            int expInBox = KDTestUtils.countInBox(pts, mins, maxs, numDims);
+            assertEquals(expInBox, numFound[0]);
+            //queries using nbhd as scratch must leave its neighbors alone
+            numFound[0] = 0;
+            grid.findInRadius(pos, sqRadius, (obj) -> ++numFound[0], nbhd);
+            assertEquals(expInRadius, numFound[0]);
+            assertEquals(expInRadius, grid.countInRadius(pos, sqRadius, nbhd));
+            numFound[0] = 0;
+            grid.findInBox(mins, maxs, (obj) -> ++numFound[0], nbhd);
+            assertEquals(expInBox, numFound[0]);
+            assertEquals(expSqDists.length, nbhd.size());
+            for(int i=0;i<expSqDists.length;++i) {assertEquals(expSqDists[i], nbhd.getSqDist(i));}
+        }
+    }//checkQueries
+
+    /**
+     * Grids with cells much smaller than, about the same as, and much larger than the query radius, including cells
+     * small enough that the grid must grow them, must answer queries as brute force does
+     */
+    @Test
+    public void testQueriesMatchBruteForce() {
+        Random rnd = new Random(21);
+        for(int numDims : new int[] {1, 2, 3}) {
+            for(int numPts : new int[] {1, 5, 3000}) {
+                double[][] pts = KDTestUtils.buildGridPts(rnd, numPts, numDims, 50);
+                for(double cellSize : new double[] {1e-6, 0.05, 0.1, 2.0}) {
+                    for(double maxSqDist : new double[] {Double.MAX_VALUE, 0.01}) {
+                        SpatialGrid<KDTestObj> grid = new SpatialGrid<KDTestObj>(6, maxSqDist, cellSize);
+                        for(KDTestObj obj : KDTestUtils.buildObjs(pts)) {grid.addKDObject(obj);}
+                        grid.buildGrid();
+                        assertEquals(numPts, grid.getNumObjs());
+                        assertTrue(grid.getTotalCells() <= Math.max(SpatialGrid.MIN_MAX_CELLS, SpatialGrid.MAX_CELLS_PER_OBJ * numPts));
+                        checkQueries(rnd, grid, pts, numDims, 6, maxSqDist);
+                    }
+                }
+            }
+        }
+    }//testQueriesMatchBruteForce
+
+    /**
+     * Rebuilding a grid, after its objects have moved or been replaced, must give answers for the new positions
+     */
+    @Test
+    public void testRebuildMatchesBruteForce() {
+        Random rnd = new Random(22);
+        double[][] pts = KDTestUtils.buildRandPts(rnd, 2000, 2);
+        KDTestObj[] objs = KDTestUtils.buildObjs(pts);
+        SpatialGrid<KDTestObj> grid = new SpatialGrid<KDTestObj>(5, Double.MAX_VALUE, 0.05);
+        for(KDTestObj obj : objs) {grid.addKDObject(obj);}
+        for(int frame=0;frame<5;++frame) {
+            grid.buildGrid();
+            checkQueries(rnd, grid, pts, 2, 5, Double.MAX_VALUE);
+            for(int i=0;i<pts.length;++i) {
+                for(int axis=0;axis<2;++axis) {pts[i][axis] = pts[i][axis] * 1.2 + rnd.nextGaussian() * 0.02; objs[i].getPosVals()[axis] = pts[i][axis];}
+            }
+        }
+        double[][] newPts = KDTestUtils.buildRandPts(rnd, 500, 2);
+        grid.clearKDObjects();
+        for(KDTestObj obj : KDTestUtils.buildObjs(newPts)) {grid.addKDObject(obj);}
+        grid.buildGrid();
+        checkQueries(rnd, grid, newPts, 2, 5, Double.MAX_VALUE);
+    }//testRebuildMatchesBruteForce
+
+}//class SpatialGridTest
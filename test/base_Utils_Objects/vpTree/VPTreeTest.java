@@ -0,0 +1,149 @@
+package base_Utils_Objects.vpTree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import base_Utils_Objects.kdTree.KDTestUtils;
+import base_Utils_Objects.kdTree.query.KDApproxSearchStats;
+import base_Utils_Objects.kdTree.query.KDIndexNeighborhood;
+
+/**
+ * Checks VPTree queries against brute force
+ * @author John Turner
+ *
+ */
+public class VPTreeTest {
+
+    /**
+     * Euclidean, Manhattan and Chebyshev distances between points
+     */
+    private static final List<VPDistFunc<double[]>> distFuncs = List.of(
+            (a, b) -> Math.sqrt(KDTestUtils.calcSqDist(a, b, a.length)),
+            (a, b) -> {double res = 0; for(int i=0;i<a.length;++i) {res += Math.abs(a[i] - b[i]);} return res;},
+            (a, b) -> {double res = 0; for(int i=0;i<a.length;++i) {res = Math.max(res, Math.abs(a[i] - b[i]));} return res;});
+
+    /**
+     * Distances from query to every point within maxDist, in ascending order
+     */
+    private static double[] calcSortedDists(VPDistFunc<double[]> distFunc, double[][] pts, double[] query, double maxDist) {
+        double[] res = new double[pts.length];
+        int numFound = 0;
+        for(double[] pt : pts) {
+            double dist = distFunc.calcDist(query, pt);
+            if (dist < maxDist) {res[numFound++] = dist;}
+        }
+        res = Arrays.copyOf(res, numFound);
+        Arrays.sort(res);
+        return res;
+    }//calcSortedDists
+
+    /**
+     * Check the neighborhood holds the k nearest points, within the given factor of their true distances
+     */
+    private static void checkNeighborhood(VPDistFunc<double[]> distFunc, double[][] pts, double[] query, int k, double maxDist, double errFactor, KDIndexNeighborhood nbhd) {
+        double[] expDists = calcSortedDists(distFunc, pts, query, maxDist);
+        nbhd.sortByDist();
+        assertEquals(Math.min(k, expDists.length), nbhd.size());
+        for(int i=0;i<nbhd.size();++i) {
+            assertEquals(distFunc.calcDist(query, pts[nbhd.getIdx(i)]), nbhd.getSqDist(i));
+            if (errFactor == 1.0) {    assertEquals(expDists[i], nbhd.getSqDist(i));}
+            else {                    assertTrue(nbhd.getSqDist(i) <= errFactor * expDists[i]);}
+        }
+    }//checkNeighborhood
+
+    private static VPTree<double[]> buildTree(VPDistFunc<double[]> distFunc, double[][] pts, int k, double maxDist, int leafSize, ForkJoinPool pool) {
+        VPTree<double[]> tree = new VPTree<double[]>(distFunc, k, maxDist, leafSize);
+        tree.setParallelBuildCutoff(64);
+        for(double[] pt : pts) {tree.addObject(pt);}
+        if (pool == null) {    tree.buildTree();}
+        else {                tree.buildTreeParallel(pool);}
+        return tree;
+    }//buildTree
+
+    /**
+     * Trees of every distance, built serially or in parallel with any leaf size, must answer exact and unbounded
+     * approximate queries as brute force does
+     */
+    @Test
+    public void testQueriesMatchBruteForce() {
+        Random rnd = new Random(22);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for(VPDistFunc<double[]> distFunc : distFuncs) {
+                for(ForkJoinPool buildPool : new ForkJoinPool[] {null, pool}) {
+                    for(int numPts : new int[] {1, 5, 3000}) {
+                        double[][] pts = KDTestUtils.buildGridPts(rnd, numPts, 4, 20);
+                        for(int leafSize : new int[] {1, 16}) {
+                            for(double maxDist : new double[] {Double.MAX_VALUE, 0.2}) {
+                                VPTree<double[]> tree = buildTree(distFunc, pts, 5, maxDist, leafSize, buildPool);
+                                KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+                                KDApproxSearchStats stats = new KDApproxSearchStats();
+                                for(int q=0;q<50;++q) {
+                                    double[] query = KDTestUtils.buildQuery(rnd, 4);
+                                    checkNeighborhood(distFunc, pts, query, 5, maxDist, 1.0, tree.findNeighborhood(query, nbhd));
+                                    checkNeighborhood(distFunc, pts, query, 5, maxDist, 1.0, tree.findApproxNeighborhood(query, 0.0, 0, nbhd, stats));
+                                    assertEquals(1.0, stats.getCertifiedRecall());
+                                    double radius = rnd.nextDouble() * 0.3;
+                                    int expInRadius = 0;
+                                    for(double[] pt : pts) {if(distFunc.calcDist(query, pt) <= radius) {++expInRadius;}}
+                                    int[] numFound = new int[1];
+                                    tree.findInRadius(query, radius, (idx) -> {assertTrue(distFunc.calcDist(query, pts[idx]) <= radius); ++numFound[0];});
+                                    assertEquals(expInRadius, numFound[0]);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }//testQueriesMatchBruteForce
+
+    /**
+     * Approximate queries with an error bound must find neighbors within (1+eps) of the true ones
+     */
+    @Test
+    public void testApproxSearchMatchesBruteForce() {
+        Random rnd = new Random(23);
+        double eps = 0.5;
+        double[][] pts = new double[3000][12];
+        for(double[] pt : pts) {for(int axis=0;axis<pt.length;++axis) {pt[axis] = rnd.nextGaussian();}}
+        VPTree<double[]> tree = buildTree(distFuncs.get(0), pts, 8, Double.MAX_VALUE, 8, null);
+        KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+        for(int q=0;q<50;++q) {
+            double[] query = new double[12];
+            for(int axis=0;axis<query.length;++axis) {query[axis] = rnd.nextGaussian();}
+            checkNeighborhood(distFuncs.get(0), pts, query, 8, Double.MAX_VALUE, 1.0 + eps, tree.findApproxNeighborhood(query, eps, 0, nbhd, null));
+        }
+    }//testApproxSearchMatchesBruteForce
+
+    /**
+     * Changing the leaf size of a built tree must not change how its queries read it until it is rebuilt
+     */
+    @Test
+    public void testLeafSizeChangeAfterBuildMatchesBruteForce() {
+        Random rnd = new Random(24);
+        double[][] pts = KDTestUtils.buildRandPts(rnd, 2000, 3);
+        VPTree<double[]> tree = buildTree(distFuncs.get(0), pts, 5, Double.MAX_VALUE, 16, null);
+        tree.setLeafSize(1);
+        assertEquals(16, tree.getBuiltLeafSize());
+        KDIndexNeighborhood nbhd = tree.buildNeighborhood();
+        for(int pass=0;pass<2;++pass) {
+            for(int q=0;q<100;++q) {
+                double[] query = KDTestUtils.buildQuery(rnd, 3);
+                checkNeighborhood(distFuncs.get(0), pts, query, 5, Double.MAX_VALUE, 1.0, tree.findNeighborhood(query, nbhd));
+            }
+            tree.buildTree();
+            assertEquals(1, tree.getBuiltLeafSize());
+        }
+    }//testLeafSizeChangeAfterBuildMatchesBruteForce
+
+}//class VPTreeTest